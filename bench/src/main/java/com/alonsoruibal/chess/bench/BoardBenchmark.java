@@ -0,0 +1,88 @@
+package com.alonsoruibal.chess.bench;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.bitboard.AttacksInfo;
+import com.alonsoruibal.chess.movegen.MagicMoveGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Board operations over the pseudo-legal moves of all the benchmark positions
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+	private Board[] boards;
+	private int[][] moves;
+	private final AttacksInfo attacksInfo = new AttacksInfo();
+
+	@Setup
+	public void setUp() {
+		boards = BenchmarkPositions.getBoards();
+		moves = new int[boards.length][];
+		MagicMoveGenerator moveGenerator = new MagicMoveGenerator();
+		int[] buffer = new int[256];
+		for (int i = 0; i < boards.length; i++) {
+			int count = moveGenerator.generateMoves(boards[i], buffer, 0);
+			moves[i] = new int[count];
+			System.arraycopy(buffer, 0, moves[i], 0, count);
+		}
+	}
+
+	@Benchmark
+	public int doUndoMove() {
+		int legal = 0;
+		for (int i = 0; i < boards.length; i++) {
+			Board board = boards[i];
+			for (int move : moves[i]) {
+				if (board.doMove(move)) {
+					board.undoMove();
+					legal++;
+				}
+			}
+		}
+		return legal;
+	}
+
+	@Benchmark
+	public int see() {
+		int sum = 0;
+		for (int i = 0; i < boards.length; i++) {
+			Board board = boards[i];
+			for (int move : moves[i]) {
+				sum += board.see(move);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * With the attacks info of the position, the SEE is skipped for the moves that cannot lose material
+	 */
+	@Benchmark
+	public int seeWithAttacksInfo() {
+		int sum = 0;
+		for (int i = 0; i < boards.length; i++) {
+			Board board = boards[i];
+			attacksInfo.build(board);
+			for (int move : moves[i]) {
+				sum += board.see(move, attacksInfo);
+			}
+		}
+		return sum;
+	}
+}
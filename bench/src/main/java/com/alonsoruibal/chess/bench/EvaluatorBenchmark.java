@@ -0,0 +1,80 @@
+package com.alonsoruibal.chess.bench;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.bitboard.AttacksInfo;
+import com.alonsoruibal.chess.evaluation.CompleteEvaluator;
+import com.alonsoruibal.chess.evaluation.Evaluator;
+import com.alonsoruibal.chess.evaluation.ExperimentalEvaluator;
+import com.alonsoruibal.chess.evaluation.SimplifiedEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of all the benchmark positions with each evaluator. The attacks info is built in each evaluation,
+ * the pawn and material hash tables of the evaluators are hit after the first pass
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+	@Param({"simplified", "complete", "experimental"})
+	public String evaluatorName;
+
+	private Board[] boards;
+	private Evaluator evaluator;
+	private final AttacksInfo attacksInfo = new AttacksInfo();
+
+	@Setup
+	public void setUp() {
+		boards = BenchmarkPositions.getBoards();
+		switch (evaluatorName) {
+			case "simplified":
+				evaluator = new SimplifiedEvaluator();
+				break;
+			case "complete":
+				evaluator = new CompleteEvaluator();
+				break;
+			case "experimental":
+				evaluator = new ExperimentalEvaluator();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown evaluator " + evaluatorName);
+		}
+	}
+
+	@Benchmark
+	public int evaluate() {
+		int sum = 0;
+		for (Board board : boards) {
+			// Forces the build of the attacks info, it is cached by board key
+			attacksInfo.boardKey = 0;
+			sum += evaluator.evaluate(board, attacksInfo);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long attacksInfoBuild() {
+		long sum = 0;
+		for (Board board : boards) {
+			attacksInfo.boardKey = 0;
+			attacksInfo.build(board);
+			sum += attacksInfo.attackedSquares[0];
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,76 @@
+package com.alonsoruibal.chess.bench;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.Config;
+import com.alonsoruibal.chess.movegen.LegalMoveGenerator;
+import com.alonsoruibal.chess.movegen.MagicMoveGenerator;
+import com.alonsoruibal.chess.search.MoveIterator;
+import com.alonsoruibal.chess.search.SearchEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move generation of all the benchmark positions: pseudo-legal, legal and with the move iterator of the search,
+ * that also sorts the moves
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGeneratorBenchmark {
+	private Board[] boards;
+	private final int[] moves = new int[256];
+	private final MagicMoveGenerator magicMoveGenerator = new MagicMoveGenerator();
+	private final LegalMoveGenerator legalMoveGenerator = new LegalMoveGenerator();
+	private MoveIterator moveIterator;
+
+	@Setup
+	public void setUp() {
+		boards = BenchmarkPositions.getBoards();
+		SearchEngine searchEngine = new SearchEngine(new Config());
+		moveIterator = searchEngine.nodes[0].moveIterator;
+	}
+
+	@Benchmark
+	public int magicGenerateMoves() {
+		int count = 0;
+		for (Board board : boards) {
+			count += magicMoveGenerator.generateMoves(board, moves, 0);
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int legalGenerateMoves() {
+		int count = 0;
+		for (Board board : boards) {
+			count += legalMoveGenerator.generateMoves(board, moves, 0);
+		}
+		return count;
+	}
+
+	@Benchmark
+	public void moveIteratorNext(Blackhole blackhole) {
+		for (Board board : boards) {
+			moveIterator.setBoard(board);
+			moveIterator.genMoves(0);
+			int move;
+			while ((move = moveIterator.next()) != 0) {
+				blackhole.consume(move);
+			}
+		}
+	}
+}
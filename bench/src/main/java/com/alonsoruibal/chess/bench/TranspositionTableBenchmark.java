@@ -0,0 +1,85 @@
+package com.alonsoruibal.chess.bench;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.movegen.MagicMoveGenerator;
+import com.alonsoruibal.chess.tt.TTEntry;
+import com.alonsoruibal.chess.tt.TranspositionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores and probes the positions after each pseudo-legal move of the benchmark positions. With a table bigger
+ * than the CPU caches each probe is a cache miss
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranspositionTableBenchmark {
+	@Param({"1", "256"})
+	public int sizeMb;
+
+	private TranspositionTable tt;
+	private final TTEntry entry = new TTEntry();
+	// A board for each position after a legal move
+	private Board[] boards;
+
+	@Setup
+	public void setUp() {
+		tt = new TranspositionTable(sizeMb);
+
+		Board[] positions = BenchmarkPositions.getBoards();
+		MagicMoveGenerator moveGenerator = new MagicMoveGenerator();
+		int[] moves = new int[256];
+		int count = 0;
+		Board[] buffer = new Board[positions.length * 256];
+		for (Board position : positions) {
+			int moveCount = moveGenerator.generateMoves(position, moves, 0);
+			for (int i = 0; i < moveCount; i++) {
+				if (position.doMove(moves[i])) {
+					Board board = new Board();
+					board.setFen(position.getFen());
+					buffer[count++] = board;
+					position.undoMove();
+				}
+			}
+		}
+		boards = new Board[count];
+		System.arraycopy(buffer, 0, boards, 0, count);
+
+		for (int i = 0; i < boards.length; i += 2) {
+			tt.set(boards[i], TranspositionTable.TYPE_EXACT_SCORE, 0, 10, 0, i, i, false);
+		}
+	}
+
+	@Benchmark
+	public int search() {
+		int found = 0;
+		for (Board board : boards) {
+			if (tt.search(board, 0, false, entry)) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	@Benchmark
+	public void set() {
+		for (int i = 0; i < boards.length; i++) {
+			tt.set(boards[i], TranspositionTable.TYPE_FAIL_HIGH, 0, 10, 0, i, i, false);
+		}
+	}
+}
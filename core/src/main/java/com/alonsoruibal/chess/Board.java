@@ -3,6 +3,7 @@ package com.alonsoruibal.chess;
 import com.alonsoruibal.chess.bitboard.AttacksInfo;
 import com.alonsoruibal.chess.bitboard.BitboardAttacks;
 import com.alonsoruibal.chess.bitboard.BitboardUtils;
+import com.alonsoruibal.chess.hash.MaterialKey;
 import com.alonsoruibal.chess.hash.ZobristKey;
 import com.alonsoruibal.chess.movegen.LegalMoveGenerator;
 
@@ -31,6 +32,14 @@ public class Board {
 	// Position on boarch in which is captured
 	private static final long FLAGS_PASSANT = 0x0000ff0000ff0000L;
 
+	// State bits of the packed positions, see getPacked()
+	public static final long PACKED_BLACK_TURN = 0x0001L;
+	public static final long PACKED_WHITE_KINGSIDE_CASTLING = 0x0002L;
+	public static final long PACKED_WHITE_QUEENSIDE_CASTLING = 0x0004L;
+	public static final long PACKED_BLACK_KINGSIDE_CASTLING = 0x0008L;
+	public static final long PACKED_BLACK_QUEENSIDE_CASTLING = 0x0010L;
+	public static final int PACKED_USER_DATA_SHIFT = 32;
+
 	// For the castlings {White Kingside, White Queenside, Black Kingside, Black Queenside}
 	public static final int[] CASTLING_KING_DESTINY_INDEX = {1, 5, 57, 61};
 	public static final long[] CASTLING_KING_DESTINY_SQUARE = {1L << 1, 1L << 5, 1L << 57, 1L << 61};
@@ -39,11 +48,14 @@ public class Board {
 
 	// For the SEE SWAP algorithm
 	public static final int[] SEE_PIECE_VALUES = {0, 100, 325, 330, 500, 900, 9999};
+	// Piece square table with all the values to zero, until an evaluator sets its own
+	private static final int[][][] EMPTY_PCSQ_TABLE = new int[2][Piece.KING + 1][64];
 
 	private final LegalMoveGenerator legalMoveGenerator = new LegalMoveGenerator();
 	final int[] legalMoves = new int[256];
 	int legalMoveCount = -1; // if -1 then legal moves not generated
 	private final long[] legalMovesKey = {0, 0};
+	private final AttacksInfo legalMoveAttacksInfo = new AttacksInfo();
 	private final HashMap<Integer, String> movesSan;
 
 	// Bitboard arrays
@@ -62,11 +74,21 @@ public class Board {
 	public int moveNumber = 0;
 	public int outBookMove = Integer.MAX_VALUE;
 	public long[] key = {0, 0};
+	public long pawnKey = 0;
+	public long materialKey = 0;
+	// Sums of the piece square table values of each color, set by the evaluator with setPcsqTable()
+	public final int[] pcsq = {0, 0};
+	private int[][][] pcsqTable = EMPTY_PCSQ_TABLE;
 
 	public String initialFen;
+	// The initial position when it was loaded with setPacked(), the FEN is built on demand
+	private final long[] initialPacked = {0, 0, 0, 0};
 
 	// History array indexed by moveNumber
 	private final long[][] keyHistory; // to detect draw by treefold
+	private final long[] pawnKeyHistory;
+	private final long[] materialKeyHistory;
+	private final int[][] pcsqHistory;
 	private final int[] moveHistory;
 	private final long[] whitesHistory;
 	private final long[] blacksHistory;
@@ -98,6 +120,9 @@ public class Board {
 		kingsHistory = new long[MAX_MOVES];
 		flagsHistory = new long[MAX_MOVES];
 		keyHistory = new long[MAX_MOVES][2];
+		pawnKeyHistory = new long[MAX_MOVES];
+		materialKeyHistory = new long[MAX_MOVES];
+		pcsqHistory = new int[MAX_MOVES][2];
 		fiftyMovesRuleHistory = new int[MAX_MOVES];
 
 		seeGain = new int[32];
@@ -143,6 +168,64 @@ public class Board {
 		return key[0] ^ key[1];
 	}
 
+	/**
+	 * Zobrist key of the pawns, to index the pawn structure hash tables
+	 */
+	public long getPawnKey() {
+		return pawnKey;
+	}
+
+	/**
+	 * Piece counts of the board packed in a long, to index the material tables
+	 */
+	public long getMaterialKey() {
+		return materialKey;
+	}
+
+	public int[][][] getPcsqTable() {
+		return pcsqTable;
+	}
+
+	/**
+	 * Sets the piece square table indexed by color, piece and square index, its values are added to pcsq[] in doMove().
+	 * The values are added as ints, so they can be "oe" packed.
+	 * The sums saved in the move history are also recomputed, so undoMove() restores sums of the new table
+	 */
+	public void setPcsqTable(int[][][] pcsqTable) {
+		this.pcsqTable = pcsqTable;
+		updatePcsq();
+		for (int i = initialMoveNumber; i < moveNumber; i++) {
+			pcsqHistory[i][Color.W] = getPcsqSum(Color.W, whitesHistory[i], pawnsHistory[i], knightsHistory[i], bishopsHistory[i],
+					rooksHistory[i], queensHistory[i], kingsHistory[i]);
+			pcsqHistory[i][Color.B] = getPcsqSum(Color.B, blacksHistory[i], pawnsHistory[i], knightsHistory[i], bishopsHistory[i],
+					rooksHistory[i], queensHistory[i], kingsHistory[i]);
+		}
+	}
+
+	private void updatePcsq() {
+		pcsq[Color.W] = getPcsqSum(Color.W, whites, pawns, knights, bishops, rooks, queens, kings);
+		pcsq[Color.B] = getPcsqSum(Color.B, blacks, pawns, knights, bishops, rooks, queens, kings);
+	}
+
+	private int getPcsqSum(int color, long mines, long pawns, long knights, long bishops, long rooks, long queens, long kings) {
+		int[][] table = pcsqTable[color];
+		return getPcsqSum(table[Piece.PAWN], mines & pawns)
+				+ getPcsqSum(table[Piece.KNIGHT], mines & knights)
+				+ getPcsqSum(table[Piece.BISHOP], mines & bishops)
+				+ getPcsqSum(table[Piece.ROOK], mines & rooks)
+				+ getPcsqSum(table[Piece.QUEEN], mines & queens)
+				+ getPcsqSum(table[Piece.KING], mines & kings);
+	}
+
+	private static int getPcsqSum(int[] table, long squares) {
+		int sum = 0;
+		while (squares != 0) {
+			sum += table[Long.numberOfTrailingZeros(squares)];
+			squares &= squares - 1;
+		}
+		return sum;
+	}
+
 	public long getExclusionKey() {
 		return key[0] ^ key[1] ^ ZobristKey.exclusionKey;
 	}
@@ -170,20 +253,8 @@ public class Board {
 	 * Supports Chess960 (the rook origin square is the castling destiny sq for chess 960)
 	 */
 	public long canCastleKingSide(int color, AttacksInfo ai) {
-		if ((color == Color.W ? getWhiteKingsideCastling() : getBlackKingsideCastling())) {
-			long rookOrigin = castlingRooks[color == Color.W ? 0 : 2];
-			long rookDestiny = Board.CASTLING_ROOK_DESTINY_SQUARE[color == Color.W ? 0 : 2];
-			long rookRoute = BitboardUtils.getHorizontalLine(rookDestiny, rookOrigin) & ~rookOrigin;
-			long kingOrigin = kings & (color == Color.W ? whites : blacks);
-			long kingDestiny = Board.CASTLING_KING_DESTINY_SQUARE[color == Color.W ? 0 : 2];
-			long kingRoute = BitboardUtils.getHorizontalLine(kingOrigin, kingDestiny) & ~kingOrigin;
-
-			if (((whites | blacks) & (kingRoute | rookRoute) & ~rookOrigin & ~kingOrigin) == 0
-					&& (ai.attackedSquaresAlsoPinned[1 - color] & kingRoute) == 0) {
-				return chess960 ? rookOrigin : kingDestiny;
-			}
-		}
-		return 0;
+		return canCastle(color == Color.W ? 0 : 2, color == Color.W ? getWhiteKingsideCastling() : getBlackKingsideCastling(),
+				ai.attackedSquaresAlsoPinned[1 - color]);
 	}
 
 	/**
@@ -191,22 +262,37 @@ public class Board {
 	 * Supports Chess960 (the rook origin square is the castling destiny sq for chess 960)
 	 */
 	public long canCastleQueenSide(int color, AttacksInfo ai) {
-		if ((color == Color.W ? getWhiteQueensideCastling() : getBlackQueensideCastling())) {
-			long rookOrigin = castlingRooks[color == Color.W ? 1 : 3];
-			long rookDestiny = Board.CASTLING_ROOK_DESTINY_SQUARE[color == Color.W ? 1 : 3];
-			long rookRoute = BitboardUtils.getHorizontalLine(rookOrigin, rookDestiny) & ~rookOrigin;
-			long kingOrigin = kings & (color == Color.W ? whites : blacks);
-			long kingDestiny = Board.CASTLING_KING_DESTINY_SQUARE[color == Color.W ? 1 : 3];
-			long kingRoute = BitboardUtils.getHorizontalLine(kingDestiny, kingOrigin) & ~kingOrigin;
+		return canCastle(color == Color.W ? 1 : 3, color == Color.W ? getWhiteQueensideCastling() : getBlackQueensideCastling(),
+				ai.attackedSquaresAlsoPinned[1 - color]);
+	}
+
+	/**
+	 * @param j        castling index {White Kingside, White Queenside, Black Kingside, Black Queenside}
+	 * @param attacked squares attacked by the other side, the king route cannot cross them
+	 */
+	private long canCastle(int j, boolean castlingAllowed, long attacked) {
+		if (castlingAllowed) {
+			long rookOrigin = castlingRooks[j];
+			long rookRoute = getCastlingRoute(rookOrigin, CASTLING_ROOK_DESTINY_SQUARE[j]);
+			long kingOrigin = kings & (j < 2 ? whites : blacks);
+			long kingDestiny = CASTLING_KING_DESTINY_SQUARE[j];
+			long kingRoute = getCastlingRoute(kingOrigin, kingDestiny);
 
 			if (((whites | blacks) & (kingRoute | rookRoute) & ~rookOrigin & ~kingOrigin) == 0
-					&& (ai.attackedSquaresAlsoPinned[1 - color] & kingRoute) == 0) {
+					&& (attacked & kingRoute) == 0) {
 				return chess960 ? rookOrigin : kingDestiny;
 			}
 		}
 		return 0;
 	}
 
+	/**
+	 * Squares crossed by the king or the rook when castling, excluding the origin. In Chess960 they can move to the left or to the right
+	 */
+	private static long getCastlingRoute(long origin, long destiny) {
+		return (BitboardUtils.getHorizontalLine(origin, destiny) | BitboardUtils.getHorizontalLine(destiny, origin)) & ~origin;
+	}
+
 	public boolean getWhiteKingsideCastling() {
 		return (flags & FLAG_WHITE_KINGSIDE_CASTLING) != 0;
 	}
@@ -325,6 +411,9 @@ public class Board {
 		}
 
 		key = ZobristKey.getKey(this);
+		pawnKey = ZobristKey.getPawnKey(this);
+		materialKey = MaterialKey.getKey(this);
+		updatePcsq();
 		setCheckFlags();
 	}
 
@@ -411,11 +500,8 @@ public class Board {
 		while ((i < board.length()) && (j != 0)) {
 			char p = board.charAt(i++);
 			if (p != '/') {
-				int number = 0;
-				try {
-					number = Integer.parseInt(String.valueOf(p));
-				} catch (Exception ignored) {
-				}
+				// Not parsing the char as an integer, it throws an exception for each piece
+				int number = p >= '1' && p <= '8' ? p - '0' : 0;
 
 				for (int k = 0; k < (number == 0 ? 1 : number); k++) {
 					tmpWhites = (tmpWhites & ~j) | ((number == 0) && (p == Character.toUpperCase(p)) ? j : 0);
@@ -591,6 +677,9 @@ public class Board {
 
 			// Set zobrist key and check flags
 			key = ZobristKey.getKey(this);
+			pawnKey = ZobristKey.getPawnKey(this);
+			materialKey = MaterialKey.getKey(this);
+			updatePcsq();
 			setCheckFlags();
 
 			// and save history
@@ -603,6 +692,159 @@ public class Board {
 		}
 	}
 
+	/**
+	 * Stores the position in 32 bytes as 4 longs, without allocating memory:
+	 * <p/>
+	 * long  meaning
+	 * ===================================
+	 * 0     occupied squares
+	 * 1     4 bits for each of the first 16 occupied squares from the lowest index: the piece, plus 8 for black pieces
+	 * 2     the same for the next 16 occupied squares
+	 * 3     bit 0: black to move, bits 1 to 4: castlings KQkq, bits 8 to 14: en passant square index plus one,
+	 * bits 16 to 23: fifty moves rule counter, bits 32 to 63 are zero and free for the user data
+	 * <p/>
+	 * The move number and the history are not stored
+	 */
+	public void getPacked(long[] packed, int offset) {
+		long occupied = whites | blacks;
+		long pieces0 = 0;
+		long pieces1 = 0;
+		int i = 0;
+		for (long squares = occupied; squares != 0 && i < 32; squares &= squares - 1) {
+			long square = Long.lowestOneBit(squares);
+			long code = getPieceIntAt(square) | ((square & blacks) != 0 ? 8 : 0);
+			if (i < 16) {
+				pieces0 |= code << (i << 2);
+			} else {
+				pieces1 |= code << ((i - 16) << 2);
+			}
+			i++;
+		}
+		long passant = flags & FLAGS_PASSANT;
+		packed[offset] = occupied;
+		packed[offset + 1] = pieces0;
+		packed[offset + 2] = pieces1;
+		packed[offset + 3] = ((flags & FLAG_TURN) != 0 ? PACKED_BLACK_TURN : 0)
+				| (getWhiteKingsideCastling() ? PACKED_WHITE_KINGSIDE_CASTLING : 0)
+				| (getWhiteQueensideCastling() ? PACKED_WHITE_QUEENSIDE_CASTLING : 0)
+				| (getBlackKingsideCastling() ? PACKED_BLACK_KINGSIDE_CASTLING : 0)
+				| (getBlackQueensideCastling() ? PACKED_BLACK_QUEENSIDE_CASTLING : 0)
+				| (passant != 0 ? (long) (Long.numberOfTrailingZeros(passant) + 1) << 8 : 0)
+				| (long) Math.min(255, fiftyMovesRule) << 16;
+	}
+
+	public void setPacked(long[] packed, int offset) {
+		setPacked(packed[offset], packed[offset + 1], packed[offset + 2], packed[offset + 3]);
+	}
+
+	/**
+	 * Loads a position stored by getPacked() without allocating memory, it resets the history.
+	 * The castling rooks are the outermost rooks like with "KQkq" in the FEN
+	 */
+	public void setPacked(long occupied, long pieces0, long pieces1, long state) {
+		whites = 0;
+		blacks = 0;
+		pawns = 0;
+		knights = 0;
+		bishops = 0;
+		rooks = 0;
+		queens = 0;
+		kings = 0;
+		key[0] = 0;
+		key[1] = 0;
+		pawnKey = 0;
+		pcsq[Color.W] = 0;
+		pcsq[Color.B] = 0;
+		int i = 0;
+		for (long squares = occupied; squares != 0 && i < 32; squares &= squares - 1) {
+			long square = Long.lowestOneBit(squares);
+			int code = (int) ((i < 16 ? pieces0 >>> (i << 2) : pieces1 >>> ((i - 16) << 2)) & 0xf);
+			int color = (code & 8) != 0 ? Color.B : Color.W;
+			int piece = code & 7;
+			int index = Long.numberOfTrailingZeros(square);
+			if (color == Color.B) {
+				blacks |= square;
+			} else {
+				whites |= square;
+			}
+			// The keys and the piece square table values are computed here to not iterate again the pieces
+			key[color] ^= ZobristKey.getKeyPieceIndex(index, piece, color);
+			pcsq[color] += pcsqTable[color][piece][index];
+			switch (piece) {
+				case Piece.PAWN:
+					pawns |= square;
+					pawnKey ^= ZobristKey.pawn[color][index];
+					break;
+				case Piece.KNIGHT:
+					knights |= square;
+					break;
+				case Piece.BISHOP:
+					bishops |= square;
+					break;
+				case Piece.ROOK:
+					rooks |= square;
+					break;
+				case Piece.QUEEN:
+					queens |= square;
+					break;
+				case Piece.KING:
+					kings |= square;
+					break;
+			}
+			i++;
+		}
+
+		flags = (state & PACKED_BLACK_TURN) != 0 ? FLAG_TURN : 0;
+		int passantIndex = (int) ((state >>> 8) & 0x7f);
+		if (passantIndex != 0) {
+			flags |= 1L << (passantIndex - 1);
+		}
+		fiftyMovesRule = (int) ((state >>> 16) & 0xff);
+
+		long whiteKing = kings & whites;
+		long blackKing = kings & blacks;
+		castlingRooks[0] = (state & PACKED_WHITE_KINGSIDE_CASTLING) != 0 ? Long.lowestOneBit(rooks & whites & BitboardUtils.b_d & (whiteKing - 1)) : 0;
+		castlingRooks[1] = (state & PACKED_WHITE_QUEENSIDE_CASTLING) != 0 ? Long.highestOneBit(rooks & whites & BitboardUtils.b_d & ~((whiteKing - 1) | whiteKing)) : 0;
+		castlingRooks[2] = (state & PACKED_BLACK_KINGSIDE_CASTLING) != 0 ? Long.lowestOneBit(rooks & blacks & BitboardUtils.b_u & (blackKing - 1)) : 0;
+		castlingRooks[3] = (state & PACKED_BLACK_QUEENSIDE_CASTLING) != 0 ? Long.highestOneBit(rooks & blacks & BitboardUtils.b_u & ~((blackKing - 1) | blackKing)) : 0;
+		chess960 = false;
+		if (castlingRooks[0] != 0) {
+			flags |= FLAG_WHITE_KINGSIDE_CASTLING;
+			chess960 |= whiteKing != 1L << 3 || castlingRooks[0] != 1L;
+		}
+		if (castlingRooks[1] != 0) {
+			flags |= FLAG_WHITE_QUEENSIDE_CASTLING;
+			chess960 |= whiteKing != 1L << 3 || castlingRooks[1] != 1L << 7;
+		}
+		if (castlingRooks[2] != 0) {
+			flags |= FLAG_BLACK_KINGSIDE_CASTLING;
+			chess960 |= blackKing != 1L << 59 || castlingRooks[2] != 1L << 56;
+		}
+		if (castlingRooks[3] != 0) {
+			flags |= FLAG_BLACK_QUEENSIDE_CASTLING;
+			chess960 |= blackKing != 1L << 59 || castlingRooks[3] != 1L << 63;
+		}
+
+		// The history starts here, the FEN is only built if it is requested
+		initialPacked[0] = occupied;
+		initialPacked[1] = pieces0;
+		initialPacked[2] = pieces1;
+		initialPacked[3] = state;
+		initialFen = null;
+		initialMoveNumber = (flags & FLAG_TURN) != 0 ? 1 : 0;
+		moveNumber = initialMoveNumber;
+		outBookMove = Integer.MAX_VALUE;
+		movesSan.clear();
+		// The repetition check starts at the history index 0
+		keyHistory[0][0] = 0;
+		keyHistory[0][1] = 0;
+
+		ZobristKey.addFlagsKey(this, key);
+		materialKey = MaterialKey.getKey(this);
+		setCheckFlags();
+		saveHistory(0, false);
+	}
+
 	/**
 	 * Prints board in one string
 	 */
@@ -647,6 +889,11 @@ public class Board {
 		for (int i = 0; i < MAX_MOVES; i++) {
 			Arrays.fill(keyHistory[i], 0);
 		}
+		Arrays.fill(pawnKeyHistory, 0);
+		Arrays.fill(materialKeyHistory, 0);
+		for (int i = 0; i < MAX_MOVES; i++) {
+			Arrays.fill(pcsqHistory[i], 0);
+		}
 		Arrays.fill(fiftyMovesRuleHistory, 0);
 		Arrays.fill(moveHistory, 0);
 		movesSan.clear();
@@ -669,6 +916,10 @@ public class Board {
 		flagsHistory[moveNumber] = flags;
 		keyHistory[moveNumber][0] = key[0];
 		keyHistory[moveNumber][1] = key[1];
+		pawnKeyHistory[moveNumber] = pawnKey;
+		materialKeyHistory[moveNumber] = materialKey;
+		pcsqHistory[moveNumber][Color.W] = pcsq[Color.W];
+		pcsqHistory[moveNumber][Color.B] = pcsq[Color.B];
 		fiftyMovesRuleHistory[moveNumber] = fiftyMovesRule;
 	}
 
@@ -737,6 +988,12 @@ public class Board {
 				toIndexCapture += (getTurn() ? -8 : 8);
 			}
 			key[1 - color] ^= ZobristKey.getKeyPieceIndex(toIndexCapture, getPieceAt(to));
+			if ((to & pawns) != 0) {
+				pawnKey ^= ZobristKey.pawn[1 - color][toIndexCapture];
+			}
+			int pieceCaptured = getPieceIntAt(to);
+			materialKey -= MaterialKey.increment[1 - color][pieceCaptured];
+			pcsq[1 - color] -= pcsqTable[1 - color][pieceCaptured][toIndexCapture];
 
 			whites &= ~to;
 			blacks &= ~to;
@@ -770,48 +1027,66 @@ public class Board {
 					// the piece
 					pawns &= ~from;
 					key[color] ^= ZobristKey.pawn[color][fromIndex];
+					pawnKey ^= ZobristKey.pawn[color][fromIndex];
+					materialKey -= MaterialKey.increment[color][Piece.PAWN];
+					pcsq[color] -= pcsqTable[color][Piece.PAWN][fromIndex];
 					switch (moveType) {
 						case Move.TYPE_PROMOTION_QUEEN:
 							queens |= to;
 							key[color] ^= ZobristKey.queen[color][toIndex];
+							materialKey += MaterialKey.increment[color][Piece.QUEEN];
+							pcsq[color] += pcsqTable[color][Piece.QUEEN][toIndex];
 							break;
 						case Move.TYPE_PROMOTION_KNIGHT:
 							knights |= to;
 							key[color] ^= ZobristKey.knight[color][toIndex];
+							materialKey += MaterialKey.increment[color][Piece.KNIGHT];
+							pcsq[color] += pcsqTable[color][Piece.KNIGHT][toIndex];
 							break;
 						case Move.TYPE_PROMOTION_BISHOP:
 							bishops |= to;
 							key[color] ^= ZobristKey.bishop[color][toIndex];
+							materialKey += MaterialKey.increment[color][Piece.BISHOP];
+							pcsq[color] += pcsqTable[color][Piece.BISHOP][toIndex];
 							break;
 						case Move.TYPE_PROMOTION_ROOK:
 							rooks |= to;
 							key[color] ^= ZobristKey.rook[color][toIndex];
+							materialKey += MaterialKey.increment[color][Piece.ROOK];
+							pcsq[color] += pcsqTable[color][Piece.ROOK][toIndex];
 							break;
 						case Move.TYPE_PROMOTION_KING:
 							kings |= to;
 							key[color] ^= ZobristKey.king[color][toIndex];
+							pcsq[color] += pcsqTable[color][Piece.KING][toIndex];
 							break;
 					}
 				} else {
 					pawns ^= moveMask;
 					key[color] ^= ZobristKey.pawn[color][fromIndex] ^ ZobristKey.pawn[color][toIndex];
+					pawnKey ^= ZobristKey.pawn[color][fromIndex] ^ ZobristKey.pawn[color][toIndex];
+					pcsq[color] += pcsqTable[color][Piece.PAWN][toIndex] - pcsqTable[color][Piece.PAWN][fromIndex];
 				}
 				break;
 			case Piece.ROOK:
 				rooks ^= moveMask;
 				key[color] ^= ZobristKey.rook[color][fromIndex] ^ ZobristKey.rook[color][toIndex];
+				pcsq[color] += pcsqTable[color][Piece.ROOK][toIndex] - pcsqTable[color][Piece.ROOK][fromIndex];
 				break;
 			case Piece.BISHOP:
 				bishops ^= moveMask;
 				key[color] ^= ZobristKey.bishop[color][fromIndex] ^ ZobristKey.bishop[color][toIndex];
+				pcsq[color] += pcsqTable[color][Piece.BISHOP][toIndex] - pcsqTable[color][Piece.BISHOP][fromIndex];
 				break;
 			case Piece.KNIGHT:
 				knights ^= moveMask;
 				key[color] ^= ZobristKey.knight[color][fromIndex] ^ ZobristKey.knight[color][toIndex];
+				pcsq[color] += pcsqTable[color][Piece.KNIGHT][toIndex] - pcsqTable[color][Piece.KNIGHT][fromIndex];
 				break;
 			case Piece.QUEEN:
 				queens ^= moveMask;
 				key[color] ^= ZobristKey.queen[color][fromIndex] ^ ZobristKey.queen[color][toIndex];
+				pcsq[color] += pcsqTable[color][Piece.QUEEN][toIndex] - pcsqTable[color][Piece.QUEEN][fromIndex];
 				break;
 			case Piece.KING: // if castling, moves rooks too
 				if (moveType == Move.TYPE_KINGSIDE_CASTLING || moveType == Move.TYPE_QUEENSIDE_CASTLING) {
@@ -825,6 +1100,7 @@ public class Board {
 					moveMask = from ^ (1L << toIndex);
 					long rookMoveMask = (1L << originRookIndex) ^ (1L << destinyRookIndex);
 					key[color] ^= ZobristKey.rook[color][originRookIndex] ^ ZobristKey.rook[color][destinyRookIndex];
+					pcsq[color] += pcsqTable[color][Piece.ROOK][destinyRookIndex] - pcsqTable[color][Piece.ROOK][originRookIndex];
 
 					if (getTurn()) {
 						whites ^= rookMoveMask;
@@ -835,6 +1111,7 @@ public class Board {
 				}
 				kings ^= moveMask;
 				key[color] ^= ZobristKey.king[color][fromIndex] ^ ZobristKey.king[color][toIndex];
+				pcsq[color] += pcsqTable[color][Piece.KING][toIndex] - pcsqTable[color][Piece.KING][fromIndex];
 				break;
 		}
 		// Move pieces in colour fields
@@ -932,6 +1209,10 @@ public class Board {
 		flags = flagsHistory[moveNumber];
 		key[0] = keyHistory[moveNumber][0];
 		key[1] = keyHistory[moveNumber][1];
+		pawnKey = pawnKeyHistory[moveNumber];
+		materialKey = materialKeyHistory[moveNumber];
+		pcsq[Color.W] = pcsqHistory[moveNumber][Color.W];
+		pcsq[Color.B] = pcsqHistory[moveNumber][Color.B];
 		fiftyMovesRule = fiftyMovesRuleHistory[moveNumber];
 	}
 
@@ -1101,13 +1382,130 @@ public class Board {
 	 * Returns Move.NONE if the move is not legal
 	 */
 	public int getLegalMove(int move) {
-		generateLegalMoves();
-		for (int i = 0; i < legalMoveCount; i++) {
-			if ((move & ~Move.CHECK_MASK) == (legalMoves[i] & ~Move.CHECK_MASK)) {
-				return legalMoves[i];
+		move &= ~Move.CHECK_MASK;
+		if (!isPseudoLegal(move)) {
+			return Move.NONE;
+		}
+		legalMoveAttacksInfo.build(this);
+		return getLegalMove(move, legalMoveAttacksInfo);
+	}
+
+	/**
+	 * Verifies that the move can be generated in this board, leaving aside if it leaves the king in check,
+	 * without generating the moves. The move may come from other position, i.e. from the TT or a killer.
+	 * Ignores the check flag. The castlings must have an empty route, but it does not verify the attacks to the route.
+	 */
+	public boolean isPseudoLegal(int move) {
+		if (move == Move.NONE || (move >>> 17) > Move.TYPE_PROMOTION_ROOK) {
+			return false;
+		}
+		int fromIndex = Move.getFromIndex(move);
+		long from = Move.getFromSquare(move);
+		long to = Move.getToSquare(move);
+		int pieceMoved = Move.getPieceMoved(move);
+		int moveType = Move.getMoveType(move);
+		boolean capture = Move.isCapture(move);
+		boolean turn = getTurn();
+		long mines = getMines();
+		long others = getOthers();
+		long all = mines | others;
+
+		if ((from & mines) == 0 || getPieceIntAt(from) != pieceMoved) {
+			return false;
+		}
+
+		if (moveType == Move.TYPE_KINGSIDE_CASTLING || moveType == Move.TYPE_QUEENSIDE_CASTLING) {
+			if (capture || pieceMoved != Piece.KING) {
+				return false;
+			}
+			return moveType == Move.TYPE_KINGSIDE_CASTLING ?
+					to == canCastle(turn ? 0 : 2, turn ? getWhiteKingsideCastling() : getBlackKingsideCastling(), 0) :
+					to == canCastle(turn ? 1 : 3, turn ? getWhiteQueensideCastling() : getBlackQueensideCastling(), 0);
+		}
+
+		if (pieceMoved == Piece.PAWN) {
+			long pawnAttacks = bbAttacks.pawn[turn ? Color.W : Color.B][fromIndex];
+			if (moveType == Move.TYPE_PASSANT) {
+				return capture && to == getPassantSquare() && (pawnAttacks & to) != 0;
+			}
+			boolean promotion = (to & (BitboardUtils.b_u | BitboardUtils.b_d)) != 0;
+			if (promotion ? moveType < Move.TYPE_PROMOTION_QUEEN : moveType != 0) {
+				return false;
+			}
+			if (capture) {
+				return (pawnAttacks & to & others) != 0;
 			}
+			long push = (turn ? from << 8 : from >>> 8) & ~all;
+			long doublePush = (from & (turn ? BitboardUtils.b2_d : BitboardUtils.b2_u)) != 0 ? (turn ? push << 8 : push >>> 8) & ~all : 0;
+			return ((push | doublePush) & to) != 0;
+		}
+
+		if (moveType != 0 || (to & mines) != 0 || capture != ((to & others) != 0)) {
+			return false;
+		}
+		switch (pieceMoved) {
+			case Piece.KNIGHT:
+				return (bbAttacks.knight[fromIndex] & to) != 0;
+			case Piece.BISHOP:
+				return (bbAttacks.getBishopAttacks(fromIndex, all) & to) != 0;
+			case Piece.ROOK:
+				return (bbAttacks.getRookAttacks(fromIndex, all) & to) != 0;
+			case Piece.QUEEN:
+				return ((bbAttacks.getBishopAttacks(fromIndex, all) | bbAttacks.getRookAttacks(fromIndex, all)) & to) != 0;
+			default:
+				return (bbAttacks.king[fromIndex] & to) != 0;
 		}
-		return Move.NONE;
+	}
+
+	/**
+	 * Verifies that a pseudo-legal move does not leave the king in check
+	 *
+	 * @param ai attacks info already built for this board
+	 */
+	public boolean isLegal(int move, AttacksInfo ai) {
+		return getLegalMove(move, ai) != Move.NONE;
+	}
+
+	/**
+	 * Returns the pseudo-legal move with the check flag set if it does not leave the king in check,
+	 * or Move.NONE if it is not legal
+	 *
+	 * @param ai attacks info already built for this board
+	 */
+	public int getLegalMove(int move, AttacksInfo ai) {
+		int fromIndex = Move.getFromIndex(move);
+		long from = Move.getFromSquare(move);
+		long to = Move.getToSquare(move);
+		int pieceMoved = Move.getPieceMoved(move);
+		int moveType = Move.getMoveType(move);
+		boolean capture = Move.isCapture(move);
+		int them = getTurn() ? Color.B : Color.W;
+
+		if (moveType == Move.TYPE_KINGSIDE_CASTLING || moveType == Move.TYPE_QUEENSIDE_CASTLING) {
+			if (ai.piecesGivingCheck != 0 || (ai.attackedSquaresAlsoPinned[them] &
+					getCastlingRoute(from, CASTLING_KING_DESTINY_SQUARE[(them == Color.B ? 0 : 2) + (moveType == Move.TYPE_QUEENSIDE_CASTLING ? 1 : 0)])) != 0) {
+				return Move.NONE;
+			}
+		} else if (pieceMoved == Piece.KING) {
+			if ((to & ai.attackedSquaresAlsoPinned[them]) != 0) {
+				return Move.NONE;
+			}
+		} else {
+			if ((from & ai.pinnedPieces) != 0 && (to & ai.pinnedMobility[fromIndex]) == 0) {
+				return Move.NONE;
+			}
+			if (ai.piecesGivingCheck != 0) {
+				// Only captures of the piece giving check or interposes
+				if (Long.bitCount(ai.piecesGivingCheck) > 1) {
+					return Move.NONE;
+				}
+				long captured = moveType == Move.TYPE_PASSANT ? (getTurn() ? to >>> 8 : to << 8) : to;
+				if ((captured & ai.piecesGivingCheck) == 0 && (to & ai.interposeCheckSquares) == 0) {
+					return Move.NONE;
+				}
+			}
+		}
+		return LegalMoveGenerator.genLegalMove(this, ai, pieceMoved, fromIndex, from, to, capture, moveType);
 	}
 
 	public String getSanMove(int moveNumber) {
@@ -1119,6 +1517,12 @@ public class Board {
 	}
 
 	public String getInitialFen() {
+		if (initialFen == null) {
+			// Loaded with setPacked()
+			Board initialBoard = new Board();
+			initialBoard.setPacked(initialPacked, 0);
+			initialFen = initialBoard.getFen();
+		}
 		return initialFen;
 	}
 
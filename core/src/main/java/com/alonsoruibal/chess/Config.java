@@ -11,6 +11,8 @@ public class Config {
 
 	// Default values are static fields used also from UCIEngine
 	public static final int DEFAULT_TRANSPOSITION_TABLE_SIZE = 64;
+	// 1 TB, only with the off-heap TT, limited by -XX:MaxDirectMemorySize (by default the -Xmx size)
+	public static final int MAX_TRANSPOSITION_TABLE_SIZE = 1048576;
 	public static final boolean DEFAULT_PONDER = true;
 	public static final boolean DEFAULT_USE_BOOK = true;
 	public static final int DEFAULT_BOOK_KNOWGLEDGE = 100;
@@ -19,10 +21,13 @@ public class Config {
 	// >0 refuses draw <0 looks for draw
 	public static final int DEFAULT_CONTEMPT_FACTOR = 90;
 	public static final boolean DEFAULT_UCI_CHESS960 = false;
+	public static final boolean DEFAULT_LAZY_EVAL = true;
 
 	public static final int DEFAULT_RAND = 0;
 	public static final boolean DEFAULT_LIMIT_STRENGTH = false;
 	public static final int DEFAULT_ELO = 2100;
+	public static final int DEFAULT_THREADS = 1;
+	public static final int MAX_THREADS = 256;
 
 	public int transpositionTableSize = DEFAULT_TRANSPOSITION_TABLE_SIZE;
 	public boolean ponder = DEFAULT_PONDER;
@@ -32,11 +37,13 @@ public class Config {
 	public int contemptFactor = DEFAULT_CONTEMPT_FACTOR;
 
 	private boolean uciChess960 = DEFAULT_UCI_CHESS960;
+	private boolean lazyEval = DEFAULT_LAZY_EVAL;
 
 	private int rand = DEFAULT_RAND;
 	private int bookKnowledge = DEFAULT_BOOK_KNOWGLEDGE;
 	private boolean limitStrength = DEFAULT_LIMIT_STRENGTH;
 	private int elo = DEFAULT_ELO;
+	private int threads = DEFAULT_THREADS;
 
 	public boolean getPonder() {
 		return ponder;
@@ -102,6 +109,18 @@ public class Config {
 		this.uciChess960 = uciChess960;
 	}
 
+	public boolean getLazyEval() {
+		return lazyEval;
+	}
+
+	/**
+	 * Allows the evaluator to return only material, piece square tables and pawn structure
+	 * when the position is far outside the quiescence search window
+	 */
+	public void setLazyEval(boolean lazyEval) {
+		this.lazyEval = lazyEval;
+	}
+
 	public boolean isLimitStrength() {
 		return limitStrength;
 	}
@@ -120,6 +139,17 @@ public class Config {
 		calculateErrorsFromElo();
 	}
 
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Number of search threads, the main searcher plus threads - 1 Lazy SMP helpers
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, Math.min(threads, MAX_THREADS));
+	}
+
 	/**
 	 * Calculates the errors and the book knowledge using the limitStrength and elo params
 	 * 2100 is the max elo, 500 the min
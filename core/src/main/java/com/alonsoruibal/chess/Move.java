@@ -304,6 +304,11 @@ public class Move {
 						(toIndex == (fromIndex + 2) || to == board.castlingRooks[turn ? 1 : 3])) {
 					moveType = TYPE_QUEENSIDE_CASTLING;
 				}
+				// The king capturing its rook (i.e. in Polyglot books) is the king to its destiny square in standard chess
+				if ((moveType == TYPE_KINGSIDE_CASTLING || moveType == TYPE_QUEENSIDE_CASTLING) && !board.chess960) {
+					to = Board.CASTLING_KING_DESTINY_SQUARE[(turn ? 0 : 2) + moveType - TYPE_KINGSIDE_CASTLING];
+					toIndex = Long.numberOfTrailingZeros(to);
+				}
 			}
 
 			// Now set captured piece flag
@@ -95,8 +95,8 @@ public class Pgn {
 			}
 		}
 		sb.append("[Result \"").append(result).append("\"]\n");
-		if (!Board.FEN_START_POSITION.equals(b.initialFen)) {
-			sb.append("[FEN \"").append(b.initialFen).append("\"]\n");
+		if (!Board.FEN_START_POSITION.equals(b.getInitialFen())) {
+			sb.append("[FEN \"").append(b.getInitialFen()).append("\"]\n");
 		}
 		sb.append("[PlyCount \"").append(b.moveNumber - b.initialMoveNumber).append("\"]\n");
 		sb.append("\n");
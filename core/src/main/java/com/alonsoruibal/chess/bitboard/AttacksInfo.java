@@ -13,6 +13,9 @@ public class AttacksInfo {
 	public static final int W = 0;
 	public static final int B = 1;
 
+	// Above this number of changed squares it is faster to build all the attacks again
+	private static final int MAX_CHANGED_SQUARES = 6;
+
 	private final BitboardAttacks bbAttacks;
 
 	public long boardKey = 0;
@@ -40,8 +43,21 @@ public class AttacksInfo {
 	public long interposeCheckSquares;
 	public long pinnedPieces;
 
+	// Board used in the last build: the incremental update compares it with the new board
+	private long whites, blacks, pawns, knights, bishops, rooks, queens, kings;
+	// Attacks from each square including those of the pinned pieces, only valid for the occupied squares
+	private final long[] attacksFromSquareAlsoPinned = new long[64];
+
+	// The incremental update is done from this attacks info, usually the one of the parent node
+	private final AttacksInfo previous;
+
 	public AttacksInfo() {
+		this(null);
+	}
+
+	public AttacksInfo(AttacksInfo previous) {
 		this.bbAttacks = BitboardAttacks.getInstance();
+		this.previous = previous;
 	}
 
 	/**
@@ -92,7 +108,9 @@ public class AttacksInfo {
 	}
 
 	/**
-	 * If we already hold the attacks for this board, do nothing
+	 * If we already hold the attacks for this board, do nothing.
+	 * When the board differs in a few squares from the previous attacks info, it only calculates again the attacks
+	 * of the pieces in those squares and of the sliders reaching squares whose occupancy changed
 	 */
 	public void build(Board board) {
 		if (boardKey == board.getKey()) {
@@ -104,6 +122,37 @@ public class AttacksInfo {
 		long myKing = board.kings & mines;
 		int us = board.getTurn() ? 0 : 1;
 
+		long changedSquares = Square.ALL;
+		long occupancyChanged = Square.ALL;
+		long[] previousAttacks = null;
+		if (previous != null) {
+			changedSquares = (previous.whites ^ board.whites) | (previous.blacks ^ board.blacks)
+					| (previous.pawns ^ board.pawns) | (previous.knights ^ board.knights)
+					| (previous.bishops ^ board.bishops) | (previous.rooks ^ board.rooks)
+					| (previous.queens ^ board.queens) | (previous.kings ^ board.kings);
+			if (Long.bitCount(changedSquares) <= MAX_CHANGED_SQUARES) {
+				occupancyChanged = (previous.whites | previous.blacks) ^ all;
+				previousAttacks = previous.attacksFromSquareAlsoPinned;
+			} else {
+				changedSquares = Square.ALL;
+			}
+		}
+
+		// The squares emptied since the last build of this attacks info
+		long emptied = (whites | blacks) & ~all;
+		while (emptied != 0) {
+			attacksFromSquare[Long.numberOfTrailingZeros(emptied)] = 0;
+			emptied &= emptied - 1;
+		}
+		whites = board.whites;
+		blacks = board.blacks;
+		pawns = board.pawns;
+		knights = board.knights;
+		bishops = board.bishops;
+		rooks = board.rooks;
+		queens = board.queens;
+		kings = board.kings;
+
 		attackedSquaresAlsoPinned[W] = 0;
 		attackedSquaresAlsoPinned[B] = 0;
 		pawnAttacks[W] = 0;
@@ -138,74 +187,75 @@ public class AttacksInfo {
 		checkPinnerRook(kingIndex[B], rookAttacksKing[B], all, board.blacks, (board.rooks | board.queens) & board.whites);
 
 		long pieceAttacks;
-		int index;
-		long square = 1;
-		for (index = 0; index < 64; index++) {
-			if ((square & all) != 0) {
-				int color = (board.whites & square) != 0 ? W : B;
-				long pinnedSquares = (square & pinnedPieces) != 0 ? pinnedMobility[index] : Square.ALL;
-
-				pieceAttacks = 0;
-				if ((square & board.pawns) != 0) {
-					pieceAttacks = bbAttacks.pawn[color][index];
-					if ((square & mines) == 0 && (pieceAttacks & myKing) != 0) {
-						piecesGivingCheck |= square;
-					}
-					pawnAttacks[color] |= pieceAttacks & pinnedSquares;
+		long pieces = all;
+		while (pieces != 0) {
+			int index = Long.numberOfTrailingZeros(pieces);
+			long square = pieces & -pieces;
+			pieces &= pieces - 1;
 
-				} else if ((square & board.knights) != 0) {
-					pieceAttacks = bbAttacks.knight[index];
-					if ((square & mines) == 0 && (pieceAttacks & myKing) != 0) {
-						piecesGivingCheck |= square;
-					}
-					knightAttacks[color] |= pieceAttacks & pinnedSquares;
+			int color = (board.whites & square) != 0 ? W : B;
+			long pinnedSquares = (square & pinnedPieces) != 0 ? pinnedMobility[index] : Square.ALL;
+			boolean unchanged = (square & changedSquares) == 0;
 
-				} else if ((square & board.bishops) != 0) {
-					pieceAttacks = bbAttacks.getBishopAttacks(index, all);
-					if ((square & mines) == 0 && (pieceAttacks & myKing) != 0) {
-						piecesGivingCheck |= square;
-						interposeCheckSquares |= pieceAttacks & bishopAttacksKing[us]; // And with only the diagonal attacks to the king
-					}
-					bishopAttacks[color] |= pieceAttacks & pinnedSquares;
-					mayPin[color] |= all & pieceAttacks;
-
-				} else if ((square & board.rooks) != 0) {
-					pieceAttacks = bbAttacks.getRookAttacks(index, all);
-					if ((square & mines) == 0 && (pieceAttacks & myKing) != 0) {
-						piecesGivingCheck |= square;
-						interposeCheckSquares |= pieceAttacks & rookAttacksKing[us]; // And with only the rook attacks to the king
-					}
-					rookAttacks[color] |= pieceAttacks & pinnedSquares;
-					mayPin[color] |= all & pieceAttacks;
+			if ((square & board.pawns) != 0) {
+				pieceAttacks = unchanged ? previousAttacks[index] : bbAttacks.pawn[color][index];
+				if ((square & mines) == 0 && (pieceAttacks & myKing) != 0) {
+					piecesGivingCheck |= square;
+				}
+				pawnAttacks[color] |= pieceAttacks & pinnedSquares;
+
+			} else if ((square & board.knights) != 0) {
+				pieceAttacks = unchanged ? previousAttacks[index] : bbAttacks.knight[index];
+				if ((square & mines) == 0 && (pieceAttacks & myKing) != 0) {
+					piecesGivingCheck |= square;
+				}
+				knightAttacks[color] |= pieceAttacks & pinnedSquares;
+
+			} else if ((square & board.bishops) != 0) {
+				pieceAttacks = unchanged && (previousAttacks[index] & occupancyChanged) == 0 ?
+						previousAttacks[index] : bbAttacks.getBishopAttacks(index, all);
+				if ((square & mines) == 0 && (pieceAttacks & myKing) != 0) {
+					piecesGivingCheck |= square;
+					interposeCheckSquares |= pieceAttacks & bishopAttacksKing[us]; // And with only the diagonal attacks to the king
+				}
+				bishopAttacks[color] |= pieceAttacks & pinnedSquares;
+				mayPin[color] |= all & pieceAttacks;
+
+			} else if ((square & board.rooks) != 0) {
+				pieceAttacks = unchanged && (previousAttacks[index] & occupancyChanged) == 0 ?
+						previousAttacks[index] : bbAttacks.getRookAttacks(index, all);
+				if ((square & mines) == 0 && (pieceAttacks & myKing) != 0) {
+					piecesGivingCheck |= square;
+					interposeCheckSquares |= pieceAttacks & rookAttacksKing[us]; // And with only the rook attacks to the king
+				}
+				rookAttacks[color] |= pieceAttacks & pinnedSquares;
+				mayPin[color] |= all & pieceAttacks;
 
-				} else if ((square & board.queens) != 0) {
-					long bishopSliderAttacks = bbAttacks.getBishopAttacks(index, all);
-					if ((square & mines) == 0 && (bishopSliderAttacks & myKing) != 0) {
-						piecesGivingCheck |= square;
+			} else if ((square & board.queens) != 0) {
+				pieceAttacks = unchanged && (previousAttacks[index] & occupancyChanged) == 0 ?
+						previousAttacks[index] : bbAttacks.getBishopAttacks(index, all) | bbAttacks.getRookAttacks(index, all);
+				if ((square & mines) == 0 && (pieceAttacks & myKing) != 0) {
+					piecesGivingCheck |= square;
+					long bishopSliderAttacks = pieceAttacks & bbAttacks.bishop[index];
+					if ((bishopSliderAttacks & myKing) != 0) {
 						interposeCheckSquares |= bishopSliderAttacks & bishopAttacksKing[us]; // And with only the diagonal attacks to the king
+					} else {
+						interposeCheckSquares |= pieceAttacks & bbAttacks.rook[index] & rookAttacksKing[us]; // And with only the rook attacks to the king
 					}
-					long rookSliderAttacks = bbAttacks.getRookAttacks(index, all);
-					if ((square & mines) == 0 && (rookSliderAttacks & myKing) != 0) {
-						piecesGivingCheck |= square;
-						interposeCheckSquares |= rookSliderAttacks & rookAttacksKing[us]; // And with only the rook attacks to the king
-					}
-					pieceAttacks = rookSliderAttacks | bishopSliderAttacks;
-					queenAttacks[color] |= pieceAttacks & pinnedSquares;
-					mayPin[color] |= all & pieceAttacks;
-
-				} else if ((square & board.kings) != 0) {
-					pieceAttacks = bbAttacks.king[index];
-					kingAttacks[color] |= pieceAttacks;
 				}
+				queenAttacks[color] |= pieceAttacks & pinnedSquares;
+				mayPin[color] |= all & pieceAttacks;
 
-				attackedSquaresAlsoPinned[color] |= pieceAttacks;
-				attacksFromSquare[index] = pieceAttacks & pinnedSquares;
 			} else {
-				attacksFromSquare[index] = 0;
+				pieceAttacks = bbAttacks.king[index];
+				kingAttacks[color] |= pieceAttacks;
 			}
-			square <<= 1;
+
+			attackedSquaresAlsoPinned[color] |= pieceAttacks;
+			attacksFromSquareAlsoPinned[index] = pieceAttacks;
+			attacksFromSquare[index] = pieceAttacks & pinnedSquares;
 		}
 		attackedSquares[W] = pawnAttacks[W] | knightAttacks[W] | bishopAttacks[W] | rookAttacks[W] | queenAttacks[W] | kingAttacks[W];
 		attackedSquares[B] = pawnAttacks[B] | knightAttacks[B] | bishopAttacks[B] | rookAttacks[B] | queenAttacks[B] | kingAttacks[B];
 	}
-}
\ No newline at end of file
+}
@@ -11,6 +11,18 @@ public class Endgame {
 	public static final int SCALE_FACTOR_DRAWISH = 100;
 	public static final int SCALE_FACTOR_DEFAULT = 1000;
 
+	// Endgames with specific knowledge, set in the material table
+	public static final int ENDGAME_NONE = 0;
+	public static final int ENDGAME_DRAW = 1;
+	public static final int ENDGAME_KBNK = 2;
+	public static final int ENDGAME_KPK = 3;
+	public static final int ENDGAME_KQKP = 4;
+	public static final int ENDGAME_KRPKR = 5;
+	public static final int ENDGAME_KBPKB = 6;
+	public static final int ENDGAME_KBPKN = 7;
+	public static final int ENDGAME_KXK = 8;
+	public static final int ENDGAME_KRPPKRP = 9;
+
 	public static final int[] closerSquares = {0, 0, 100, 80, 60, 40, 20, 10};
 
 	private static final int[] toCorners = { //
@@ -42,10 +54,11 @@ public class Endgame {
 	}
 
 	/**
-	 * It may return a perfect knowledge value, a scaleFactor or nothing
+	 * Sets the endgame to evaluate for the piece counts and the dominant side, called when the material table is filled
 	 */
-	public static int evaluateEndgame(Board board, int[] scaleFactor, int whitePawns, int blackPawns, int whiteKnights, int blackKnights, int whiteBishops, int blackBishops, int whiteRooks, int blackRooks, int whiteQueens, int blackQueens) {
-		scaleFactor[0] = SCALE_FACTOR_DEFAULT;
+	public static void setEndgame(MaterialEntry entry, int whitePawns, int blackPawns, int whiteKnights, int blackKnights, int whiteBishops, int blackBishops, int whiteRooks, int blackRooks, int whiteQueens, int blackQueens) {
+		entry.endgame = ENDGAME_NONE;
+		entry.whiteDominant = false;
 
 		// Endgame detection
 		int whiteNoPawnMaterial = whiteKnights + whiteBishops + whiteRooks + whiteQueens;
@@ -62,14 +75,17 @@ public class Endgame {
 
 			if ((blackMaterial == 0 && whiteMaterial == 2 && whiteKnights == 1 && whiteBishops == 1) || //
 					(whiteMaterial == 0 && blackMaterial == 2 && blackKnights == 1 && blackBishops == 1)) {
-				return Endgame.endgameKBNK(board, whiteMaterial > blackMaterial);
+				setEndgame(entry, ENDGAME_KBNK, whiteMaterial > blackMaterial);
+				return;
 			}
 			if (whiteMaterial == 1 && blackMaterial == 1) {
 				if (whiteRooks == 1 && blackRooks == 1) {
-					return Evaluator.DRAW;
+					setEndgame(entry, ENDGAME_DRAW, false);
+					return;
 				}
 				if (whiteQueens == 1 && blackQueens == 1) {
-					return Evaluator.DRAW;
+					setEndgame(entry, ENDGAME_DRAW, false);
+					return;
 				}
 			}
 
@@ -79,7 +95,8 @@ public class Endgame {
 			//
 
 			if (whiteNoPawnMaterial == 0 && blackNoPawnMaterial == 0) {
-				return Endgame.endgameKPK(board, whiteMaterial > blackMaterial);
+				setEndgame(entry, ENDGAME_KPK, whiteMaterial > blackMaterial);
+				return;
 			}
 
 			// Only with a non-pawn piece
@@ -87,21 +104,25 @@ public class Endgame {
 					|| (whiteNoPawnMaterial == 0 && blackNoPawnMaterial == 1)) {
 				if ((whiteQueens == 1 && blackPawns == 1)
 						|| (blackQueens == 1 && whitePawns == 1)) {
-					return endgameKQKP(board, whiteQueens > blackQueens);
+					setEndgame(entry, ENDGAME_KQKP, whiteQueens > blackQueens);
+					return;
 				}
 			}
 
 			// With a non-pawn piece by each side
 			if (whiteNoPawnMaterial == 1 && blackNoPawnMaterial == 1) {
 				if (whiteRooks == 1 && blackRooks == 1) {
-					scaleFactor[0] = scaleKRPKR(board, whitePawns > blackPawns);
+					setEndgame(entry, ENDGAME_KRPKR, whitePawns > blackPawns);
+					return;
 				}
 				if (whiteBishops == 1 && blackBishops == 1) {
-					return endgameKBPKB(board, whitePawns > blackPawns);
+					setEndgame(entry, ENDGAME_KBPKB, whitePawns > blackPawns);
+					return;
 				}
 				if ((whiteBishops == 1 && whitePawns == 1 && blackKnights == 1) ||
 						(blackBishops == 1 && blackPawns == 1 && whiteKnights == 1)) {
-					return endgameKBPKN(board, whitePawns > blackPawns);
+					setEndgame(entry, ENDGAME_KBPKN, whitePawns > blackPawns);
+					return;
 				}
 			}
 		}
@@ -111,12 +132,50 @@ public class Endgame {
 		//
 		if (blackMaterial == 0 && (whiteBishops >= 2 || whiteRooks > 0 || whiteQueens > 0) || //
 				whiteMaterial == 0 && (whiteBishops >= 2 || blackRooks > 0 || blackQueens > 0)) {
-			return Endgame.endgameKXK(board, whiteMaterial > blackMaterial, whiteKnights + blackKnights, whiteBishops + blackBishops, whiteRooks + blackRooks, whiteQueens + blackQueens);
+			setEndgame(entry, ENDGAME_KXK, whiteMaterial > blackMaterial);
+			return;
 		}
 
 		if (whiteRooks == 1 && blackRooks == 1 &&
 				((whitePawns == 2 && blackPawns == 1) || (whitePawns == 1 && blackPawns == 2))) {
-			scaleFactor[0] = scaleKRPPKRP(board, whitePawns > blackPawns);
+			setEndgame(entry, ENDGAME_KRPPKRP, whitePawns > blackPawns);
+		}
+	}
+
+	private static void setEndgame(MaterialEntry entry, int endgame, boolean whiteDominant) {
+		entry.endgame = endgame;
+		entry.whiteDominant = whiteDominant;
+	}
+
+	/**
+	 * It may return a perfect knowledge value, a scaleFactor or nothing
+	 */
+	public static int evaluateEndgame(Board board, int[] scaleFactor, MaterialEntry material) {
+		scaleFactor[0] = SCALE_FACTOR_DEFAULT;
+
+		switch (material.endgame) {
+			case ENDGAME_NONE:
+				return Evaluator.NO_VALUE;
+			case ENDGAME_DRAW:
+				return Evaluator.DRAW;
+			case ENDGAME_KBNK:
+				return endgameKBNK(board, material.whiteDominant);
+			case ENDGAME_KPK:
+				return endgameKPK(board, material.whiteDominant);
+			case ENDGAME_KQKP:
+				return endgameKQKP(board, material.whiteDominant);
+			case ENDGAME_KRPKR:
+				scaleFactor[0] = scaleKRPKR(board, material.whiteDominant);
+				break;
+			case ENDGAME_KBPKB:
+				return endgameKBPKB(board, material.whiteDominant);
+			case ENDGAME_KBPKN:
+				return endgameKBPKN(board, material.whiteDominant);
+			case ENDGAME_KXK:
+				return endgameKXK(board, material.whiteDominant, Long.bitCount(board.knights), Long.bitCount(board.bishops), Long.bitCount(board.rooks), Long.bitCount(board.queens));
+			case ENDGAME_KRPPKRP:
+				scaleFactor[0] = scaleKRPPKRP(board, material.whiteDominant);
+				break;
 		}
 
 		//
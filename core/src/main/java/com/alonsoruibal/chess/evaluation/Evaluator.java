@@ -36,11 +36,33 @@ public abstract class Evaluator {
 		bbAttacks = BitboardAttacks.getInstance();
 	}
 
+	// Set when the last evaluation returned an approximate value outside the window
+	protected boolean lastEvalLazy;
+
+	/**
+	 * Sets the piece square tables of this evaluator in the board. evaluate() also does it when the board has other
+	 * tables, but installing them before moving avoids recomputing the history sums
+	 */
+	public abstract void installPcsqTable(Board board);
+
 	/**
 	 * Board evaluator
 	 */
 	public abstract int evaluate(Board board, AttacksInfo attacksInfo);
 
+	/**
+	 * Board evaluator with the alpha-beta window from the white point of view.
+	 * It may return an approximate value when it is far outside the window, by default it does the complete evaluation
+	 */
+	public int evaluate(Board board, AttacksInfo attacksInfo, int alpha, int beta) {
+		lastEvalLazy = false;
+		return evaluate(board, attacksInfo);
+	}
+
+	public boolean isLastEvalLazy() {
+		return lastEvalLazy;
+	}
+
 	/**
 	 * Merges two short Opening - Ending values in one int
 	 */
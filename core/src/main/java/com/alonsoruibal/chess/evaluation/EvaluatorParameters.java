@@ -0,0 +1,172 @@
+package com.alonsoruibal.chess.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Named arrays with the "oe" packed values of an evaluator, they can be changed by a tuner or loaded from a text.
+ * <p/>
+ * The text has one line for each array with the notation of the source, i.e. "PAWN_PASSER = {0, oe(20, 25), ...}",
+ * the arrays not present in the text keep their values.
+ * The evaluators check the version to discard the cached values when the parameters change.
+ */
+public class EvaluatorParameters {
+	private final List<String> names = new ArrayList<>();
+	private final List<int[]> arrays = new ArrayList<>();
+	private final List<int[]> defaults = new ArrayList<>();
+	private final List<int[]> unusedIndexes = new ArrayList<>();
+	private volatile int version;
+
+	/**
+	 * Registers an array, the evaluator keeps using the same array instance and its values are updated in place
+	 *
+	 * @param unused the indexes never read by the evaluator, i.e. the pawn ranks 1 and 8, they are not tuned
+	 */
+	public void add(String name, int[] values, int... unused) {
+		names.add(name);
+		arrays.add(values);
+		defaults.add(values.clone());
+		unusedIndexes.add(unused);
+	}
+
+	public List<String> getNames() {
+		return names;
+	}
+
+	/**
+	 * @return the array or null if there is no array with that name
+	 */
+	public int[] get(String name) {
+		int index = names.indexOf(name);
+		return index < 0 ? null : arrays.get(index);
+	}
+
+	/**
+	 * @return false if the evaluator never reads that index of the array
+	 */
+	public boolean isUsed(String name, int index) {
+		for (int unused : unusedIndexes.get(names.indexOf(name))) {
+			if (unused == index) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Must be called after changing the values of the arrays
+	 */
+	public void changed() {
+		version++;
+	}
+
+	/**
+	 * Restores the values of the source
+	 */
+	public void reset() {
+		for (int i = 0; i < arrays.size(); i++) {
+			System.arraycopy(defaults.get(i), 0, arrays.get(i), 0, arrays.get(i).length);
+		}
+		changed();
+	}
+
+	/**
+	 * Loads the values from the text, it throws an IllegalArgumentException with the line if the format is wrong.
+	 * All the lines are parsed before changing any value, so on an error the parameters are not modified
+	 */
+	public void load(String text) {
+		List<int[]> targets = new ArrayList<>();
+		List<int[]> loaded = new ArrayList<>();
+		for (String line : text.split("\n")) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#") || line.startsWith("//")) {
+				continue;
+			}
+			int equals = line.indexOf('=');
+			int open = line.indexOf('{');
+			int close = line.lastIndexOf('}');
+			if (equals < 0 || open < equals || close < open) {
+				throw new IllegalArgumentException("Wrong parameters line: " + line);
+			}
+			int[] values = get(line.substring(0, equals).trim());
+			if (values == null) {
+				throw new IllegalArgumentException("Unknown parameter: " + line);
+			}
+			int[] parsed = parseValues(line.substring(open + 1, close), line);
+			if (parsed.length != values.length) {
+				throw new IllegalArgumentException("Expected " + values.length + " values: " + line);
+			}
+			targets.add(values);
+			loaded.add(parsed);
+		}
+		for (int i = 0; i < targets.size(); i++) {
+			System.arraycopy(loaded.get(i), 0, targets.get(i), 0, targets.get(i).length);
+		}
+		changed();
+	}
+
+	private static int[] parseValues(String valuesString, String line) {
+		// Splits by the commas outside the parentheses
+		List<String> tokens = new ArrayList<>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i < valuesString.length(); i++) {
+			char c = valuesString.charAt(i);
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (c == ',' && depth == 0) {
+				tokens.add(valuesString.substring(start, i).trim());
+				start = i + 1;
+			}
+		}
+		String last = valuesString.substring(start).trim();
+		if (!last.isEmpty() || !tokens.isEmpty()) {
+			tokens.add(last);
+		}
+
+		int[] values = new int[tokens.size()];
+		try {
+			for (int i = 0; i < values.length; i++) {
+				String token = tokens.get(i);
+				if (token.startsWith("oe(") && token.endsWith(")")) {
+					int comma = token.indexOf(',');
+					values[i] = Evaluator.oe(Integer.parseInt(token.substring(3, comma).trim()),
+							Integer.parseInt(token.substring(comma + 1, token.length() - 1).trim()));
+				} else {
+					values[i] = Integer.parseInt(token);
+				}
+			}
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Wrong value in parameters line: " + line);
+		}
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < names.size(); i++) {
+			sb.append(names.get(i)).append(" = {");
+			int[] values = arrays.get(i);
+			for (int j = 0; j < values.length; j++) {
+				if (j > 0) {
+					sb.append(", ");
+				}
+				int value = values[j];
+				if (value == 0) {
+					sb.append("0");
+				} else {
+					sb.append("oe(").append(Evaluator.o(value)).append(", ").append(Evaluator.e(value)).append(")");
+				}
+			}
+			sb.append("}\n");
+		}
+		return sb.toString();
+	}
+}
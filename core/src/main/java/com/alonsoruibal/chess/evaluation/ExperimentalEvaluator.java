@@ -199,6 +199,18 @@ public class ExperimentalEvaluator extends Evaluator {
 			oe(5, -35), oe(10, -10), oe(-15, 2), oe(-35, 8), oe(-35, 8), oe(-15, 2), oe(10, -10), oe(5, -35),
 			oe(-5, -58), oe(0, -35), oe(-25, -19), oe(-45, -13), oe(-45, -13), oe(-25, -19), oe(0, -35), oe(-5, -58)
 	};
+	// Indexed by color, piece and square
+	private static final int[][][] PCSQ = new int[2][Piece.KING + 1][64];
+
+	static {
+		int[][] pcsqByPiece = {null, pawnPcsq, knightPcsq, bishopPcsq, rookPcsq, queenPcsq, kingPcsq};
+		for (int piece = Piece.PAWN; piece <= Piece.KING; piece++) {
+			for (int index = 0; index < 64; index++) {
+				PCSQ[W][piece][index] = pcsqByPiece[piece][index];
+				PCSQ[B][piece][index] = pcsqByPiece[piece][63 - index];
+			}
+		}
+	}
 
 	private final boolean debug = false;
 	private final boolean debugPawns = false;
@@ -217,10 +229,16 @@ public class ExperimentalEvaluator extends Evaluator {
 	private final int[] kingSafety = {0, 0};
 	private final int[] pawnStructure = {0, 0};
 	private final int[] passedPawns = {0, 0};
-	private final long[] pawnCanAttack = {0, 0};
 	private final long[] mobilitySquares = {0, 0};
 	private final long[] kingZone = {0, 0}; // Squares surrounding King
 
+	private final PawnHashTable pawnHashTable = new PawnHashTable();
+	private final MaterialHashTable materialHashTable = new MaterialHashTable();
+
+	public void installPcsqTable(Board board) {
+		board.setPcsqTable(PCSQ);
+	}
+
 	public int evaluate(Board board, AttacksInfo ai) {
 		if (debug) {
 			debugSB = new StringBuffer();
@@ -229,44 +247,30 @@ public class ExperimentalEvaluator extends Evaluator {
 			debugSB.append("\n");
 		}
 
-		int whitePawns = Long.bitCount(board.pawns & board.whites);
-		int blackPawns = Long.bitCount(board.pawns & board.blacks);
-		int whiteKnights = Long.bitCount(board.knights & board.whites);
-		int blackKnights = Long.bitCount(board.knights & board.blacks);
-		int whiteBishops = Long.bitCount(board.bishops & board.whites);
-		int blackBishops = Long.bitCount(board.bishops & board.blacks);
-		int whiteRooks = Long.bitCount(board.rooks & board.whites);
-		int blackRooks = Long.bitCount(board.rooks & board.blacks);
-		int whiteQueens = Long.bitCount(board.queens & board.whites);
-		int blackQueens = Long.bitCount(board.queens & board.blacks);
-
-		int endgameValue = Endgame.evaluateEndgame(board, scaleFactor, whitePawns, blackPawns, whiteKnights, blackKnights, whiteBishops, blackBishops, whiteRooks, blackRooks, whiteQueens, blackQueens);
+		MaterialEntry material = materialHashTable.getEntry(board.getMaterialKey());
+
+		int endgameValue = Endgame.evaluateEndgame(board, scaleFactor, material);
 		if (endgameValue != NO_VALUE) {
 			return endgameValue;
 		}
 
-		pawnMaterial[W] = whitePawns * PIECE_VALUES_OE[Piece.PAWN];
-		nonPawnMaterial[W] = whiteKnights * PIECE_VALUES_OE[Piece.KNIGHT] +
-				whiteBishops * PIECE_VALUES_OE[Piece.BISHOP] +
-				whiteRooks * PIECE_VALUES_OE[Piece.ROOK] +
-				whiteQueens * PIECE_VALUES_OE[Piece.QUEEN] +
-				((board.whites & board.bishops & Square.WHITES) != 0
-						&& (board.whites & board.bishops & Square.BLACKS) != 0 ? BISHOP_PAIR : 0);
-		pawnMaterial[B] = blackPawns * PIECE_VALUES_OE[Piece.PAWN];
-		nonPawnMaterial[B] = blackKnights * PIECE_VALUES_OE[Piece.KNIGHT] +
-				blackBishops * PIECE_VALUES_OE[Piece.BISHOP] +
-				blackRooks * PIECE_VALUES_OE[Piece.ROOK] +
-				blackQueens * PIECE_VALUES_OE[Piece.QUEEN] +
-				((board.blacks & board.bishops & Square.WHITES) != 0
-						&& (board.blacks & board.bishops & Square.BLACKS) != 0 ? BISHOP_PAIR : 0);
-
-		int nonPawnMat = e(nonPawnMaterial[W] + nonPawnMaterial[B]);
-		int gamePhase = nonPawnMat >= NON_PAWN_MATERIAL_MIDGAME_MAX ? GAME_PHASE_MIDGAME :
-				nonPawnMat <= NON_PAWN_MATERIAL_ENDGAME_MIN ? GAME_PHASE_ENDGAME :
-						((nonPawnMat - NON_PAWN_MATERIAL_ENDGAME_MIN) * GAME_PHASE_MIDGAME) / (NON_PAWN_MATERIAL_MIDGAME_MAX - NON_PAWN_MATERIAL_ENDGAME_MIN);
-
-		pcsq[W] = 0;
-		pcsq[B] = 0;
+		boolean whiteBishopPair = (board.whites & board.bishops & Square.WHITES) != 0
+				&& (board.whites & board.bishops & Square.BLACKS) != 0;
+		boolean blackBishopPair = (board.blacks & board.bishops & Square.WHITES) != 0
+				&& (board.blacks & board.bishops & Square.BLACKS) != 0;
+		pawnMaterial[W] = material.pawnMaterial[W];
+		nonPawnMaterial[W] = material.nonPawnMaterial[W] + (whiteBishopPair ? BISHOP_PAIR : 0);
+		pawnMaterial[B] = material.pawnMaterial[B];
+		nonPawnMaterial[B] = material.nonPawnMaterial[B] + (blackBishopPair ? BISHOP_PAIR : 0);
+
+		int gamePhase = material.gamePhase[(whiteBishopPair ? 1 : 0) + (blackBishopPair ? 1 : 0)];
+
+		// The board keeps the piece square table sums
+		if (board.getPcsqTable() != PCSQ) {
+			installPcsqTable(board);
+		}
+		pcsq[W] = board.pcsq[W];
+		pcsq[B] = board.pcsq[B];
 		positional[W] = 0;
 		positional[B] = 0;
 		mobility[W] = 0;
@@ -275,16 +279,24 @@ public class ExperimentalEvaluator extends Evaluator {
 		kingAttackersCount[B] = 0;
 		kingSafety[W] = 0;
 		kingSafety[B] = 0;
-		pawnStructure[W] = 0;
-		pawnStructure[B] = 0;
-		passedPawns[W] = 0;
-		passedPawns[B] = 0;
 
 		mobilitySquares[W] = ~board.whites;
 		mobilitySquares[B] = ~board.blacks;
 
 		ai.build(board);
 
+		// The pawn structure is only evaluated when it is not in the pawn hash
+		PawnHashEntry pawnEntry = pawnHashTable.getEntry(board.getPawnKey());
+		if (debug || pawnEntry.key != board.getPawnKey()) {
+			evalPawns(board, pawnEntry);
+			pawnEntry.key = board.getPawnKey();
+		}
+		pawnStructure[W] = pawnEntry.pawnStructure[W];
+		pawnStructure[B] = pawnEntry.pawnStructure[B];
+		passedPawns[W] = pawnEntry.passedPawns[W];
+		passedPawns[B] = pawnEntry.passedPawns[B];
+		long[] pawnCanAttack = pawnEntry.pawnCanAttack;
+
 		long whitePawnsAux = board.pawns & board.whites;
 		long blackPawnsAux = board.pawns & board.blacks;
 
@@ -297,30 +309,14 @@ public class ExperimentalEvaluator extends Evaluator {
 			long blackBehindPawn = ((blackPawnsAux << 8) | (blackPawnsAux << 16) | (blackPawnsAux << 24));
 
 			space[W] = SPACE * (((Long.bitCount(whiteSafe) + Long.bitCount(whiteSafe & whiteBehindPawn)) *
-					(whiteKnights + whiteBishops)) / 4);
+					Long.bitCount((board.knights | board.bishops) & board.whites)) / 4);
 			space[B] = SPACE * (((Long.bitCount(blackSafe) + Long.bitCount(blackSafe & blackBehindPawn)) *
-					(blackKnights + blackBishops)) / 4);
+					Long.bitCount((board.knights | board.bishops) & board.blacks)) / 4);
 		} else {
 			space[W] = 0;
 			space[B] = 0;
 		}
 
-		// Squares that pawns attack or can attack by advancing
-		pawnCanAttack[W] = ai.pawnAttacks[W];
-		pawnCanAttack[B] = ai.pawnAttacks[B];
-		for (int i = 0; i < 5; i++) {
-			whitePawnsAux = whitePawnsAux << 8;
-			whitePawnsAux &= ~((board.pawns & board.blacks) | ai.pawnAttacks[B]); // Cannot advance because of a blocking pawn or a opposite pawn attack
-			blackPawnsAux = blackPawnsAux >>> 8;
-			blackPawnsAux &= ~((board.pawns & board.whites) | ai.pawnAttacks[W]); // Cannot advance because of a blocking pawn or a opposite pawn attack
-
-			if (whitePawnsAux == 0 && blackPawnsAux == 0) {
-				break;
-			}
-			pawnCanAttack[W] |= ((whitePawnsAux & ~BitboardUtils.b_l) << 9) | ((whitePawnsAux & ~BitboardUtils.b_r) << 7);
-			pawnCanAttack[B] |= ((blackPawnsAux & ~BitboardUtils.b_r) >>> 9) | ((blackPawnsAux & ~BitboardUtils.b_l) >>> 7);
-		}
-
 		// Calculate attacks
 		attacks[W] = evalAttacks(board, ai, W, board.blacks);
 		attacks[B] = evalAttacks(board, ai, B, board.whites);
@@ -350,72 +346,11 @@ public class ExperimentalEvaluator extends Evaluator {
 				pieceAttacks = ai.attacksFromSquare[index];
 
 				if ((square & board.pawns) != 0) {
-					pcsq[us] += pawnPcsq[pcsqIndex];
-
-					long myPawns = board.pawns & mines;
-					long otherPawns = board.pawns & others;
-					long adjacentFiles = BitboardUtils.FILES_ADJACENT[file];
 					long ranksForward = BitboardUtils.RANKS_FORWARD[us][rank];
 					long pawnFile = BitboardUtils.FILE[file];
-					long routeToPromotion = pawnFile & ranksForward;
-					long otherPawnsAheadAdjacent = ranksForward & adjacentFiles & otherPawns;
 					long pushSquare = isWhite ? square << 8 : square >>> 8;
 
-					boolean supported = (square & ai.pawnAttacks[us]) != 0;
-					boolean doubled = (myPawns & routeToPromotion) != 0;
-					boolean opposed = (otherPawns & routeToPromotion) != 0;
-					boolean passed = !doubled
-							&& !opposed
-							&& otherPawnsAheadAdjacent == 0;
-
-					if (!passed) {
-						long myPawnsAheadAdjacent = ranksForward & adjacentFiles & myPawns;
-						long myPawnsBesideAndBehindAdjacent = BitboardUtils.RANK_AND_BACKWARD[us][rank] & adjacentFiles & myPawns;
-						boolean isolated = (myPawns & adjacentFiles) == 0;
-						boolean candidate = !doubled
-								&& !opposed
-								&& (((otherPawnsAheadAdjacent & ~pieceAttacks) == 0) || // Can become passer advancing
-								(Long.bitCount(myPawnsBesideAndBehindAdjacent) >= Long.bitCount(otherPawnsAheadAdjacent & ~pieceAttacks))); // Has more friend pawns beside and behind than opposed pawns controlling his route to promotion
-						boolean backward = !isolated
-								&& !candidate
-								&& myPawnsBesideAndBehindAdjacent == 0
-								&& (pieceAttacks & otherPawns) == 0 // No backwards if it can capture
-								&& (BitboardUtils.RANK_AND_BACKWARD[us][isWhite ? BitboardUtils.getRankLsb(myPawnsAheadAdjacent) : BitboardUtils.getRankMsb(myPawnsAheadAdjacent)] &
-								routeToPromotion & (board.pawns | ai.pawnAttacks[them])) != 0; // Other pawns stopping it from advance, opposing or capturing it before reaching my pawns
-
-						if (debugPawns) {
-							boolean connected = ((bbAttacks.king[index] & adjacentFiles & myPawns) != 0);
-							debugSB.append("PAWN ")
-									.append(BitboardUtils.SQUARE_NAMES[index])
-									.append(isWhite ? " WHITE " : " BLACK ")
-									.append(isolated ? "isolated " : "")
-									.append(supported ? "supported " : "")
-									.append(connected ? "connected " : "")
-									.append(doubled ? "doubled " : "")
-									.append(opposed ? "opposed " : "")
-									.append(candidate ? "candidate " : "")
-									.append(backward ? "backward " : "")
-									.append("\n");
-						}
-
-						if (backward) {
-							pawnStructure[us] -= PAWN_BACKWARDS[opposed ? 1 : 0];
-						}
-						if (isolated) {
-							pawnStructure[us] -= PAWN_ISOLATED[opposed ? 1 : 0];
-						}
-						if (doubled) {
-							pawnStructure[us] -= PAWN_DOUBLED[opposed ? 1 : 0];
-						}
-						if (!supported
-								&& !isolated
-								&& !backward) {
-							pawnStructure[us] -= PAWN_UNSUPPORTED;
-						}
-						if (candidate) {
-							passedPawns[us] += PAWN_CANDIDATE[relativeRank];
-						}
-
+					if ((square & pawnEntry.passers) == 0) {
 						if ((square & (BitboardUtils.D | BitboardUtils.E)) != 0
 								&& relativeRank == 1
 								&& (pushSquare & mines & ~board.pawns) != 0) {
@@ -425,7 +360,7 @@ public class ExperimentalEvaluator extends Evaluator {
 						// Pawn Storm: It can open a file near the other king
 						if (gamePhase > 0 && relativeRank > 2) {
 							// Only if in kingside or queenside
-							long stormedPawns = otherPawnsAheadAdjacent & ~BitboardUtils.D & ~BitboardUtils.E;
+							long stormedPawns = ranksForward & BitboardUtils.FILES_ADJACENT[file] & board.pawns & others & ~BitboardUtils.D & ~BitboardUtils.E;
 							if (stormedPawns != 0) {
 								// The stormed pawn must be in the other king's adjacent files
 								int otherKingFile = 7 - ai.kingIndex[them] & 7;
@@ -438,18 +373,15 @@ public class ExperimentalEvaluator extends Evaluator {
 						}
 					} else {
 						//
-						// Passed Pawn
+						// Passed Pawn: the bonuses depending on the other pieces
 						//
+						long routeToPromotion = pawnFile & ranksForward;
 						// Backfile only to the first piece found
 						long backFile = bbAttacks.getRookAttacks(index, all) & pawnFile & BitboardUtils.RANKS_BACKWARD[us][rank];
 						// If it has a rook or queen behind consider all the route to promotion attacked or defended
 						long attackedAndNotDefendedRoute =
 								((routeToPromotion & ai.attackedSquares[them]) | ((backFile & (board.rooks | board.queens) & others) != 0 ? routeToPromotion : 0)) &
 										~((routeToPromotion & ai.attackedSquares[us]) | ((backFile & (board.rooks | board.queens) & mines) != 0 ? routeToPromotion : 0));
-						boolean connected = (bbAttacks.king[index] & adjacentFiles & myPawns) != 0;
-						boolean outside = otherPawns != 0
-								&& (((square & BitboardUtils.FILES_LEFT[3]) != 0 && (board.pawns & BitboardUtils.FILES_LEFT[file]) == 0)
-								|| ((square & BitboardUtils.FILES_RIGHT[4]) != 0 && (board.pawns & BitboardUtils.FILES_RIGHT[file]) == 0));
 						boolean mobile = (pushSquare & (all | attackedAndNotDefendedRoute)) == 0;
 						boolean runner = mobile
 								&& (routeToPromotion & all) == 0
@@ -459,30 +391,16 @@ public class ExperimentalEvaluator extends Evaluator {
 							debugSB.append("PAWN ")
 									.append(BitboardUtils.SQUARE_NAMES[index])
 									.append(isWhite ? " WHITE " : " BLACK ")
-									.append("passed ")
-									.append(outside ? "outside " : "")
-									.append(connected ? "connected " : "")
-									.append(supported ? "supported " : "")
 									.append(mobile ? "mobile " : "")
 									.append(runner ? "runner " : "")
 									.append("\n");
 						}
 
-						passedPawns[us] += PAWN_PASSER[relativeRank];
-
 						if (relativeRank >= 2) {
 							int pushIndex = isWhite ? index + 8 : index - 8;
 							passedPawns[us] += BitboardUtils.DISTANCE[pushIndex][ai.kingIndex[them]] * PAWN_PASSER_OTHER_KING_DISTANCE[relativeRank]
 									- BitboardUtils.DISTANCE[pushIndex][ai.kingIndex[us]] * PAWN_PASSER_MY_KING_DISTANCE[relativeRank];
 						}
-						if (outside) {
-							passedPawns[us] += PAWN_PASSER_OUTSIDE[relativeRank];
-						}
-						if (supported) {
-							passedPawns[us] += PAWN_PASSER_SUPPORTED[relativeRank];
-						} else if (connected) {
-							passedPawns[us] += PAWN_PASSER_CONNECTED[relativeRank];
-						}
 						if (runner) {
 							passedPawns[us] += PAWN_PASSER_RUNNER[relativeRank];
 						} else if (mobile) {
@@ -498,8 +416,6 @@ public class ExperimentalEvaluator extends Evaluator {
 					}
 
 				} else if ((square & board.knights) != 0) {
-					pcsq[us] += knightPcsq[pcsqIndex];
-
 					safeAttacks = pieceAttacks & ~ai.pawnAttacks[them];
 
 					mobility[us] += MOBILITY[Piece.KNIGHT][Long.bitCount(safeAttacks & mobilitySquares[us])];
@@ -524,8 +440,6 @@ public class ExperimentalEvaluator extends Evaluator {
 					}
 
 				} else if ((square & board.bishops) != 0) {
-					pcsq[us] += bishopPcsq[pcsqIndex];
-
 					safeAttacks = pieceAttacks & ~ai.pawnAttacks[them];
 
 					mobility[us] += MOBILITY[Piece.BISHOP][Long.bitCount(safeAttacks & mobilitySquares[us])];
@@ -559,8 +473,6 @@ public class ExperimentalEvaluator extends Evaluator {
 					}
 
 				} else if ((square & board.rooks) != 0) {
-					pcsq[us] += rookPcsq[pcsqIndex];
-
 					safeAttacks = pieceAttacks & ~ai.pawnAttacks[them] & ~ai.knightAttacks[them] & ~ai.bishopAttacks[them];
 
 					int mobilityCount = Long.bitCount(safeAttacks & mobilitySquares[us]);
@@ -623,8 +535,6 @@ public class ExperimentalEvaluator extends Evaluator {
 					}
 
 				} else if ((square & board.queens) != 0) {
-					pcsq[us] += queenPcsq[pcsqIndex];
-
 					safeAttacks = pieceAttacks & ~ai.pawnAttacks[them] & ~ai.knightAttacks[them] & ~ai.bishopAttacks[them] & ~ai.rookAttacks[them];
 
 					mobility[us] += MOBILITY[Piece.QUEEN][Long.bitCount(safeAttacks & mobilitySquares[us])];
@@ -634,9 +544,6 @@ public class ExperimentalEvaluator extends Evaluator {
 						kingSafety[us] += PIECE_ATTACKS_KING[Piece.QUEEN] * Long.bitCount(kingAttacks);
 						kingAttackersCount[us]++;
 					}
-
-				} else if ((square & board.kings) != 0) {
-					pcsq[us] += kingPcsq[pcsqIndex];
 				}
 			}
 			square <<= 1;
@@ -680,6 +587,151 @@ public class ExperimentalEvaluator extends Evaluator {
 		return value;
 	}
 
+	/**
+	 * Evaluates the terms depending only on the pawns and stores them in the pawn hash entry.
+	 * The pawn attacks include the pinned pawns, so they do not depend on the other pieces
+	 */
+	private void evalPawns(Board board, PawnHashEntry entry) {
+		long whitePawns = board.pawns & board.whites;
+		long blackPawns = board.pawns & board.blacks;
+
+		entry.pawnStructure[W] = 0;
+		entry.pawnStructure[B] = 0;
+		entry.passedPawns[W] = 0;
+		entry.passedPawns[B] = 0;
+		entry.passers = 0;
+		entry.pawnAttacks[W] = ((whitePawns & ~BitboardUtils.b_l) << 9) | ((whitePawns & ~BitboardUtils.b_r) << 7);
+		entry.pawnAttacks[B] = ((blackPawns & ~BitboardUtils.b_r) >>> 9) | ((blackPawns & ~BitboardUtils.b_l) >>> 7);
+
+		// Squares that pawns attack or can attack by advancing
+		entry.pawnCanAttack[W] = entry.pawnAttacks[W];
+		entry.pawnCanAttack[B] = entry.pawnAttacks[B];
+		long whitePawnsAux = whitePawns;
+		long blackPawnsAux = blackPawns;
+		for (int i = 0; i < 5; i++) {
+			whitePawnsAux = whitePawnsAux << 8;
+			whitePawnsAux &= ~(blackPawns | entry.pawnAttacks[B]); // Cannot advance because of a blocking pawn or a opposite pawn attack
+			blackPawnsAux = blackPawnsAux >>> 8;
+			blackPawnsAux &= ~(whitePawns | entry.pawnAttacks[W]); // Cannot advance because of a blocking pawn or a opposite pawn attack
+
+			if (whitePawnsAux == 0 && blackPawnsAux == 0) {
+				break;
+			}
+			entry.pawnCanAttack[W] |= ((whitePawnsAux & ~BitboardUtils.b_l) << 9) | ((whitePawnsAux & ~BitboardUtils.b_r) << 7);
+			entry.pawnCanAttack[B] |= ((blackPawnsAux & ~BitboardUtils.b_r) >>> 9) | ((blackPawnsAux & ~BitboardUtils.b_l) >>> 7);
+		}
+
+		long pawns = board.pawns;
+		while (pawns != 0) {
+			long square = Long.lowestOneBit(pawns);
+			int index = Long.numberOfTrailingZeros(square);
+			pawns ^= square;
+
+			boolean isWhite = ((board.whites & square) != 0);
+			int us = (isWhite ? W : B);
+			int them = (isWhite ? B : W);
+			int rank = index >> 3;
+			int relativeRank = isWhite ? rank : 7 - rank;
+			int file = 7 - index & 7;
+
+			long pieceAttacks = bbAttacks.pawn[us][index];
+			long myPawns = isWhite ? whitePawns : blackPawns;
+			long otherPawns = isWhite ? blackPawns : whitePawns;
+			long adjacentFiles = BitboardUtils.FILES_ADJACENT[file];
+			long ranksForward = BitboardUtils.RANKS_FORWARD[us][rank];
+			long pawnFile = BitboardUtils.FILE[file];
+			long routeToPromotion = pawnFile & ranksForward;
+			long otherPawnsAheadAdjacent = ranksForward & adjacentFiles & otherPawns;
+
+			boolean supported = (square & entry.pawnAttacks[us]) != 0;
+			boolean doubled = (myPawns & routeToPromotion) != 0;
+			boolean opposed = (otherPawns & routeToPromotion) != 0;
+			boolean passed = !doubled
+					&& !opposed
+					&& otherPawnsAheadAdjacent == 0;
+
+			if (!passed) {
+				long myPawnsAheadAdjacent = ranksForward & adjacentFiles & myPawns;
+				long myPawnsBesideAndBehindAdjacent = BitboardUtils.RANK_AND_BACKWARD[us][rank] & adjacentFiles & myPawns;
+				boolean isolated = (myPawns & adjacentFiles) == 0;
+				boolean candidate = !doubled
+						&& !opposed
+						&& (((otherPawnsAheadAdjacent & ~pieceAttacks) == 0) || // Can become passer advancing
+						(Long.bitCount(myPawnsBesideAndBehindAdjacent) >= Long.bitCount(otherPawnsAheadAdjacent & ~pieceAttacks))); // Has more friend pawns beside and behind than opposed pawns controlling his route to promotion
+				boolean backward = !isolated
+						&& !candidate
+						&& myPawnsBesideAndBehindAdjacent == 0
+						&& (pieceAttacks & otherPawns) == 0 // No backwards if it can capture
+						&& (BitboardUtils.RANK_AND_BACKWARD[us][isWhite ? BitboardUtils.getRankLsb(myPawnsAheadAdjacent) : BitboardUtils.getRankMsb(myPawnsAheadAdjacent)] &
+						routeToPromotion & (board.pawns | entry.pawnAttacks[them])) != 0; // Other pawns stopping it from advance, opposing or capturing it before reaching my pawns
+
+				if (debugPawns) {
+					boolean connected = ((bbAttacks.king[index] & adjacentFiles & myPawns) != 0);
+						debugSB.append("PAWN ")
+								.append(BitboardUtils.SQUARE_NAMES[index])
+								.append(isWhite ? " WHITE " : " BLACK ")
+								.append(isolated ? "isolated " : "")
+								.append(supported ? "supported " : "")
+								.append(connected ? "connected " : "")
+								.append(doubled ? "doubled " : "")
+								.append(opposed ? "opposed " : "")
+								.append(candidate ? "candidate " : "")
+								.append(backward ? "backward " : "")
+								.append("\n");
+				}
+
+				if (backward) {
+					entry.pawnStructure[us] -= PAWN_BACKWARDS[opposed ? 1 : 0];
+				}
+				if (isolated) {
+					entry.pawnStructure[us] -= PAWN_ISOLATED[opposed ? 1 : 0];
+				}
+				if (doubled) {
+					entry.pawnStructure[us] -= PAWN_DOUBLED[opposed ? 1 : 0];
+				}
+				if (!supported
+						&& !isolated
+						&& !backward) {
+					entry.pawnStructure[us] -= PAWN_UNSUPPORTED;
+				}
+				if (candidate) {
+					entry.passedPawns[us] += PAWN_CANDIDATE[relativeRank];
+				}
+			} else {
+				//
+				// Passed Pawn
+				//
+				boolean connected = (bbAttacks.king[index] & adjacentFiles & myPawns) != 0;
+				boolean outside = otherPawns != 0
+						&& (((square & BitboardUtils.FILES_LEFT[3]) != 0 && (board.pawns & BitboardUtils.FILES_LEFT[file]) == 0)
+						|| ((square & BitboardUtils.FILES_RIGHT[4]) != 0 && (board.pawns & BitboardUtils.FILES_RIGHT[file]) == 0));
+
+				if (debug) {
+						debugSB.append("PAWN ")
+								.append(BitboardUtils.SQUARE_NAMES[index])
+								.append(isWhite ? " WHITE " : " BLACK ")
+								.append("passed ")
+								.append(outside ? "outside " : "")
+								.append(connected ? "connected " : "")
+								.append(supported ? "supported " : "")
+								.append("\n");
+				}
+
+				entry.passers |= square;
+				entry.passedPawns[us] += PAWN_PASSER[relativeRank];
+
+				if (outside) {
+					entry.passedPawns[us] += PAWN_PASSER_OUTSIDE[relativeRank];
+				}
+				if (supported) {
+					entry.passedPawns[us] += PAWN_PASSER_SUPPORTED[relativeRank];
+				} else if (connected) {
+					entry.passedPawns[us] += PAWN_PASSER_CONNECTED[relativeRank];
+				}
+			}
+		}
+	}
+
 	private int evalAttacks(Board board, AttacksInfo ai, int us, long others) {
 		int attacks = 0;
 
@@ -0,0 +1,17 @@
+package com.alonsoruibal.chess.evaluation;
+
+/**
+ * Evaluation terms of one material key, they only depend on the piece counts.
+ * The material values are "oe" (opening - endgame) packed
+ */
+public class MaterialEntry {
+	public long key;
+	public final int[] pawnMaterial = {0, 0};
+	// Without the bishop pair bonus
+	public final int[] nonPawnMaterial = {0, 0};
+	// Indexed by the number of sides with the bishop pair, because the bonus is part of the non pawn material
+	public final int[] gamePhase = {0, 0, 0};
+	// One of the Endgame.ENDGAME_* constants
+	public int endgame;
+	public boolean whiteDominant;
+}
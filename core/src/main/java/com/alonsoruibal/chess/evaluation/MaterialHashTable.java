@@ -0,0 +1,64 @@
+package com.alonsoruibal.chess.evaluation;
+
+import com.alonsoruibal.chess.Piece;
+import com.alonsoruibal.chess.hash.MaterialKey;
+
+/**
+ * Material table indexed by the material key of the board, filled the first time that each material is evaluated.
+ * It maps the piece counts to the material values, the game phase and the endgame to evaluate.
+ * Each evaluator owns its table, so it is not shared between search threads.
+ * The entries are initialized with key 0 and all the values to zero, that is the right entry for only two kings
+ */
+public class MaterialHashTable {
+	public static final int SIZE_BITS = 12;
+
+	private final MaterialEntry[] entries = new MaterialEntry[1 << SIZE_BITS];
+
+	public MaterialHashTable() {
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = new MaterialEntry();
+		}
+	}
+
+	public MaterialEntry getEntry(long materialKey) {
+		MaterialEntry entry = entries[(int) ((materialKey * 0x9e3779b97f4a7c15L) >>> (64 - SIZE_BITS))];
+		if (entry.key != materialKey) {
+			fill(entry, materialKey);
+		}
+		return entry;
+	}
+
+	private void fill(MaterialEntry entry, long materialKey) {
+		int whitePawns = MaterialKey.getCount(materialKey, Evaluator.W, Piece.PAWN);
+		int blackPawns = MaterialKey.getCount(materialKey, Evaluator.B, Piece.PAWN);
+		int whiteKnights = MaterialKey.getCount(materialKey, Evaluator.W, Piece.KNIGHT);
+		int blackKnights = MaterialKey.getCount(materialKey, Evaluator.B, Piece.KNIGHT);
+		int whiteBishops = MaterialKey.getCount(materialKey, Evaluator.W, Piece.BISHOP);
+		int blackBishops = MaterialKey.getCount(materialKey, Evaluator.B, Piece.BISHOP);
+		int whiteRooks = MaterialKey.getCount(materialKey, Evaluator.W, Piece.ROOK);
+		int blackRooks = MaterialKey.getCount(materialKey, Evaluator.B, Piece.ROOK);
+		int whiteQueens = MaterialKey.getCount(materialKey, Evaluator.W, Piece.QUEEN);
+		int blackQueens = MaterialKey.getCount(materialKey, Evaluator.B, Piece.QUEEN);
+
+		entry.key = materialKey;
+		entry.pawnMaterial[Evaluator.W] = whitePawns * Evaluator.PIECE_VALUES_OE[Piece.PAWN];
+		entry.pawnMaterial[Evaluator.B] = blackPawns * Evaluator.PIECE_VALUES_OE[Piece.PAWN];
+		entry.nonPawnMaterial[Evaluator.W] = whiteKnights * Evaluator.PIECE_VALUES_OE[Piece.KNIGHT] +
+				whiteBishops * Evaluator.PIECE_VALUES_OE[Piece.BISHOP] +
+				whiteRooks * Evaluator.PIECE_VALUES_OE[Piece.ROOK] +
+				whiteQueens * Evaluator.PIECE_VALUES_OE[Piece.QUEEN];
+		entry.nonPawnMaterial[Evaluator.B] = blackKnights * Evaluator.PIECE_VALUES_OE[Piece.KNIGHT] +
+				blackBishops * Evaluator.PIECE_VALUES_OE[Piece.BISHOP] +
+				blackRooks * Evaluator.PIECE_VALUES_OE[Piece.ROOK] +
+				blackQueens * Evaluator.PIECE_VALUES_OE[Piece.QUEEN];
+
+		for (int bishopPairs = 0; bishopPairs < 3; bishopPairs++) {
+			int nonPawnMat = Evaluator.e(entry.nonPawnMaterial[Evaluator.W] + entry.nonPawnMaterial[Evaluator.B] + bishopPairs * Evaluator.BISHOP_PAIR);
+			entry.gamePhase[bishopPairs] = nonPawnMat >= Evaluator.NON_PAWN_MATERIAL_MIDGAME_MAX ? Evaluator.GAME_PHASE_MIDGAME :
+					nonPawnMat <= Evaluator.NON_PAWN_MATERIAL_ENDGAME_MIN ? Evaluator.GAME_PHASE_ENDGAME :
+							((nonPawnMat - Evaluator.NON_PAWN_MATERIAL_ENDGAME_MIN) * Evaluator.GAME_PHASE_MIDGAME) / (Evaluator.NON_PAWN_MATERIAL_MIDGAME_MAX - Evaluator.NON_PAWN_MATERIAL_ENDGAME_MIN);
+		}
+
+		Endgame.setEndgame(entry, whitePawns, blackPawns, whiteKnights, blackKnights, whiteBishops, blackBishops, whiteRooks, blackRooks, whiteQueens, blackQueens);
+	}
+}
@@ -0,0 +1,17 @@
+package com.alonsoruibal.chess.evaluation;
+
+/**
+ * Pawn structure evaluation of one pawn key, only depends on the pawns of both colors.
+ * The values are "oe" (opening - endgame) packed
+ */
+public class PawnHashEntry {
+	public long key;
+	public final int[] pawnStructure = {0, 0};
+	public final int[] passedPawns = {0, 0};
+	// Passed pawns of both colors
+	public long passers;
+	// Squares attacked by pawns, also by the pinned ones
+	public final long[] pawnAttacks = {0, 0};
+	// Squares that pawns attack or can attack by advancing
+	public final long[] pawnCanAttack = {0, 0};
+}
@@ -0,0 +1,35 @@
+package com.alonsoruibal.chess.evaluation;
+
+/**
+ * Caches the pawn structure evaluation indexed by the pawn Zobrist key of the board.
+ * Each evaluator owns its table, so it is not shared between search threads.
+ * The entries are initialized with key 0 and all the values to zero, that is the right evaluation for a board without pawns
+ */
+public class PawnHashTable {
+	public static final int SIZE_BITS = 14;
+	private static final int MASK = (1 << SIZE_BITS) - 1;
+
+	private final PawnHashEntry[] entries = new PawnHashEntry[1 << SIZE_BITS];
+
+	public PawnHashTable() {
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = new PawnHashEntry();
+		}
+	}
+
+	/**
+	 * Invalidates all the entries, the key 0 is only valid for the boards without pawns that have all the values to zero
+	 */
+	public void clear() {
+		for (PawnHashEntry entry : entries) {
+			entry.key = -1;
+		}
+	}
+
+	/**
+	 * Returns the entry for this pawn key, the caller must check the entry key and fill the entry if it is different
+	 */
+	public PawnHashEntry getEntry(long pawnKey) {
+		return entries[(int) pawnKey & MASK];
+	}
+}
@@ -1,7 +1,9 @@
 package com.alonsoruibal.chess.evaluation;
 
 import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.Piece;
 import com.alonsoruibal.chess.bitboard.AttacksInfo;
+import com.alonsoruibal.chess.hash.MaterialKey;
 
 /**
  * Piece square values from Tomasz Michniewski, got from:
@@ -96,68 +98,56 @@ public class SimplifiedEvaluator extends Evaluator {
 	};
 
 
+	// Indexed by color, piece and square, the king has different opening and endgame values, so they are "oe" packed
+	private static final int[][][] PCSQ = new int[2][Piece.KING + 1][64];
+
+	static {
+		int[][] squareByPiece = {null, pawnSquare, knightSquare, bishopSquare, rookSquare, queenSquare};
+		for (int index = 0; index < 64; index++) {
+			for (int piece = Piece.PAWN; piece <= Piece.QUEEN; piece++) {
+				PCSQ[W][piece][index] = oe(squareByPiece[piece][63 - index], squareByPiece[piece][63 - index]);
+				PCSQ[B][piece][index] = oe(squareByPiece[piece][index], squareByPiece[piece][index]);
+			}
+			PCSQ[W][Piece.KING][index] = oe(kingSquareOpening[63 - index], kingSquareEndGame[63 - index]);
+			PCSQ[B][Piece.KING][index] = oe(kingSquareOpening[index], kingSquareEndGame[index]);
+		}
+	}
+
+	public void installPcsqTable(Board board) {
+		board.setPcsqTable(PCSQ);
+	}
+
 	public int evaluate(Board board, AttacksInfo attacksInfo) {
-		long all = board.getAll();
+		// The board keeps the piece square table sums
+		if (board.getPcsqTable() != PCSQ) {
+			installPcsqTable(board);
+		}
 
+		long materialKey = board.getMaterialKey();
 		int[] materialValue = {0, 0};
 		int[] pawnMaterialValue = {0, 0};
-		int[] pcsqValue = {0, 0};
-		int[] pcsqOpeningValue = {0, 0};
-		int[] pcsqEndgameValue = {0, 0};
-
 		boolean[] noQueen = {true, true};
 
-		long square = 1;
-		byte index = 0;
-		while (square != 0) {
-			boolean isWhite = ((board.whites & square) != 0);
-			int color = (isWhite ? 0 : 1);
-			int pcsqIndex = (isWhite ? 63 - index : index);
-
-			if ((square & all) != 0) {
-
-				if ((square & board.pawns) != 0) {
-					pawnMaterialValue[color] += PAWN;
-					pcsqValue[color] += pawnSquare[pcsqIndex];
-
-				} else if ((square & board.knights) != 0) {
-					materialValue[color] += KNIGHT;
-					pcsqValue[color] += knightSquare[pcsqIndex];
-
-				} else if ((square & board.bishops) != 0) {
-					materialValue[color] += BISHOP;
-					pcsqValue[color] += bishopSquare[pcsqIndex];
-
-				} else if ((square & board.rooks) != 0) {
-					materialValue[color] += ROOK;
-					pcsqValue[color] += rookSquare[pcsqIndex];
-
-				} else if ((square & board.queens) != 0) {
-					pcsqValue[color] += queenSquare[pcsqIndex];
-					materialValue[color] += QUEEN;
-					noQueen[color] = false;
-
-				} else if ((square & board.kings) != 0) {
-					pcsqOpeningValue[color] += kingSquareOpening[pcsqIndex];
-					pcsqEndgameValue[color] += kingSquareEndGame[pcsqIndex];
-				}
-			}
-			square <<= 1;
-			index++;
+		for (int color = W; color <= B; color++) {
+			pawnMaterialValue[color] = MaterialKey.getCount(materialKey, color, Piece.PAWN) * PAWN;
+			materialValue[color] = MaterialKey.getCount(materialKey, color, Piece.KNIGHT) * KNIGHT
+					+ MaterialKey.getCount(materialKey, color, Piece.BISHOP) * BISHOP
+					+ MaterialKey.getCount(materialKey, color, Piece.ROOK) * ROOK
+					+ MaterialKey.getCount(materialKey, color, Piece.QUEEN) * QUEEN;
+			noQueen[color] = MaterialKey.getCount(materialKey, color, Piece.QUEEN) == 0;
 		}
 
 		int value = 0;
 		value += pawnMaterialValue[0] - pawnMaterialValue[1];
 		value += materialValue[0] - materialValue[1];
-		value += pcsqValue[0] - pcsqValue[1];
 
 		// Endgame
 		// 1. Both sides have no queens or
 		// 2. Every side which has a queen has additionally no other pieces or one minorpiece maximum.
 		if ((noQueen[0] || materialValue[0] <= QUEEN + BISHOP) && (noQueen[1] || materialValue[1] <= QUEEN + BISHOP)) {
-			value += pcsqEndgameValue[0] - pcsqEndgameValue[1];
+			value += e(board.pcsq[W] - board.pcsq[B]);
 		} else {
-			value += pcsqOpeningValue[0] - pcsqOpeningValue[1];
+			value += o(board.pcsq[W] - board.pcsq[B]);
 		}
 
 		return value;
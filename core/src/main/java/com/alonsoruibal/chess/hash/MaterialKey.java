@@ -0,0 +1,47 @@
+package com.alonsoruibal.chess.hash;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.Piece;
+
+/**
+ * Material signature of a board: the count of each piece type and color (kings excluded) packed in 4 bits.
+ * It is not a hash, the piece counts can be obtained from the key
+ */
+public class MaterialKey {
+
+	private static final int COUNT_BITS = 4;
+
+	/**
+	 * Value to add to the key for each piece, indexed by color and piece
+	 */
+	public static final long[][] increment = new long[2][Piece.KING + 1];
+
+	static {
+		for (int color = 0; color < 2; color++) {
+			for (int piece = Piece.PAWN; piece <= Piece.QUEEN; piece++) {
+				increment[color][piece] = 1L << (getShift(color, piece));
+			}
+		}
+	}
+
+	private static int getShift(int color, int piece) {
+		return ((piece - Piece.PAWN) * 2 + color) * COUNT_BITS;
+	}
+
+	public static int getCount(long materialKey, int color, int piece) {
+		return (int) (materialKey >>> getShift(color, piece)) & ((1 << COUNT_BITS) - 1);
+	}
+
+	public static long getKey(Board board) {
+		long key = 0;
+		for (int color = 0; color < 2; color++) {
+			long mines = color == 0 ? board.whites : board.blacks;
+			key += Long.bitCount(board.pawns & mines) * increment[color][Piece.PAWN] +
+					Long.bitCount(board.knights & mines) * increment[color][Piece.KNIGHT] +
+					Long.bitCount(board.bishops & mines) * increment[color][Piece.BISHOP] +
+					Long.bitCount(board.rooks & mines) * increment[color][Piece.ROOK] +
+					Long.bitCount(board.queens & mines) * increment[color][Piece.QUEEN];
+		}
+		return key;
+	}
+}
@@ -2,7 +2,7 @@ package com.alonsoruibal.chess.hash;
 
 
 import com.alonsoruibal.chess.Board;
-import com.alonsoruibal.chess.Square;
+import com.alonsoruibal.chess.Piece;
 import com.alonsoruibal.chess.bitboard.BitboardUtils;
 
 /* 
@@ -55,19 +55,66 @@ public class ZobristKey {
 		return 0;
 	}
 
+	/**
+	 * Key with only the pawns of both colors
+	 */
+	public static long getPawnKey(Board board) {
+		long key = 0;
+		long pawns = board.pawns;
+		while (pawns != 0) {
+			long square = Long.lowestOneBit(pawns);
+			int index = Long.numberOfTrailingZeros(square);
+			key ^= pawn[(square & board.whites) != 0 ? 0 : 1][index];
+			pawns ^= square;
+		}
+		return key;
+	}
+
 	public static long[] getKey(Board board) {
 		long[] key = {0, 0};
+		getKey(board, key);
+		return key;
+	}
+
+	public static long getKeyPieceIndex(int index, int piece, int color) {
+		switch (piece) {
+			case Piece.PAWN:
+				return pawn[color][index];
+			case Piece.KNIGHT:
+				return knight[color][index];
+			case Piece.BISHOP:
+				return bishop[color][index];
+			case Piece.ROOK:
+				return rook[color][index];
+			case Piece.QUEEN:
+				return queen[color][index];
+			case Piece.KING:
+				return king[color][index];
+		}
+		return 0;
+	}
+
+	/**
+	 * Computes the key in an existing array, without allocating memory
+	 */
+	public static void getKey(Board board, long[] key) {
+		key[0] = 0;
+		key[1] = 0;
 
-		long square = Square.H1;
-		byte index = 0;
 		int color;
-		while (square != 0) {
+		for (long squares = board.getAll(); squares != 0; squares &= squares - 1) {
+			long square = Long.lowestOneBit(squares);
 			color = (square & board.whites) != 0 ? 0 : 1;
-			key[color] ^= getKeyPieceIndex(index, board.getPieceAt(square));
-			square <<= 1;
-			index++;
+			key[color] ^= getKeyPieceIndex(Long.numberOfTrailingZeros(square), board.getPieceIntAt(square), color);
 		}
+		addFlagsKey(board, key);
+	}
 
+	/**
+	 * Xors to the key the castlings, the en passant and the turn
+	 */
+	public static void addFlagsKey(Board board, long[] key) {
+		int color;
 		if (board.getWhiteKingsideCastling()) key[0] ^= whiteKingSideCastling;
 		if (board.getWhiteQueensideCastling()) key[0] ^= whiteQueenSideCastling;
 		if (board.getBlackKingsideCastling()) key[1] ^= blackKingSideCastling;
@@ -81,6 +128,5 @@ public class ZobristKey {
 			key[1 - color] ^= passantFile[BitboardUtils.getFile(passant)];
 		}
 		if (board.getTurn()) key[0] ^= whiteMove;
-		return key;
 	}
 }
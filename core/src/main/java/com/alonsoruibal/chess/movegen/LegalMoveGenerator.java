@@ -1,24 +1,263 @@
 package com.alonsoruibal.chess.movegen;
 
 import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.Color;
 import com.alonsoruibal.chess.Move;
+import com.alonsoruibal.chess.Piece;
+import com.alonsoruibal.chess.bitboard.AttacksInfo;
+import com.alonsoruibal.chess.bitboard.BitboardAttacks;
+import com.alonsoruibal.chess.bitboard.BitboardUtils;
 
-public class LegalMoveGenerator extends MagicMoveGenerator {
+/**
+ * Generates only LEGAL moves without doing them: the pinned pieces move only along the pin ray,
+ * in check it only generates the king moves, the captures of the piece giving check and the interposes,
+ * and the check flag is set detecting the direct and the discovered checks.
+ * The moves are generated in the same order as the MagicMoveGenerator.
+ */
+public class LegalMoveGenerator implements MoveGenerator {
+
+	private int[] moves;
+	private int moveIndex;
+	private Board board;
+	private long all;
+	private long mines;
+	private long others;
+
+	private final AttacksInfo ai = new AttacksInfo();
+
+	public int generateMoves(Board board, int[] moves, int startIndex) {
+		this.board = board;
+		this.moves = moves;
+		ai.build(board);
+
+		moveIndex = startIndex;
+		all = board.getAll();
+		mines = board.getMines();
+		others = board.getOthers();
+
+		boolean turn = board.getTurn();
+		int us = turn ? Color.W : Color.B;
+		int them = turn ? Color.B : Color.W;
+		long passant = board.getPassantSquare();
+
+		// Destiny squares of the pieces other than the king: in check they must capture the piece giving check or interpose
+		long targets = ~mines;
+		if (ai.piecesGivingCheck != 0) {
+			targets = Long.bitCount(ai.piecesGivingCheck) == 1 ? ai.piecesGivingCheck | ai.interposeCheckSquares : 0;
+			// The en passant capture is only a valid evasion if it captures the pawn giving check or it interposes
+			if ((passant & ai.interposeCheckSquares) == 0 && (turn ? ai.piecesGivingCheck << 8 : ai.piecesGivingCheck >>> 8) != passant) {
+				passant = 0;
+			}
+		}
+
+		long pieces = mines;
+		while (pieces != 0) {
+			int index = Long.numberOfTrailingZeros(pieces);
+			long square = pieces & -pieces;
+			pieces &= pieces - 1;
+
+			if ((square & board.rooks) != 0) { // Rook
+				generateMovesFromAttacks(Piece.ROOK, index, square, ai.attacksFromSquare[index] & targets);
+			} else if ((square & board.bishops) != 0) { // Bishop
+				generateMovesFromAttacks(Piece.BISHOP, index, square, ai.attacksFromSquare[index] & targets);
+			} else if ((square & board.queens) != 0) { // Queen
+				generateMovesFromAttacks(Piece.QUEEN, index, square, ai.attacksFromSquare[index] & targets);
+			} else if ((square & board.kings) != 0) { // King
+				generateMovesFromAttacks(Piece.KING, index, square, ai.attacksFromSquare[index] & ~mines & ~ai.attackedSquaresAlsoPinned[them]);
+			} else if ((square & board.knights) != 0) { // Knight
+				generateMovesFromAttacks(Piece.KNIGHT, index, square, ai.attacksFromSquare[index] & targets);
+			} else { // Pawns
+				long push = (turn ? square << 8 : square >>> 8) & ~all;
+				long doublePush = (square & (turn ? BitboardUtils.b2_d : BitboardUtils.b2_u)) != 0 ? (turn ? push << 8 : push >>> 8) & ~all : 0;
+				if ((ai.pinnedPieces & square) != 0) {
+					push &= ai.pinnedMobility[index];
+					doublePush &= ai.pinnedMobility[index];
+				}
+				generatePawnMoves(index, square, push & targets, 0);
+				generatePawnMoves(index, square, doublePush & targets, 0);
+				generatePawnMoves(index, square, ai.attacksFromSquare[index] & ((others & targets) | passant), passant);
+			}
+		}
+
+		// Castling: disabled when in check or king route attacked
+		if (ai.piecesGivingCheck == 0) {
+			long kingCastlingDestination = board.canCastleKingSide(us, ai);
+			if (kingCastlingDestination != 0) {
+				addMove(Piece.KING, ai.kingIndex[us], board.kings & mines, kingCastlingDestination, false, Move.TYPE_KINGSIDE_CASTLING);
+			}
+			long queenCastlingDestination = board.canCastleQueenSide(us, ai);
+			if (queenCastlingDestination != 0) {
+				addMove(Piece.KING, ai.kingIndex[us], board.kings & mines, queenCastlingDestination, false, Move.TYPE_QUEENSIDE_CASTLING);
+			}
+		}
+
+		this.board = null;
+		this.moves = null;
+		return moveIndex;
+	}
 
 	/**
-	 * Get only LEGAL moves testing with doMove
-	 * The moves are returned with the check flag set
+	 * Generates moves from an attack mask
 	 */
-	@Override
-	public int generateMoves(Board board, int[] moves, int index) {
-		int lastIndex = super.generateMoves(board, moves, index);
-		int j = index;
-		for (int i = 0; i < lastIndex; i++) {
-			if (board.doMove(moves[i], true, false)) {
-				moves[j++] = board.getCheck() ? moves[i] | Move.CHECK_MASK : moves[i];
-				board.undoMove();
+	private void generateMovesFromAttacks(int pieceMoved, int fromIndex, long from, long attacks) {
+		while (attacks != 0) {
+			long to = attacks & -attacks;
+			addMove(pieceMoved, fromIndex, from, to, (to & others) != 0, 0);
+			attacks ^= to;
+		}
+	}
+
+	private void generatePawnMoves(int fromIndex, long from, long attacks, long passant) {
+		while (attacks != 0) {
+			long to = attacks & -attacks;
+			boolean capture = (to & others) != 0;
+			if ((to & passant) != 0) {
+				addMove(Piece.PAWN, fromIndex, from, to, true, Move.TYPE_PASSANT);
+			} else if ((to & (BitboardUtils.b_u | BitboardUtils.b_d)) != 0) {
+				addMove(Piece.PAWN, fromIndex, from, to, capture, Move.TYPE_PROMOTION_QUEEN);
+				addMove(Piece.PAWN, fromIndex, from, to, capture, Move.TYPE_PROMOTION_KNIGHT);
+				addMove(Piece.PAWN, fromIndex, from, to, capture, Move.TYPE_PROMOTION_ROOK);
+				addMove(Piece.PAWN, fromIndex, from, to, capture, Move.TYPE_PROMOTION_BISHOP);
+			} else {
+				addMove(Piece.PAWN, fromIndex, from, to, capture, 0);
 			}
+			attacks ^= to;
+		}
+	}
+
+	private void addMove(int pieceMoved, int fromIndex, long from, long to, boolean capture, int moveType) {
+		int move = genLegalMove(board, ai, pieceMoved, fromIndex, from, to, capture, moveType);
+		if (move != Move.NONE) {
+			moves[moveIndex++] = move;
 		}
-		return j;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Verifies the legality of a move and sets the check flag. The destiny of the move must be in the attacks
+	 * of the AttacksInfo, that already exclude the moves of the pinned pieces leaving the pin ray, and it must be
+	 * a check evasion if the king is in check. It only verifies the en passant captures, the king moves and the
+	 * castlings.
+	 *
+	 * @return the move or Move.NONE if it is not legal
+	 */
+	public static int genLegalMove(Board board, AttacksInfo ai, int pieceMoved, int fromIndex, long from, long to, boolean capture, int moveType) {
+		BitboardAttacks bbAttacks = BitboardAttacks.getInstance();
+		boolean turn = board.getTurn();
+		int us = turn ? Color.W : Color.B;
+		int them = turn ? Color.B : Color.W;
+		long all = board.getAll();
+		long mines = board.getMines();
+		int toIndex = Long.numberOfTrailingZeros(to);
+
+		//
+		// Verify check and legality
+		//
+		boolean check = false;
+		int newMyKingIndex;
+		long rookSlidersAfterMove, allAfterMove, minesAfterMove;
+		long bishopSlidersAfterMove = (board.bishops | board.queens) & ~from & ~to;
+		long squaresForDiscovery = from;
+
+		if (moveType == Move.TYPE_KINGSIDE_CASTLING || moveType == Move.TYPE_QUEENSIDE_CASTLING) {
+			// {White Kingside, White Queenside, Black Kingside, Black Queenside}
+			int j = (turn ? 0 : 2) + (moveType == Move.TYPE_QUEENSIDE_CASTLING ? 1 : 0);
+
+			newMyKingIndex = Board.CASTLING_KING_DESTINY_INDEX[j];
+			// Castling has a special "to" in Chess960 where the destiny square is the rook
+			long kingTo = Board.CASTLING_KING_DESTINY_SQUARE[j];
+			long rookTo = Board.CASTLING_ROOK_DESTINY_SQUARE[j];
+			long rookFrom = board.castlingRooks[j];
+			// In Chess960 the king or the rook may not move, or the king may go to the rook square
+			squaresForDiscovery |= rookFrom;
+
+			rookSlidersAfterMove = (board.rooks & ~rookFrom) | rookTo | board.queens;
+			allAfterMove = (all & ~from & ~rookFrom) | kingTo | rookTo;
+			minesAfterMove = (mines & ~from & ~rookFrom) | kingTo | rookTo;
+
+			// In Chess960 the castling rook may be hiding a rank attack to the king destiny
+			if (board.chess960 && (bbAttacks.getRookAttacks(newMyKingIndex, allAfterMove) & rookSlidersAfterMove & ~minesAfterMove) != 0) {
+				return Move.NONE;
+			}
+
+			// Direct check by rook, the king may be leaving the rook path to the other king
+			check = (bbAttacks.getRookAttacks(ai.kingIndex[them], allAfterMove) & rookTo) != 0;
+		} else {
+			if (pieceMoved == Piece.KING) {
+				newMyKingIndex = toIndex;
+			} else {
+				newMyKingIndex = ai.kingIndex[us];
+			}
+
+			rookSlidersAfterMove = (board.rooks | board.queens) & ~from & ~to;
+			allAfterMove = (all | to) & ~from;
+			minesAfterMove = (mines | to) & ~from;
+
+			if (moveType == Move.TYPE_PASSANT) {
+				squaresForDiscovery |= (turn ? to >>> 8 : to << 8);
+				allAfterMove &= ~squaresForDiscovery;
+			}
+
+			// Direct checks
+			if (pieceMoved == Piece.KNIGHT || moveType == Move.TYPE_PROMOTION_KNIGHT) {
+				check = (to & bbAttacks.knight[ai.kingIndex[them]]) != 0;
+			} else if (pieceMoved == Piece.BISHOP || moveType == Move.TYPE_PROMOTION_BISHOP) {
+				check = (to & ai.bishopAttacksKing[them]) != 0;
+				bishopSlidersAfterMove |= to;
+			} else if (pieceMoved == Piece.ROOK || moveType == Move.TYPE_PROMOTION_ROOK) {
+				check = (to & ai.rookAttacksKing[them]) != 0;
+				rookSlidersAfterMove |= to;
+			} else if (pieceMoved == Piece.QUEEN || moveType == Move.TYPE_PROMOTION_QUEEN) {
+				check = (to & (ai.bishopAttacksKing[them] | ai.rookAttacksKing[them])) != 0;
+				bishopSlidersAfterMove |= to;
+				rookSlidersAfterMove |= to;
+			} else if (pieceMoved == Piece.PAWN) {
+				check = (to & bbAttacks.pawn[them][ai.kingIndex[them]]) != 0;
+			}
+		}
+
+		//  As AttacksInfo already excludes pinned pieces, we only must take care from en passant captures
+		// (they can remove two pieces from 4th rank discovering a check) and king moves when the king is
+		//  in check by a slider
+		if ((squaresForDiscovery & ai.mayPin[them]) != 0 && (moveType == Move.TYPE_PASSANT || ((ai.piecesGivingCheck & (board.rooks | board.bishops | board.queens)) != 0 && pieceMoved == Piece.KING))) {
+			// Candidates to leave the king in check after moving
+			if (((squaresForDiscovery & ai.bishopAttacksKing[us]) != 0) ||
+					((ai.piecesGivingCheck & (board.bishops | board.queens)) != 0 && pieceMoved == Piece.KING)) { // Moving the king when the king is in check by a slider
+				// Regenerate bishop attacks to my king
+				long newBishopAttacks = bbAttacks.getBishopAttacks(newMyKingIndex, allAfterMove);
+				if ((newBishopAttacks & bishopSlidersAfterMove & ~minesAfterMove) != 0) {
+					return Move.NONE; // Illegal move
+				}
+			}
+			if ((squaresForDiscovery & ai.rookAttacksKing[us]) != 0 ||
+					((ai.piecesGivingCheck & (board.rooks | board.queens)) != 0 && pieceMoved == Piece.KING)) {
+				// Regenerate rook attacks to my king
+				long newRookAttacks = bbAttacks.getRookAttacks(newMyKingIndex, allAfterMove);
+				if ((newRookAttacks & rookSlidersAfterMove & ~minesAfterMove) != 0) {
+					return Move.NONE; // Illegal move
+				}
+			}
+		}
+
+		// After a promotion to queen or rook there are new sliders transversing the origin square, so mayPin is not valid
+		if (!check && ((squaresForDiscovery & ai.mayPin[us]) != 0 || moveType == Move.TYPE_PROMOTION_QUEEN || moveType == Move.TYPE_PROMOTION_ROOK || moveType == Move.TYPE_PROMOTION_BISHOP)) {
+			// Discovered checks
+			if ((squaresForDiscovery & ai.bishopAttacksKing[them]) != 0) {
+				// Regenerate bishop attacks to the other king
+				long newBishopAttacks = bbAttacks.getBishopAttacks(ai.kingIndex[them], allAfterMove);
+				if ((newBishopAttacks & bishopSlidersAfterMove & minesAfterMove) != 0) {
+					check = true;
+				}
+			}
+			if ((squaresForDiscovery & ai.rookAttacksKing[them]) != 0) {
+				// Regenerate rook attacks to the other king
+				long newRookAttacks = bbAttacks.getRookAttacks(ai.kingIndex[them], allAfterMove);
+				if ((newRookAttacks & rookSlidersAfterMove & minesAfterMove) != 0) {
+					check = true;
+				}
+			}
+		}
+
+		// Now, with legality verified and the check flag, generate the move
+		return Move.genMove(fromIndex, toIndex, pieceMoved, capture, check, moveType);
+	}
+}
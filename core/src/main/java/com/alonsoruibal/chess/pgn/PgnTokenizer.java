@@ -0,0 +1,333 @@
+package com.alonsoruibal.chess.pgn;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull tokenizer for PGN streams with any number of games.
+ * <p>
+ * Each call to next() returns the type of the next token, its content is available with the getters until the next call.
+ * The text is kept in reused buffers, so the tokenizer does not allocate memory per token and can process huge archives.
+ * The movetext tokens are classified like the PgnParser did: moves (stripping the move numbers and the annotations),
+ * glyphs and results.
+ *
+ * @author rui
+ */
+public class PgnTokenizer {
+	public static final int END = 0; // End of the stream
+	public static final int HEADER = 1; // getHeaderName() and getText() with the value
+	public static final int MOVE = 2; // getText() with the SAN, getMoveNumber() and getAnnotation() may be null
+	public static final int GLYPH = 3; // getText() with the glyph, i.e. "$1"
+	public static final int COMMENT = 4; // getText() with the comment without the braces
+	public static final int VARIATION_START = 5;
+	public static final int VARIATION_END = 6;
+	public static final int RESULT = 7; // getText() with the result
+	public static final int GAME_END = 8; // Before the headers of the next game or at the end of the stream
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Reader reader;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position;
+	private int limit;
+
+	private final StringBuilder headerName = new StringBuilder();
+	private final StringBuilder text = new StringBuilder();
+	private StringBuilder moveNumber = new StringBuilder();
+	// The move number is kept until the next move
+	private StringBuilder pendingMoveNumber = new StringBuilder();
+	private final StringBuilder annotation = new StringBuilder();
+	private boolean hasMoveNumber;
+	private boolean hasPendingMoveNumber;
+	private boolean hasAnnotation;
+
+	private boolean lineStart = true;
+	private boolean inGame = false;
+	private boolean inMovetext = false;
+
+	public PgnTokenizer(Reader reader) {
+		this.reader = reader;
+	}
+
+	private int read() throws IOException {
+		if (position == limit) {
+			limit = reader.read(buffer, 0, BUFFER_SIZE);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position++];
+	}
+
+	/**
+	 * Only after a read() returning a char
+	 */
+	private void unread() {
+		position--;
+	}
+
+	private static boolean isWhitespace(int c) {
+		return c <= ' ' || c == '\uFEFF';
+	}
+
+	private static boolean isDelimiter(int c) {
+		return c == -1 || isWhitespace(c) || c == '{' || c == '(' || c == ')' || c == ';';
+	}
+
+	static boolean isAlphaNumeric(char c) {
+		return (c >= 'A' && c <= 'Z')
+				|| (c >= 'a' && c <= 'z')
+				|| (c >= '1' && c <= '9');
+	}
+
+	public int next() throws IOException {
+		while (true) {
+			int c = read();
+
+			if (c == -1) {
+				if (inGame) {
+					inGame = false;
+					inMovetext = false;
+					return GAME_END;
+				}
+				return END;
+			} else if (c == '\n') {
+				lineStart = true;
+				continue;
+			} else if (isWhitespace(c)) {
+				continue;
+			} else if (lineStart && c == '%') {
+				// Escape mechanism, the line is ignored
+				skipLine();
+				continue;
+			} else if (lineStart && c == '[') {
+				if (inMovetext) {
+					unread();
+					inGame = false;
+					inMovetext = false;
+					return GAME_END;
+				}
+				inGame = true;
+				readHeader();
+				return HEADER;
+			}
+
+			lineStart = false;
+			inGame = true;
+			inMovetext = true;
+
+			switch (c) {
+				case '{':
+					readComment();
+					return COMMENT;
+				case ';':
+					text.setLength(0);
+					while ((c = read()) != -1 && c != '\n') {
+						if (c != '\r') {
+							text.append((char) c);
+						}
+					}
+					lineStart = true;
+					return COMMENT;
+				case '(':
+					return VARIATION_START;
+				case ')':
+					return VARIATION_END;
+			}
+
+			text.setLength(0);
+			do {
+				text.append((char) c);
+			} while (!isDelimiter(c = read()));
+			if (c != -1) {
+				unread();
+			}
+
+			int type = classifySymbol();
+			if (type != -1) {
+				return type;
+			}
+		}
+	}
+
+	/**
+	 * Skips the rest of the movetext scanning the raw chars until the headers of the next game, without building the
+	 * tokens. The next call to next() returns GAME_END
+	 */
+	public void skipToGameEnd() throws IOException {
+		int c;
+		while ((c = read()) != -1) {
+			if (c == '\n') {
+				lineStart = true;
+			} else if (isWhitespace(c)) {
+				continue;
+			} else if (lineStart && c == '%') {
+				skipLine();
+			} else if (lineStart && c == '[') {
+				unread();
+				inGame = true;
+				inMovetext = true;
+				return;
+			} else {
+				lineStart = false;
+				if (c == '{') {
+					// The comments may contain line starts with '['
+					while ((c = read()) != -1 && c != '}') {
+					}
+				} else if (c == ';') {
+					skipLine();
+				}
+			}
+		}
+		inGame = true;
+	}
+
+	private void skipLine() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c != -1 && c != '\n');
+		lineStart = true;
+	}
+
+	/**
+	 * Reads the rest of the header line: the name is before the first quote and the value between the first and the last quotes
+	 */
+	private void readHeader() throws IOException {
+		text.setLength(0);
+		int c;
+		while ((c = read()) != -1 && c != '\n') {
+			if (c != '\r') {
+				text.append((char) c);
+			}
+		}
+		lineStart = true;
+
+		headerName.setLength(0);
+		int firstQuote = text.indexOf("\"");
+		int lastQuote = text.lastIndexOf("\"");
+		if (firstQuote < 0) {
+			headerName.append(text.toString().trim());
+			text.setLength(0);
+			return;
+		}
+		headerName.append(text, 0, firstQuote);
+		while (headerName.length() > 0 && isWhitespace(headerName.charAt(headerName.length() - 1))) {
+			headerName.setLength(headerName.length() - 1);
+		}
+		while (headerName.length() > 0 && isWhitespace(headerName.charAt(0))) {
+			headerName.deleteCharAt(0);
+		}
+		text.setLength(lastQuote > firstQuote ? lastQuote : firstQuote + 1);
+		text.delete(0, firstQuote + 1);
+	}
+
+	/**
+	 * The comment may span many lines, the line ends are replaced by spaces
+	 */
+	private void readComment() throws IOException {
+		text.setLength(0);
+		int c;
+		while ((c = read()) != -1 && c != '}') {
+			if (c == '\n') {
+				text.append(' ');
+			} else if (c != '\r') {
+				text.append((char) c);
+			}
+		}
+	}
+
+	/**
+	 * @return the type of the symbol in the text or -1 if it is only a move number
+	 */
+	private int classifySymbol() {
+		if (isResult()) {
+			return RESULT;
+		}
+		if (text.length() <= 1 || !isAlphaNumeric(text.charAt(0))) {
+			return GLYPH;
+		}
+
+		// Strip the move number (with one or more dots) from the beginning of the symbol
+		if (text.charAt(0) >= '1' && text.charAt(0) <= '9') {
+			int lastDotIndex = text.lastIndexOf(".");
+			pendingMoveNumber.setLength(0);
+			pendingMoveNumber.append(text, 0, lastDotIndex + 1);
+			hasPendingMoveNumber = true;
+			text.delete(0, lastDotIndex + 1);
+		}
+
+		// Search annotations at the end of the move
+		int lastIndex;
+		for (lastIndex = text.length() - 1; lastIndex >= 0; lastIndex--) {
+			if (isAlphaNumeric(text.charAt(lastIndex))) {
+				break;
+			}
+		}
+		annotation.setLength(0);
+		hasAnnotation = lastIndex < text.length() - 1;
+		if (hasAnnotation) {
+			annotation.append(text, lastIndex + 1, text.length());
+			text.setLength(lastIndex + 1);
+		}
+
+		if (text.length() == 0) {
+			return -1;
+		}
+
+		// The move takes the pending move number
+		StringBuilder swap = moveNumber;
+		moveNumber = pendingMoveNumber;
+		pendingMoveNumber = swap;
+		hasMoveNumber = hasPendingMoveNumber;
+		hasPendingMoveNumber = false;
+		return MOVE;
+	}
+
+	private boolean isResult() {
+		return contentEquals(text, "1-0")
+				|| contentEquals(text, "0-1")
+				|| contentEquals(text, "1/2-1/2")
+				|| contentEquals(text, "½-½")
+				|| contentEquals(text, "*");
+	}
+
+	private static boolean contentEquals(CharSequence cs, String s) {
+		if (cs.length() != s.length()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (cs.charAt(i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The header value, the move in SAN, the glyph, the comment or the result
+	 */
+	public CharSequence getText() {
+		return text;
+	}
+
+	public CharSequence getHeaderName() {
+		return headerName;
+	}
+
+	/**
+	 * The move number with the dots preceding the move or null
+	 */
+	public CharSequence getMoveNumber() {
+		return hasMoveNumber ? moveNumber : null;
+	}
+
+	/**
+	 * The annotation after the move (i.e. "!?" or "+") or null
+	 */
+	public CharSequence getAnnotation() {
+		return hasAnnotation ? annotation : null;
+	}
+}
@@ -5,8 +5,8 @@ import com.alonsoruibal.chess.Color;
 import com.alonsoruibal.chess.Move;
 import com.alonsoruibal.chess.Piece;
 import com.alonsoruibal.chess.bitboard.AttacksInfo;
-import com.alonsoruibal.chess.bitboard.BitboardAttacks;
 import com.alonsoruibal.chess.bitboard.BitboardUtils;
+import com.alonsoruibal.chess.movegen.LegalMoveGenerator;
 
 /**
  * The Move Iterator generates moves as needed. It is separated into phases.
@@ -26,11 +26,11 @@ public class MoveIterator {
 	private static final int PHASE_GEN_CAPTURES = 1;
 	private static final int PHASE_GOOD_CAPTURES_AND_PROMOS = 2;
 	private static final int PHASE_EQUAL_CAPTURES = 3;
-	private static final int PHASE_GEN_NON_CAPTURES = 4;
-	private static final int PHASE_KILLER1 = 5;
-	private static final int PHASE_KILLER2 = 6;
-	private static final int PHASE_KILLER3 = 7;
-	private static final int PHASE_KILLER4 = 8;
+	private static final int PHASE_KILLER1 = 4;
+	private static final int PHASE_KILLER2 = 5;
+	private static final int PHASE_KILLER3 = 6;
+	private static final int PHASE_KILLER4 = 7;
+	private static final int PHASE_GEN_NON_CAPTURES = 8;
 	private static final int PHASE_NON_CAPTURES = 9;
 	private static final int PHASE_BAD_CAPTURES = 10;
 	private static final int PHASE_END = 11;
@@ -58,10 +58,6 @@ public class MoveIterator {
 	private int killer2;
 	private int killer3;
 	private int killer4;
-	private boolean foundKiller1;
-	private boolean foundKiller2;
-	private boolean foundKiller3;
-	private boolean foundKiller4;
 
 	public boolean checkEvasion;
 
@@ -92,22 +88,17 @@ public class MoveIterator {
 	private final int depth;
 	private int phase;
 
-	private BitboardAttacks bbAttacks;
-
 	public MoveIterator(SearchEngine searchEngine, AttacksInfo ai, int depth) {
 		this.board = searchEngine.getBoard();
 		this.searchEngine = searchEngine;
 
 		this.ai = ai;
 		this.depth = depth;
-
-		bbAttacks = BitboardAttacks.getInstance();
 	}
 
 	public void destroy() {
 		board = null;
 		searchEngine = null;
-		bbAttacks = null;
 	}
 
 	public int getLastMoveSee() {
@@ -147,11 +138,6 @@ public class MoveIterator {
 		killer3 = depth < 2 ? Move.NONE : searchEngine.nodes[depth - 2].killerMove1;
 		killer4 = depth < 2 ? Move.NONE : searchEngine.nodes[depth - 2].killerMove2;
 
-		foundKiller1 = false;
-		foundKiller2 = false;
-		foundKiller3 = false;
-		foundKiller4 = false;
-
 		goodCaptureIndex = 0;
 		badCaptureIndex = 0;
 		equalCaptureIndex = 0;
@@ -169,7 +155,11 @@ public class MoveIterator {
 	public int next() {
 		switch (phase) {
 			case PHASE_TT:
+				initMoveGen();
 				phase++;
+				if (ttMove != Move.NONE) {
+					ttMove = getValidTTMove(ttMove);
+				}
 				if (ttMove != Move.NONE) {
 					move = ttMove;
 					if (checkEvasion //
@@ -182,7 +172,6 @@ public class MoveIterator {
 				}
 
 			case PHASE_GEN_CAPTURES:
-				initMoveGen();
 				if (checkEvasion) {
 					generateCheckEvasionCaptures();
 				} else {
@@ -204,22 +193,14 @@ public class MoveIterator {
 				}
 				phase++;
 
-			case PHASE_GEN_NON_CAPTURES:
-				if (checkEvasion) {
-					generateCheckEvasionsNonCaptures();
-				} else {
-					if (movesToGenerate == GENERATE_CAPTURES_PROMOS) {
-						phase = PHASE_END;
-						return Move.NONE;
-					}
-					generateNonCaptures();
-				}
-				phase++;
-
 			case PHASE_KILLER1:
+				if (!checkEvasion && movesToGenerate == GENERATE_CAPTURES_PROMOS) {
+					phase = PHASE_END;
+					return Move.NONE;
+				}
 				phase++;
 				lastMoveIsKiller = true;
-				if (foundKiller1) {
+				if (isValidKiller(killer1)) {
 					move = killer1;
 					lastMoveSee = SEE_NOT_CALCULATED;
 					return move;
@@ -227,7 +208,7 @@ public class MoveIterator {
 
 			case PHASE_KILLER2:
 				phase++;
-				if (foundKiller2) {
+				if (killer2 != killer1 && isValidKiller(killer2)) {
 					move = killer2;
 					lastMoveSee = SEE_NOT_CALCULATED;
 					return move;
@@ -235,7 +216,7 @@ public class MoveIterator {
 
 			case PHASE_KILLER3:
 				phase++;
-				if (foundKiller3) {
+				if (killer3 != killer1 && killer3 != killer2 && isValidKiller(killer3)) {
 					move = killer3;
 					lastMoveSee = SEE_NOT_CALCULATED;
 					return move;
@@ -243,14 +224,22 @@ public class MoveIterator {
 
 			case PHASE_KILLER4:
 				phase++;
-				if (foundKiller4) {
+				if (killer4 != killer1 && killer4 != killer2 && killer4 != killer3 && isValidKiller(killer4)) {
 					move = killer4;
 					lastMoveSee = SEE_NOT_CALCULATED;
 					return move;
 				}
 
-			case PHASE_NON_CAPTURES:
+			case PHASE_GEN_NON_CAPTURES:
 				lastMoveIsKiller = false;
+				if (checkEvasion) {
+					generateCheckEvasionsNonCaptures();
+				} else {
+					generateNonCaptures();
+				}
+				phase++;
+
+			case PHASE_NON_CAPTURES:
 				move = pickMoveFromArray(nonCaptureIndex, nonCaptures, nonCapturesScores, nonCapturesSee);
 				if (move != Move.NONE) {
 					return move;
@@ -518,137 +507,51 @@ public class MoveIterator {
 		}
 	}
 
-	private void addMove(int pieceMoved, int fromIndex, long from, long to, boolean capture, int moveType) {
-		int toIndex = Long.numberOfTrailingZeros(to);
-
-		//
-		// Verify check and legality
-		//
-		boolean check = false;
-		int newMyKingIndex;
-		long rookSlidersAfterMove, allAfterMove, minesAfterMove;
-		long bishopSlidersAfterMove = (board.bishops | board.queens) & ~from & ~to;
-		long squaresForDiscovery = from;
-
-		if (moveType == Move.TYPE_KINGSIDE_CASTLING || moveType == Move.TYPE_QUEENSIDE_CASTLING) {
-			// {White Kingside, White Queenside, Black Kingside, Black Queenside}
-			int j = (turn ? 0 : 2) + (moveType == Move.TYPE_QUEENSIDE_CASTLING ? 1 : 0);
-
-			newMyKingIndex = Board.CASTLING_KING_DESTINY_INDEX[j];
-			// Castling has a special "to" in Chess960 where the destiny square is the rook
-			long kingTo = Board.CASTLING_KING_DESTINY_SQUARE[j];
-			long rookTo = Board.CASTLING_ROOK_DESTINY_SQUARE[j];
-			long rookMoveMask = board.castlingRooks[j] ^ rookTo;
-
-			rookSlidersAfterMove = (board.rooks ^ rookMoveMask) | board.queens;
-			allAfterMove = ((all ^ rookMoveMask) | kingTo) & ~from;
-			minesAfterMove = ((mines ^ rookMoveMask) | kingTo) & ~from;
-
-			// Direct check by rook
-			check = (rookTo & ai.rookAttacksKing[them]) != 0;
-		} else {
-			if (pieceMoved == Piece.KING) {
-				newMyKingIndex = toIndex;
-			} else {
-				newMyKingIndex = ai.kingIndex[us];
-			}
-
-			rookSlidersAfterMove = (board.rooks | board.queens) & ~from & ~to;
-			allAfterMove = (all | to) & ~from;
-			minesAfterMove = (mines | to) & ~from;
-			squaresForDiscovery = from;
-
-			if (moveType == Move.TYPE_PASSANT) {
-				squaresForDiscovery |= (turn ? to >>> 8 : to << 8);
-				allAfterMove &= ~squaresForDiscovery;
-			}
-
-			// Direct checks
-			if (pieceMoved == Piece.KNIGHT || moveType == Move.TYPE_PROMOTION_KNIGHT) {
-				check = (to & bbAttacks.knight[ai.kingIndex[them]]) != 0;
-			} else if (pieceMoved == Piece.BISHOP || moveType == Move.TYPE_PROMOTION_BISHOP) {
-				check = (to & ai.bishopAttacksKing[them]) != 0;
-				bishopSlidersAfterMove |= to;
-			} else if (pieceMoved == Piece.ROOK || moveType == Move.TYPE_PROMOTION_ROOK) {
-				check = (to & ai.rookAttacksKing[them]) != 0;
-				rookSlidersAfterMove |= to;
-			} else if (pieceMoved == Piece.QUEEN || moveType == Move.TYPE_PROMOTION_QUEEN) {
-				check = (to & (ai.bishopAttacksKing[them] | ai.rookAttacksKing[them])) != 0;
-				bishopSlidersAfterMove |= to;
-				rookSlidersAfterMove |= to;
-			} else if (pieceMoved == Piece.PAWN) {
-				check = (to & bbAttacks.pawn[them][ai.kingIndex[them]]) != 0;
-			}
-		}
+	/**
+	 * The transposition table verifies only part of the key, so the TT move may be from other position.
+	 * Verifies that the move is legal in this board
+	 *
+	 * @return the move with the check flag recalculated or Move.NONE if it is not valid
+	 */
+	private int getValidTTMove(int move) {
+		return board.isPseudoLegal(move) ? board.getLegalMove(move, ai) : Move.NONE;
+	}
 
-		//  As AttacksInfo already excludes pinned pieces, we only must take care from en passant captures
-		// (they can remove two pieces from 4th rank discovering a check) and king moves when the king is
-		//  in check by a slider
-		if ((squaresForDiscovery & ai.mayPin[them]) != 0 && (moveType == Move.TYPE_PASSANT || ((ai.piecesGivingCheck & (board.rooks | board.bishops | board.queens)) != 0 && pieceMoved == Piece.KING))) {
-			// Candidates to leave the king in check after moving
-			if (((squaresForDiscovery & ai.bishopAttacksKing[us]) != 0) ||
-					((ai.piecesGivingCheck & (board.bishops | board.queens)) != 0 && pieceMoved == Piece.KING)) { // Moving the king when the king is in check by a slider
-				// Regenerate bishop attacks to my king
-				long newBishopAttacks = bbAttacks.getBishopAttacks(newMyKingIndex, allAfterMove);
-				if ((newBishopAttacks & bishopSlidersAfterMove & ~minesAfterMove) != 0) {
-					return; // Illegal move
-				}
-			}
-			if ((squaresForDiscovery & ai.rookAttacksKing[us]) != 0 ||
-					((ai.piecesGivingCheck & (board.rooks | board.queens)) != 0 && pieceMoved == Piece.KING)) {
-				// Regenerate rook attacks to my king
-				long newRookAttacks = bbAttacks.getRookAttacks(newMyKingIndex, allAfterMove);
-				if ((newRookAttacks & rookSlidersAfterMove & ~minesAfterMove) != 0) {
-					return; // Illegal move
-				}
-			}
+	/**
+	 * The killers may be from other position: verifies them before generating the non captures,
+	 * so a killer causing a cutoff saves the generation. It must be exactly one of the moves that would be generated,
+	 * also with the same check flag.
+	 */
+	private boolean isValidKiller(int killer) {
+		if (killer == Move.NONE || killer == ttMove || Move.isCapture(killer)
+				|| !board.isPseudoLegal(killer) || board.getLegalMove(killer, ai) != killer) {
+			return false;
 		}
+		return checkEvasion || movesToGenerate != GENERATE_CAPTURES_PROMOS_CHECKS
+				|| Move.isCheck(killer) || Move.getMoveType(killer) == Move.TYPE_PROMOTION_QUEEN;
+	}
 
-		// After a promotion to queen or rook there are new sliders transversing the origin square, so mayPin is not valid
-		if (!check && ((squaresForDiscovery & ai.mayPin[us]) != 0 || moveType == Move.TYPE_PROMOTION_QUEEN || moveType == Move.TYPE_PROMOTION_ROOK || moveType == Move.TYPE_PROMOTION_BISHOP)) {
-			// Discovered checks
-			if ((squaresForDiscovery & ai.bishopAttacksKing[them]) != 0) {
-				// Regenerate bishop attacks to the other king
-				long newBishopAttacks = bbAttacks.getBishopAttacks(ai.kingIndex[them], allAfterMove);
-				if ((newBishopAttacks & bishopSlidersAfterMove & minesAfterMove) != 0) {
-					check = true;
-				}
-			}
-			if ((squaresForDiscovery & ai.rookAttacksKing[them]) != 0) {
-				// Regenerate rook attacks to the other king
-				long newRookAttacks = bbAttacks.getRookAttacks(ai.kingIndex[them], allAfterMove);
-				if ((newRookAttacks & rookSlidersAfterMove & minesAfterMove) != 0) {
-					check = true;
-				}
-			}
+	private void addMove(int pieceMoved, int fromIndex, long from, long to, boolean capture, int moveType) {
+		int move = genLegalMove(pieceMoved, fromIndex, from, to, capture, moveType);
+		if (move == Move.NONE) {
+			return;
 		}
+		boolean check = Move.isCheck(move);
 
 		// Generating checks, if the move is not a check, skip it
 		if (movesToGenerate == GENERATE_CAPTURES_PROMOS_CHECKS && !checkEvasion && !check && !capture && moveType != Move.TYPE_PROMOTION_QUEEN) {
 			return;
 		}
 
-		// Now, with legality verified and the check flag, generate the move
-		int move = Move.genMove(fromIndex, toIndex, pieceMoved, capture, check, moveType);
 		if (move == ttMove) {
 			return;
 		}
-		if (!capture) {
-			if (move == killer1) {
-				foundKiller1 = true;
-				return;
-			} else if (move == killer2) {
-				foundKiller2 = true;
-				return;
-			} else if (move == killer3) {
-				foundKiller3 = true;
-				return;
-			} else if (move == killer4) {
-				foundKiller4 = true;
-				return;
-			}
+		// The killers were already returned if they are valid in this board
+		if (!capture && (move == killer1 || move == killer2 || move == killer3 || move == killer4)) {
+			return;
 		}
 
+		int toIndex = Long.numberOfTrailingZeros(to);
 		int pieceCaptured = capture ? Move.getPieceCaptured(board, move) : 0;
 		int see = SEE_NOT_CALCULATED;
 
@@ -704,4 +607,13 @@ public class MoveIterator {
 			nonCaptureIndex++;
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Verifies the legality of the move and sets the check flag
+	 *
+	 * @return the move or Move.NONE if it is not legal
+	 */
+	private int genLegalMove(int pieceMoved, int fromIndex, long from, long to, boolean capture, int moveType) {
+		return LegalMoveGenerator.genLegalMove(board, ai, pieceMoved, fromIndex, from, to, capture, moveType);
+	}
+}
@@ -3,6 +3,7 @@ package com.alonsoruibal.chess.search;
 import com.alonsoruibal.chess.Move;
 import com.alonsoruibal.chess.bitboard.AttacksInfo;
 import com.alonsoruibal.chess.evaluation.Evaluator;
+import com.alonsoruibal.chess.tt.TTEntry;
 
 /**
  * Stores the elements to be kept in each node of the search tree
@@ -16,6 +17,8 @@ public class Node {
 	public int move;
 	// Transposition table move
 	public int ttMove;
+	// Result of the last transposition table probe in this node
+	public final TTEntry ttEntry = new TTEntry();
 
 	// Two killer move slots
 	public int killerMove1;
@@ -31,7 +34,8 @@ public class Node {
 	public Node(SearchEngine searchEngine, int distanceToInitialPly) {
 		this.distanceToInitialPly = distanceToInitialPly;
 
-		attacksInfo = new AttacksInfo();
+		// The attacks are updated from the parent node attacks
+		attacksInfo = new AttacksInfo(distanceToInitialPly > 0 ? searchEngine.nodes[distanceToInitialPly - 1].attacksInfo : null);
 		moveIterator = new MoveIterator(searchEngine, attacksInfo, distanceToInitialPly);
 
 		clear();
@@ -9,6 +9,7 @@ import com.alonsoruibal.chess.evaluation.Evaluator;
 import com.alonsoruibal.chess.evaluation.ExperimentalEvaluator;
 import com.alonsoruibal.chess.evaluation.SimplifiedEvaluator;
 import com.alonsoruibal.chess.log.Logger;
+import com.alonsoruibal.chess.tt.TTEntry;
 import com.alonsoruibal.chess.tt.TranspositionTable;
 
 import java.util.ArrayList;
@@ -67,11 +68,17 @@ public class SearchEngine implements Runnable {
 
 	private Config config;
 
-	// Think limits
-	private boolean stop = false;
-	private long thinkToTime = 0;
-	private int thinkToNodes = 0;
-	private int thinkToDepth = 0;
+	// Think limits, volatile because they are changed from other threads to stop the search
+	private volatile boolean stop = false;
+	private volatile long thinkToTime = 0;
+	private volatile int thinkToNodes = 0;
+	private volatile int thinkToDepth = 0;
+	// Polls the clock only every some nodes
+	private final TimeCheckScheduler timeCheck = new TimeCheckScheduler();
+
+	// Lazy SMP: the helpers (threadId > 0) share the transposition table of the main searcher (threadId = 0)
+	private final int threadId;
+	private final TranspositionTable sharedTT;
 
 	private final Board board;
 	private SearchObserver observer;
@@ -101,7 +108,16 @@ public class SearchEngine implements Runnable {
 	private final float[][] logMatrix;
 
 	public SearchEngine(Config config) {
+		this(config, 0, null);
+	}
+
+	/**
+	 * Creates a Lazy SMP helper searching in the same transposition table than the main searcher
+	 */
+	public SearchEngine(Config config, int threadId, TranspositionTable sharedTT) {
 		this.config = config;
+		this.threadId = threadId;
+		this.sharedTT = sharedTT;
 		random = new Random();
 		board = new Board();
 		history = new short[6][64];
@@ -143,8 +159,9 @@ public class SearchEngine implements Runnable {
 		} else if ("experimental".equals(evaluatorName)) {
 			evaluator = new ExperimentalEvaluator();
 		}
+		evaluator.installPcsqTable(board);
 
-		tt = new TranspositionTable(config.getTranspositionTableSize());
+		tt = sharedTT != null ? sharedTT : createTranspositionTable(config.getTranspositionTableSize());
 
 		initialized = true;
 		if (debug) {
@@ -152,10 +169,19 @@ public class SearchEngine implements Runnable {
 		}
 	}
 
+	/**
+	 * Java heap TT because GWT does not support direct buffers; overriden in SearchEngineThreaded
+	 */
+	protected TranspositionTable createTranspositionTable(int sizeMb) {
+		return new TranspositionTable(sizeMb);
+	}
+
 	public void clear() {
 		clearHistory();
-		// And transposition table
-		tt.clear();
+		// And transposition table, cleared only by its owner when it is shared with the helpers
+		if (sharedTT == null) {
+			tt.clear();
+		}
 		// And the killer moves stored in the nodes
 		for (int i = 0; i < MAX_DEPTH; i++) {
 			nodes[i].clear();
@@ -203,6 +229,14 @@ public class SearchEngine implements Runnable {
 		return nodeCount;
 	}
 
+	public int getThreadId() {
+		return threadId;
+	}
+
+	public boolean isHelper() {
+		return threadId != 0;
+	}
+
 	public Config getConfig() {
 		return config;
 	}
@@ -221,9 +255,9 @@ public class SearchEngine implements Runnable {
 	/**
 	 * Returns true if we can use the value stored on the TT to return from search
 	 */
-	private boolean canUseTT(int depthRemaining, int alpha, int beta) {
-		if (tt.getDepthAnalyzed() >= depthRemaining) {
-			switch (tt.getNodeType()) {
+	private boolean canUseTT(TTEntry ttEntry, int depthRemaining, int alpha, int beta) {
+		if (ttEntry.getDepthAnalyzed() >= depthRemaining) {
+			switch (ttEntry.getNodeType()) {
 				case TranspositionTable.TYPE_EXACT_SCORE:
 					if (SearchStats.DEBUG) {
 						SearchStats.ttPvHit++;
@@ -233,7 +267,7 @@ public class SearchEngine implements Runnable {
 					if (SearchStats.DEBUG) {
 						SearchStats.ttLBHit++;
 					}
-					if (tt.getScore() <= alpha) {
+					if (ttEntry.getScore() <= alpha) {
 						return true;
 					}
 					break;
@@ -241,7 +275,7 @@ public class SearchEngine implements Runnable {
 					if (SearchStats.DEBUG) {
 						SearchStats.ttUBHit++;
 					}
-					if (tt.getScore() >= beta) {
+					if (ttEntry.getScore() >= beta) {
 						return true;
 					}
 					break;
@@ -254,6 +288,14 @@ public class SearchEngine implements Runnable {
 	 * It also changes the sign to the score depending of the turn
 	 */
 	private void evaluate(Node node, boolean foundTT) {
+		evaluate(node, foundTT, -Evaluator.MATE, Evaluator.MATE);
+	}
+
+	/**
+	 * The evaluator may return a lazy value when it is far outside the alpha-beta window,
+	 * those values are not stored in the TT
+	 */
+	private void evaluate(Node node, boolean foundTT, int alpha, int beta) {
 		if (SearchStats.DEBUG) {
 			SearchStats.ttEvalProbe++;
 		}
@@ -262,13 +304,27 @@ public class SearchEngine implements Runnable {
 			if (SearchStats.DEBUG) {
 				SearchStats.ttEvalHit++;
 			}
-			node.staticEval = tt.getEval();
+			node.staticEval = node.ttEntry.getEval();
 			return;
 		}
+		if (!config.getLazyEval()) {
+			alpha = -Evaluator.MATE;
+			beta = Evaluator.MATE;
+		}
+		if (SearchStats.DEBUG) {
+			SearchStats.lazyEvalProbe++;
+		}
+		// The evaluator window is from the white point of view
 		node.staticEval = board.getTurn() ?
-				evaluator.evaluate(board, node.attacksInfo) :
-				-evaluator.evaluate(board, node.attacksInfo);
+				evaluator.evaluate(board, node.attacksInfo, alpha, beta) :
+				-evaluator.evaluate(board, node.attacksInfo, -beta, -alpha);
 
+		if (evaluator.isLastEvalLazy()) {
+			if (SearchStats.DEBUG) {
+				SearchStats.lazyEvalHit++;
+			}
+			return;
+		}
 		// Store always the eval value in the TT
 		tt.set(board, TranspositionTable.TYPE_EVAL,
 				node.distanceToInitialPly, 0,
@@ -276,11 +332,12 @@ public class SearchEngine implements Runnable {
 	}
 
 	public int refineEval(Node node, boolean foundTT) {
+		TTEntry ttEntry = node.ttEntry;
 		return foundTT
-				&& (tt.getNodeType() == TranspositionTable.TYPE_EXACT_SCORE
-				|| (tt.getNodeType() == TranspositionTable.TYPE_FAIL_LOW && tt.getScore() < node.staticEval)
-				|| (tt.getNodeType() == TranspositionTable.TYPE_FAIL_HIGH && tt.getScore() > node.staticEval)) ?
-				tt.getScore() : node.staticEval;
+				&& (ttEntry.getNodeType() == TranspositionTable.TYPE_EXACT_SCORE
+				|| (ttEntry.getNodeType() == TranspositionTable.TYPE_FAIL_LOW && ttEntry.getScore() < node.staticEval)
+				|| (ttEntry.getNodeType() == TranspositionTable.TYPE_FAIL_HIGH && ttEntry.getScore() > node.staticEval)) ?
+				ttEntry.getScore() : node.staticEval;
 	}
 
 	public int quiescentSearch(int qsdepth, int alpha, int beta) {
@@ -310,12 +367,12 @@ public class SearchEngine implements Runnable {
 		if (SearchStats.DEBUG) {
 			SearchStats.ttProbe++;
 		}
-		boolean foundTT = tt.search(board, distanceToInitialPly, false);
+		boolean foundTT = tt.search(board, distanceToInitialPly, false, node.ttEntry);
 		if (foundTT) {
-			if (!isPv && canUseTT(ttDepth, alpha, beta)) {
-				return tt.getScore();
+			if (!isPv && canUseTT(node.ttEntry, ttDepth, alpha, beta)) {
+				return node.ttEntry.getScore();
 			}
-			node.ttMove = tt.getBestMove();
+			node.ttMove = node.ttEntry.getBestMove();
 		} else {
 			node.ttMove = Move.NONE;
 		}
@@ -328,13 +385,13 @@ public class SearchEngine implements Runnable {
 
 		// Do not allow stand pat when in check
 		if (!checkEvasion) {
-			evaluate(node, foundTT);
+			evaluate(node, foundTT, alpha, beta);
 			eval = refineEval(node, foundTT);
 
 			// Evaluation functions increase alpha and can originate beta cutoffs
 			bestScore = Math.max(bestScore, eval);
 			if (bestScore >= beta) {
-				if (!foundTT) {
+				if (!foundTT && !evaluator.isLastEvalLazy()) {
 					tt.set(board,
 							TranspositionTable.TYPE_FAIL_HIGH,
 							distanceToInitialPly, TranspositionTable.DEPTH_QS_CHECKS,
@@ -407,7 +464,7 @@ public class SearchEngine implements Runnable {
 	private int search(int nodeType, int depthRemaining, int alpha, int beta, boolean allowPrePruning, int excludedMove) throws SearchFinishedException {
 		assert depthRemaining > 0 : "Wrong depthRemaining";
 
-		if (nodeType != NODE_ROOT && globalBestMove != Move.NONE && (System.currentTimeMillis() > thinkToTime || nodeCount > thinkToNodes)) {
+		if (nodeType != NODE_ROOT && globalBestMove != Move.NONE && (nodeCount > thinkToNodes || timeCheck.isTimeUp())) {
 			throw new SearchFinishedException();
 		}
 
@@ -441,20 +498,21 @@ public class SearchEngine implements Runnable {
 		if (SearchStats.DEBUG) {
 			SearchStats.ttProbe++;
 		}
-		boolean foundTT = tt.search(board, distanceToInitialPly, excludedMove != Move.NONE);
+		TTEntry ttEntry = node.ttEntry;
+		boolean foundTT = tt.search(board, distanceToInitialPly, excludedMove != Move.NONE, ttEntry);
 		if (foundTT) {
-			if (nodeType != NODE_ROOT && canUseTT(depthRemaining, alpha, beta)) {
-				if (distanceToInitialPly + tt.getDepthAnalyzed() > selDepth) {
-					selDepth = distanceToInitialPly + tt.getDepthAnalyzed();
+			if (nodeType != NODE_ROOT && canUseTT(ttEntry, depthRemaining, alpha, beta)) {
+				if (distanceToInitialPly + ttEntry.getDepthAnalyzed() > selDepth) {
+					selDepth = distanceToInitialPly + ttEntry.getDepthAnalyzed();
 				}
 
-				historyGood(node, tt.getBestMove(), depthRemaining);
-				return tt.getScore();
+				historyGood(node, ttEntry.getBestMove(), depthRemaining);
+				return ttEntry.getScore();
 			}
-			node.ttMove = tt.getBestMove();
-			ttScore = tt.getScore();
-			ttNodeType = tt.getNodeType();
-			ttDepthAnalyzed = tt.getDepthAnalyzed();
+			node.ttMove = ttEntry.getBestMove();
+			ttScore = ttEntry.getScore();
+			ttNodeType = ttEntry.getNodeType();
+			ttDepthAnalyzed = ttEntry.getDepthAnalyzed();
 		} else {
 			node.ttMove = Move.NONE;
 		}
@@ -466,7 +524,7 @@ public class SearchEngine implements Runnable {
 
 		if (!checkEvasion) {
 			// Do a static eval, in case of exclusion and not found in the TT, search again with the normal key
-			boolean evalTT = excludedMove == Move.NONE || foundTT ? foundTT : tt.search(board, distanceToInitialPly, false);
+			boolean evalTT = excludedMove == Move.NONE || foundTT ? foundTT : tt.search(board, distanceToInitialPly, false, ttEntry);
 			evaluate(node, evalTT);
 			eval = refineEval(node, foundTT);
 		}
@@ -566,8 +624,8 @@ public class SearchEngine implements Runnable {
 						depthRemaining - 2 * PLY : // Root and PV nodes are less reduced
 						depthRemaining >> 1;
 				search(nodeType, d, alpha, beta, false, Move.NONE);
-				if (tt.search(board, distanceToInitialPly, false)) {
-					node.ttMove = tt.getBestMove();
+				if (tt.search(board, distanceToInitialPly, false, ttEntry)) {
+					node.ttMove = ttEntry.getBestMove();
 				}
 			}
 		}
@@ -739,7 +797,7 @@ public class SearchEngine implements Runnable {
 					globalBestMove = node.move;
 					bestMoveScore = score;
 
-					if (depthRemaining > 6 * PLY) {
+					if (depthRemaining > 6 * PLY && threadId == 0) {
 						notifyMoveFound(node.move, score, alpha, beta);
 					}
 				}
@@ -805,9 +863,10 @@ public class SearchEngine implements Runnable {
 		info.setTime(time - startTime);
 		info.setPv(getPv(move));
 		info.setScore(score, alpha, beta);
-		info.setNodes(nodeCount);
+		long totalNodes = getNodeCount();
+		info.setNodes(totalNodes);
 		info.setHashFull(tt.getHashFull());
-		info.setNps((int) (1000 * nodeCount / (time - startTime + 1)));
+		info.setNps((int) (1000 * totalNodes / (time - startTime + 1)));
 
 		if (observer != null) {
 			observer.info(info);
@@ -839,7 +898,7 @@ public class SearchEngine implements Runnable {
 
 		initialPly = board.getMoveNumber();
 
-		if (config.getUseBook() && config.getBook() != null && board.isUsingBook()
+		if (threadId == 0 && config.getUseBook() && config.getBook() != null && board.isUsingBook()
 				&& (config.getBookKnowledge() == 100 || ((random.nextFloat() * 100) < config.getBookKnowledge()))) {
 			logger.debug("Searching move in book");
 			int bookMove = config.getBook().getMove(board);
@@ -853,15 +912,19 @@ public class SearchEngine implements Runnable {
 			}
 		}
 
-		depth = 1;
-		boolean foundTT = tt.search(board, 0, false);
-		if (canUseTT(0, -Evaluator.MATE, Evaluator.MATE)) {
-			rootScore = tt.getScore();
+		// Half of the helpers start one depth ahead, so the threads do not search the same depths at the same time
+		depth = 1 + (threadId & 1);
+		boolean foundTT = tt.search(board, 0, false, nodes[0].ttEntry);
+		if (canUseTT(nodes[0].ttEntry, 0, -Evaluator.MATE, Evaluator.MATE)) {
+			rootScore = nodes[0].ttEntry.getScore();
 		} else {
 			evaluate(nodes[0], foundTT);
 			rootScore = nodes[0].staticEval;
 		}
-		tt.newGeneration();
+		// The helpers share the TT with the main searcher, that is the one managing the generations
+		if (threadId == 0) {
+			tt.newGeneration();
+		}
 		aspWindows = ASPIRATION_WINDOW_SIZES;
 	}
 
@@ -900,11 +963,14 @@ public class SearchEngine implements Runnable {
 
 		long time2 = System.currentTimeMillis();
 
-		if (depth <= 6) {
-			notifyMoveFound(globalBestMove, bestMoveScore, alpha, beta);
-		} else if (!panicTime && rootScore < previousRootScore - 100) {
-			panicTime = true;
-			updateSearchParameters(searchParameters);
+		// Helpers only fill the TT, the main searcher reports and manages the time
+		if (threadId == 0) {
+			if (depth <= 6) {
+				notifyMoveFound(globalBestMove, bestMoveScore, alpha, beta);
+			} else if (!panicTime && rootScore < previousRootScore - 100) {
+				panicTime = true;
+				updateSearchParameters(searchParameters);
+			}
 		}
 
 		if ((searchParameters.manageTime() && ( // Under time restrictions and...
@@ -924,11 +990,13 @@ public class SearchEngine implements Runnable {
 		synchronized (searchLock) {
 			try {
 				prepareRun();
+				startHelpers();
 				while (true) {
 					runStepped();
 				}
 			} catch (SearchFinishedException ignored) {
 			}
+			stopHelpers();
 
 			// Return the board to the initial position
 			board.undoMove(initialPly);
@@ -957,6 +1025,18 @@ public class SearchEngine implements Runnable {
 	public void sleep(int time) {
 	}
 
+	/**
+	 * Starts the Lazy SMP helpers from the root position, VOID because GWT does not support threads; overriden in SearchEngineThreaded
+	 */
+	protected void startHelpers() {
+	}
+
+	/**
+	 * Stops the Lazy SMP helpers and waits for them to finish; overriden in SearchEngineThreaded
+	 */
+	protected void stopHelpers() {
+	}
+
 	/**
 	 * Cannot be called during search (!)
 	 */
@@ -966,6 +1046,7 @@ public class SearchEngine implements Runnable {
 		nodeCount = 0;
 		stop = false;
 		updateSearchParameters(searchParameters);
+		timeCheck.start(thinkToTime);
 	}
 
 	/**
@@ -977,6 +1058,7 @@ public class SearchEngine implements Runnable {
 		thinkToNodes = searchParameters.getNodes();
 		thinkToDepth = searchParameters.getDepth();
 		thinkToTime = searchParameters.calculateMoveTime(engineIsWhite, startTime, panicTime);
+		timeCheck.setDeadline(thinkToTime);
 	}
 
 	/**
@@ -993,19 +1075,22 @@ public class SearchEngine implements Runnable {
 		int savedMoveNumber = board.getMoveNumber();
 		board.doMove(firstMove, true, false);
 
+		TTEntry ttEntry = new TTEntry();
 		int i = 1;
 		while (i < 256) {
-			if (tt.search(board, i, false)) {
-				if (tt.getBestMove() == Move.NONE || keys.contains(board.getKey())) {
+			if (tt.search(board, i, false, ttEntry)) {
+				// The TT move may be from other position
+				int move = ttEntry.getBestMove() == Move.NONE ? Move.NONE : board.getLegalMove(ttEntry.getBestMove());
+				if (move == Move.NONE || keys.contains(board.getKey())) {
 					break;
 				}
 				keys.add(board.getKey());
 				if (i == 1) {
-					globalPonderMove = tt.getBestMove();
+					globalPonderMove = move;
 				}
 				sb.append(" ");
-				sb.append(Move.toString(tt.getBestMove()));
-				board.doMove(tt.getBestMove(), true, false);
+				sb.append(Move.toString(move));
+				board.doMove(move, true, false);
 				i++;
 			} else {
 				break;
@@ -1020,6 +1105,7 @@ public class SearchEngine implements Runnable {
 	public void stop() {
 		stop = true;
 		thinkToTime = 0;
+		timeCheck.stop();
 		thinkToNodes = 0;
 		thinkToDepth = 0;
 	}
@@ -155,12 +155,16 @@ public class SearchParameters {
 	 */
 	public long calculateMoveTime(boolean engineIsWhite, long startTime, boolean panicTime) {
 		manageTime = false;
-		if (ponder || infinite || depth < Integer.MAX_VALUE || nodes < Integer.MAX_VALUE) {
+		if (ponder || infinite) {
 			return Long.MAX_VALUE;
 		}
+		// The move time is also applied with a depth or nodes limit
 		if (moveTime != Integer.MAX_VALUE) {
 			return startTime + moveTime;
 		}
+		if (depth < Integer.MAX_VALUE || nodes < Integer.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
 		manageTime = true;
 
 		int calcTime = 0;
@@ -31,6 +31,9 @@ public class SearchStats {
 	public static long ttUBHit = 0;
 	public static long ttEvalHit = 0;
 	public static long ttEvalProbe = 0;
+	// Lazy evaluation
+	public static long lazyEvalProbe = 0;
+	public static long lazyEvalHit = 0;
 
 	public static void print(long nodeCount) {
 		logger.debug("Positions         = " + nodeCount);
@@ -44,6 +47,9 @@ public class SearchStats {
 		if (SearchStats.ttEvalProbe > 0) {
 			logger.debug("TT Eval      Hits = " + SearchStats.ttEvalHit + " " + (100 * SearchStats.ttEvalHit / SearchStats.ttEvalProbe) + "%");
 		}
+		if (SearchStats.lazyEvalProbe > 0) {
+			logger.debug("Lazy Eval    Hits = " + SearchStats.lazyEvalHit + " " + (100 * SearchStats.lazyEvalHit / SearchStats.lazyEvalProbe) + "%");
+		}
 		if (SearchStats.ttProbe > 0) {
 			logger.debug("TT PV        Hits = " + SearchStats.ttPvHit + " " + (1000000 * SearchStats.ttPvHit / SearchStats.ttProbe) + " per 10^6");
 			logger.debug("TT LB        Hits = " + SearchStats.ttProbe + " " + (100 * SearchStats.ttLBHit / SearchStats.ttProbe) + "%");
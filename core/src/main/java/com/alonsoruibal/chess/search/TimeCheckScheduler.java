@@ -0,0 +1,94 @@
+package com.alonsoruibal.chess.search;
+
+/**
+ * Tells the search when it must stop by time without reading the clock in every node.
+ * The clock is polled every some nodes, adapting the interval to the measured nodes per second,
+ * so the clock is read about each POLL_NANOS and the stop latency stays under one millisecond.
+ * Each searcher must use its own instance.
+ */
+public class TimeCheckScheduler {
+	private static final long POLL_NANOS = 500000;
+	private static final int MIN_INTERVAL = 16;
+	private static final int MAX_INTERVAL = 1 << 20;
+	// To not overflow converting the deadline to nanoseconds
+	private static final long MAX_REMAINING_MILLIS = 1L << 40;
+
+	// Volatile because they are changed from other threads
+	private volatile boolean timeUp;
+	private volatile long deadlineNanos;
+
+	private int interval = MIN_INTERVAL;
+	private int nodesToPoll;
+	private long lastPollNanos;
+
+	/**
+	 * Starts a new search
+	 *
+	 * @param deadline time to stop in milliseconds as returned by System.currentTimeMillis()
+	 */
+	public void start(long deadline) {
+		timeUp = false;
+		nodesToPoll = interval;
+		lastPollNanos = nanoTime();
+		setDeadline(deadline);
+	}
+
+	/**
+	 * Changes the deadline during the search, i.e. on a ponderhit
+	 */
+	public void setDeadline(long deadline) {
+		long remainingMillis = Math.max(0, Math.min(deadline - currentTimeMillis(), MAX_REMAINING_MILLIS));
+		deadlineNanos = nanoTime() + remainingMillis * 1000000;
+	}
+
+	/**
+	 * Forces the search to stop in the next node
+	 */
+	public void stop() {
+		timeUp = true;
+	}
+
+	/**
+	 * Called in each node, only polls the clock when the interval of nodes is consumed
+	 */
+	public boolean isTimeUp() {
+		if (timeUp) {
+			return true;
+		}
+		if (--nodesToPoll > 0) {
+			return false;
+		}
+		return poll();
+	}
+
+	private boolean poll() {
+		long now = nanoTime();
+		long elapsed = now - lastPollNanos;
+		lastPollNanos = now;
+
+		// Moves the interval halfway to the number of nodes searched in POLL_NANOS at the current speed
+		long nodesInPollTime = elapsed > 0 ? interval * POLL_NANOS / elapsed : MAX_INTERVAL;
+		interval = (int) Math.max(MIN_INTERVAL, Math.min((interval + nodesInPollTime) >> 1, MAX_INTERVAL));
+		nodesToPoll = interval;
+
+		if (now - deadlineNanos >= 0) {
+			timeUp = true;
+		}
+		return timeUp;
+	}
+
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * The clocks, overridden in the tests to not depend on the real time
+	 */
+	protected long nanoTime() {
+		return System.nanoTime();
+	}
+
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+}
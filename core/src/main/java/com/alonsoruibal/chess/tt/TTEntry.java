@@ -0,0 +1,53 @@
+package com.alonsoruibal.chess.tt;
+
+/**
+ * Holds the result of a transposition table probe.
+ * Each searcher owns its entries, so the table does not keep any probe state and it can be shared between threads
+ */
+public class TTEntry {
+	int bestMove;
+	int nodeType;
+	int generation;
+	int depthAnalyzed;
+	int score;
+	int eval;
+
+	public void clear() {
+		bestMove = 0;
+		nodeType = 0;
+		generation = 0;
+		depthAnalyzed = 0;
+		score = 0;
+		eval = 0;
+	}
+
+	/**
+	 * The table verifies only part of the key, so the move must be validated before doing it
+	 */
+	public int getBestMove() {
+		return bestMove;
+	}
+
+	public int getNodeType() {
+		return nodeType;
+	}
+
+	public int getGeneration() {
+		return generation;
+	}
+
+	public int getDepthAnalyzed() {
+		return depthAnalyzed;
+	}
+
+	/**
+	 * The score with the mate distance fixed to the ply where the table was probed
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	public int getEval() {
+		return eval;
+	}
+}
@@ -9,9 +9,22 @@ import com.alonsoruibal.chess.search.SearchEngine;
 import java.util.Arrays;
 
 /**
- * Transposition table using two keys and multiprobe
+ * Transposition table with buckets of 6 compressed entries in 64 bytes, the size of a cache line,
+ * so a probe reads only one cache line
  * <p/>
- * Uses part of the board's zobrist key (shifted) as the index
+ * Bucket layout in 8 longs:
+ * <ul>
+ * <li>Words 0 and 1: the headers of 3 entries each, 21 bits per entry: 16 key bits and 5 generation bits</li>
+ * <li>Words 2 to 7: the data of each entry: move (21 bits), node type (2), depth (8), eval (16), score (16) and a used bit</li>
+ * </ul>
+ * Uses the upper 32 bits of the board's zobrist key scaled to the number of buckets (multiply-shift) as the index,
+ * so the size does not need to be a power of two, and the lower 16 bits to verify the entries. With only 16 bits
+ * an entry from other position may be found, so the searcher must verify the legality of the best move
+ * <p/>
+ * It can be shared between threads without locks: the key bits are stored XORed with the entry data,
+ * so an entry torn by concurrent writes does not validate and it is seen as a miss
+ * <p/>
+ * The buckets are kept in a Java array, subclasses may override the word accessors to store them elsewhere
  *
  * @author rui
  */
@@ -26,99 +39,146 @@ public class TranspositionTable {
 	public static final int TYPE_FAIL_LOW = 2;
 	public static final int TYPE_FAIL_HIGH = 3;
 
-	private static final int MAX_PROBES = 4;
+	public static final int BUCKET_BYTES = 64;
+	public static final int BUCKET_ENTRIES = 6;
+	protected static final int BUCKET_WORDS = BUCKET_BYTES / 8;
+	private static final int BUCKET_DATA_WORD = 2;
+	private static final int HEADER_BITS = 21;
+	private static final long HEADER_MASK = (1L << HEADER_BITS) - 1;
+	private static final int GENERATION_MASK = 0x1f;
+	private static final long DATA_USED = 1L << 63;
 
-	private final long[] keys;
-	private final long[] infos;
-	private final short[] evals;
+	private static final int HASH_FULL_SAMPLES = 1000;
 
-	private final int size;
-	private long info;
-	private short eval;
-	private int generation;
-	private int entriesOccupied;
+	// The Java arrays cannot be bigger
+	private static final long MAX_HEAP_BUCKETS = (Integer.MAX_VALUE - 8) / BUCKET_WORDS;
 
-	private int score;
-	private final int sizeBits;
+	private final long[] words;
+
+	protected final long buckets;
+	// Buckets split in two 32 bit halves for the index calculation
+	private final long bucketsHigh;
+	private final long bucketsLow;
+	private volatile int generation;
 
 	public TranspositionTable(int sizeMb) {
-		sizeBits = Long.numberOfTrailingZeros(sizeMb) + 16;
-		size = 1 << sizeBits;
-		keys = new long[size];
-		infos = new long[size];
-		evals = new short[size];
-		entriesOccupied = 0;
+		this(Math.min(getBuckets(sizeMb), MAX_HEAP_BUCKETS), true);
+	}
+
+	/**
+	 * @param heapStorage if false the Java array is not created, the subclass must override the word accessors
+	 */
+	protected TranspositionTable(long buckets, boolean heapStorage) {
+		this.buckets = buckets;
+		bucketsHigh = buckets >>> 32;
+		bucketsLow = buckets & 0xffffffffL;
+		words = heapStorage ? new long[(int) (buckets * BUCKET_WORDS)] : null;
 
 		generation = 0;
-		logger.debug("Created transposition table, size = " + size + " slots " + size * 18.0 / (1024 * 1024) + " MBytes");
+		logger.debug("Created transposition table, size = " + getSize() + " entries " + buckets * BUCKET_BYTES / (1024.0 * 1024) + " MBytes");
 	}
 
-	public void clear() {
-		entriesOccupied = 0;
-		Arrays.fill(keys, 0);
+	/**
+	 * Number of buckets fitting in the size
+	 */
+	public static long getBuckets(int sizeMb) {
+		return Math.max(1, sizeMb * 1024L * 1024L / BUCKET_BYTES);
 	}
 
-	public boolean search(Board board, int distanceToInitialPly, boolean exclusion) {
-		info = 0;
-		score = 0;
-		int startIndex = (int) ((exclusion ? board.getExclusionKey() : board.getKey()) >>> (64 - sizeBits));
-		// Verifies that it is really this board
-		for (int i = startIndex; i < startIndex + MAX_PROBES && i < size; i++) {
-			if (keys[i] == board.getKey2()) {
-				info = infos[i];
-				eval = evals[i];
-				score = (short) ((info >>> 48) & 0xffff);
+	/**
+	 * Number of entries
+	 */
+	public long getSize() {
+		return buckets * BUCKET_ENTRIES;
+	}
 
-				// Fix mate score with the real distance to the initial PLY
-				if (score >= SearchEngine.VALUE_IS_MATE) {
-					score -= distanceToInitialPly;
-				} else if (score <= -SearchEngine.VALUE_IS_MATE) {
-					score += distanceToInitialPly;
-				}
-				return true;
-			}
-		}
-		return false;
+	public void clear() {
+		Arrays.fill(words, 0);
 	}
 
-	public int getBestMove() {
-		return (int) (info & 0x1fffff);
+	protected long getWord(long index) {
+		return words[(int) index];
 	}
 
-	public int getNodeType() {
-		return (int) ((info >>> 21) & 0xf);
+	protected void setWord(long index, long value) {
+		words[(int) index] = value;
 	}
 
-	public int getGeneration() {
-		return (int) ((info >>> 32) & 0xff);
+	/**
+	 * Maps the key to the first word of a bucket with the upper 32 bits of the key multiplied by the number
+	 * of buckets and shifted, the number of buckets is split in two halves to avoid overflows with big tables
+	 */
+	private long getBucketWord(long key) {
+		long keyHigh = key >>> 32;
+		return (keyHigh * bucketsHigh + ((keyHigh * bucketsLow) >>> 32)) * BUCKET_WORDS;
 	}
 
-	public int getDepthAnalyzed() {
-		int depthAnalyzed = (int) (info >>> 40) & 0xff;
-		return depthAnalyzed == 0xff ? -1 : depthAnalyzed;
+	private long getHeader(long bucketWord, int entry) {
+		return (getWord(bucketWord + entry / 3) >>> (HEADER_BITS * (entry % 3))) & HEADER_MASK;
 	}
 
-	public int getScore() {
-		return score;
+	/**
+	 * The 16 key bits are stored XORed with the data folded to 16 bits,
+	 * a write from other thread may change the data between the reads
+	 */
+	private static int getCheckKey(long data) {
+		return (int) (data ^ (data >>> 16) ^ (data >>> 32) ^ (data >>> 48)) & 0xffff;
 	}
 
-	public int getEval() {
-		return eval;
+	private static int getKeyBits(long key) {
+		return (int) key & 0xffff;
 	}
 
-	public void newGeneration() {
-		generation = (generation + 1) & 0xff;
+	/**
+	 * Fills the entry with the data stored for this board
+	 *
+	 * @return false if not found, in this case the entry is cleared
+	 */
+	public boolean search(Board board, int distanceToInitialPly, boolean exclusion, TTEntry entry) {
+		long key = exclusion ? board.getExclusionKey() : board.getKey();
+		long bucketWord = getBucketWord(key);
+		int keyBits = getKeyBits(key);
+
+		for (int i = 0; i < BUCKET_ENTRIES; i++) {
+			long data = getWord(bucketWord + BUCKET_DATA_WORD + i);
+			if (data == 0) {
+				continue;
+			}
+			long header = getHeader(bucketWord, i);
+			// Verifies that it is really this board
+			if ((((int) header ^ getCheckKey(data)) & 0xffff) == keyBits) {
+				int score = (short) (data >>> 47);
+
+				// Fix mate score with the real distance to the initial PLY
+				if (score >= SearchEngine.VALUE_IS_MATE) {
+					score -= distanceToInitialPly;
+				} else if (score <= -SearchEngine.VALUE_IS_MATE) {
+					score += distanceToInitialPly;
+				}
+				entry.bestMove = (int) (data & 0x1fffff);
+				entry.nodeType = (int) (data >>> 21) & 0x3;
+				entry.depthAnalyzed = (byte) (data >>> 23);
+				entry.eval = (short) (data >>> 31);
+				entry.score = score;
+				entry.generation = (int) (header >>> 16);
+				return true;
+			}
+		}
+		entry.clear();
+		return false;
 	}
 
-	public boolean isMyGeneration() {
-		return getGeneration() == generation;
+	public void newGeneration() {
+		generation = (generation + 1) & GENERATION_MASK;
 	}
 
 	public void set(Board board, int nodeType, int distanceToInitialPly, int depthAnalyzed, int bestMove, int score, int eval, boolean exclusion) {
-		long key2 = board.getKey2();
-		int startIndex = (int) ((exclusion ? board.getExclusionKey() : board.getKey()) >>> (64 - sizeBits));
-		int replaceIndex = startIndex;
+		long key = exclusion ? board.getExclusionKey() : board.getKey();
+		long bucketWord = getBucketWord(key);
+		int keyBits = getKeyBits(key);
+		int replaceEntry = 0;
 		int replaceImportance = Integer.MAX_VALUE; // A higher value, so the first entry will be the default
+		int currentGeneration = generation;
 
 		// Fix mate score with the real distance to mate from the current PLY, not from the initial PLY
 		if (score >= SearchEngine.VALUE_IS_MATE) {
@@ -130,50 +190,61 @@ public class TranspositionTable {
 		assert score >= -Evaluator.MATE && score <= Evaluator.MATE : "Fixed TT score is outside limits";
 		assert Math.abs(eval) < SearchEngine.VALUE_IS_MATE || Math.abs(eval) == Evaluator.MATE || eval == Evaluator.NO_VALUE : "Storing a eval value in the TT outside limits";
 
-		for (int i = startIndex; i < startIndex + MAX_PROBES && i < size; i++) {
-			info = infos[i];
+		for (int i = 0; i < BUCKET_ENTRIES; i++) {
+			long data = getWord(bucketWord + BUCKET_DATA_WORD + i);
 
-			if (keys[i] == 0) { // Replace an empty TT position
-				entriesOccupied++;
-				replaceIndex = i;
+			if (data == 0) { // Replace an empty TT position
+				replaceEntry = i;
 				break;
-			} else if (keys[i] == key2) { // Replace the same position
-				replaceIndex = i;
+			}
+			long header = getHeader(bucketWord, i);
+			if ((((int) header ^ getCheckKey(data)) & 0xffff) == keyBits) { // Replace the same position
+				replaceEntry = i;
 				if (bestMove == Move.NONE) { // Keep previous best move
-					bestMove = getBestMove();
+					bestMove = (int) (data & 0x1fffff);
 				}
 				break;
 			}
 
 			// Calculates a value with this TT entry importance
-			int entryImportance = (getNodeType() == TYPE_EXACT_SCORE ? 10 : 0) // Bonus for the PV entries
-					- getGenerationDelta() // The older the generation, the less importance
-					+ getDepthAnalyzed(); // The more depth, the more importance
+			int entryImportance = (((data >>> 21) & 0x3) == TYPE_EXACT_SCORE ? 10 : 0) // Bonus for the PV entries
+					- ((currentGeneration - (int) (header >>> 16)) & GENERATION_MASK) // The older the generation, the less importance
+					+ (byte) (data >>> 23); // The more depth, the more importance
 
 			// We will replace the less important entry
 			if (entryImportance < replaceImportance) {
 				replaceImportance = entryImportance;
-				replaceIndex = i;
+				replaceEntry = i;
 			}
 		}
 
-		keys[replaceIndex] = key2;
-		info = (bestMove & 0x1fffff) | ((nodeType & 0xf) << 21) | (((long) (generation & 0xff)) << 32) | (((long) (depthAnalyzed & 0xff)) << 40)
-				| (((long) (score & 0xffff)) << 48);
+		long data = (bestMove & 0x1fffff) | ((long) (nodeType & 0x3) << 21) | ((long) (depthAnalyzed & 0xff) << 23)
+				| ((long) (eval & 0xffff) << 31) | ((long) (score & 0xffff) << 47) | DATA_USED;
+		long header = ((keyBits ^ getCheckKey(data)) & 0xffff) | ((long) currentGeneration << 16);
 
-		infos[replaceIndex] = info;
-		evals[replaceIndex] = (short) eval;
+		// Other entries of the header word may be lost if other thread writes them at the same time,
+		// they will not validate against their data and they are seen as misses
+		long headerWord = bucketWord + replaceEntry / 3;
+		int headerShift = HEADER_BITS * (replaceEntry % 3);
+		setWord(bucketWord + BUCKET_DATA_WORD + replaceEntry, data);
+		setWord(headerWord, (getWord(headerWord) & ~(HEADER_MASK << headerShift)) | (header << headerShift));
 	}
 
 	/**
-	 * Returns the difference between the current generation and the entry generation (max 255)
+	 * Estimates the permill of the table used in this generation sampling the first entries,
+	 * a shared occupation counter would need synchronization
 	 */
-	private int getGenerationDelta() {
-		byte entryGeneration = (byte) ((info >>> 32) & 0xff);
-		return (generation >= entryGeneration ? generation - entryGeneration : 256 + generation - entryGeneration);
-	}
-
 	public int getHashFull() {
-		return (int) (1000L * entriesOccupied / size);
+		int currentGeneration = generation;
+		long samples = Math.min(HASH_FULL_SAMPLES, getSize());
+		int used = 0;
+		for (int i = 0; i < samples; i++) {
+			long bucketWord = (long) (i / BUCKET_ENTRIES) * BUCKET_WORDS;
+			int entry = i % BUCKET_ENTRIES;
+			if (getWord(bucketWord + BUCKET_DATA_WORD + entry) != 0 && (getHeader(bucketWord, entry) >>> 16) == currentGeneration) {
+				used++;
+			}
+		}
+		return (int) (1000 * used / samples);
 	}
-}
\ No newline at end of file
+}
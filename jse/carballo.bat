@@ -1 +1,2 @@
-java -jar carballo-1.9.jar -Xmx1024M
+rem The transposition table is off-heap, MaxDirectMemorySize must be over the UCI Hash size (it defaults to -Xmx)
+java -Xmx1024M -XX:MaxDirectMemorySize=64G -jar carballo-1.9.jar
@@ -1,2 +1,3 @@
 #!/bin/bash
-java -jar carballo-1.9.jar -Xmx1024M
+# The transposition table is off-heap, MaxDirectMemorySize must be over the UCI Hash size (it defaults to -Xmx)
+java -Xmx1024M -XX:MaxDirectMemorySize=64G -jar carballo-1.9.jar
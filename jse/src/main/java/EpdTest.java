@@ -106,8 +106,7 @@ public class EpdTest {
 
 		engine.sendStop();
 		engine.sendUciNewGame();
-		engine.sendIsReady();
-		engine.waitReadyOk();
+		engine.isReady(Long.MAX_VALUE);
 
 		String bestMoveStr;
 		if (nodes != 0) {
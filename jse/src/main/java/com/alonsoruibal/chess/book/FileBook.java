@@ -4,15 +4,21 @@ import com.alonsoruibal.chess.Board;
 import com.alonsoruibal.chess.Move;
 import com.alonsoruibal.chess.log.Logger;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
 /**
  * Polyglot opening book support
+ * <p/>
+ * The book is loaded only once: a classpath resource is read to memory and a file is memory-mapped.
+ * The 16-byte entries are sorted by key, so the moves of a position are found with a binary search.
  *
  * @author rui
  */
@@ -22,7 +28,14 @@ public class FileBook implements Book {
 	 */
 	private static final Logger logger = Logger.getLogger("FileBook");
 
+	private static final int ENTRY_BYTES = 16;
+	// A mapped buffer is limited to 2 GB, so the files are mapped in chunks of 2^26 entries (1 GB)
+	private static final int CHUNK_ENTRIES_BITS = 26;
+	private static final long CHUNK_ENTRIES_MASK = (1L << CHUNK_ENTRIES_BITS) - 1;
+
 	private String bookName;
+	private ByteBuffer[] chunks;
+	private long entryCount;
 
 	List<Integer> moves = new ArrayList<>();
 	List<Integer> weights = new ArrayList<>();
@@ -30,9 +43,47 @@ public class FileBook implements Book {
 
 	private final Random random = new Random();
 
+	/**
+	 * Loads the book from a classpath resource, if it fails the book is empty
+	 */
 	public FileBook(String fileName) {
 		bookName = fileName;
 		logger.debug("Using opening book " + bookName);
+
+		byte[] bytes = new byte[0];
+		try (InputStream bookIs = getClass().getResourceAsStream(bookName)) {
+			if (bookIs != null) {
+				bytes = bookIs.readAllBytes();
+			}
+		} catch (IOException e) {
+			logger.error("Error reading opening book " + bookName);
+		}
+		chunks = new ByteBuffer[]{ByteBuffer.wrap(bytes)};
+		entryCount = bytes.length / ENTRY_BYTES;
+	}
+
+	/**
+	 * Memory-maps a book file of any size
+	 */
+	public FileBook(Path path) throws IOException {
+		bookName = path.toString();
+		logger.debug("Using opening book file " + bookName);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			entryCount = channel.size() / ENTRY_BYTES;
+			int chunkCount = (int) ((entryCount + CHUNK_ENTRIES_MASK) >>> CHUNK_ENTRIES_BITS);
+			chunks = new ByteBuffer[chunkCount];
+			for (int i = 0; i < chunkCount; i++) {
+				long firstEntry = (long) i << CHUNK_ENTRIES_BITS;
+				long chunkEntries = Math.min(entryCount - firstEntry, 1L << CHUNK_ENTRIES_BITS);
+				// The mapping remains valid after closing the channel
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, firstEntry * ENTRY_BYTES, chunkEntries * ENTRY_BYTES);
+			}
+		}
+	}
+
+	public long getEntryCount() {
+		return entryCount;
 	}
 
 	/**
@@ -65,47 +116,63 @@ public class FileBook implements Book {
 		return sb.toString();
 	}
 
-	public void generateMoves(Board board) {
+	private ByteBuffer getChunk(long entry) {
+		return chunks[(int) (entry >>> CHUNK_ENTRIES_BITS)];
+	}
+
+	private int getOffset(long entry) {
+		return (int) (entry & CHUNK_ENTRIES_MASK) * ENTRY_BYTES;
+	}
+
+	private long getKey(long entry) {
+		return getChunk(entry).getLong(getOffset(entry));
+	}
+
+	/**
+	 * The keys are sorted as unsigned numbers, returns the first entry with a key not lower than the key
+	 */
+	private long findFirstEntry(long key) {
+		long low = 0;
+		long high = entryCount;
+		while (low < high) {
+			long middle = (low + high) >>> 1;
+			if (Long.compareUnsigned(getKey(middle), key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	public synchronized void generateMoves(Board board) {
 		totalWeight = 0;
 		moves.clear();
 		weights.clear();
 
 		long key2Find = board.getKey();
 
-		try {
-			InputStream bookIs = getClass().getResourceAsStream(bookName);
-			DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(bookIs));
-
-			long key;
-			int moveInt;
-			int weight;
-
-			while (true) {
-				key = dataInputStream.readLong();
-				if (key == key2Find) {
-					moveInt = dataInputStream.readShort();
-					weight = dataInputStream.readShort();
-					dataInputStream.readInt(); // Unused learn field
-
-					int move = Move.getFromString(board, int2MoveString(moveInt), true);
-					// Add only if it is legal
-					if (board.getLegalMove(move) != Move.NONE) {
-						moves.add(move);
-						weights.add(weight);
-						totalWeight += weight;
-					}
-				} else {
-					dataInputStream.skipBytes(8);
-				}
+		for (long entry = findFirstEntry(key2Find); entry < entryCount && getKey(entry) == key2Find; entry++) {
+			ByteBuffer chunk = getChunk(entry);
+			int offset = getOffset(entry);
+			int moveInt = chunk.getShort(offset + 8);
+			int weight = chunk.getShort(offset + 10) & 0xffff;
+			// Bytes 12 to 15 are the unused learn field
+
+			int move = Move.getFromString(board, int2MoveString(moveInt), true);
+			// Add only if it is legal
+			if (board.getLegalMove(move) != Move.NONE) {
+				moves.add(move);
+				weights.add(weight);
+				totalWeight += weight;
 			}
-		} catch (Exception ignored) {
 		}
 	}
 
 	/**
-	 * Gets a random move from the book taking care of weights
+	 * Gets a random move from the book taking care of weights, synchronized because the book can be shared by engines in different threads
 	 */
-	public int getMove(Board board) {
+	public synchronized int getMove(Board board) {
 		generateMoves(board);
 		long randomWeight = Float.valueOf(random.nextFloat() * totalWeight).longValue();
 		for (int i = 0; i < moves.size(); i++) {
@@ -116,4 +183,4 @@ public class FileBook implements Book {
 		}
 		return 0;
 	}
-}
\ No newline at end of file
+}
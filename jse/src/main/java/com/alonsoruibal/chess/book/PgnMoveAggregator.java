@@ -0,0 +1,507 @@
+package com.alonsoruibal.chess.book;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.Move;
+import com.alonsoruibal.chess.log.Logger;
+import com.alonsoruibal.chess.pgn.Game;
+import com.alonsoruibal.chess.pgn.GameNode;
+import com.alonsoruibal.chess.pgn.GameNodeMove;
+import com.alonsoruibal.chess.pgn.PgnParser;
+import com.alonsoruibal.chess.pgn.PgnTokenizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates values for each position and move of the games in PGN files, the base of the book and database builders
+ * <p/>
+ * The PGNs are streamed with the PgnTokenizer and the games are replayed by worker threads, each one with its own board.
+ * The values of each position key and move are added in a sharded hash map of primitive arrays.
+ * When a shard is full it is sorted and spilled to a temporary run file, so the memory is bounded by the
+ * maximum number of entries. At the end the runs are merged, and the entries are passed to a consumer sorted by
+ * key (as unsigned numbers) and move. The merge opens at most MERGE_FAN_IN runs at once, with more runs they are
+ * first merged in groups to intermediate runs.
+ */
+public abstract class PgnMoveAggregator {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = Logger.getLogger("PgnMoveAggregator");
+
+	public static final int DEFAULT_MAX_ENTRIES = 1 << 21;
+
+	private static final int SHARDS = 64;
+	// The games are passed to the workers in batches to not synchronize on each game
+	private static final int BATCH_SIZE = 256;
+	private static final int QUEUE_SIZE = 64;
+	// Maximum number of runs open at the same time in the merge, each one with a 64 KB buffer
+	private static final int MERGE_FAN_IN = 64;
+
+	private static final List<Game> END_OF_GAMES = new ArrayList<>();
+
+	public interface EntryConsumer {
+		/**
+		 * @param values the sums of the values of the position and move, the array is reused for the next entry
+		 */
+		void accept(long key, int move, long[] values) throws IOException;
+	}
+
+	private final int threads;
+	private final int maxPly;
+	private final int valueCount;
+	private final int maxShardEntries;
+
+	private Shard[] shards;
+	private Path runDirectory;
+	private final List<Path> runs = new ArrayList<>();
+	private final AtomicLong games = new AtomicLong();
+	private final AtomicLong positions = new AtomicLong();
+
+	/**
+	 * @param threads    number of threads replaying the games
+	 * @param maxPly     only the moves before this ply are aggregated
+	 * @param valueCount number of values for each position and move
+	 * @param maxEntries maximum number of position-move entries in memory before spilling them to disk
+	 */
+	protected PgnMoveAggregator(int threads, int maxPly, int valueCount, int maxEntries) {
+		this.threads = Math.max(1, threads);
+		this.maxPly = maxPly;
+		this.valueCount = valueCount;
+		this.maxShardEntries = Math.max(16, maxEntries / SHARDS);
+	}
+
+	/**
+	 * Sets the values added to each move of a game by the white and the black side
+	 *
+	 * @return false to skip the game
+	 */
+	protected abstract boolean getGameValues(Game game, long[] whiteValues, long[] blackValues);
+
+	/**
+	 * The move stored in the entries, it can not be zero
+	 */
+	protected abstract int encodeMove(Board board, int move);
+
+	public long getGameCount() {
+		return games.get();
+	}
+
+	public long getPositionCount() {
+		return positions.get();
+	}
+
+	/**
+	 * Replays the games of the PGN files and passes the aggregated entries to the consumer
+	 *
+	 * @param tempDirectory where the run files are created
+	 */
+	protected void aggregate(List<Path> pgnPaths, Path tempDirectory, EntryConsumer consumer) throws IOException {
+		runDirectory = Files.createTempDirectory(tempDirectory, "runs");
+		shards = new Shard[SHARDS];
+		for (int i = 0; i < SHARDS; i++) {
+			shards[i] = new Shard(maxShardEntries);
+		}
+		runs.clear();
+		games.set(0);
+		positions.set(0);
+
+		try {
+			replayGames(pgnPaths);
+			// The rest of the entries are also spilled, so the merge is the same with any number of runs
+			for (Shard shard : shards) {
+				shard.spill();
+			}
+			shards = null;
+			logger.debug("Replayed " + games.get() + " games with " + positions.get() + " positions in " + runs.size() + " runs");
+			merge(consumer);
+		} finally {
+			for (Path run : runs) {
+				Files.deleteIfExists(run);
+			}
+			Files.deleteIfExists(runDirectory);
+		}
+	}
+
+	private void replayGames(List<Path> pgnPaths) throws IOException {
+		BlockingQueue<List<Game>> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+		Thread[] workers = new Thread[threads];
+		IOException[] workerException = new IOException[1];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(() -> {
+				Board board = new Board();
+				long[] whiteValues = new long[valueCount];
+				long[] blackValues = new long[valueCount];
+				try {
+					List<Game> batch;
+					while ((batch = queue.take()) != END_OF_GAMES) {
+						try {
+							for (Game game : batch) {
+								replayGame(board, game, whiteValues, blackValues);
+							}
+						} catch (IOException e) {
+							// Keeps consuming the games, so the reader does not block
+							synchronized (workerException) {
+								workerException[0] = e;
+							}
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			workers[i].start();
+		}
+
+		try {
+			List<Game> batch = new ArrayList<>(BATCH_SIZE);
+			for (Path pgnPath : pgnPaths) {
+				logger.debug("Reading " + pgnPath);
+				try (Reader reader = new InputStreamReader(new BufferedInputStream(Files.newInputStream(pgnPath), 1 << 16), StandardCharsets.UTF_8)) {
+					PgnTokenizer tokenizer = new PgnTokenizer(reader);
+					Game game;
+					while ((game = PgnParser.parseGame(tokenizer, true)) != null) {
+						batch.add(game);
+						if (batch.size() == BATCH_SIZE) {
+							queue.put(batch);
+							batch = new ArrayList<>(BATCH_SIZE);
+						}
+					}
+				}
+			}
+			if (!batch.isEmpty()) {
+				queue.put(batch);
+			}
+			for (int i = 0; i < threads; i++) {
+				queue.put(END_OF_GAMES);
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+		} catch (InterruptedException e) {
+			for (Thread worker : workers) {
+				worker.interrupt();
+			}
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted replaying the games");
+		}
+		if (workerException[0] != null) {
+			throw workerException[0];
+		}
+	}
+
+	private void replayGame(Board board, Game game, long[] whiteValues, long[] blackValues) throws IOException {
+		if (!getGameValues(game, whiteValues, blackValues)) {
+			return;
+		}
+
+		try {
+			if (game.getFenStartPosition() != null) {
+				board.setFen(game.getFenStartPosition());
+			} else {
+				board.startPosition();
+			}
+			int ply = 0;
+			for (GameNode gameNode : game.getPv().variation) {
+				if (ply >= maxPly) {
+					break;
+				}
+				if (gameNode instanceof GameNodeMove) {
+					int move = Move.getFromString(board, ((GameNodeMove) gameNode).move, true);
+					if (move == Move.NONE || move == Move.NULL) {
+						break;
+					}
+					addMove(board.getKey(), encodeMove(board, move), board.getTurn() ? whiteValues : blackValues);
+					board.doMove(move, false, false);
+					ply++;
+				}
+			}
+			positions.addAndGet(ply);
+			games.incrementAndGet();
+		} catch (RuntimeException e) {
+			logger.error("Error replaying game " + game.getWhite() + " - " + game.getBlack() + ": " + e.getMessage());
+		}
+	}
+
+	private static int hash(long key, int move) {
+		long h = (key ^ (move * 0x9e3779b97f4a7c15L)) * 0xff51afd7ed558ccdL;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private void addMove(long key, int move, long[] values) throws IOException {
+		int hash = hash(key, move);
+		// The highest bits select one of the 64 shards, the lowest ones the slot in the shard
+		shards[hash >>> 26].add(key, move, values, hash);
+	}
+
+	private Path newRunPath() {
+		synchronized (runs) {
+			Path run = runDirectory.resolve("run" + runs.size());
+			runs.add(run);
+			return run;
+		}
+	}
+
+	private static DataOutputStream newRunOutput(Path run) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16));
+	}
+
+	private void writeEntry(DataOutputStream dos, long key, int move, long[] values, int offset) throws IOException {
+		dos.writeLong(key);
+		dos.writeInt(move);
+		for (int v = 0; v < valueCount; v++) {
+			dos.writeLong(values[offset + v]);
+		}
+	}
+
+	/**
+	 * Open addressing hash map from (key, move) to the values, with parallel arrays
+	 */
+	private class Shard {
+		final int maxEntries;
+		final int mask;
+		final long[] keys;
+		final int[] moves; // 0 marks an empty slot
+		final long[] values;
+		int size;
+
+		Shard(int maxEntries) {
+			this.maxEntries = maxEntries;
+			// Load factor under 0.75
+			int capacity = Integer.highestOneBit(maxEntries + (maxEntries >>> 1)) << 1;
+			mask = capacity - 1;
+			keys = new long[capacity];
+			moves = new int[capacity];
+			values = new long[capacity * valueCount];
+		}
+
+		synchronized void add(long key, int move, long[] moveValues, int hash) throws IOException {
+			int i = hash & mask;
+			while (moves[i] != 0) {
+				if (keys[i] == key && moves[i] == move) {
+					for (int v = 0; v < valueCount; v++) {
+						values[i * valueCount + v] += moveValues[v];
+					}
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			moves[i] = move;
+			System.arraycopy(moveValues, 0, values, i * valueCount, valueCount);
+			if (++size >= maxEntries) {
+				spill();
+			}
+		}
+
+		/**
+		 * Sorts the entries and writes them to a new run file, leaving the shard empty
+		 */
+		synchronized void spill() throws IOException {
+			if (size == 0) {
+				return;
+			}
+			// Moves the entries to the beginning of the arrays
+			int n = 0;
+			for (int i = 0; i <= mask; i++) {
+				if (moves[i] != 0) {
+					if (i != n) {
+						keys[n] = keys[i];
+						moves[n] = moves[i];
+						System.arraycopy(values, i * valueCount, values, n * valueCount, valueCount);
+						moves[i] = 0;
+					}
+					n++;
+				}
+			}
+			sort(0, n - 1);
+
+			try (DataOutputStream dos = newRunOutput(newRunPath())) {
+				for (int i = 0; i < n; i++) {
+					writeEntry(dos, keys[i], moves[i], values, i * valueCount);
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				moves[i] = 0;
+			}
+			size = 0;
+		}
+
+		int compare(int i, int j) {
+			int c = Long.compareUnsigned(keys[i], keys[j]);
+			return c != 0 ? c : Integer.compare(moves[i], moves[j]);
+		}
+
+		void swap(int i, int j) {
+			long k = keys[i];
+			keys[i] = keys[j];
+			keys[j] = k;
+			int m = moves[i];
+			moves[i] = moves[j];
+			moves[j] = m;
+			for (int v = 0; v < valueCount; v++) {
+				long value = values[i * valueCount + v];
+				values[i * valueCount + v] = values[j * valueCount + v];
+				values[j * valueCount + v] = value;
+			}
+		}
+
+		/**
+		 * Quicksort of the parallel arrays by key (unsigned) and move, avoiding the boxing of a comparator sort
+		 */
+		void sort(int low, int high) {
+			while (high - low > 16) {
+				int middle = (low + high) >>> 1;
+				// Median of three to the high position as pivot
+				if (compare(middle, low) < 0) {
+					swap(middle, low);
+				}
+				if (compare(high, low) < 0) {
+					swap(high, low);
+				}
+				if (compare(middle, high) < 0) {
+					swap(middle, high);
+				}
+				int store = low;
+				for (int i = low; i < high; i++) {
+					if (compare(i, high) < 0) {
+						swap(i, store++);
+					}
+				}
+				swap(store, high);
+				// Recurses into the smaller part
+				if (store - low < high - store) {
+					sort(low, store - 1);
+					low = store + 1;
+				} else {
+					sort(store + 1, high);
+					high = store - 1;
+				}
+			}
+			for (int i = low + 1; i <= high; i++) {
+				for (int j = i; j > low && compare(j, j - 1) < 0; j--) {
+					swap(j, j - 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sequential reader of a run file
+	 */
+	private class RunReader {
+		final DataInputStream dis;
+		long key;
+		int move;
+		final long[] values = new long[valueCount];
+
+		RunReader(Path run) throws IOException {
+			dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+		}
+
+		boolean next() throws IOException {
+			try {
+				key = dis.readLong();
+				move = dis.readInt();
+				for (int v = 0; v < valueCount; v++) {
+					values[v] = dis.readLong();
+				}
+				return true;
+			} catch (EOFException e) {
+				dis.close();
+				return false;
+			}
+		}
+
+		int compareTo(RunReader other) {
+			int c = Long.compareUnsigned(key, other.key);
+			return c != 0 ? c : Integer.compare(move, other.move);
+		}
+	}
+
+	/**
+	 * Merges the runs in passes of up to MERGE_FAN_IN runs, writing intermediate runs, until the last pass can pass
+	 * the entries to the consumer
+	 */
+	private void merge(EntryConsumer consumer) throws IOException {
+		List<Path> pending = new ArrayList<>(runs);
+		while (pending.size() > MERGE_FAN_IN) {
+			logger.debug("Merging " + pending.size() + " runs to intermediate runs");
+			List<Path> merged = new ArrayList<>();
+			for (int i = 0; i < pending.size(); i += MERGE_FAN_IN) {
+				List<Path> group = pending.subList(i, Math.min(pending.size(), i + MERGE_FAN_IN));
+				if (group.size() == 1) {
+					merged.add(group.get(0));
+					continue;
+				}
+				Path run = newRunPath();
+				try (DataOutputStream dos = newRunOutput(run)) {
+					mergeRuns(group, (key, move, values) -> writeEntry(dos, key, move, values, 0));
+				}
+				for (Path groupRun : group) {
+					Files.delete(groupRun);
+				}
+				merged.add(run);
+			}
+			pending = merged;
+		}
+		logger.debug("Merging " + pending.size() + " runs");
+		mergeRuns(pending, consumer);
+	}
+
+	/**
+	 * K-way merge of the sorted runs, adding the values of the same position and move found in different runs
+	 */
+	private void mergeRuns(List<Path> mergedRuns, EntryConsumer consumer) throws IOException {
+		PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, mergedRuns.size()), RunReader::compareTo);
+		List<RunReader> readers = new ArrayList<>();
+		long[] values = new long[valueCount];
+		try {
+			for (Path run : mergedRuns) {
+				RunReader reader = new RunReader(run);
+				readers.add(reader);
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+
+			while (!queue.isEmpty()) {
+				RunReader reader = queue.poll();
+				long key = reader.key;
+				int move = reader.move;
+				System.arraycopy(reader.values, 0, values, 0, valueCount);
+				if (reader.next()) {
+					queue.add(reader);
+				}
+				while (!queue.isEmpty() && queue.peek().key == key && queue.peek().move == move) {
+					reader = queue.poll();
+					for (int v = 0; v < valueCount; v++) {
+						values[v] += reader.values[v];
+					}
+					if (reader.next()) {
+						queue.add(reader);
+					}
+				}
+				consumer.accept(key, move, values);
+			}
+		} finally {
+			for (RunReader reader : readers) {
+				reader.dis.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package com.alonsoruibal.chess.book;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.Move;
+import com.alonsoruibal.chess.bitboard.BitboardUtils;
+import com.alonsoruibal.chess.log.Logger;
+import com.alonsoruibal.chess.pgn.Game;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds a Polyglot opening book from PGN files, readable by FileBook
+ * <p/>
+ * The games are replayed in parallel and the moves are aggregated with a bounded memory by the PgnMoveAggregator.
+ * Like the Polyglot make-book, the weight of a move is 2 for each win and 1 for each draw of the side to move.
+ */
+public class PolyglotBookBuilder extends PgnMoveAggregator {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = Logger.getLogger("PolyglotBookBuilder");
+
+	public static final int DEFAULT_MAX_PLY = 40;
+	public static final int DEFAULT_MIN_GAMES = 1;
+
+	private static final int MAX_BOOK_WEIGHT = 0xffff;
+
+	// The Polyglot square of each board index, a1 = 0, h1 = 7, ..., h8 = 63
+	private static final int[] POLYGLOT_SQUARE = new int[64];
+
+	static {
+		for (int i = 0; i < 64; i++) {
+			String name = BitboardUtils.index2Algebraic(i);
+			POLYGLOT_SQUARE[i] = (name.charAt(1) - '1') * 8 + (name.charAt(0) - 'a');
+		}
+	}
+
+	private final int minGames;
+
+	/**
+	 * @param threads    number of threads replaying the games
+	 * @param maxPly     only the moves before this ply are included in the book
+	 * @param minGames   minimum number of games with a move to include it in the book
+	 * @param maxEntries maximum number of position-move entries in memory before spilling them to disk
+	 */
+	public PolyglotBookBuilder(int threads, int maxPly, int minGames, int maxEntries) {
+		// The values are the number of games and the weight
+		super(threads, maxPly, 2, maxEntries);
+		this.minGames = minGames;
+	}
+
+	/**
+	 * Builds the book from the PGN files
+	 *
+	 * @return the number of entries in the book
+	 */
+	public long build(List<Path> pgnPaths, Path bookPath) throws IOException {
+		PositionWriter writer = new PositionWriter(bookPath);
+		try {
+			aggregate(pgnPaths, bookPath.toAbsolutePath().getParent(), (key, move, values) -> writer.add(key, move, values[0], values[1]));
+			writer.flushPosition();
+		} finally {
+			writer.close();
+		}
+		logger.debug("Written " + writer.entries + " book entries to " + bookPath);
+		return writer.entries;
+	}
+
+	@Override
+	protected boolean getGameValues(Game game, long[] whiteValues, long[] blackValues) {
+		String result = game.getResult();
+		whiteValues[0] = 1;
+		blackValues[0] = 1;
+		if ("1-0".equals(result)) {
+			whiteValues[1] = 2;
+			blackValues[1] = 0;
+		} else if ("0-1".equals(result)) {
+			whiteValues[1] = 0;
+			blackValues[1] = 2;
+		} else if ("½-½".equals(result)) {
+			whiteValues[1] = 1;
+			blackValues[1] = 1;
+		} else {
+			// Unfinished games
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	protected int encodeMove(Board board, int move) {
+		return getPolyglotMove(board, move);
+	}
+
+	/**
+	 * The Polyglot move, with the castlings encoded as the king capturing its own rook
+	 */
+	static int getPolyglotMove(Board board, int move) {
+		int fromIndex = Move.getFromIndex(move);
+		int toIndex = Move.getToIndex(move);
+		int promotion = 0;
+		switch (Move.getMoveType(move)) {
+			case Move.TYPE_KINGSIDE_CASTLING:
+				toIndex = Long.numberOfTrailingZeros(board.castlingRooks[board.getTurn() ? 0 : 2]);
+				break;
+			case Move.TYPE_QUEENSIDE_CASTLING:
+				toIndex = Long.numberOfTrailingZeros(board.castlingRooks[board.getTurn() ? 1 : 3]);
+				break;
+			case Move.TYPE_PROMOTION_KNIGHT:
+				promotion = 1;
+				break;
+			case Move.TYPE_PROMOTION_BISHOP:
+				promotion = 2;
+				break;
+			case Move.TYPE_PROMOTION_ROOK:
+				promotion = 3;
+				break;
+			case Move.TYPE_PROMOTION_QUEEN:
+				promotion = 4;
+				break;
+		}
+		return (promotion << 12) | (POLYGLOT_SQUARE[fromIndex] << 6) | POLYGLOT_SQUARE[toIndex];
+	}
+
+	/**
+	 * Groups the moves of each position to filter and scale the weights before writing the 16-byte book entries
+	 */
+	private class PositionWriter {
+		final DataOutputStream dos;
+		long key;
+		int size;
+		int[] moves = new int[64];
+		long[] weights = new long[64];
+		long entries;
+
+		PositionWriter(Path bookPath) throws IOException {
+			dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(bookPath), 1 << 16));
+		}
+
+		void add(long key, int move, long count, long weight) throws IOException {
+			if (size > 0 && key != this.key) {
+				flushPosition();
+			}
+			this.key = key;
+			// The moves without wins or draws are not useful in the book
+			if (count < minGames || weight == 0) {
+				return;
+			}
+			if (size == moves.length) {
+				moves = Arrays.copyOf(moves, size << 1);
+				weights = Arrays.copyOf(weights, size << 1);
+			}
+			moves[size] = move;
+			weights[size] = weight;
+			size++;
+		}
+
+		void flushPosition() throws IOException {
+			if (size == 0) {
+				return;
+			}
+			long maxWeight = 0;
+			for (int i = 0; i < size; i++) {
+				maxWeight = Math.max(maxWeight, weights[i]);
+			}
+			// Sorted by weight, the best moves first like in the Polyglot books
+			for (int i = 1; i < size; i++) {
+				for (int j = i; j > 0 && weights[j] > weights[j - 1]; j--) {
+					long w = weights[j];
+					weights[j] = weights[j - 1];
+					weights[j - 1] = w;
+					int m = moves[j];
+					moves[j] = moves[j - 1];
+					moves[j - 1] = m;
+				}
+			}
+			for (int i = 0; i < size; i++) {
+				long weight = weights[i];
+				if (maxWeight > MAX_BOOK_WEIGHT) {
+					weight = Math.max(1, weight * MAX_BOOK_WEIGHT / maxWeight);
+				}
+				dos.writeLong(key);
+				dos.writeShort(moves[i]);
+				dos.writeShort((int) weight);
+				dos.writeInt(0); // Learn
+				entries++;
+			}
+			size = 0;
+		}
+
+		void close() throws IOException {
+			dos.close();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int maxPly = DEFAULT_MAX_PLY;
+		int minGames = DEFAULT_MIN_GAMES;
+		int maxEntries = DEFAULT_MAX_ENTRIES;
+
+		int i = 0;
+		for (; i < args.length - 1 && args[i].startsWith("-"); i += 2) {
+			switch (args[i]) {
+				case "-threads":
+					threads = Integer.parseInt(args[i + 1]);
+					break;
+				case "-ply":
+					maxPly = Integer.parseInt(args[i + 1]);
+					break;
+				case "-min":
+					minGames = Integer.parseInt(args[i + 1]);
+					break;
+				case "-entries":
+					maxEntries = Integer.parseInt(args[i + 1]);
+					break;
+				default:
+					i = args.length;
+			}
+		}
+		if (args.length - i < 2) {
+			System.out.println("Builds a Polyglot opening book from PGN files:");
+			System.out.println("  PolyglotBookBuilder [-threads n] [-ply n] [-min n] [-entries n] book.bin file1.pgn [file2.pgn ...]");
+			System.out.println("  -threads: threads replaying the games, the default is the number of processors");
+			System.out.println("  -ply:     maximum ply of the book moves, default " + DEFAULT_MAX_PLY);
+			System.out.println("  -min:     minimum number of games with a move, default " + DEFAULT_MIN_GAMES);
+			System.out.println("  -entries: maximum entries in memory before spilling them to disk, default " + DEFAULT_MAX_ENTRIES);
+			System.exit(-1);
+		}
+
+		Path bookPath = Paths.get(args[i]);
+		List<Path> pgnPaths = new ArrayList<>();
+		for (int j = i + 1; j < args.length; j++) {
+			pgnPaths.add(Paths.get(args[j]));
+		}
+
+		long time = System.currentTimeMillis();
+		PolyglotBookBuilder builder = new PolyglotBookBuilder(threads, maxPly, minGames, maxEntries);
+		long entries = builder.build(pgnPaths, bookPath);
+		System.out.println("Book " + bookPath + " with " + entries + " entries from " + builder.getGameCount() + " games and "
+				+ builder.getPositionCount() + " positions in " + (System.currentTimeMillis() - time) + " ms");
+	}
+}
@@ -0,0 +1,375 @@
+package com.alonsoruibal.chess.book;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.Move;
+import com.alonsoruibal.chess.log.Logger;
+import com.alonsoruibal.chess.pgn.Game;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opening explorer database: for each position of the games in PGN files it stores the moves played with the
+ * results and the average Elo of the players making the move.
+ * <p/>
+ * The database is built with the PgnMoveAggregator and saved in one file with a header, a table of positions sorted
+ * by key and a table of moves. The file is memory-mapped and, as the Zobrist keys are uniformly distributed,
+ * a position is found interpolating its key in the position table, that is usually at one step of its real place.
+ */
+public class PositionDatabase {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = Logger.getLogger("PositionDatabase");
+
+	public static final int DEFAULT_MAX_PLY = 80;
+
+	private static final int MAGIC = 0x43504442; // "CPDB"
+	private static final int VERSION = 1;
+	// Magic, version, position count and move count
+	private static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+	// Key and first move index
+	private static final int POSITION_BYTES = 8 + 8;
+	// Move, white wins, draws, black wins, Elo sum and Elo count
+	private static final int MOVE_BYTES = 4 + 4 + 4 + 4 + 8 + 8;
+
+	// A mapped buffer is limited to 2 GB, so the file is mapped in chunks of 1 GB
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	private final ByteBuffer[] chunks;
+	private final long positionCount;
+	private final long moveCount;
+	private final long movesOffset;
+
+	/**
+	 * Statistics of a move in a position
+	 */
+	public static class MoveStats {
+		public final int move;
+		public final int whiteWins;
+		public final int draws;
+		public final int blackWins;
+		// 0 if the Elo of the players is unknown
+		public final int averageElo;
+
+		public MoveStats(int move, int whiteWins, int draws, int blackWins, int averageElo) {
+			this.move = move;
+			this.whiteWins = whiteWins;
+			this.draws = draws;
+			this.blackWins = blackWins;
+			this.averageElo = averageElo;
+		}
+
+		public int getGames() {
+			return whiteWins + draws + blackWins;
+		}
+
+		@Override
+		public String toString() {
+			return Move.toString(move) + " " + getGames() + " games +" + whiteWins + " =" + draws + " -" + blackWins
+					+ (averageElo > 0 ? " Elo " + averageElo : "");
+		}
+	}
+
+	public PositionDatabase(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			int chunkCount = (int) ((size + CHUNK_MASK) >>> CHUNK_BITS);
+			chunks = new ByteBuffer[chunkCount];
+			for (int i = 0; i < chunkCount; i++) {
+				long position = (long) i << CHUNK_BITS;
+				// The mapping remains valid after closing the channel
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, 1L << CHUNK_BITS));
+			}
+			if (size < HEADER_BYTES || getInt(0) != MAGIC || getInt(4) != VERSION) {
+				throw new IOException("Wrong position database file " + path);
+			}
+			positionCount = getLong(8);
+			moveCount = getLong(16);
+			movesOffset = HEADER_BYTES + (positionCount + 1) * POSITION_BYTES;
+			if (size != movesOffset + moveCount * MOVE_BYTES) {
+				throw new IOException("Truncated position database file " + path);
+			}
+		}
+	}
+
+	public long getPositionCount() {
+		return positionCount;
+	}
+
+	public long getMoveCount() {
+		return moveCount;
+	}
+
+	// The fields are aligned to their size and never cross the chunk limits
+	private int getInt(long offset) {
+		return chunks[(int) (offset >>> CHUNK_BITS)].getInt((int) (offset & CHUNK_MASK));
+	}
+
+	private long getLong(long offset) {
+		return chunks[(int) (offset >>> CHUNK_BITS)].getLong((int) (offset & CHUNK_MASK));
+	}
+
+	private long getPositionKey(long position) {
+		return getLong(HEADER_BYTES + position * POSITION_BYTES);
+	}
+
+	private long getFirstMove(long position) {
+		return getLong(HEADER_BYTES + position * POSITION_BYTES + 8);
+	}
+
+	/**
+	 * Finds the position with the key or returns -1
+	 */
+	long findPosition(long key) {
+		if (positionCount == 0) {
+			return -1;
+		}
+		// The expected place of the key is key / 2^64 * positionCount, the high part of the unsigned multiplication
+		long guess = Math.multiplyHigh(key, positionCount) + ((key >> 63) & positionCount);
+
+		// Gallops from the guess to bound the key and then does a binary search
+		long low;
+		long high;
+		long step = 1;
+		if (Long.compareUnsigned(getPositionKey(guess), key) < 0) {
+			low = guess + 1;
+			high = low;
+			while (high < positionCount && Long.compareUnsigned(getPositionKey(high), key) < 0) {
+				low = high + 1;
+				high += step;
+				step <<= 1;
+			}
+			high = Math.min(high, positionCount - 1);
+		} else {
+			high = guess;
+			low = high;
+			while (low > 0 && Long.compareUnsigned(getPositionKey(low), key) > 0) {
+				high = low - 1;
+				low -= step;
+				step <<= 1;
+			}
+			low = Math.max(low, 0);
+		}
+		while (low <= high) {
+			long middle = (low + high) >>> 1;
+			int c = Long.compareUnsigned(getPositionKey(middle), key);
+			if (c == 0) {
+				return middle;
+			} else if (c < 0) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the moves played in the board position, sorted by the number of games
+	 */
+	public List<MoveStats> getMoves(Board board) {
+		List<MoveStats> moves = new ArrayList<>();
+		long position = findPosition(board.getKey());
+		if (position < 0) {
+			return moves;
+		}
+		long last = getFirstMove(position + 1);
+		for (long i = getFirstMove(position); i < last; i++) {
+			long offset = movesOffset + i * MOVE_BYTES;
+			// Verifies the move to discard key collisions
+			int move = board.getLegalMove(getInt(offset));
+			if (move == Move.NONE) {
+				continue;
+			}
+			long eloCount = getLong(offset + 24);
+			moves.add(new MoveStats(move, getInt(offset + 4), getInt(offset + 8), getInt(offset + 12),
+					eloCount > 0 ? (int) (getLong(offset + 16) / eloCount) : 0));
+		}
+		moves.sort((a, b) -> Integer.compare(b.getGames(), a.getGames()));
+		return moves;
+	}
+
+	/**
+	 * Builds the database of the positions in the PGN files
+	 *
+	 * @param threads    number of threads replaying the games
+	 * @param maxPly     only the moves before this ply are included
+	 * @param maxEntries maximum number of position-move entries in memory before spilling them to disk
+	 */
+	public static void build(List<Path> pgnPaths, Path path, int threads, int maxPly, int maxEntries) throws IOException {
+		new Builder(threads, maxPly, maxEntries).build(pgnPaths, path);
+	}
+
+	private static class Builder extends PgnMoveAggregator {
+		// The values are the white wins, draws, black wins, the sum of the Elos of the moving side and its count
+		static final int WHITE_WINS = 0;
+		static final int DRAWS = 1;
+		static final int BLACK_WINS = 2;
+		static final int ELO_SUM = 3;
+		static final int ELO_COUNT = 4;
+
+		long positionCount;
+		long moveCount;
+		long lastKey;
+		DataOutputStream positions;
+		DataOutputStream moves;
+
+		Builder(int threads, int maxPly, int maxEntries) {
+			super(threads, maxPly, 5, maxEntries);
+		}
+
+		@Override
+		protected boolean getGameValues(Game game, long[] whiteValues, long[] blackValues) {
+			String result = game.getResult();
+			int resultIndex;
+			if ("1-0".equals(result)) {
+				resultIndex = WHITE_WINS;
+			} else if ("0-1".equals(result)) {
+				resultIndex = BLACK_WINS;
+			} else if ("½-½".equals(result)) {
+				resultIndex = DRAWS;
+			} else {
+				// Unfinished games
+				return false;
+			}
+			for (int i = WHITE_WINS; i <= BLACK_WINS; i++) {
+				whiteValues[i] = i == resultIndex ? 1 : 0;
+				blackValues[i] = i == resultIndex ? 1 : 0;
+			}
+			Integer whiteElo = game.getWhiteElo();
+			Integer blackElo = game.getBlackElo();
+			whiteValues[ELO_SUM] = whiteElo != null ? whiteElo : 0;
+			whiteValues[ELO_COUNT] = whiteElo != null ? 1 : 0;
+			blackValues[ELO_SUM] = blackElo != null ? blackElo : 0;
+			blackValues[ELO_COUNT] = blackElo != null ? 1 : 0;
+			return true;
+		}
+
+		/**
+		 * The move with the check flag, as returned by Board.getLegalMove()
+		 */
+		@Override
+		protected int encodeMove(Board board, int move) {
+			return move;
+		}
+
+		void build(List<Path> pgnPaths, Path path) throws IOException {
+			// The positions and the moves are written to separate files and joined at the end
+			Path positionsPath = path.resolveSibling(path.getFileName() + ".positions");
+			Path movesPath = path.resolveSibling(path.getFileName() + ".moves");
+			try {
+				positions = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(positionsPath), 1 << 16));
+				moves = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(movesPath), 1 << 16));
+				try {
+					aggregate(pgnPaths, path.toAbsolutePath().getParent(), this::addEntry);
+					// The last position marks the end of the moves of the previous one
+					positions.writeLong(0);
+					positions.writeLong(moveCount);
+				} finally {
+					positions.close();
+					moves.close();
+				}
+
+				Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+				try (FileChannel out = FileChannel.open(tmpPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+					header.putInt(MAGIC).putInt(VERSION).putLong(positionCount).putLong(moveCount).flip();
+					while (header.hasRemaining()) {
+						out.write(header);
+					}
+					append(out, positionsPath);
+					append(out, movesPath);
+				}
+				Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+				logger.debug("Written " + positionCount + " positions and " + moveCount + " moves to " + path);
+			} finally {
+				Files.deleteIfExists(positionsPath);
+				Files.deleteIfExists(movesPath);
+			}
+		}
+
+		private static void append(FileChannel out, Path path) throws IOException {
+			try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+				long size = in.size();
+				long transferred = 0;
+				while (transferred < size) {
+					transferred += in.transferTo(transferred, size - transferred, out);
+				}
+			}
+		}
+
+		/**
+		 * The entries come sorted by key, a new position starts when the key changes
+		 */
+		private void addEntry(long key, int move, long[] values) throws IOException {
+			if (moveCount == 0 || key != lastKey) {
+				positions.writeLong(key);
+				positions.writeLong(moveCount);
+				positionCount++;
+				lastKey = key;
+			}
+			moves.writeInt(move);
+			moves.writeInt((int) values[WHITE_WINS]);
+			moves.writeInt((int) values[DRAWS]);
+			moves.writeInt((int) values[BLACK_WINS]);
+			moves.writeLong(values[ELO_SUM]);
+			moves.writeLong(values[ELO_COUNT]);
+			moveCount++;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int maxPly = DEFAULT_MAX_PLY;
+		int maxEntries = PgnMoveAggregator.DEFAULT_MAX_ENTRIES;
+
+		int i = 0;
+		for (; i < args.length - 1 && args[i].startsWith("-"); i += 2) {
+			switch (args[i]) {
+				case "-threads":
+					threads = Integer.parseInt(args[i + 1]);
+					break;
+				case "-ply":
+					maxPly = Integer.parseInt(args[i + 1]);
+					break;
+				case "-entries":
+					maxEntries = Integer.parseInt(args[i + 1]);
+					break;
+				default:
+					i = args.length;
+			}
+		}
+		if (args.length - i < 2) {
+			System.out.println("Builds a position database from PGN files:");
+			System.out.println("  PositionDatabase [-threads n] [-ply n] [-entries n] database.db file1.pgn [file2.pgn ...]");
+			System.out.println("  -threads: threads replaying the games, the default is the number of processors");
+			System.out.println("  -ply:     maximum ply of the positions, default " + DEFAULT_MAX_PLY);
+			System.out.println("  -entries: maximum entries in memory before spilling them to disk, default " + PgnMoveAggregator.DEFAULT_MAX_ENTRIES);
+			System.exit(-1);
+		}
+
+		Path path = Paths.get(args[i]);
+		List<Path> pgnPaths = new ArrayList<>();
+		for (int j = i + 1; j < args.length; j++) {
+			pgnPaths.add(Paths.get(args[j]));
+		}
+
+		long time = System.currentTimeMillis();
+		build(pgnPaths, path, threads, maxPly, maxEntries);
+		PositionDatabase database = new PositionDatabase(path);
+		System.out.println("Database " + path + " with " + database.getPositionCount() + " positions and " + database.getMoveCount()
+				+ " moves in " + (System.currentTimeMillis() - time) + " ms");
+	}
+}
@@ -0,0 +1,84 @@
+package com.alonsoruibal.chess.epd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A test position of an EPD file: the four FEN fields followed by operations separated by ";"
+ * <p/>
+ * Only the "bm" (best moves), "am" (avoid moves) and "id" operations are used.
+ */
+public class EpdPosition {
+	private final String line;
+	private final String fen;
+	private String id;
+	private List<String> bestMoves = Collections.emptyList();
+	private List<String> avoidMoves = Collections.emptyList();
+
+	private EpdPosition(String line, String fen) {
+		this.line = line;
+		this.fen = fen;
+	}
+
+	/**
+	 * @return the position or null if the line does not contain a position
+	 */
+	public static EpdPosition parse(String line) {
+		String[] tokens = line.trim().split("\\s+", 5);
+		if (tokens.length < 4) {
+			return null;
+		}
+		EpdPosition position = new EpdPosition(line, tokens[0] + " " + tokens[1] + " " + tokens[2] + " " + tokens[3]);
+		if (tokens.length == 5) {
+			for (String operation : tokens[4].split(";")) {
+				String[] operationTokens = operation.trim().split("\\s+", 2);
+				if (operationTokens.length < 2) {
+					continue;
+				}
+				switch (operationTokens[0]) {
+					case "bm":
+						position.bestMoves = parseMoves(operationTokens[1]);
+						break;
+					case "am":
+						position.avoidMoves = parseMoves(operationTokens[1]);
+						break;
+					case "id":
+						position.id = operationTokens[1].replace("\"", "");
+						break;
+				}
+			}
+		}
+		return position;
+	}
+
+	private static List<String> parseMoves(String moves) {
+		List<String> list = new ArrayList<>();
+		for (String move : moves.trim().split("\\s+")) {
+			if (!move.isEmpty()) {
+				list.add(move);
+			}
+		}
+		return list;
+	}
+
+	public String getLine() {
+		return line;
+	}
+
+	public String getFen() {
+		return fen;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public List<String> getBestMoves() {
+		return bestMoves;
+	}
+
+	public List<String> getAvoidMoves() {
+		return avoidMoves;
+	}
+}
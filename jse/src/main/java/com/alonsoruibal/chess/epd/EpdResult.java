@@ -0,0 +1,35 @@
+package com.alonsoruibal.chess.epd;
+
+/**
+ * The result of searching an EPD position
+ */
+public class EpdResult {
+	public final EpdPosition position;
+	public final boolean solved;
+	// The move played at the end of the search in UCI notation
+	public final String move;
+	// Time and nodes when the final move was found, or the totals if not solved
+	public final long solveTime;
+	public final long solveNodes;
+	// Totals of the search
+	public final long time;
+	public final long nodes;
+	public final int depth;
+	public final int score;
+
+	public EpdResult(EpdPosition position, boolean solved, String move, long solveTime, long solveNodes, long time, long nodes, int depth, int score) {
+		this.position = position;
+		this.solved = solved;
+		this.move = move;
+		this.solveTime = solveTime;
+		this.solveNodes = solveNodes;
+		this.time = time;
+		this.nodes = nodes;
+		this.depth = depth;
+		this.score = score;
+	}
+
+	public long getNps() {
+		return 1000 * nodes / Math.max(1, time);
+	}
+}
@@ -0,0 +1,381 @@
+package com.alonsoruibal.chess.epd;
+
+import com.alonsoruibal.chess.Config;
+import com.alonsoruibal.chess.Move;
+import com.alonsoruibal.chess.log.Logger;
+import com.alonsoruibal.chess.search.SearchEngine;
+import com.alonsoruibal.chess.search.SearchObserver;
+import com.alonsoruibal.chess.search.SearchParameters;
+import com.alonsoruibal.chess.search.SearchStatusInfo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs EPD test suites spreading the positions over a pool of independent search engines, one per thread
+ * <p/>
+ * Each position is searched with the time, nodes and depth limits (the first one reached stops the search).
+ * A position is solved if the final move is one of the best moves and none of the avoid moves,
+ * the solve time is the time when that move was found for the last time.
+ * The results can be written in JSON or CSV format.
+ */
+public class EpdRunner {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = Logger.getLogger("EpdRunner");
+
+	private final Config config;
+	private final int threads;
+	private int timeLimit = Integer.MAX_VALUE;
+	private int nodesLimit = Integer.MAX_VALUE;
+	private int depthLimit = Integer.MAX_VALUE;
+
+	/**
+	 * @param config  configuration of the engines, each one allocates its own transposition table
+	 * @param threads number of engines searching in parallel
+	 */
+	public EpdRunner(Config config, int threads) {
+		this.config = config;
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setTimeLimit(int timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+
+	public void setNodesLimit(int nodesLimit) {
+		this.nodesLimit = nodesLimit;
+	}
+
+	public void setDepthLimit(int depthLimit) {
+		this.depthLimit = depthLimit;
+	}
+
+	public static List<EpdPosition> readPositions(InputStream is) throws IOException {
+		List<EpdPosition> positions = new ArrayList<>();
+		BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+		String line;
+		while ((line = br.readLine()) != null) {
+			EpdPosition position = EpdPosition.parse(line);
+			if (position != null) {
+				positions.add(position);
+			}
+		}
+		return positions;
+	}
+
+	/**
+	 * Searches all the positions
+	 *
+	 * @return the results in the same order of the positions
+	 */
+	public List<EpdResult> run(List<EpdPosition> positions) {
+		EpdResult[] results = new EpdResult[positions.size()];
+		AtomicInteger nextPosition = new AtomicInteger();
+		AtomicInteger solved = new AtomicInteger();
+		AtomicInteger done = new AtomicInteger();
+
+		int workerCount = Math.min(threads, Math.max(1, positions.size()));
+		Thread[] workers = new Thread[workerCount];
+		for (int i = 0; i < workerCount; i++) {
+			workers[i] = new Thread(() -> {
+				Worker worker = new Worker();
+				int index;
+				while ((index = nextPosition.getAndIncrement()) < positions.size()) {
+					EpdResult result = worker.search(positions.get(index));
+					results[index] = result;
+					if (result.solved) {
+						solved.incrementAndGet();
+					}
+					logger.debug((done.incrementAndGet()) + "/" + positions.size() + " " + (result.solved ? "solved " : "failed ")
+							+ result.position.getLine() + " played " + result.move + " (" + solved.get() + " solved)");
+				}
+				worker.engine.destroy();
+			}, "EpdRunner-" + i);
+			workers[i].start();
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * An engine and its observer tracking when the best move changes
+	 */
+	private class Worker implements SearchObserver {
+		final SearchEngine engine = new SearchEngine(config);
+		int bestMove;
+		long bestMoveTime;
+		long bestMoveNodes;
+		int depth;
+		int score;
+
+		Worker() {
+			engine.setObserver(this);
+		}
+
+		EpdResult search(EpdPosition position) {
+			bestMove = Move.NONE;
+			bestMoveTime = 0;
+			bestMoveNodes = 0;
+			depth = 0;
+			score = 0;
+
+			engine.clear();
+			engine.getBoard().setFen(position.getFen());
+			int[] bestMoves = parseMoves(position.getBestMoves());
+			int[] avoidMoves = parseMoves(position.getAvoidMoves());
+
+			SearchParameters searchParameters = new SearchParameters();
+			searchParameters.setMoveTime(timeLimit);
+			searchParameters.setNodes(nodesLimit);
+			searchParameters.setDepth(depthLimit);
+
+			long startTime = System.currentTimeMillis();
+			engine.go(searchParameters);
+			long time = System.currentTimeMillis() - startTime;
+			long nodes = engine.getNodeCount();
+
+			int move = engine.getBestMove();
+			if (move != bestMove) {
+				bestMoveTime = time;
+				bestMoveNodes = nodes;
+			}
+			boolean solved = (bestMoves.length == 0 || contains(bestMoves, move)) && !contains(avoidMoves, move);
+			return new EpdResult(position, solved, Move.toString(move), solved ? bestMoveTime : time, solved ? bestMoveNodes : nodes,
+					time, nodes, depth, score);
+		}
+
+		int[] parseMoves(List<String> moveStrings) {
+			int[] moves = new int[moveStrings.size()];
+			for (int i = 0; i < moves.length; i++) {
+				moves[i] = Move.getFromString(engine.getBoard(), moveStrings.get(i), true);
+			}
+			return moves;
+		}
+
+		boolean contains(int[] moves, int move) {
+			for (int m : moves) {
+				if (m != Move.NONE && (m & ~Move.CHECK_MASK) == (move & ~Move.CHECK_MASK)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void info(SearchStatusInfo info) {
+			if (bestMove != engine.getBestMove()) {
+				bestMove = engine.getBestMove();
+				bestMoveTime = info.getTime();
+				bestMoveNodes = info.getNodes();
+			}
+			depth = info.getDepth();
+			score = info.getScore();
+		}
+
+		@Override
+		public void bestMove(int bestMove, int ponder) {
+		}
+	}
+
+	public static int getSolvedCount(List<EpdResult> results) {
+		int solved = 0;
+		for (EpdResult result : results) {
+			if (result.solved) {
+				solved++;
+			}
+		}
+		return solved;
+	}
+
+	public static void writeCsv(List<EpdResult> results, Writer writer) throws IOException {
+		writer.write("id,fen,best_moves,avoid_moves,move,solved,solve_time_ms,solve_nodes,time_ms,nodes,nps,depth,score\n");
+		for (EpdResult result : results) {
+			writer.write(csvField(result.position.getId()) + ","
+					+ csvField(result.position.getFen()) + ","
+					+ csvField(String.join(" ", result.position.getBestMoves())) + ","
+					+ csvField(String.join(" ", result.position.getAvoidMoves())) + ","
+					+ result.move + ","
+					+ result.solved + ","
+					+ result.solveTime + ","
+					+ result.solveNodes + ","
+					+ result.time + ","
+					+ result.nodes + ","
+					+ result.getNps() + ","
+					+ result.depth + ","
+					+ result.score + "\n");
+		}
+		writer.flush();
+	}
+
+	private static String csvField(String value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.contains(",") || value.contains("\"")) {
+			return "\"" + value.replace("\"", "\"\"") + "\"";
+		}
+		return value;
+	}
+
+	public static void writeJson(List<EpdResult> results, Writer writer) throws IOException {
+		int solved = getSolvedCount(results);
+		long time = 0;
+		long nodes = 0;
+		for (EpdResult result : results) {
+			time += result.time;
+			nodes += result.nodes;
+		}
+		writer.write("{\n");
+		writer.write("  \"positions\": " + results.size() + ",\n");
+		writer.write("  \"solved\": " + solved + ",\n");
+		writer.write("  \"time_ms\": " + time + ",\n");
+		writer.write("  \"nodes\": " + nodes + ",\n");
+		writer.write("  \"results\": [\n");
+		for (int i = 0; i < results.size(); i++) {
+			EpdResult result = results.get(i);
+			writer.write("    {\"id\": " + jsonString(result.position.getId())
+					+ ", \"fen\": " + jsonString(result.position.getFen())
+					+ ", \"best_moves\": " + jsonArray(result.position.getBestMoves())
+					+ ", \"avoid_moves\": " + jsonArray(result.position.getAvoidMoves())
+					+ ", \"move\": " + jsonString(result.move)
+					+ ", \"solved\": " + result.solved
+					+ ", \"solve_time_ms\": " + result.solveTime
+					+ ", \"solve_nodes\": " + result.solveNodes
+					+ ", \"time_ms\": " + result.time
+					+ ", \"nodes\": " + result.nodes
+					+ ", \"nps\": " + result.getNps()
+					+ ", \"depth\": " + result.depth
+					+ ", \"score\": " + result.score
+					+ "}" + (i < results.size() - 1 ? "," : "") + "\n");
+		}
+		writer.write("  ]\n");
+		writer.write("}\n");
+		writer.flush();
+	}
+
+	private static String jsonString(String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < ' ') {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	private static String jsonArray(List<String> values) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < values.size(); i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(jsonString(values.get(i)));
+		}
+		return sb.append(']').toString();
+	}
+
+	public static void main(String[] args) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int time = Integer.MAX_VALUE;
+		int nodes = Integer.MAX_VALUE;
+		int depth = Integer.MAX_VALUE;
+		int hash = Config.DEFAULT_TRANSPOSITION_TABLE_SIZE;
+		String jsonFile = null;
+		String csvFile = null;
+
+		int i = 0;
+		for (; i < args.length - 1 && args[i].startsWith("-"); i += 2) {
+			switch (args[i]) {
+				case "-threads":
+					threads = Integer.parseInt(args[i + 1]);
+					break;
+				case "-time":
+					time = Integer.parseInt(args[i + 1]);
+					break;
+				case "-nodes":
+					nodes = Integer.parseInt(args[i + 1]);
+					break;
+				case "-depth":
+					depth = Integer.parseInt(args[i + 1]);
+					break;
+				case "-hash":
+					hash = Integer.parseInt(args[i + 1]);
+					break;
+				case "-json":
+					jsonFile = args[i + 1];
+					break;
+				case "-csv":
+					csvFile = args[i + 1];
+					break;
+				default:
+					i = args.length;
+			}
+		}
+		if (i >= args.length || (time == Integer.MAX_VALUE && nodes == Integer.MAX_VALUE && depth == Integer.MAX_VALUE)) {
+			System.out.println("Runs EPD test suites with a pool of engines:");
+			System.out.println("  EpdRunner [-threads n] [-time ms] [-nodes n] [-depth n] [-hash mb] [-json file] [-csv file] file1.epd [file2.epd ...]");
+			System.out.println("  -threads: engines searching in parallel, the default is the number of processors");
+			System.out.println("  -time, -nodes, -depth: limits for each position, at least one is needed");
+			System.out.println("  -hash:    transposition table size of each engine in MB, default " + Config.DEFAULT_TRANSPOSITION_TABLE_SIZE);
+			System.out.println("  -json, -csv: files to write the results");
+			System.exit(-1);
+		}
+
+		List<EpdPosition> positions = new ArrayList<>();
+		for (int j = i; j < args.length; j++) {
+			try (InputStream is = Files.newInputStream(Paths.get(args[j]))) {
+				positions.addAll(readPositions(is));
+			}
+		}
+
+		Config config = new Config();
+		config.setTranspositionTableSize(hash);
+		EpdRunner runner = new EpdRunner(config, threads);
+		runner.setTimeLimit(time);
+		runner.setNodesLimit(nodes);
+		runner.setDepthLimit(depth);
+
+		long startTime = System.currentTimeMillis();
+		List<EpdResult> results = runner.run(positions);
+		long elapsed = System.currentTimeMillis() - startTime;
+
+		if (jsonFile != null) {
+			try (Writer writer = Files.newBufferedWriter(Paths.get(jsonFile), StandardCharsets.UTF_8)) {
+				writeJson(results, writer);
+			}
+		}
+		if (csvFile != null) {
+			try (Writer writer = Files.newBufferedWriter(Paths.get(csvFile), StandardCharsets.UTF_8)) {
+				writeCsv(results, writer);
+			}
+		}
+		System.out.println("Solved " + getSolvedCount(results) + " of " + results.size() + " positions with " + threads + " threads in " + elapsed + " ms");
+	}
+}
@@ -0,0 +1,76 @@
+package com.alonsoruibal.chess.packed;
+
+import com.alonsoruibal.chess.Board;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file of packed positions, the 32-byte records of Board.getPacked() as four big-endian longs.
+ * The file is memory-mapped in chunks, so the records are read without allocating memory and from several threads.
+ */
+public class PackedPositionReader {
+	public static final int RECORD_BYTES = 32;
+
+	private static final int CHUNK_RECORDS_BITS = 25;
+	private static final long CHUNK_RECORDS_MASK = (1L << CHUNK_RECORDS_BITS) - 1;
+
+	private final ByteBuffer[] chunks;
+	private final long size;
+
+	public PackedPositionReader(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			size = channel.size() / RECORD_BYTES;
+			chunks = new ByteBuffer[(int) ((size + CHUNK_RECORDS_MASK) >>> CHUNK_RECORDS_BITS)];
+			for (int i = 0; i < chunks.length; i++) {
+				long start = ((long) i << CHUNK_RECORDS_BITS) * RECORD_BYTES;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size * RECORD_BYTES - start, (CHUNK_RECORDS_MASK + 1) * RECORD_BYTES));
+			}
+		}
+	}
+
+	/**
+	 * @return the number of positions
+	 */
+	public long size() {
+		return size;
+	}
+
+	private ByteBuffer getChunk(long index) {
+		return chunks[(int) (index >>> CHUNK_RECORDS_BITS)];
+	}
+
+	private int getOffset(long index) {
+		return (int) (index & CHUNK_RECORDS_MASK) * RECORD_BYTES;
+	}
+
+	/**
+	 * Sets the position in the board with Board.setPacked(), the board history is reset
+	 */
+	public void setBoard(long index, Board board) {
+		ByteBuffer chunk = getChunk(index);
+		int offset = getOffset(index);
+		board.setPacked(chunk.getLong(offset), chunk.getLong(offset + 8), chunk.getLong(offset + 16), chunk.getLong(offset + 24));
+	}
+
+	/**
+	 * Copies the four longs of the record to the array
+	 */
+	public void getPacked(long index, long[] packed, int packedOffset) {
+		ByteBuffer chunk = getChunk(index);
+		int offset = getOffset(index);
+		for (int i = 0; i < 4; i++) {
+			packed[packedOffset + i] = chunk.getLong(offset + 8 * i);
+		}
+	}
+
+	/**
+	 * @return the 32 bits of user data stored with the position
+	 */
+	public int getUserData(long index) {
+		return (int) (getChunk(index).getLong(getOffset(index) + 24) >>> Board.PACKED_USER_DATA_SHIFT);
+	}
+}
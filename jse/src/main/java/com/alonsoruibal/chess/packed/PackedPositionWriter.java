@@ -0,0 +1,76 @@
+package com.alonsoruibal.chess.packed;
+
+import com.alonsoruibal.chess.Board;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a file of packed positions that can be read with PackedPositionReader.
+ * The records are accumulated in a direct buffer, there are no allocations per position.
+ * It is not thread safe.
+ */
+public class PackedPositionWriter implements Closeable {
+	private static final int BUFFER_RECORDS = 1 << 12;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * PackedPositionReader.RECORD_BYTES);
+	private final long[] packed = new long[4];
+	private long count;
+
+	/**
+	 * @param append to add the positions to the end of an existing file, otherwise the file is truncated
+	 */
+	public PackedPositionWriter(Path path, boolean append) throws IOException {
+		channel = append ?
+				FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND) :
+				FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Writes the board position with the user data, i.e. the game result
+	 */
+	public void write(Board board, int userData) throws IOException {
+		board.getPacked(packed, 0);
+		packed[3] |= (userData & 0xffffffffL) << Board.PACKED_USER_DATA_SHIFT;
+		write(packed, 0);
+	}
+
+	public void write(long[] packed, int offset) throws IOException {
+		if (!buffer.hasRemaining()) {
+			flush();
+		}
+		for (int i = 0; i < 4; i++) {
+			buffer.putLong(packed[offset + i]);
+		}
+		count++;
+	}
+
+	/**
+	 * @return the number of positions written by this writer
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package com.alonsoruibal.chess.perft;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.Move;
+import com.alonsoruibal.chess.log.Logger;
+import com.alonsoruibal.chess.movegen.LegalMoveGenerator;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaf nodes of the legal move tree to validate the move generation
+ * <p/>
+ * It does not make the moves of the last ply, the count of the legal moves is used instead (bulk counting),
+ * and it stores the counts of the subtrees in a hash table keyed by the Zobrist key and the depth, so the transpositions
+ * are counted only once. The root moves are searched in parallel in a ForkJoin pool, each thread with its own board,
+ * sharing the hash table.
+ */
+public class Perft {
+	private static final int MAX_PLY = 64;
+
+	private final ForkJoinPool pool;
+	private final PerftTable table;
+	private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+	private static class Worker {
+		final Board board = new Board();
+		final LegalMoveGenerator moveGenerator = new LegalMoveGenerator();
+		final int[][] moves = new int[MAX_PLY][256];
+	}
+
+	/**
+	 * Counts of the subtrees, the data is stored XORed with the key so the entries torn by concurrent
+	 * writes are seen as misses and it does not need locks
+	 */
+	private static class PerftTable {
+		// Two longs for each entry: the key XORed with the data and the data, with the count and the depth
+		private final long[] entries;
+		private final int mask;
+
+		PerftTable(int sizeMb) {
+			long entryCount = Long.highestOneBit(Math.max(1, sizeMb * 1024L * 1024L / 16));
+			entryCount = Math.min(entryCount, 1 << 29);
+			entries = new long[(int) entryCount * 2];
+			mask = (int) entryCount - 1;
+		}
+
+		/**
+		 * @return the count of the subtree or -1 if it is not in the table
+		 */
+		long get(long key, int depth) {
+			int index = ((int) key & mask) << 1;
+			long data = entries[index + 1];
+			if ((entries[index] ^ data) == key && (data & 0xff) == depth) {
+				return data >>> 8;
+			}
+			return -1;
+		}
+
+		void set(long key, int depth, long count) {
+			int index = ((int) key & mask) << 1;
+			long data = (count << 8) | depth;
+			entries[index] = key ^ data;
+			entries[index + 1] = data;
+		}
+	}
+
+	private class RootMoveTask extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 5526139840617782146L;
+
+		final long[] packed;
+		final int depth;
+
+		RootMoveTask(long[] packed, int depth) {
+			this.packed = packed;
+			this.depth = depth;
+		}
+
+		@Override
+		protected Long compute() {
+			Worker worker = workers.get();
+			worker.board.setPacked(packed, 0);
+			return perft(worker, depth, 0);
+		}
+	}
+
+	/**
+	 * @param threads threads searching the root moves
+	 * @param hashMb  size of the hash table in MB, 0 to not use it
+	 */
+	public Perft(int threads, int hashMb) {
+		pool = new ForkJoinPool(Math.max(1, threads));
+		table = hashMb > 0 ? new PerftTable(hashMb) : null;
+	}
+
+	private long perft(Worker worker, int depth, int ply) {
+		Board board = worker.board;
+		if (depth == 0) {
+			return 1;
+		}
+		// The table is probed before generating the moves, so the transpositions do not pay the move generation
+		long key = 0;
+		if (depth >= 2 && table != null) {
+			key = board.getKey();
+			long count = table.get(key, depth);
+			if (count >= 0) {
+				return count;
+			}
+		}
+		int[] moves = worker.moves[ply];
+		int moveCount = worker.moveGenerator.generateMoves(board, moves, 0);
+		if (depth == 1) {
+			return moveCount;
+		}
+		long count = 0;
+		for (int i = 0; i < moveCount; i++) {
+			// The legal move generator sets the check flag of the moves
+			board.doMove(moves[i], false, false);
+			count += perft(worker, depth - 1, ply + 1);
+			board.undoMove();
+		}
+		if (table != null) {
+			table.set(key, depth, count);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the leaf nodes count of each root move, in the order of the moves array
+	 */
+	public long[] divide(Board board, int depth, int[] moves, int moveCount) {
+		List<RootMoveTask> tasks = new ArrayList<>();
+		for (int i = 0; i < moveCount; i++) {
+			long[] packed = new long[4];
+			board.doMove(moves[i], false, false);
+			board.getPacked(packed, 0);
+			board.undoMove();
+			RootMoveTask task = new RootMoveTask(packed, depth - 1);
+			pool.execute(task);
+			tasks.add(task);
+		}
+		long[] counts = new long[moveCount];
+		for (int i = 0; i < moveCount; i++) {
+			counts[i] = tasks.get(i).join();
+		}
+		return counts;
+	}
+
+	/**
+	 * Prints the leaf nodes count of each root move and the total, like other engines, to find the move generation
+	 * bugs comparing the outputs
+	 */
+	public long divide(Board board, int depth, PrintStream out) {
+		int[] moves = new int[256];
+		int moveCount = new LegalMoveGenerator().generateMoves(board, moves, 0);
+		long[] counts = divide(board, Math.max(1, depth), moves, moveCount);
+		long total = 0;
+		for (int i = 0; i < moveCount; i++) {
+			out.println(Move.toString(moves[i]) + ": " + counts[i]);
+			total += counts[i];
+		}
+		out.println();
+		out.println("Moves: " + moveCount);
+		out.println("Nodes: " + total);
+		return total;
+	}
+
+	/**
+	 * @return the number of leaf nodes at the depth
+	 */
+	public long perft(Board board, int depth) {
+		if (depth <= 1) {
+			return depth == 1 ? new LegalMoveGenerator().generateMoves(board, new int[256], 0) : 1;
+		}
+		int[] moves = new int[256];
+		int moveCount = new LegalMoveGenerator().generateMoves(board, moves, 0);
+		long total = 0;
+		for (long count : divide(board, depth, moves, moveCount)) {
+			total += count;
+		}
+		return total;
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int hash = 256;
+		boolean divide = false;
+
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("-"); i++) {
+			switch (args[i]) {
+				case "-threads":
+					threads = Integer.parseInt(args[++i]);
+					break;
+				case "-hash":
+					hash = Integer.parseInt(args[++i]);
+					break;
+				case "-divide":
+					divide = true;
+					break;
+				default:
+					i = args.length;
+			}
+		}
+		if (i >= args.length) {
+			System.out.println("Counts the leaf nodes of the legal move tree:");
+			System.out.println("  Perft [-threads n] [-hash mb] [-divide] depth [fen]");
+			System.out.println("  -threads: threads searching the root moves, the default is the number of processors");
+			System.out.println("  -hash:    size in MB of the hash table with the subtree counts, default 256, 0 to disable it");
+			System.out.println("  -divide:  prints the count of each root move");
+			System.exit(-1);
+		}
+		Logger.noLog = true;
+
+		int depth = Integer.parseInt(args[i]);
+		Board board = new Board();
+		if (i + 1 < args.length) {
+			StringBuilder fen = new StringBuilder();
+			for (int j = i + 1; j < args.length; j++) {
+				fen.append(args[j]).append(' ');
+			}
+			board.setFen(fen.toString().trim());
+		} else {
+			board.startPosition();
+		}
+
+		Perft perft = new Perft(threads, hash);
+		long startTime = System.currentTimeMillis();
+		long nodes = divide ? perft.divide(board, depth, System.out) : perft.perft(board, depth);
+		long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+		perft.shutdown();
+
+		if (!divide) {
+			System.out.println("Nodes: " + nodes);
+		}
+		System.out.println("Time (ms): " + elapsed);
+		System.out.println("Nodes/second: " + nodes * 1000 / elapsed);
+	}
+}
@@ -0,0 +1,236 @@
+package com.alonsoruibal.chess.pgn;
+
+import com.alonsoruibal.chess.log.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * PGN file with random access to the games.
+ * <p/>
+ * The byte offsets of the games are found in one pass and saved in a sidecar index file (the PGN file name plus ".idx"),
+ * that is reused while the PGN file size and modification time do not change. The index is saved next to the PGN or
+ * in an index directory, i.e. a temporary directory for read-only or resource PGNs.
+ * Both files are memory-mapped, so getting a game by number does not read the previous games.
+ * Like PgnFile, each game starts in a line beginning with "[Event ".
+ */
+public class IndexedPgnFile {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = Logger.getLogger("IndexedPgnFile");
+
+	public static final String INDEX_EXTENSION = ".idx";
+
+	private static final int INDEX_MAGIC = 0x50474e49; // "PGNI"
+	private static final int INDEX_VERSION = 1;
+	// Magic, version, PGN size, PGN modification time and game count
+	private static final int INDEX_HEADER_BYTES = 4 + 4 + 8 + 8 + 8;
+
+	// A mapped buffer is limited to 2 GB, so the PGN is mapped in chunks of 1 GB
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	private static final byte[] EVENT_TAG = "[Event ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] UTF8_BOM = {(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+
+	private final ByteBuffer[] chunks;
+	// The offsets are mapped from the index file, the offset of game n is at the position n,
+	// and the last one is the PGN size
+	private final ByteBuffer offsets;
+	private final int gameCount;
+
+	public IndexedPgnFile(Path pgnPath) throws IOException {
+		this(pgnPath, null);
+	}
+
+	/**
+	 * @param indexDirectory where the index is saved, null to save it next to the PGN
+	 */
+	public IndexedPgnFile(Path pgnPath, Path indexDirectory) throws IOException {
+		Path indexPath = getIndexPath(pgnPath, indexDirectory);
+		long pgnSize = Files.size(pgnPath);
+		long pgnModified = Files.getLastModifiedTime(pgnPath).toMillis();
+
+		ByteBuffer index = null;
+		if (!isIndexValid(indexPath, pgnSize, pgnModified)) {
+			logger.debug("Indexing " + pgnPath);
+			long[] gameOffsets = buildOffsets(pgnPath, pgnSize);
+			try {
+				writeIndex(indexPath, pgnSize, pgnModified, gameOffsets);
+			} catch (IOException e) {
+				// i.e. in a read-only directory, the index is kept in memory
+				logger.error("Cannot write the PGN index " + indexPath + ": " + e.getMessage());
+				index = ByteBuffer.allocate(INDEX_HEADER_BYTES + gameOffsets.length * 8);
+				index.putLong(INDEX_HEADER_BYTES - 8, gameOffsets.length - 1);
+				index.position(INDEX_HEADER_BYTES);
+				index.asLongBuffer().put(gameOffsets);
+			}
+		}
+		if (index == null) {
+			try (FileChannel indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+				index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+			}
+		}
+		gameCount = (int) index.getLong(INDEX_HEADER_BYTES - 8);
+		offsets = index.position(INDEX_HEADER_BYTES).slice();
+
+		try (FileChannel pgnChannel = FileChannel.open(pgnPath, StandardOpenOption.READ)) {
+			int chunkCount = (int) ((pgnSize + CHUNK_MASK) >>> CHUNK_BITS);
+			chunks = new ByteBuffer[chunkCount];
+			for (int i = 0; i < chunkCount; i++) {
+				long position = (long) i << CHUNK_BITS;
+				// The mapping remains valid after closing the channel
+				chunks[i] = pgnChannel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(pgnSize - position, 1L << CHUNK_BITS));
+			}
+		}
+	}
+
+	public static Path getIndexPath(Path pgnPath) {
+		return getIndexPath(pgnPath, null);
+	}
+
+	/**
+	 * In an index directory the name also has a hash of the PGN path, so PGNs with the same name in different folders
+	 * do not overwrite each other's index
+	 */
+	public static Path getIndexPath(Path pgnPath, Path indexDirectory) {
+		if (indexDirectory == null) {
+			return pgnPath.resolveSibling(pgnPath.getFileName() + INDEX_EXTENSION);
+		}
+		String pathHash = Integer.toHexString(pgnPath.toAbsolutePath().normalize().toString().hashCode());
+		return indexDirectory.resolve(pgnPath.getFileName() + "-" + pathHash + INDEX_EXTENSION);
+	}
+
+	public int getGameCount() {
+		return gameCount;
+	}
+
+	/**
+	 * Gets the PGN text of a game, with the same format returned by PgnFile.getGameNumber()
+	 *
+	 * @param gameNumber from 0 to getGameCount() - 1
+	 * @return the game or null if it does not exist
+	 */
+	public String getGame(int gameNumber) {
+		if (gameNumber < 0 || gameNumber >= gameCount) {
+			return null;
+		}
+		long start = offsets.getLong(gameNumber << 3);
+		long end = offsets.getLong((gameNumber + 1) << 3);
+		byte[] bytes = new byte[(int) (end - start)];
+
+		// The game may be split in two chunks
+		int copied = 0;
+		while (copied < bytes.length) {
+			long position = start + copied;
+			ByteBuffer chunk = chunks[(int) (position >>> CHUNK_BITS)];
+			int chunkOffset = (int) (position & CHUNK_MASK);
+			int length = Math.min(bytes.length - copied, chunk.capacity() - chunkOffset);
+			chunk.get(chunkOffset, bytes, copied, length);
+			copied += length;
+		}
+
+		String game = new String(bytes, StandardCharsets.UTF_8).replace("\r", "");
+		return game.endsWith("\n") ? game : game + "\n";
+	}
+
+	private static boolean isIndexValid(Path indexPath, long pgnSize, long pgnModified) {
+		if (!Files.exists(indexPath)) {
+			return false;
+		}
+		try (FileChannel indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_BYTES);
+			while (header.hasRemaining() && indexChannel.read(header) >= 0) {
+			}
+			header.flip();
+			if (header.remaining() < INDEX_HEADER_BYTES) {
+				return false;
+			}
+			if (header.getInt() != INDEX_MAGIC
+					|| header.getInt() != INDEX_VERSION
+					|| header.getLong() != pgnSize
+					|| header.getLong() != pgnModified) {
+				return false;
+			}
+			long gameCount = header.getLong();
+			return gameCount >= 0 && indexChannel.size() == INDEX_HEADER_BYTES + (gameCount + 1) * 8;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Finds the offsets of the lines starting with "[Event " in one pass, appending the PGN size at the end
+	 */
+	private static long[] buildOffsets(Path pgnPath, long pgnSize) throws IOException {
+		long[] offsets = new long[1024];
+		int count = 0;
+
+		try (InputStream is = Files.newInputStream(pgnPath)) {
+			byte[] buffer = new byte[1 << 16];
+			long bufferPosition = 0;
+			long lineStart = 0;
+			// Chars of the line matched with the event tag, -1 when the line does not match
+			int matched = 0;
+			int read;
+			while ((read = is.readNBytes(buffer, 0, buffer.length)) > 0) {
+				int i = 0;
+				// Skips the byte order mark at the start of the file
+				if (bufferPosition == 0 && read >= UTF8_BOM.length && Arrays.equals(buffer, 0, UTF8_BOM.length, UTF8_BOM, 0, UTF8_BOM.length)) {
+					i = UTF8_BOM.length;
+					lineStart = i;
+				}
+				for (; i < read; i++) {
+					byte b = buffer[i];
+					if (b == '\n') {
+						lineStart = bufferPosition + i + 1;
+						matched = 0;
+					} else if (matched >= 0) {
+						if (b == EVENT_TAG[matched]) {
+							matched++;
+							if (matched == EVENT_TAG.length) {
+								if (count == offsets.length - 1) {
+									offsets = Arrays.copyOf(offsets, offsets.length << 1);
+								}
+								offsets[count++] = lineStart;
+								matched = -1;
+							}
+						} else {
+							matched = -1;
+						}
+					}
+				}
+				bufferPosition += read;
+			}
+		}
+		offsets[count] = pgnSize;
+		return Arrays.copyOf(offsets, count + 1);
+	}
+
+	private static void writeIndex(Path indexPath, long pgnSize, long pgnModified, long[] offsets) throws IOException {
+		// Written to a temporary file and moved, so other processes never see a partial index
+		Path tmpPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+		try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath), 1 << 16))) {
+			dos.writeInt(INDEX_MAGIC);
+			dos.writeInt(INDEX_VERSION);
+			dos.writeLong(pgnSize);
+			dos.writeLong(pgnModified);
+			dos.writeLong(offsets.length - 1);
+			for (long offset : offsets) {
+				dos.writeLong(offset);
+			}
+		}
+		Files.move(tmpPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+	}
+}
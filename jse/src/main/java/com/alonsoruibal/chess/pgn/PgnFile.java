@@ -5,6 +5,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 
+/**
+ * Reads the games from a PGN stream, each call reads the stream from the beginning.
+ * To get many games from the same file use IndexedPgnFile.
+ */
 public class PgnFile {
 
 	public static final String UTF8_BOM = "\uFEFF";
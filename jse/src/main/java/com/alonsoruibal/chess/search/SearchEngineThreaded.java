@@ -1,15 +1,97 @@
 package com.alonsoruibal.chess.search;
 
 import com.alonsoruibal.chess.Config;
+import com.alonsoruibal.chess.log.Logger;
+import com.alonsoruibal.chess.tt.OffHeapTranspositionTable;
+import com.alonsoruibal.chess.tt.TranspositionTable;
 
+/**
+ * Runs the search in its own thread.
+ * With more than one thread configured it does a Lazy SMP search: the helpers search the same root position
+ * with their own board, nodes and history, sharing the transposition table with the main searcher
+ */
 public class SearchEngineThreaded extends SearchEngine {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = Logger.getLogger("SearchEngineThreaded");
 
 	Thread thread;
 
+	// Not initialized here because they are created from init(), called in the super constructor
+	SearchEngine[] helpers;
+	Thread[] helperThreads;
+	SearchParameters helperParameters;
+
 	public SearchEngineThreaded(Config config) {
 		super(config);
 	}
 
+	@Override
+	public void init() {
+		super.init();
+
+		if (helpers != null) {
+			for (SearchEngine helper : helpers) {
+				helper.destroy();
+			}
+		}
+		int helperCount = getConfig().getThreads() - 1;
+		helpers = new SearchEngine[helperCount];
+		helperThreads = new Thread[helperCount];
+		for (int i = 0; i < helperCount; i++) {
+			helpers[i] = new SearchEngine(getConfig(), i + 1, getTT());
+		}
+	}
+
+	/**
+	 * Off-heap, so big hash sizes do not add GC pressure.
+	 * If the JVM cannot reserve the direct memory the size is halved until it fits, and it is updated in the config
+	 */
+	@Override
+	protected TranspositionTable createTranspositionTable(int sizeMb) {
+		while (true) {
+			try {
+				return new OffHeapTranspositionTable(sizeMb);
+			} catch (OutOfMemoryError e) {
+				if (sizeMb <= 1) {
+					throw e;
+				}
+				logger.error("Cannot allocate a transposition table of " + sizeMb + " MB: " + e.getMessage());
+				sizeMb >>>= 1;
+				getConfig().setTranspositionTableSize(sizeMb);
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		for (SearchEngine helper : helpers) {
+			helper.clear();
+		}
+	}
+
+	@Override
+	public void destroy() {
+		for (SearchEngine helper : helpers) {
+			helper.destroy();
+		}
+		super.destroy();
+	}
+
+	/**
+	 * Nodes searched by the main thread and all the helpers
+	 */
+	@Override
+	public long getNodeCount() {
+		long nodeCount = super.getNodeCount();
+		for (SearchEngine helper : helpers) {
+			nodeCount += helper.getNodeCount();
+		}
+		return nodeCount;
+	}
+
 	/**
 	 * Threaded version
 	 */
@@ -21,12 +103,50 @@ public class SearchEngineThreaded extends SearchEngine {
 			}
 			searching = true;
 			setInitialSearchParameters(searchParameters);
+
+			// The helpers think until the main thread stops them
+			helperParameters = new SearchParameters();
+			helperParameters.setInfinite(true);
+			helperParameters.searchMoves = searchParameters.searchMoves;
 		}
 
 		thread = new Thread(this);
 		thread.start();
 	}
 
+	/**
+	 * Called from the main search thread once it is in the root position
+	 */
+	@Override
+	protected void startHelpers() {
+		for (int i = 0; i < helpers.length; i++) {
+			SearchEngine helper = helpers[i];
+			helper.getBoard().setFen(getBoard().getInitialFen());
+			helper.getBoard().doMoves(getBoard().getMoves());
+
+			// Set here and not in the helper thread, so a stopHelpers() cannot be overwritten
+			helper.searching = true;
+			helper.setInitialSearchParameters(helperParameters);
+
+			helperThreads[i] = new Thread(helper);
+			helperThreads[i].start();
+		}
+	}
+
+	@Override
+	protected void stopHelpers() {
+		for (int i = 0; i < helpers.length; i++) {
+			if (helperThreads[i] != null) {
+				helpers[i].stop();
+				try {
+					helperThreads[i].join();
+				} catch (InterruptedException e) {
+				}
+				helperThreads[i] = null;
+			}
+		}
+	}
+
 	/**
 	 * Stops thinking
 	 */
@@ -47,4 +167,4 @@ public class SearchEngineThreaded extends SearchEngine {
 		} catch (InterruptedException e) {
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,321 @@
+package com.alonsoruibal.chess.tournament;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.Move;
+import com.alonsoruibal.chess.log.Logger;
+import com.alonsoruibal.chess.pgn.PgnImportExport;
+import com.alonsoruibal.chess.uci.UciEngine;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gauntlet of an UCI engine against other UCI engines, i.e. previous Carballo versions, running the engines as
+ * external processes and playing games concurrently
+ * <p/>
+ * Each thread owns its pool of processes: one for the engine and one for each opponent, started when needed.
+ * The games are played in pairs of each opening with both colors against the opponents in turns, with a clock per
+ * player. An engine crashing, sending an illegal move or not answering before its time plus a margin loses the game,
+ * and its process is restarted for the next game. The results against each opponent are reported after each pair.
+ */
+public class Gauntlet {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = Logger.getLogger("Gauntlet");
+
+	// Games longer than this are adjudicated as draws, below the board history size
+	private static final int MAX_GAME_MOVES = 800;
+
+	private final String engineCommand;
+	private final List<String> opponentCommands;
+	private final List<String> openings;
+
+	private int concurrency = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+	private long maxPairs = Long.MAX_VALUE;
+	private int baseTime = 10000;
+	private int increment = 100;
+	private int timeMargin = 1000;
+	private int hash = 0;
+	private int startTimeout = 10000;
+	private PrintStream out = System.out;
+
+	private final String[] names;
+	private final PentanomialStats[] stats;
+	private final AtomicLong nextPair = new AtomicLong();
+	private volatile boolean stop;
+	private long startTime;
+
+	/**
+	 * @param engineCommand    command line of the engine tested
+	 * @param opponentCommands command lines of the opponents
+	 * @param openings         PGNs with the opening moves, each one is played with both colors against each opponent
+	 */
+	public Gauntlet(String engineCommand, List<String> opponentCommands, List<String> openings) {
+		this.engineCommand = engineCommand;
+		this.opponentCommands = opponentCommands;
+		this.openings = openings;
+
+		names = new String[opponentCommands.size() + 1];
+		names[0] = engineCommand;
+		stats = new PentanomialStats[opponentCommands.size()];
+		for (int i = 0; i < stats.length; i++) {
+			names[i + 1] = opponentCommands.get(i);
+			stats[i] = new PentanomialStats();
+		}
+	}
+
+	/**
+	 * Number of games played at the same time, each one with its two engine processes
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = Math.max(1, concurrency);
+	}
+
+	/**
+	 * Maximum games to play against each opponent, they are rounded to pairs; the openings are repeated if needed
+	 */
+	public void setMaxGames(int maxGames) {
+		this.maxPairs = (long) Math.max(1, maxGames / 2) * opponentCommands.size();
+	}
+
+	/**
+	 * @param baseTime  time for each player in milliseconds
+	 * @param increment time added after each move in milliseconds
+	 */
+	public void setTimeControl(int baseTime, int increment) {
+		this.baseTime = baseTime;
+		this.increment = increment;
+	}
+
+	/**
+	 * Milliseconds waited for a move after the player time is exhausted before restarting the engine
+	 */
+	public void setTimeMargin(int timeMargin) {
+		this.timeMargin = timeMargin;
+	}
+
+	/**
+	 * The "Hash" option of the engines in MB, 0 to use their default
+	 */
+	public void setHash(int hash) {
+		this.hash = hash;
+	}
+
+	/**
+	 * Where the results are printed, null to not print them
+	 */
+	public void setOut(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * @param opponent index of the opponent
+	 * @return the results of the engine against that opponent
+	 */
+	public PentanomialStats getStats(int opponent) {
+		return stats[opponent];
+	}
+
+	public void stop() {
+		stop = true;
+	}
+
+	public void run() {
+		startTime = System.currentTimeMillis();
+		Thread[] threads = new Thread[concurrency];
+		for (int i = 0; i < concurrency; i++) {
+			threads[i] = new Thread(this::playPairs, "Gauntlet-" + i);
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				stop = true;
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void playPairs() {
+		// The process pool of this thread, index 0 is the engine and the next ones the opponents
+		UciEngine[] engines = new UciEngine[opponentCommands.size() + 1];
+		try {
+			long pair;
+			while (!stop && (pair = nextPair.getAndIncrement()) < maxPairs) {
+				int opponent = (int) (pair % opponentCommands.size());
+				String opening = openings.get((int) ((pair / opponentCommands.size()) % openings.size()));
+
+				int result1 = playGame(engines, 0, opponent + 1, opening);
+				int result2 = -playGame(engines, opponent + 1, 0, opening);
+				if (stop) {
+					break;
+				}
+				stats[opponent].addPair(result1, result2);
+				report(opponent);
+			}
+		} finally {
+			for (UciEngine engine : engines) {
+				if (engine != null) {
+					engine.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a running engine process of the pool, restarting it if it crashed
+	 *
+	 * @return null if the engine cannot be started
+	 */
+	private UciEngine getEngine(UciEngine[] engines, int index) {
+		if (engines[index] == null) {
+			engines[index] = new UciEngine(index == 0 ? engineCommand : opponentCommands.get(index - 1));
+		}
+		UciEngine engine = engines[index];
+		if (!engine.isAlive() && !engine.open(false, hash, startTimeout)) {
+			logger.error("Cannot start engine " + names[index]);
+			engine.close();
+			return null;
+		}
+		engine.sendUciNewGame();
+		if (!engine.isReady(startTimeout)) {
+			logger.error("Engine " + names[index] + " is not ready, restarting it");
+			engine.close();
+			if (!engine.open(false, hash, startTimeout)) {
+				return null;
+			}
+		}
+		return engine;
+	}
+
+	/**
+	 * @return the result from the white point of view: 1 win, 0 draw, -1 loss
+	 */
+	int playGame(UciEngine[] engines, int whiteIndex, int blackIndex, String opening) {
+		UciEngine white = getEngine(engines, whiteIndex);
+		UciEngine black = getEngine(engines, blackIndex);
+		if (white == null || black == null) {
+			stop = true;
+			return 0;
+		}
+
+		Board board = new Board();
+		PgnImportExport.setBoard(board, opening);
+
+		long whiteTime = baseTime;
+		long blackTime = baseTime;
+
+		for (int moves = 0; moves < MAX_GAME_MOVES && !stop; moves++) {
+			int endGame = board.isEndGame();
+			if (endGame != 0) {
+				return endGame == 99 ? 0 : endGame;
+			}
+			boolean whiteToMove = board.getTurn();
+			UciEngine engine = whiteToMove ? white : black;
+			long time = whiteToMove ? whiteTime : blackTime;
+
+			long moveStartTime = System.nanoTime();
+			String moveString = engine.go(board.getInitialFen(), board.getMoves(), (int) whiteTime, (int) blackTime, increment, increment, time + timeMargin);
+			long elapsed = (System.nanoTime() - moveStartTime) / 1000000;
+
+			String name = names[whiteToMove ? whiteIndex : blackIndex];
+			if (moveString == null) {
+				// Crashed or hung, it is restarted in the next game
+				logger.error(name + (engine.isAlive() ? " did not answer in time" : " crashed"));
+				engine.close();
+				return whiteToMove ? -1 : 1;
+			}
+			if (elapsed > time) {
+				logger.debug(name + " loses on time");
+				return whiteToMove ? -1 : 1;
+			}
+			if (whiteToMove) {
+				whiteTime += increment - elapsed;
+			} else {
+				blackTime += increment - elapsed;
+			}
+
+			int move = Move.getFromString(board, moveString, true);
+			if (move == Move.NONE || !board.doMove(move)) {
+				logger.error(name + " sent the illegal move " + moveString + " in " + board.getFen());
+				return whiteToMove ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	private synchronized void report(int opponent) {
+		if (out == null) {
+			return;
+		}
+		long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+		long games = 0;
+		for (PentanomialStats s : stats) {
+			games += s.getGames();
+		}
+		out.println(names[0] + " vs " + names[opponent + 1] + ": " + stats[opponent] + " " + games * 3600000 / elapsed + " games/hour");
+	}
+
+	public static void main(String[] args) throws IOException {
+		int concurrency = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		int games = 1200;
+		int baseTime = 5000;
+		int increment = 100;
+		int hash = 0;
+		String openingsFile = null;
+
+		int i = 0;
+		for (; i < args.length - 1 && args[i].startsWith("-"); i += 2) {
+			switch (args[i]) {
+				case "-concurrency":
+					concurrency = Integer.parseInt(args[i + 1]);
+					break;
+				case "-games":
+					games = Integer.parseInt(args[i + 1]);
+					break;
+				case "-tc":
+					String[] tc = args[i + 1].split("\\+");
+					baseTime = (int) (Double.parseDouble(tc[0]) * 1000);
+					increment = tc.length > 1 ? (int) (Double.parseDouble(tc[1]) * 1000) : 0;
+					break;
+				case "-hash":
+					hash = Integer.parseInt(args[i + 1]);
+					break;
+				case "-openings":
+					openingsFile = args[i + 1];
+					break;
+				default:
+					i = args.length;
+			}
+		}
+		if (args.length - i < 2 || openingsFile == null) {
+			System.out.println("Plays a gauntlet of an UCI engine against other UCI engines:");
+			System.out.println("  Gauntlet [-concurrency n] [-games n] [-tc seconds+increment] [-hash mb] -openings file.pgn \"engine command\" \"opponent command\" [...]");
+			System.out.println("  -concurrency: games played at the same time, the default is half the number of processors");
+			System.out.println("  -games:       games against each opponent, default 1200");
+			System.out.println("  -tc:          time control, default 5+0.1");
+			System.out.println("  -hash:        the Hash option of the engines in MB");
+			System.out.println("  -openings:    PGN file with the openings, each one is played with both colors");
+			System.exit(-1);
+		}
+
+		Logger.noLog = true;
+
+		List<String> opponents = new ArrayList<>();
+		for (int j = i + 1; j < args.length; j++) {
+			opponents.add(args[j]);
+		}
+		Gauntlet gauntlet = new Gauntlet(args[i], opponents, Tournament.readOpenings(Paths.get(openingsFile)));
+		gauntlet.setConcurrency(concurrency);
+		gauntlet.setMaxGames(games);
+		gauntlet.setTimeControl(baseTime, increment);
+		gauntlet.setHash(hash);
+		gauntlet.run();
+	}
+}
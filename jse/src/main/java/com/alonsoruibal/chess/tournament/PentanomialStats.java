@@ -0,0 +1,130 @@
+package com.alonsoruibal.chess.tournament;
+
+/**
+ * Results of a tournament played in game pairs: each opening is played twice swapping the colors.
+ * The pairs are counted by the points of the first engine (pentanomial), so the
+ * correlation between the two games of an opening is taken into account in the Elo error.
+ */
+public class PentanomialStats {
+	// Standard normal quantile for a 95% confidence interval
+	private static final double Z_95 = 1.959964;
+
+	// Number of pairs by the half points of the first engine: 0 (LL), 1 (LD), 2 (DD or WL), 3 (WD) and 4 (WW)
+	private final long[] pairs = new long[5];
+	private long wins;
+	private long draws;
+	private long losses;
+
+	/**
+	 * @param result1 result of the first game for the first engine: 1 win, 0 draw, -1 loss
+	 * @param result2 result of the second game
+	 */
+	public synchronized void addPair(int result1, int result2) {
+		pairs[2 + result1 + result2]++;
+		addGame(result1);
+		addGame(result2);
+	}
+
+	private void addGame(int result) {
+		if (result > 0) {
+			wins++;
+		} else if (result == 0) {
+			draws++;
+		} else {
+			losses++;
+		}
+	}
+
+	public synchronized long getPairs() {
+		return pairs[0] + pairs[1] + pairs[2] + pairs[3] + pairs[4];
+	}
+
+	public synchronized long getGames() {
+		return wins + draws + losses;
+	}
+
+	public synchronized long getWins() {
+		return wins;
+	}
+
+	public synchronized long getDraws() {
+		return draws;
+	}
+
+	public synchronized long getLosses() {
+		return losses;
+	}
+
+	public synchronized long[] getPentanomial() {
+		return pairs.clone();
+	}
+
+	/**
+	 * Mean score of the first engine, from 0 to 1
+	 */
+	public synchronized double getScore() {
+		long n = getPairs();
+		if (n == 0) {
+			return 0.5;
+		}
+		double sum = 0;
+		for (int i = 0; i < 5; i++) {
+			sum += pairs[i] * i / 4d;
+		}
+		return sum / n;
+	}
+
+	/**
+	 * Variance of the score of a pair
+	 */
+	public synchronized double getVariance() {
+		long n = getPairs();
+		if (n == 0) {
+			return 0;
+		}
+		double mean = getScore();
+		double variance = 0;
+		for (int i = 0; i < 5; i++) {
+			double deviation = i / 4d - mean;
+			variance += pairs[i] * deviation * deviation;
+		}
+		return variance / n;
+	}
+
+	public static double scoreToElo(double score) {
+		// Bounded to not return infinite with all the games won or lost
+		double boundedScore = Math.max(1e-6, Math.min(1 - 1e-6, score));
+		return -400 * Math.log10(1 / boundedScore - 1);
+	}
+
+	public static double eloToScore(double elo) {
+		return 1 / (1 + Math.pow(10, -elo / 400));
+	}
+
+	/**
+	 * Elo difference of the first engine
+	 */
+	public double getElo() {
+		return scoreToElo(getScore());
+	}
+
+	/**
+	 * Half of the 95% confidence interval of the Elo difference
+	 */
+	public synchronized double getEloError() {
+		long n = getPairs();
+		if (n == 0) {
+			return 0;
+		}
+		double score = getScore();
+		double scoreError = Z_95 * Math.sqrt(getVariance() / n);
+		return (scoreToElo(score + scoreError) - scoreToElo(score - scoreError)) / 2;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "games " + getGames() + " +" + wins + " =" + draws + " -" + losses
+				+ " pentanomial [" + pairs[0] + ", " + pairs[1] + ", " + pairs[2] + ", " + pairs[3] + ", " + pairs[4] + "]"
+				+ " elo " + String.format("%.1f", getElo()) + " +/- " + String.format("%.1f", getEloError());
+	}
+}
@@ -0,0 +1,63 @@
+package com.alonsoruibal.chess.tournament;
+
+/**
+ * Sequential Probability Ratio Test to stop a tournament as soon as the results accept the hypothesis
+ * H1 (the Elo difference is elo1) or H0 (it is elo0), with the alpha and beta error probabilities.
+ * <p/>
+ * The log-likelihood ratio is the generalized SPRT with the normal approximation of the pentanomial results,
+ * like in Fishtest: LLR = n * (s1 - s0) * (2 * mean - s0 - s1) / (2 * variance), with the logistic scores s0 and s1.
+ */
+public class Sprt {
+	public static final int CONTINUE = 0;
+	public static final int ACCEPT_H0 = -1;
+	public static final int ACCEPT_H1 = 1;
+
+	private final double elo0;
+	private final double elo1;
+	private final double lowerBound;
+	private final double upperBound;
+
+	public Sprt(double elo0, double elo1, double alpha, double beta) {
+		this.elo0 = elo0;
+		this.elo1 = elo1;
+		lowerBound = Math.log(beta / (1 - alpha));
+		upperBound = Math.log((1 - beta) / alpha);
+	}
+
+	public double getLowerBound() {
+		return lowerBound;
+	}
+
+	public double getUpperBound() {
+		return upperBound;
+	}
+
+	public double getLlr(PentanomialStats stats) {
+		long n = stats.getPairs();
+		double variance = stats.getVariance();
+		if (n == 0 || variance <= 0) {
+			return 0;
+		}
+		double s0 = PentanomialStats.eloToScore(elo0);
+		double s1 = PentanomialStats.eloToScore(elo1);
+		return n * (s1 - s0) * (2 * stats.getScore() - s0 - s1) / (2 * variance);
+	}
+
+	/**
+	 * @return CONTINUE, ACCEPT_H0 or ACCEPT_H1
+	 */
+	public int getStatus(PentanomialStats stats) {
+		double llr = getLlr(stats);
+		if (llr >= upperBound) {
+			return ACCEPT_H1;
+		} else if (llr <= lowerBound) {
+			return ACCEPT_H0;
+		}
+		return CONTINUE;
+	}
+
+	@Override
+	public String toString() {
+		return "SPRT elo0=" + elo0 + " elo1=" + elo1 + " bounds [" + String.format("%.2f", lowerBound) + ", " + String.format("%.2f", upperBound) + "]";
+	}
+}
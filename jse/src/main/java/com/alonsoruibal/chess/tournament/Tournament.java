@@ -0,0 +1,274 @@
+package com.alonsoruibal.chess.tournament;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.Config;
+import com.alonsoruibal.chess.Move;
+import com.alonsoruibal.chess.log.Logger;
+import com.alonsoruibal.chess.pgn.IndexedPgnFile;
+import com.alonsoruibal.chess.pgn.PgnImportExport;
+import com.alonsoruibal.chess.search.SearchEngine;
+import com.alonsoruibal.chess.search.SearchObserver;
+import com.alonsoruibal.chess.search.SearchParameters;
+import com.alonsoruibal.chess.search.SearchStatusInfo;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Self-play tournament between two engine configurations playing many games concurrently
+ * <p/>
+ * Each thread owns two engines and plays game pairs: an opening of the suite with both colors.
+ * The games have a time control with base time and increment per player, and optionally depth or nodes limits.
+ * After each pair the results are reported with the Elo difference, its error, the pentanomial counts and
+ * the games per hour, and with a SPRT the tournament stops when the LLR reaches one of the bounds.
+ */
+public class Tournament {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = Logger.getLogger("Tournament");
+
+	// Games longer than this are adjudicated as draws, below the board history size
+	private static final int MAX_GAME_MOVES = 800;
+
+	private final Config config1;
+	private final Config config2;
+	private final List<String> openings;
+
+	private int concurrency = Runtime.getRuntime().availableProcessors();
+	private int maxPairs = Integer.MAX_VALUE;
+	private int baseTime = 10000;
+	private int increment = 100;
+	private int depthLimit = Integer.MAX_VALUE;
+	private int nodesLimit = Integer.MAX_VALUE;
+	private Sprt sprt;
+	private PrintStream out = System.out;
+
+	private final PentanomialStats stats = new PentanomialStats();
+	private final AtomicLong nextPair = new AtomicLong();
+	private volatile boolean stop;
+	private int sprtStatus = Sprt.CONTINUE;
+	private long startTime;
+
+	/**
+	 * @param config1  configuration of the first engine, the results are from its point of view
+	 * @param config2  configuration of the second engine
+	 * @param openings PGNs with the opening moves, each one is played with both colors
+	 */
+	public Tournament(Config config1, Config config2, List<String> openings) {
+		this.config1 = config1;
+		this.config2 = config2;
+		this.openings = openings;
+	}
+
+	/**
+	 * Reads the openings from a PGN file, i.e. the Noomen test suite. Its index is saved in the temporary directory,
+	 * to not write next to read-only or resource PGNs
+	 */
+	public static List<String> readOpenings(Path pgnPath) throws IOException {
+		IndexedPgnFile pgn = new IndexedPgnFile(pgnPath, Paths.get(System.getProperty("java.io.tmpdir")));
+		List<String> openings = new ArrayList<>();
+		for (int i = 0; i < pgn.getGameCount(); i++) {
+			openings.add(pgn.getGame(i));
+		}
+		return openings;
+	}
+
+	/**
+	 * Number of games played at the same time, one thread each
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = Math.max(1, concurrency);
+	}
+
+	/**
+	 * Maximum games to play, they are rounded to pairs; the openings are repeated if needed
+	 */
+	public void setMaxGames(int maxGames) {
+		this.maxPairs = Math.max(1, maxGames / 2);
+	}
+
+	/**
+	 * @param baseTime  time for each player in milliseconds
+	 * @param increment time added after each move in milliseconds
+	 */
+	public void setTimeControl(int baseTime, int increment) {
+		this.baseTime = baseTime;
+		this.increment = increment;
+	}
+
+	public void setDepthLimit(int depthLimit) {
+		this.depthLimit = depthLimit;
+	}
+
+	public void setNodesLimit(int nodesLimit) {
+		this.nodesLimit = nodesLimit;
+	}
+
+	public void setSprt(Sprt sprt) {
+		this.sprt = sprt;
+	}
+
+	/**
+	 * Where the live results are printed, null to not print them
+	 */
+	public void setOut(PrintStream out) {
+		this.out = out;
+	}
+
+	public PentanomialStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * @return the SPRT result when the tournament was stopped by the SPRT
+	 */
+	public int getSprtStatus() {
+		return sprtStatus;
+	}
+
+	public void stop() {
+		stop = true;
+	}
+
+	/**
+	 * Plays the tournament, returns when the maximum games are played or the SPRT finishes
+	 */
+	public PentanomialStats run() {
+		startTime = System.currentTimeMillis();
+		if (out != null && sprt != null) {
+			out.println(sprt);
+		}
+		Thread[] threads = new Thread[concurrency];
+		for (int i = 0; i < concurrency; i++) {
+			threads[i] = new Thread(this::playPairs, "Tournament-" + i);
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				stop = true;
+				Thread.currentThread().interrupt();
+			}
+		}
+		return stats;
+	}
+
+	private void playPairs() {
+		SearchObserver silentObserver = new SearchObserver() {
+			@Override
+			public void info(SearchStatusInfo info) {
+			}
+
+			@Override
+			public void bestMove(int bestMove, int ponder) {
+			}
+		};
+		SearchEngine engine1 = new SearchEngine(config1);
+		SearchEngine engine2 = new SearchEngine(config2);
+		engine1.setObserver(silentObserver);
+		engine2.setObserver(silentObserver);
+
+		long pair;
+		while (!stop && (pair = nextPair.getAndIncrement()) < maxPairs) {
+			String opening = openings.get((int) (pair % openings.size()));
+			int result1 = playGame(engine1, engine2, opening);
+			if (stop) {
+				break;
+			}
+			int result2 = -playGame(engine2, engine1, opening);
+			if (stop) {
+				break;
+			}
+			stats.addPair(result1, result2);
+			report();
+		}
+		engine1.destroy();
+		engine2.destroy();
+	}
+
+	/**
+	 * @return the result from the white point of view: 1 win, 0 draw, -1 loss
+	 */
+	int playGame(SearchEngine white, SearchEngine black, String opening) {
+		Board board = new Board();
+		PgnImportExport.setBoard(board, opening);
+		white.clear();
+		black.clear();
+		PgnImportExport.setBoard(white.getBoard(), opening);
+		PgnImportExport.setBoard(black.getBoard(), opening);
+
+		long whiteTime = baseTime;
+		long blackTime = baseTime;
+		SearchParameters searchParameters = new SearchParameters();
+		searchParameters.setWinc(increment);
+		searchParameters.setBinc(increment);
+		searchParameters.setDepth(depthLimit);
+		searchParameters.setNodes(nodesLimit);
+
+		for (int moves = 0; moves < MAX_GAME_MOVES && !stop; moves++) {
+			int endGame = board.isEndGame();
+			if (endGame != 0) {
+				return endGame == 99 ? 0 : endGame;
+			}
+			boolean whiteToMove = board.getTurn();
+			SearchEngine engine = whiteToMove ? white : black;
+			searchParameters.setWtime((int) whiteTime);
+			searchParameters.setBtime((int) blackTime);
+
+			long moveStartTime = System.nanoTime();
+			engine.go(searchParameters);
+			long elapsed = (System.nanoTime() - moveStartTime) / 1000000;
+
+			if (whiteToMove) {
+				whiteTime -= elapsed;
+				if (whiteTime < 0) {
+					logger.debug("White loses on time");
+					return -1;
+				}
+				whiteTime += increment;
+			} else {
+				blackTime -= elapsed;
+				if (blackTime < 0) {
+					logger.debug("Black loses on time");
+					return 1;
+				}
+				blackTime += increment;
+			}
+
+			int move = engine.getBestMove();
+			if (move == Move.NONE || !board.doMove(move)) {
+				logger.error("Illegal move " + Move.toString(move) + " in " + board.getFen());
+				return whiteToMove ? -1 : 1;
+			}
+			white.getBoard().doMove(move);
+			black.getBoard().doMove(move);
+		}
+		return 0;
+	}
+
+	private synchronized void report() {
+		long games = stats.getGames();
+		long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+		StringBuilder sb = new StringBuilder();
+		sb.append(stats);
+		sb.append(" ").append(games * 3600000 / elapsed).append(" games/hour");
+		if (sprt != null && sprtStatus == Sprt.CONTINUE) {
+			sb.append(" LLR ").append(String.format("%.2f", sprt.getLlr(stats)));
+			sprtStatus = sprt.getStatus(stats);
+			if (sprtStatus != Sprt.CONTINUE) {
+				sb.append(sprtStatus == Sprt.ACCEPT_H1 ? " H1 accepted" : " H0 accepted");
+				stop = true;
+			}
+		}
+		if (out != null) {
+			out.println(sb);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.alonsoruibal.chess.tt;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.stream.IntStream;
+
+/**
+ * Transposition table stored in direct buffers outside the Java heap, so its size does not add GC pressure.
+ * <p/>
+ * A direct buffer is limited to 2 GB, so the buckets are split in chunks and it supports tables of any size.
+ * The chunks are aligned to the bucket size, so each bucket is in only one cache line.
+ * The JVM must allow enough direct memory with -XX:MaxDirectMemorySize
+ */
+public class OffHeapTranspositionTable extends TranspositionTable {
+
+	private static final int CHUNK_WORDS_BITS = 27;
+	private static final long CHUNK_WORDS_MASK = (1L << CHUNK_WORDS_BITS) - 1;
+	// Bytes cleared in each parallel task
+	private static final int CLEAR_BLOCK_BYTES = 1 << 26;
+	private static final byte[] ZEROS = new byte[1 << 20];
+
+	private final ByteBuffer[] chunks;
+
+	public OffHeapTranspositionTable(int sizeMb) {
+		super(getBuckets(sizeMb), false);
+
+		long words = buckets * BUCKET_WORDS;
+		int chunkCount = (int) ((words + CHUNK_WORDS_MASK) >>> CHUNK_WORDS_BITS);
+		chunks = new ByteBuffer[chunkCount];
+		for (int i = 0; i < chunkCount; i++) {
+			long chunkWords = Math.min(words - ((long) i << CHUNK_WORDS_BITS), 1L << CHUNK_WORDS_BITS);
+			// The direct buffers are allocated filled with zeros
+			chunks[i] = ByteBuffer.allocateDirect((int) (chunkWords * 8) + BUCKET_BYTES)
+					.alignedSlice(BUCKET_BYTES).order(ByteOrder.nativeOrder());
+		}
+	}
+
+	/**
+	 * Fills all the chunks with zeros using all the processors
+	 */
+	@Override
+	public void clear() {
+		int[] blocksBefore = new int[chunks.length + 1];
+		for (int i = 0; i < chunks.length; i++) {
+			blocksBefore[i + 1] = blocksBefore[i] + (chunks[i].capacity() + CLEAR_BLOCK_BYTES - 1) / CLEAR_BLOCK_BYTES;
+		}
+
+		IntStream.range(0, blocksBefore[chunks.length]).parallel().forEach(block -> {
+			int chunk = 0;
+			while (blocksBefore[chunk + 1] <= block) {
+				chunk++;
+			}
+			ByteBuffer buffer = chunks[chunk];
+			int start = (block - blocksBefore[chunk]) * CLEAR_BLOCK_BYTES;
+			int end = Math.min(start + CLEAR_BLOCK_BYTES, buffer.capacity());
+			for (int offset = start; offset < end; offset += ZEROS.length) {
+				buffer.put(offset, ZEROS, 0, Math.min(ZEROS.length, end - offset));
+			}
+		});
+	}
+
+	@Override
+	protected long getWord(long index) {
+		return chunks[(int) (index >>> CHUNK_WORDS_BITS)].getLong((int) (index & CHUNK_WORDS_MASK) << 3);
+	}
+
+	@Override
+	protected void setWord(long index, long value) {
+		chunks[(int) (index >>> CHUNK_WORDS_BITS)].putLong((int) (index & CHUNK_WORDS_MASK) << 3, value);
+	}
+}
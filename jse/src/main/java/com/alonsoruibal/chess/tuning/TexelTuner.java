@@ -0,0 +1,295 @@
+package com.alonsoruibal.chess.tuning;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.bitboard.AttacksInfo;
+import com.alonsoruibal.chess.evaluation.CompleteEvaluator;
+import com.alonsoruibal.chess.evaluation.Evaluator;
+import com.alonsoruibal.chess.evaluation.EvaluatorParameters;
+import com.alonsoruibal.chess.log.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Tunes the CompleteEvaluator parameters with the Texel method: it minimizes the mean squared error between the
+ * game results and the evaluation of the positions mapped to a win probability, 1 / (1 + 10^(-k * eval / 400)).
+ * <p/>
+ * The positions are evaluated in parallel with a ForkJoin pool, each thread with its own board and evaluator.
+ * The optimization is a local search: each opening and endgame part of the parameters is changed by one centipawn
+ * up or down while the error improves. After each iteration the parameters are written to the output file,
+ * that can be loaded with the "EvalFile" UCI option or as the start of another tuning.
+ */
+public class TexelTuner {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = Logger.getLogger("TexelTuner");
+
+	// Positions evaluated by each ForkJoin task without splitting it
+	private static final int TASK_POSITIONS = 4096;
+
+	private final TuningPositions positions;
+	private final EvaluatorParameters parameters = CompleteEvaluator.PARAMETERS;
+	private final ForkJoinPool pool;
+	private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+	private double k = 1;
+
+	// The values tuned, all the array elements except the indexes not read by the evaluator
+	private final List<int[]> tunedArrays = new ArrayList<>();
+	private final List<Integer> tunedIndexes = new ArrayList<>();
+
+	private static class Worker {
+		final Board board = new Board();
+		final CompleteEvaluator evaluator = new CompleteEvaluator();
+		final AttacksInfo attacksInfo = new AttacksInfo();
+	}
+
+	private class ErrorTask extends RecursiveTask<Double> {
+		private static final long serialVersionUID = -2913847160347215093L;
+
+		final long from;
+		final long to;
+
+		ErrorTask(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Double compute() {
+			if (to - from > TASK_POSITIONS) {
+				long middle = (from + to) >>> 1;
+				ErrorTask left = new ErrorTask(from, middle);
+				left.fork();
+				double right = new ErrorTask(middle, to).compute();
+				return left.join() + right;
+			}
+			Worker worker = workers.get();
+			double error = 0;
+			for (long i = from; i < to; i++) {
+				double difference = positions.getResult(i) - getWinProbability(evaluate(worker, i));
+				error += difference * difference;
+			}
+			return error;
+		}
+	}
+
+	/**
+	 * @param positions the positions with the game results
+	 * @param threads   number of threads evaluating the positions
+	 * @param names     names of the parameter arrays to tune, null to tune all
+	 */
+	public TexelTuner(TuningPositions positions, int threads, List<String> names) {
+		this.positions = positions;
+		pool = new ForkJoinPool(Math.max(1, threads));
+
+		for (String name : names != null ? names : parameters.getNames()) {
+			int[] values = parameters.get(name);
+			if (values == null) {
+				throw new IllegalArgumentException("Unknown parameter " + name);
+			}
+			for (int i = 0; i < values.length; i++) {
+				if (parameters.isUsed(name, i)) {
+					tunedArrays.add(values);
+					tunedIndexes.add(i);
+				}
+			}
+		}
+	}
+
+	public double getK() {
+		return k;
+	}
+
+	public void setK(double k) {
+		this.k = k;
+	}
+
+	/**
+	 * @return the number of opening and endgame values tuned
+	 */
+	public int getTunedValuesCount() {
+		return tunedArrays.size() * 2;
+	}
+
+	private int evaluate(Worker worker, long position) {
+		positions.setBoard(position, worker.board);
+		return worker.evaluator.evaluate(worker.board, worker.attacksInfo);
+	}
+
+	double getWinProbability(int eval) {
+		return 1 / (1 + Math.pow(10, -k * eval / 400));
+	}
+
+	/**
+	 * @return the mean squared error of all the positions with the current parameters
+	 */
+	public double getError() {
+		return positions.size() == 0 ? 0 : pool.invoke(new ErrorTask(0, positions.size())) / positions.size();
+	}
+
+	/**
+	 * Finds the k minimizing the error with the current parameters with a golden section search
+	 */
+	public double tuneK() {
+		double ratio = (Math.sqrt(5) - 1) / 2;
+		double low = 0.1;
+		double high = 4;
+		while (high - low > 0.001) {
+			double k1 = high - ratio * (high - low);
+			double k2 = low + ratio * (high - low);
+			k = k1;
+			double error1 = getError();
+			k = k2;
+			double error2 = getError();
+			if (error1 < error2) {
+				high = k2;
+			} else {
+				low = k1;
+			}
+		}
+		k = (low + high) / 2;
+		return k;
+	}
+
+	/**
+	 * Local search of the parameters
+	 *
+	 * @param maxIterations maximum passes over all the values, it stops before when a pass does not improve the error
+	 * @param output        file where the parameters are written after each iteration, it can be null
+	 * @return the final error
+	 */
+	public double tune(int maxIterations, Path output) throws IOException {
+		double bestError = getError();
+		logger.info("Tuning " + getTunedValuesCount() + " values with " + positions.size() + " positions, k=" + k + " error=" + bestError);
+
+		for (int iteration = 1; iteration <= maxIterations; iteration++) {
+			boolean improved = false;
+			for (int i = 0; i < tunedArrays.size(); i++) {
+				int[] values = tunedArrays.get(i);
+				int index = tunedIndexes.get(i);
+				for (int part = 0; part < 2; part++) {
+					int value = values[index];
+					for (int delta : new int[]{1, -1}) {
+						values[index] = part == 0 ?
+								Evaluator.oe(Evaluator.o(value) + delta, Evaluator.e(value)) :
+								Evaluator.oe(Evaluator.o(value), Evaluator.e(value) + delta);
+						parameters.changed();
+						double error = getError();
+						if (error < bestError) {
+							bestError = error;
+							improved = true;
+							break;
+						}
+						values[index] = value;
+						parameters.changed();
+					}
+				}
+			}
+			logger.info("Iteration " + iteration + " error=" + bestError);
+			if (output != null) {
+				Files.write(output, parameters.toString().getBytes(StandardCharsets.UTF_8));
+			}
+			if (!improved) {
+				break;
+			}
+		}
+		return bestError;
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0 && "convert".equals(args[0])) {
+			int skipPlies = 16;
+			int i = 1;
+			if (args.length > 2 && "-skip".equals(args[1])) {
+				skipPlies = Integer.parseInt(args[2]);
+				i = 3;
+			}
+			if (args.length - i < 2) {
+				printUsage();
+			}
+			List<Path> inputs = new ArrayList<>();
+			for (int j = i + 1; j < args.length; j++) {
+				inputs.add(Paths.get(args[j]));
+			}
+			long count = TuningPositions.convert(inputs, Paths.get(args[i]), skipPlies);
+			System.out.println("Positions: " + count);
+			return;
+		}
+		if (args.length == 0 || !"tune".equals(args[0])) {
+			printUsage();
+		}
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		int iterations = Integer.MAX_VALUE;
+		double k = 0;
+		String paramsFile = null;
+		List<String> names = null;
+
+		int i = 1;
+		for (; i < args.length - 1 && args[i].startsWith("-"); i += 2) {
+			switch (args[i]) {
+				case "-threads":
+					threads = Integer.parseInt(args[i + 1]);
+					break;
+				case "-iterations":
+					iterations = Integer.parseInt(args[i + 1]);
+					break;
+				case "-k":
+					k = Double.parseDouble(args[i + 1]);
+					break;
+				case "-params":
+					paramsFile = args[i + 1];
+					break;
+				case "-arrays":
+					names = Arrays.asList(args[i + 1].split(","));
+					break;
+				default:
+					i = args.length;
+			}
+		}
+		if (args.length - i != 2) {
+			printUsage();
+		}
+		if (paramsFile != null) {
+			CompleteEvaluator.PARAMETERS.load(new String(Files.readAllBytes(Paths.get(paramsFile)), StandardCharsets.UTF_8));
+		}
+
+		TexelTuner tuner = new TexelTuner(new TuningPositions(Paths.get(args[i])), threads, names);
+		if (k > 0) {
+			tuner.setK(k);
+		} else {
+			System.out.println("k=" + tuner.tuneK());
+		}
+		double error = tuner.tune(iterations, Paths.get(args[i + 1]));
+		System.out.println("Error: " + error);
+		tuner.shutdown();
+	}
+
+	private static void printUsage() {
+		System.out.println("Converts EPD (with the game results) and PGN files to a tuning positions file:");
+		System.out.println("  TexelTuner convert [-skip plies] positions.bin file1.pgn|file1.epd [...]");
+		System.out.println("  -skip:       plies skipped at the start of the PGN games, default 16");
+		System.out.println("Tunes the evaluation parameters:");
+		System.out.println("  TexelTuner tune [-threads n] [-iterations n] [-k k] [-params file] [-arrays NAME1,NAME2] positions.bin output.txt");
+		System.out.println("  -threads:    threads evaluating the positions, the default is the number of processors");
+		System.out.println("  -iterations: maximum iterations of the local search");
+		System.out.println("  -k:          scaling constant of the evaluation, by default it is the one minimizing the error");
+		System.out.println("  -params:     parameters file to start from");
+		System.out.println("  -arrays:     parameter arrays to tune, all by default");
+		System.exit(-1);
+	}
+}
@@ -0,0 +1,168 @@
+package com.alonsoruibal.chess.tuning;
+
+import com.alonsoruibal.chess.Board;
+import com.alonsoruibal.chess.Move;
+import com.alonsoruibal.chess.log.Logger;
+import com.alonsoruibal.chess.packed.PackedPositionReader;
+import com.alonsoruibal.chess.packed.PackedPositionWriter;
+import com.alonsoruibal.chess.pgn.Game;
+import com.alonsoruibal.chess.pgn.GameNode;
+import com.alonsoruibal.chess.pgn.GameNodeMove;
+import com.alonsoruibal.chess.pgn.PgnParser;
+import com.alonsoruibal.chess.pgn.PgnTokenizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Positions with the game results to tune the evaluation, in a file of packed positions (see Board.getPacked())
+ * with the game result in the user data: 0 black wins, 1 draw, 2 white wins
+ */
+public class TuningPositions {
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = Logger.getLogger("TuningPositions");
+
+	private final PackedPositionReader reader;
+
+	public TuningPositions(Path path) throws IOException {
+		reader = new PackedPositionReader(path);
+	}
+
+	public long size() {
+		return reader.size();
+	}
+
+	/**
+	 * @return the game result for white: 0, 0.5 or 1
+	 */
+	public double getResult(long position) {
+		return reader.getUserData(position) / 2d;
+	}
+
+	/**
+	 * Sets the position in the board without allocating memory
+	 */
+	public void setBoard(long position, Board board) {
+		reader.setBoard(position, board);
+	}
+
+	/**
+	 * Converts EPD and PGN files to a positions file. The EPD lines must have the game result,
+	 * i.e. 'c9 "1-0";' or '[0.5]'. From the PGN games it takes the quiet positions after the opening:
+	 * the side to move is not in check and the move played is not a capture nor a promotion.
+	 *
+	 * @param skipPlies the plies skipped at the start of the PGN games
+	 * @return the number of positions written
+	 */
+	public static long convert(List<Path> inputs, Path output, int skipPlies) throws IOException {
+		long count = 0;
+		Board board = new Board();
+		try (PackedPositionWriter writer = new PackedPositionWriter(output, false)) {
+			for (Path input : inputs) {
+				logger.debug("Converting " + input);
+				if (input.toString().toLowerCase().endsWith(".pgn")) {
+					count += convertPgn(input, board, writer, skipPlies);
+				} else {
+					count += convertEpd(input, board, writer);
+				}
+			}
+		}
+		return count;
+	}
+
+	private static long convertEpd(Path input, Board board, PackedPositionWriter writer) throws IOException {
+		long count = 0;
+		try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int result = parseResult(line);
+				String[] tokens = line.trim().split("\\s+");
+				if (result < 0 || tokens.length < 4) {
+					continue;
+				}
+				// The FEN may have the fifty moves and move number fields
+				String fen = tokens[0] + " " + tokens[1] + " " + tokens[2] + " " + tokens[3];
+				if (tokens.length >= 6 && isNumber(tokens[4]) && isNumber(tokens[5])) {
+					fen += " " + tokens[4] + " " + tokens[5];
+				}
+				try {
+					board.setFen(fen);
+				} catch (RuntimeException e) {
+					logger.error("Wrong EPD line: " + line);
+					continue;
+				}
+				writer.write(board, result);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static boolean isNumber(String token) {
+		for (int i = 0; i < token.length(); i++) {
+			if (!Character.isDigit(token.charAt(i))) {
+				return false;
+			}
+		}
+		return !token.isEmpty();
+	}
+
+	private static int parseResult(String line) {
+		if (line.contains("1/2-1/2") || line.contains("[0.5]")) {
+			return 1;
+		} else if (line.contains("1-0") || line.contains("[1.0]")) {
+			return 2;
+		} else if (line.contains("0-1") || line.contains("[0.0]")) {
+			return 0;
+		}
+		return -1;
+	}
+
+	private static long convertPgn(Path input, Board board, PackedPositionWriter writer, int skipPlies) throws IOException {
+		long count = 0;
+		try (Reader reader = new InputStreamReader(new BufferedInputStream(Files.newInputStream(input), 1 << 16), StandardCharsets.UTF_8)) {
+			PgnTokenizer tokenizer = new PgnTokenizer(reader);
+			Game game;
+			while ((game = PgnParser.parseGame(tokenizer, true)) != null) {
+				int result = "1-0".equals(game.getResult()) ? 2 : "0-1".equals(game.getResult()) ? 0 : "½-½".equals(game.getResult()) ? 1 : -1;
+				if (result < 0) {
+					continue;
+				}
+				try {
+					if (game.getFenStartPosition() != null) {
+						board.setFen(game.getFenStartPosition());
+					} else {
+						board.startPosition();
+					}
+					int ply = 0;
+					for (GameNode gameNode : game.getPv().variation) {
+						if (gameNode instanceof GameNodeMove) {
+							int move = Move.getFromString(board, ((GameNodeMove) gameNode).move, true);
+							if (move == Move.NONE || move == Move.NULL) {
+								break;
+							}
+							if (ply >= skipPlies && !board.getCheck() && !Move.isCapture(move) && !Move.isPromotion(move)) {
+								writer.write(board, result);
+								count++;
+							}
+							board.doMove(move, false, false);
+							ply++;
+						}
+					}
+				} catch (RuntimeException e) {
+					logger.error("Error replaying game " + game.getWhite() + " - " + game.getBlack() + ": " + e.getMessage());
+				}
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,96 @@
+package com.alonsoruibal.chess.uci;
+
+import com.alonsoruibal.chess.Config;
+import com.alonsoruibal.chess.search.SearchEngineThreaded;
+import com.alonsoruibal.chess.search.SearchObserver;
+import com.alonsoruibal.chess.search.SearchParameters;
+import com.alonsoruibal.chess.search.SearchStatusInfo;
+
+import java.io.PrintStream;
+
+/**
+ * Searches a fixed list of positions to a fixed depth, each one from a cleared TT, and prints the total nodes,
+ * the time and the NPS. With one thread the total nodes are a signature of the search: a change in the search or
+ * in the evaluation that was not intended to change them is a functional regression
+ */
+public class Bench {
+	public static final int DEFAULT_DEPTH = 9;
+	public static final int DEFAULT_THREADS = 1;
+	public static final int DEFAULT_HASH = 16;
+
+	static final String[] FENS = {
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"4r1k1/p1pb1ppp/Qbp1r3/8/1P6/2Pq1B2/R2P1PPP/2B2RK1 b - - 0 1",
+			"r1bq1rk1/pp4bp/2np4/2p1p1p1/P1N1P3/1P1P1NP1/1BP1QPKP/1R3R2 b - - 0 1",
+			"2r1r3/p3bk1p/1pnqpppB/3n4/3P2Q1/PB3N2/1P3PPP/3RR1K1 w - - 0 1",
+			"rn2r1k1/pp3ppp/8/1qNp4/3BnQb1/5N2/PPP2PPP/2KR3R b - - 0 1",
+			"r3kb1r/1p1b1p2/p1nppp2/7p/4PP2/qNN5/P1PQB1PP/R4R1K w kq - 0 1",
+			"r1b1r1k1/ppp2ppp/2nb1q2/8/2B5/1P1Q1N2/P1PP1PPP/R1B2RK1 w - - 0 1",
+			"2rq1rk1/pb3ppp/1p2pn2/4N3/1b1PPB2/4R1P1/P4PBP/R2Q2K1 w - - 0 1",
+			"r2qr2k/pbp3pp/1p2Bb2/2p5/2P2P2/3R2P1/PP2Q1NP/5RK1 b - - 0 1",
+			"8/2p5/7p/pP2k1pP/5pP1/8/1P2PPK1/8 w - - 0 1",
+			"8/5p1p/1p2pPk1/p1p1P3/P1P1K2b/4B3/1P5P/8 w - - 0 1",
+			"8/8/4b1p1/2Bp3p/5P1P/1pK1Pk2/8/8 b - - 0 1",
+			"8/pR4pk/1b6/2p5/N1p5/8/PP1r2PP/6K1 b - - 0 1",
+			"8/7p/8/7P/1p6/1p5P/1P2Q1pk/1K6 w - - 0 1",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+	};
+
+	private static final SearchObserver SILENT_OBSERVER = new SearchObserver() {
+		@Override
+		public void info(SearchStatusInfo info) {
+		}
+
+		@Override
+		public void bestMove(int bestMove, int ponder) {
+		}
+	};
+
+	/**
+	 * @param out where the nodes of each position and the totals are printed
+	 * @return the total nodes searched
+	 */
+	public static long run(int depth, int threads, int hash, PrintStream out) {
+		Config config = new Config();
+		config.setUseBook(false);
+		config.setThreads(threads);
+		config.setTranspositionTableSize(hash);
+
+		SearchEngineThreaded engine = new SearchEngineThreaded(config);
+		engine.setObserver(SILENT_OBSERVER);
+		SearchParameters searchParameters = new SearchParameters();
+		searchParameters.setDepth(depth);
+
+		long totalNodes = 0;
+		long startTime = System.nanoTime();
+		for (int i = 0; i < FENS.length; i++) {
+			engine.clear();
+			engine.getBoard().setFen(FENS[i]);
+			engine.go(searchParameters);
+			while (engine.isSearching()) {
+				engine.sleep(1);
+			}
+			totalNodes += engine.getNodeCount();
+			out.println("Position " + (i + 1) + "/" + FENS.length + " nodes " + engine.getNodeCount() + " " + FENS[i]);
+		}
+		long elapsed = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+		engine.destroy();
+
+		out.println("===========================");
+		out.println("Total time (ms) : " + elapsed);
+		out.println("Nodes searched  : " + totalNodes);
+		out.println("Nodes/second    : " + totalNodes * 1000 / elapsed);
+		return totalNodes;
+	}
+
+	/**
+	 * Parses the optional depth, threads and hash arguments of the bench command
+	 */
+	public static long run(String[] args, int offset, PrintStream out) {
+		int depth = args.length > offset ? Integer.parseInt(args[offset]) : DEFAULT_DEPTH;
+		int threads = args.length > offset + 1 ? Integer.parseInt(args[offset + 1]) : DEFAULT_THREADS;
+		int hash = args.length > offset + 2 ? Integer.parseInt(args[offset + 2]) : DEFAULT_HASH;
+		return run(depth, threads, hash, out);
+	}
+}
@@ -4,6 +4,7 @@ import com.alonsoruibal.chess.Board;
 import com.alonsoruibal.chess.Config;
 import com.alonsoruibal.chess.Move;
 import com.alonsoruibal.chess.book.FileBook;
+import com.alonsoruibal.chess.evaluation.CompleteEvaluator;
 import com.alonsoruibal.chess.log.Logger;
 import com.alonsoruibal.chess.search.SearchEngineThreaded;
 import com.alonsoruibal.chess.search.SearchObserver;
@@ -13,6 +14,10 @@ import com.alonsoruibal.chess.search.SearchStatusInfo;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 /**
  * UCI Interface
@@ -20,6 +25,7 @@ import java.io.InputStreamReader;
 public class Uci implements SearchObserver {
 	static final String NAME = "Carballo Chess Engine v1.9";
 	static final String AUTHOR = "Alberto Alonso Ruibal";
+	static final String DEFAULT_BOOK = "/book_small.bin";
 
 	Config config;
 	Board board;
@@ -31,10 +37,41 @@ public class Uci implements SearchObserver {
 	public Uci() {
 		Logger.noLog = true; // Disable logging
 		config = new Config();
-		config.setBook(new FileBook("/book_small.bin"));
+		config.setBook(new FileBook(DEFAULT_BOOK));
 		board = new Board();
 	}
 
+	/**
+	 * Memory-maps a Polyglot book from the filesystem, with an empty path it uses the default book
+	 */
+	void setBookFile(String bookFile) {
+		if (bookFile.isEmpty() || "<empty>".equals(bookFile)) {
+			config.setBook(new FileBook(DEFAULT_BOOK));
+			return;
+		}
+		try {
+			config.setBook(new FileBook(Paths.get(bookFile)));
+		} catch (IOException e) {
+			System.out.println("info string Cannot open the book file " + bookFile + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Loads the CompleteEvaluator parameters from a file written by the tuner, with an empty path it restores the defaults.
+	 * The parameters are global to the JVM, so it also changes any other engine running in the same process
+	 */
+	void setEvalFile(String evalFile) {
+		if (evalFile.isEmpty() || "<empty>".equals(evalFile)) {
+			CompleteEvaluator.PARAMETERS.reset();
+			return;
+		}
+		try {
+			CompleteEvaluator.PARAMETERS.load(new String(Files.readAllBytes(Paths.get(evalFile)), StandardCharsets.UTF_8));
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println("info string Cannot load the eval file " + evalFile + ": " + e.getMessage());
+		}
+	}
+
 	void loop() {
 		System.out.println(NAME + " by " + AUTHOR);
 		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
@@ -49,14 +86,18 @@ public class Uci implements SearchObserver {
 					case "uci":
 						System.out.println("id name " + NAME);
 						System.out.println("id author " + AUTHOR);
-						System.out.println("option name Hash type spin default " + Config.DEFAULT_TRANSPOSITION_TABLE_SIZE + " min 16 max 1024");
+						System.out.println("option name Hash type spin default " + Config.DEFAULT_TRANSPOSITION_TABLE_SIZE + " min 1 max " + Config.MAX_TRANSPOSITION_TABLE_SIZE);
+						System.out.println("option name Threads type spin default " + Config.DEFAULT_THREADS + " min 1 max " + Config.MAX_THREADS);
 						System.out.println("option name Ponder type check default " + Config.DEFAULT_PONDER);
 						System.out.println("option name OwnBook type check default " + Config.DEFAULT_USE_BOOK);
+						System.out.println("option name BookFile type string default <empty>");
 						System.out.println("option name UCI_Chess960 type check default " + Config.DEFAULT_UCI_CHESS960);
 						System.out.println("option name UCI_LimitStrength type check default " + Config.DEFAULT_LIMIT_STRENGTH);
 						System.out.println("option name UCI_Elo type spin default " + Config.DEFAULT_ELO + " min 500 max " + Config.DEFAULT_ELO);
 						System.out.println("option name Evaluator type combo default " + Config.DEFAULT_EVALUATOR + " var simplified var complete var experimental");
 						System.out.println("option name Contempt Factor type spin default " + Config.DEFAULT_CONTEMPT_FACTOR + " min -200 max 200");
+						System.out.println("option name LazyEval type check default " + Config.DEFAULT_LAZY_EVAL);
+						System.out.println("option name EvalFile type string default <empty>");
 						System.out.println("uciok");
 
 						break;
@@ -70,18 +111,25 @@ public class Uci implements SearchObserver {
 							nameSB.append(tok);
 						}
 						String name = nameSB.toString();
-						String value = tokens[index];
+						String value = index < tokens.length ? tokens[index] : "";
 
 						switch (name) {
 							case "Hash":
 								config.setTranspositionTableSize(Integer.parseInt(value));
 								break;
+							case "Threads":
+								config.setThreads(Integer.parseInt(value));
+								break;
 							case "Ponder":
 								config.setPonder(Boolean.parseBoolean(value));
 								break;
 							case "OwnBook":
 								config.setUseBook(Boolean.parseBoolean(value));
 								break;
+							case "BookFile":
+								// The path may contain spaces
+								setBookFile(String.join(" ", Arrays.asList(tokens).subList(index, tokens.length)));
+								break;
 							case "UCI_Chess960":
 								config.setUciChess960(Boolean.parseBoolean(value));
 								break;
@@ -97,14 +145,32 @@ public class Uci implements SearchObserver {
 							case "ContemptFactor":
 								config.setContemptFactor(Integer.parseInt(value));
 								break;
+							case "LazyEval":
+								config.setLazyEval(Boolean.parseBoolean(value));
+								break;
+							case "EvalFile":
+								// The path may contain spaces
+								setEvalFile(String.join(" ", Arrays.asList(tokens).subList(index, tokens.length)));
+								break;
 						}
 						needsReload = true;
 
 						break;
 					case "isready":
 						if (needsReload) {
+							// Free the previous TT before allocating the new one
+							if (engine != null) {
+								engine.stop();
+								engine.destroy();
+								engine = null;
+							}
+							int hashSize = config.getTranspositionTableSize();
 							engine = new SearchEngineThreaded(config);
 							engine.setObserver(this);
+							if (config.getTranspositionTableSize() != hashSize) {
+								System.out.println("info string Not enough direct memory for a hash of " + hashSize + " MB, using "
+										+ config.getTranspositionTableSize() + " MB, it can be increased with -XX:MaxDirectMemorySize");
+							}
 							needsReload = false;
 							System.gc();
 						} else {
@@ -223,6 +289,17 @@ public class Uci implements SearchObserver {
 					case "register":
 						// not used
 						break;
+					case "bench":
+						// Not an UCI command: bench [depth] [threads] [hash]
+						if (engine != null && engine.isSearching()) {
+							engine.stop();
+						}
+						try {
+							Bench.run(tokens, index, System.out);
+						} catch (NumberFormatException e) {
+							System.out.println("info string Usage: bench [depth] [threads] [hash]");
+						}
+						break;
 					default:
 						System.out.println("info string Wrong UCI command");
 						break;
@@ -253,6 +330,11 @@ public class Uci implements SearchObserver {
 	}
 
 	public static void main(String[] args) {
+		if (args.length > 0 && "bench".equals(args[0])) {
+			Logger.noLog = true;
+			Bench.run(args, 1, System.out);
+			return;
+		}
 		Uci uci = new Uci();
 		uci.loop();
 	}
@@ -1,80 +1,180 @@
 package com.alonsoruibal.chess.uci;
 
+import com.alonsoruibal.chess.log.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
-import java.util.Scanner;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Controls an external UCI engine process
+ * <p/>
+ * A reader thread moves the engine output lines to a queue, so the waits have timeouts
+ * and never block on the pipe: a hung engine is detected and a crashed one is seen as the end of the output.
+ */
 public class UciEngine implements Runnable {
-	private String command;
+	/**
+	 * Logger for this class
+	 */
+	private static final Logger logger = Logger.getLogger("UciEngine");
+
+	// Queued when the engine output ends
+	private static final String EOF = "";
+
+	private final String command;
 	private Process process;
 	private PrintWriter pWriter;
-	private Scanner scanner;
+	private BufferedReader reader;
+	private BlockingQueue<String> lines;
 
 	private Thread thread;
+	private boolean debug;
 
-	private boolean uciOk = false;
-	private boolean readyOk = false;
-	private String bestMove = null;
+	private String name;
 
 	public UciEngine(String command) {
 		this.command = command;
-		System.out.println(command);
+		this.name = command;
 	}
 
-	public void open(boolean ownBook) {
-		if (process != null) {
-			process.destroy();
-		}
+	/**
+	 * Prints the UCI commands and the engine output
+	 */
+	public void setDebug(boolean debug) {
+		this.debug = debug;
+	}
+
+	/**
+	 * The name sent by the engine in the "id name" line, or the command if it was not received
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public boolean open(boolean ownBook) {
+		return open(ownBook, 0, 10000);
+	}
+
+	/**
+	 * Starts the engine process and waits for the UCI handshake
+	 *
+	 * @param ownBook if the engine can use its own book
+	 * @param hash    the "Hash" option in MB, 0 to not set it
+	 * @param timeout milliseconds to wait for "uciok" and "readyok"
+	 * @return false if the engine did not start or did not answer in time
+	 */
+	public boolean open(boolean ownBook, int hash, long timeout) {
+		close();
 
 		try {
-			process = Runtime.getRuntime().exec(command);
-			pWriter = new PrintWriter(process.getOutputStream());
-			InputStreamReader reader = new InputStreamReader(process.getInputStream());
-			scanner = new Scanner(reader);
-
-			thread = new Thread(this);
-			thread.start();
-
-			sendCommand("uci");
-			waitUciOk();
-			sendCommand("setoption name OwnBook value " + ownBook);
-			sendIsReady();
-
-			waitReadyOk();
-		} catch (Exception e) {
-			e.printStackTrace();
+			process = new ProcessBuilder(command.trim().split("\\s+"))
+					.redirectError(ProcessBuilder.Redirect.DISCARD)
+					.start();
+		} catch (IOException e) {
+			logger.error("Cannot start engine " + command + ": " + e.getMessage());
+			return false;
 		}
+		pWriter = new PrintWriter(process.getOutputStream());
+		reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+		lines = new LinkedBlockingQueue<>();
+
+		thread = new Thread(this, "UciEngine-reader");
+		thread.setDaemon(true);
+		thread.start();
+
+		sendCommand("uci");
+		if (!waitUciOk(timeout)) {
+			return false;
+		}
+		sendCommand("setoption name OwnBook value " + ownBook);
+		if (hash > 0) {
+			sendCommand("setoption name Hash value " + hash);
+		}
+		return isReady(timeout);
 	}
 
 	public void close() {
-		process.destroy();
+		if (process != null) {
+			if (process.isAlive()) {
+				sendCommand("quit");
+			}
+			process.destroy();
+			try {
+				if (!process.waitFor(1, TimeUnit.SECONDS)) {
+					process.destroyForcibly();
+				}
+			} catch (InterruptedException e) {
+				process.destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+			process = null;
+		}
+	}
+
+	public boolean isAlive() {
+		return process != null && process.isAlive();
 	}
 
 	public void run() {
+		BlockingQueue<String> queue = lines;
 		try {
-			while (true) {
-				String line = scanner.nextLine();
-				System.out.println("UCI <- " + line);
-				if (line.startsWith("uciok")) {
-					uciOk = true;
-				} else if (line.startsWith("readyok")) {
-					readyOk = true;
-				} else if (line.startsWith("bestmove")) {
-					String[] tokens = line.split(" ");
-					bestMove = tokens[1];
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (debug) {
+					System.out.println("UCI <- " + line);
+				}
+				if (!line.isEmpty()) {
+					queue.add(line);
 				}
 			}
-		} catch (Exception e) {
-
+		} catch (IOException e) {
+			// The process was closed
 		}
+		queue.add(EOF);
 	}
 
 	private void sendCommand(String command) {
-		System.out.println("UCI -> " + command);
+		if (debug) {
+			System.out.println("UCI -> " + command);
+		}
 		pWriter.println(command);
 		pWriter.flush();
 	}
 
+	/**
+	 * Waits for a line starting with the prefix, discarding the previous lines
+	 *
+	 * @return the line or null if the engine ended or the timeout expired
+	 */
+	private String waitLine(String prefix, long timeout) {
+		long deadline = System.currentTimeMillis() + timeout;
+		try {
+			while (true) {
+				long remaining = deadline - System.currentTimeMillis();
+				String line = timeout == Long.MAX_VALUE ? lines.take() : lines.poll(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+				if (line == null) {
+					return null;
+				}
+				if (line == EOF) {
+					// Keep it for the next waits
+					lines.add(EOF);
+					return null;
+				}
+				if (line.startsWith(prefix)) {
+					return line;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
 	public void sendStop() {
 		sendCommand("stop");
 	}
@@ -83,64 +183,79 @@ public class UciEngine implements Runnable {
 		sendCommand("ucinewgame");
 	}
 
-	public void sendIsReady() {
-		readyOk = false;
+	public void setOption(String option, String value) {
+		sendCommand("setoption name " + option + " value " + value);
+	}
+
+	/**
+	 * Sends "isready" and waits for "readyok"
+	 */
+	public boolean isReady(long timeout) {
 		sendCommand("isready");
+		return waitLine("readyok", timeout) != null;
 	}
 
 	public String goMovetime(String fen, int movetime) {
-		bestMove = null;
 		sendCommand("position fen " + fen);
 		sendCommand("go movetime " + movetime);
 		return waitBestMove();
 	}
 
 	public String goNodes(String fen, int nodes) {
-		bestMove = null;
 		sendCommand("position fen " + fen);
 		sendCommand("go nodes " + nodes);
 		return waitBestMove();
 	}
 
 	public String goDepth(String fen, String moves, int depth) {
-		bestMove = null;
 		sendCommand("position fen " + fen + " moves " + moves);
 		sendCommand("go depth " + depth);
 		return waitBestMove();
 	}
 
 	public String go(String fen, int wtime, int btime) {
-		bestMove = null;
 		sendCommand("position fen " + fen);
 		sendCommand("go wtime " + wtime + " btime " + btime);
 		return waitBestMove();
 	}
 
-	public void waitUciOk() {
-		while (!uciOk) {
-			try {
-				Thread.sleep(10);
-			} catch (Exception e) {
-			}
-		}
+	/**
+	 * Searches a game position with the clocks of both players
+	 *
+	 * @param fen     the initial position of the game
+	 * @param moves   the moves played from the initial position in UCI notation separated by spaces
+	 * @param timeout milliseconds to wait for the best move
+	 * @return the best move or null if the engine crashed or did not answer in time
+	 */
+	public String go(String fen, String moves, int wtime, int btime, int winc, int binc, long timeout) {
+		sendCommand("position fen " + fen + (moves.isEmpty() ? "" : " moves " + moves));
+		sendCommand("go wtime " + wtime + " btime " + btime + " winc " + winc + " binc " + binc);
+		return waitBestMove(timeout);
 	}
 
-	public void waitReadyOk() {
-		while (!readyOk) {
-			try {
-				Thread.sleep(10);
-			} catch (Exception e) {
+	public boolean waitUciOk(long timeout) {
+		long deadline = System.currentTimeMillis() + timeout;
+		String line;
+		while ((line = waitLine("", deadline - System.currentTimeMillis())) != null) {
+			if (line.startsWith("uciok")) {
+				return true;
+			} else if (line.startsWith("id name ")) {
+				name = line.substring(8).trim();
 			}
 		}
+		return false;
 	}
 
 	public String waitBestMove() {
-		while (bestMove == null) {
-			try {
-				Thread.sleep(10);
-			} catch (Exception e) {
-			}
+		return waitBestMove(Long.MAX_VALUE);
+	}
+
+	public String waitBestMove(long timeout) {
+		String line = waitLine("bestmove", timeout);
+		if (line == null) {
+			return null;
 		}
-		return bestMove;
+		String[] tokens = line.split(" ");
+		return tokens.length > 1 ? tokens[1] : null;
 	}
-}
\ No newline at end of file
+}
@@ -2,8 +2,13 @@ package com.alonsoruibal.chess;
 
 import com.alonsoruibal.chess.bitboard.AttacksInfo;
 import com.alonsoruibal.chess.bitboard.BitboardUtils;
+import com.alonsoruibal.chess.movegen.LegalMoveGenerator;
+import com.alonsoruibal.chess.movegen.MoveGenerator;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class AttacksInfoTest {
@@ -40,4 +45,61 @@ class AttacksInfoTest {
 		System.out.println(BitboardUtils.toString(ai.pawnAttacks[0]));
         assertEquals(1, Long.bitCount(ai.pawnAttacks[0]));
     }
-}
\ No newline at end of file
+
+	/**
+	 * The attacks updated from the parent ply must be equal to the built from scratch,
+	 * going up and down in random chess960 games like in the search tree, also with null moves
+	 */
+	@Test
+	public void testIncrementalBuild() {
+		Board board = new Board();
+		MoveGenerator movegen = new LegalMoveGenerator();
+		Random random = new Random();
+		int[] moves = new int[256];
+		AttacksInfo[] plies = new AttacksInfo[16];
+		for (int i = 0; i < plies.length; i++) {
+			plies[i] = new AttacksInfo(i > 0 ? plies[i - 1] : null);
+		}
+
+		for (int game = 0; game < 100; game++) {
+			board.startPosition(random.nextInt(960));
+			int ply = 0;
+			for (int i = 0; i < 2000; i++) {
+				plies[ply].build(board);
+				AttacksInfo expected = new AttacksInfo();
+				expected.build(board);
+				assertAttacksInfoEquals(expected, plies[ply], board);
+
+				int moveCount = movegen.generateMoves(board, moves, 0);
+				if (moveCount > 0 && ply < plies.length - 1 && random.nextInt(4) != 0) {
+					// Also null moves, that only change the side to move
+					board.doMove(!board.getCheck() && random.nextInt(20) == 0 ? Move.NULL : moves[random.nextInt(moveCount)]);
+					ply++;
+				} else if (ply > 0) {
+					board.undoMove();
+					ply--;
+				}
+			}
+		}
+	}
+
+	private void assertAttacksInfoEquals(AttacksInfo expected, AttacksInfo actual, Board board) {
+		String fen = board.getFen();
+		assertArrayEquals(expected.attackedSquaresAlsoPinned, actual.attackedSquaresAlsoPinned, fen);
+		assertArrayEquals(expected.attackedSquares, actual.attackedSquares, fen);
+		assertArrayEquals(expected.attacksFromSquare, actual.attacksFromSquare, fen);
+		assertArrayEquals(expected.pawnAttacks, actual.pawnAttacks, fen);
+		assertArrayEquals(expected.knightAttacks, actual.knightAttacks, fen);
+		assertArrayEquals(expected.bishopAttacks, actual.bishopAttacks, fen);
+		assertArrayEquals(expected.rookAttacks, actual.rookAttacks, fen);
+		assertArrayEquals(expected.queenAttacks, actual.queenAttacks, fen);
+		assertArrayEquals(expected.kingAttacks, actual.kingAttacks, fen);
+		assertArrayEquals(expected.kingIndex, actual.kingIndex, fen);
+		assertArrayEquals(expected.bishopAttacksKing, actual.bishopAttacksKing, fen);
+		assertArrayEquals(expected.rookAttacksKing, actual.rookAttacksKing, fen);
+		assertArrayEquals(expected.mayPin, actual.mayPin, fen);
+		assertEquals(expected.piecesGivingCheck, actual.piecesGivingCheck, fen);
+		assertEquals(expected.interposeCheckSquares, actual.interposeCheckSquares, fen);
+		assertEquals(expected.pinnedPieces, actual.pinnedPieces, fen);
+	}
+}
@@ -0,0 +1,24 @@
+package com.alonsoruibal.chess;
+
+import com.alonsoruibal.chess.uci.Bench;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BenchTest {
+
+	@Test
+	void testDeterministicNodes() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(output);
+		long nodes = Bench.run(5, 1, 1, out);
+		assertTrue(nodes > 0);
+		// From a cleared TT the same search is done again
+		assertEquals(nodes, Bench.run(5, 1, 1, out));
+		assertTrue(output.toString().contains("Nodes searched  : " + nodes));
+	}
+}
@@ -1,7 +1,12 @@
 package com.alonsoruibal.chess;
 
+import com.alonsoruibal.chess.bitboard.AttacksInfo;
+import com.alonsoruibal.chess.movegen.LegalMoveGenerator;
+import com.alonsoruibal.chess.movegen.MagicMoveGenerator;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class BoardTest {
@@ -141,4 +146,169 @@ class BoardTest {
 		System.out.println(b.toString());
 		assertTrue(b.getCheck(), "Position must be check");
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The piece square table sums updated in doMove and undoMove must be equal to the computed from the board,
+	 * also with chess960 castlings
+	 */
+	@Test
+	void testPcsqIncrementalUpdate() {
+		Random random = new Random();
+		int[][][] pcsqTable = new int[2][Piece.KING + 1][64];
+		for (int color = 0; color < 2; color++) {
+			for (int piece = Piece.PAWN; piece <= Piece.KING; piece++) {
+				for (int index = 0; index < 64; index++) {
+					pcsqTable[color][piece][index] = random.nextInt(1000);
+				}
+			}
+		}
+		Board board = new Board();
+		board.setPcsqTable(pcsqTable);
+		Board fenBoard = new Board();
+		fenBoard.setPcsqTable(pcsqTable);
+		LegalMoveGenerator movegen = new LegalMoveGenerator();
+		int[] moves = new int[256];
+
+		for (int i = 0; i < 50000; i++) {
+			int moveCount = movegen.generateMoves(board, moves, 0);
+			if (moveCount > 0 && (i % 100) != 0) {
+				board.doMove(moves[random.nextInt(moveCount)]);
+				if ((i % 10) == 0) {
+					board.undoMove();
+				}
+				fenBoard.setFen(board.getFen());
+				assertEquals(fenBoard.pcsq[Color.W], board.pcsq[Color.W]);
+				assertEquals(fenBoard.pcsq[Color.B], board.pcsq[Color.B]);
+			} else {
+				board.startPosition(random.nextInt(960));
+			}
+		}
+	}
+
+	@Test
+	void testPacked() {
+		Random random = new Random(7);
+		Board board = new Board();
+		Board packedBoard = new Board();
+		Board fenBoard = new Board();
+		LegalMoveGenerator movegen = new LegalMoveGenerator();
+		int[] moves = new int[256];
+		long[] packed = new long[8];
+
+		for (int i = 0; i < 20000; i++) {
+			int moveCount = movegen.generateMoves(board, moves, 0);
+			if (moveCount > 0 && (i % 150) != 0) {
+				board.doMove(moves[random.nextInt(moveCount)]);
+				board.getPacked(packed, 4);
+				packedBoard.setPacked(packed, 4);
+				fenBoard.setFen(board.getFen());
+
+				assertEquals(fenBoard.getKey(), packedBoard.getKey());
+				assertEquals(fenBoard.getPawnKey(), packedBoard.getPawnKey());
+				assertEquals(fenBoard.getMaterialKey(), packedBoard.getMaterialKey());
+				assertEquals(fenBoard.getCheck(), packedBoard.getCheck());
+				assertEquals(fenBoard.chess960, packedBoard.chess960);
+				assertArrayEquals(fenBoard.castlingRooks, packedBoard.castlingRooks);
+				String fen = fenBoard.getFen();
+				assertEquals(fen.substring(0, fen.lastIndexOf(' ')), packedBoard.getFen().substring(0, packedBoard.getFen().lastIndexOf(' ')));
+				assertEquals(movegen.generateMoves(fenBoard, moves, 0), movegen.generateMoves(packedBoard, moves, 0));
+			} else {
+				board.startPosition(random.nextInt(960));
+			}
+		}
+	}
+
+	@Test
+	void testPackedHistory() {
+		Board board = new Board();
+		board.setFen("r3k2r/8/8/8/4p3/8/3P4/R3K2R w KQkq - 3 20");
+		board.doMove(Move.getFromString(board, "d4", true));
+		long[] packed = new long[4];
+		board.getPacked(packed, 0);
+		assertEquals(0, packed[3] >>> Board.PACKED_USER_DATA_SHIFT);
+
+		Board packedBoard = new Board();
+		packedBoard.setPacked(packed, 0);
+		assertEquals("r3k2r/8/8/8/3Pp3/8/8/R3K2R b KQkq d3 0 1", packedBoard.getInitialFen());
+		assertEquals(packedBoard.getInitialFen(), packedBoard.getFen());
+
+		// The history starts at the packed position
+		packedBoard.doMove(Move.getFromString(packedBoard, "exd3", true));
+		packedBoard.doMove(Move.getFromString(packedBoard, "O-O", true));
+		assertEquals("r3k2r/8/8/8/8/3p4/8/R4RK1 b kq - 1 2", packedBoard.getFen());
+		assertEquals("exd3 O-O", packedBoard.getMovesSan());
+		packedBoard.undoMove();
+		packedBoard.undoMove();
+		assertEquals(packedBoard.getInitialFen(), packedBoard.getFen());
+	}
+
+	/**
+	 * getLegalMove() validating the moves with isPseudoLegal() and isLegal() must return the same as searching the
+	 * move in the legal moves, with the pseudo-legal moves, moves from other positions and random ints
+	 */
+	@Test
+	void testIsPseudoLegalAndIsLegal() {
+		Random random = new Random(3);
+		Board board = new Board();
+		AttacksInfo ai = new AttacksInfo();
+		LegalMoveGenerator movegen = new LegalMoveGenerator();
+		MagicMoveGenerator pseudoMovegen = new MagicMoveGenerator();
+		int[] moves = new int[256];
+		int[] pseudoMoves = new int[256];
+		int[] otherMoves = new int[1024];
+
+		for (int i = 0; i < 20000; i++) {
+			int moveCount = movegen.generateMoves(board, moves, 0);
+			int pseudoMoveCount = pseudoMovegen.generateMoves(board, pseudoMoves, 0);
+			ai.build(board);
+
+			for (int j = 0; j < pseudoMoveCount + 32; j++) {
+				int move = j < pseudoMoveCount ? pseudoMoves[j] :
+						j < pseudoMoveCount + 24 ? otherMoves[random.nextInt(otherMoves.length)] : random.nextInt(1 << 21);
+				int expected = Move.NONE;
+				for (int k = 0; k < moveCount; k++) {
+					if ((move & ~Move.CHECK_MASK) == (moves[k] & ~Move.CHECK_MASK)) {
+						expected = moves[k];
+					}
+				}
+				assertEquals(expected, board.getLegalMove(move), board.getFen() + " " + Move.toString(move));
+				if (j < pseudoMoveCount) {
+					assertTrue(board.isPseudoLegal(move), board.getFen() + " " + Move.toString(move));
+					assertEquals(expected != Move.NONE, board.isLegal(move, ai), board.getFen() + " " + Move.toString(move));
+				}
+			}
+			for (int j = 0; j < pseudoMoveCount; j++) {
+				otherMoves[random.nextInt(otherMoves.length)] = pseudoMoves[j];
+			}
+
+			if (moveCount > 0 && (i % 150) != 0) {
+				board.doMove(moves[random.nextInt(moveCount)], false, false);
+			} else {
+				board.startPosition(random.nextInt(960));
+			}
+		}
+	}
+
+	@Test
+	void testIsPseudoLegal() {
+		Board board = new Board();
+		board.setFen("r3k2r/8/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1");
+		assertTrue(board.isPseudoLegal(Move.getFromString(board, "exd6", true)));
+		assertTrue(board.isPseudoLegal(Move.getFromString(board, "O-O-O", true)));
+		assertFalse(board.isPseudoLegal(Move.NONE));
+		assertFalse(board.isPseudoLegal(Move.NULL));
+		// Black moves, a rook move through a piece and a pawn capture to an empty square
+		assertFalse(board.isPseudoLegal(Move.genMove(59, 58, Piece.KING, false, 0)));
+		assertFalse(board.isPseudoLegal(Move.genMove(0, 4, Piece.ROOK, false, 0)));
+		assertFalse(board.isPseudoLegal(Move.genMove(35, 42, Piece.PAWN, true, 0)));
+
+		// Pseudo-legal but leaving the king in check
+		board.setFen("4k3/4r3/8/8/8/8/4B3/4K3 w - - 0 1");
+		int move = Move.getFromString(board, "Bd3", false);
+		AttacksInfo ai = new AttacksInfo();
+		ai.build(board);
+		assertTrue(board.isPseudoLegal(move));
+		assertFalse(board.isLegal(move, ai));
+		assertEquals(Move.NONE, board.getLegalMove(move));
+	}
+}
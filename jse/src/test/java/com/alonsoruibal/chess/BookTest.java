@@ -1,8 +1,19 @@
 package com.alonsoruibal.chess;
 
 import com.alonsoruibal.chess.book.FileBook;
+import com.alonsoruibal.chess.book.PolyglotBookBuilder;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class BookTest {
@@ -23,4 +34,114 @@ class BookTest {
 		}
 		assertTrue(count > 3);
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testMappedBookFile() throws IOException {
+		Path path = Files.createTempFile("book", ".bin");
+		// Not deleted here, some systems do not allow to delete a mapped file
+		path.toFile().deleteOnExit();
+		try (InputStream is = getClass().getResourceAsStream("/book_small.bin")) {
+			Files.copy(is, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+		FileBook resourceBook = new FileBook("/book_small.bin");
+		FileBook fileBook = new FileBook(path);
+		assertEquals(resourceBook.getEntryCount(), fileBook.getEntryCount());
+
+		Board board = new Board();
+		board.startPosition();
+		int count = 0;
+		int move = fileBook.getMove(board);
+		while (move != 0) {
+			// Both books must know the position
+			assertTrue(resourceBook.getMove(board) != 0);
+			board.doMove(move);
+			move = fileBook.getMove(board);
+			count++;
+		}
+		assertTrue(count > 3);
+	}
+
+	@Test
+	void testBookBuilder() throws IOException {
+		Path pgnPath = Files.createTempFile("book", ".pgn");
+		Path bookPath = Files.createTempFile("book", ".bin");
+		Path spilledBookPath = Files.createTempFile("book", ".bin");
+		pgnPath.toFile().deleteOnExit();
+		bookPath.toFile().deleteOnExit();
+		spilledBookPath.toFile().deleteOnExit();
+		Files.writeString(pgnPath, "[Event \"1\"]\n[Result \"1-0\"]\n\n1. e4 e5 2. Nf3 Nc6 3. Bc4 Bc5 4. O-O 1-0\n\n"
+				+ "[Event \"2\"]\n[Result \"1-0\"]\n\n1. e4 e5 2. Nf3 Nc6 3. Bc4 Bc5 4. O-O 1-0\n\n"
+				+ "[Event \"3\"]\n[Result \"1/2-1/2\"]\n\n1. d4 d5 1/2-1/2\n\n"
+				+ "[Event \"4\"]\n[Result \"0-1\"]\n\n1. e4 c5 0-1\n\n"
+				+ "[Event \"5\"]\n[Result \"*\"]\n\n1. c4 *\n");
+
+		PolyglotBookBuilder builder = new PolyglotBookBuilder(2, 40, 1, 1 << 20);
+		long entries = builder.build(List.of(pgnPath), bookPath);
+		assertEquals(4, builder.getGameCount());
+		// 1. e4, 1. d4, 1... d5 and 1... c5, then 2. Nf3, 3. Bc4 and 4. O-O; the black moves of the lost games are not included
+		assertEquals(7, entries);
+
+		// With a tiny memory the runs are spilled and merged, the book must be the same
+		PolyglotBookBuilder spilledBuilder = new PolyglotBookBuilder(3, 40, 1, 16);
+		spilledBuilder.build(List.of(pgnPath), spilledBookPath);
+		assertArrayEquals(Files.readAllBytes(bookPath), Files.readAllBytes(spilledBookPath));
+
+		FileBook book = new FileBook(bookPath);
+		Board board = new Board();
+		board.startPosition();
+		int move = book.getMove(board);
+		assertTrue("e2e4".equals(Move.toString(move)) || "d2d4".equals(Move.toString(move)));
+
+		// The castling is encoded as the king capturing the rook
+		board.setFen("r1bqk1nr/pppp1ppp/2n5/2b1p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4");
+		assertEquals(Move.getFromString(board, "O-O", true), book.getMove(board));
+
+		// Only moves with wins or draws
+		board.startPosition();
+		board.doMove(Move.getFromString(board, "e4", true));
+		assertEquals("c7c5", Move.toString(book.getMove(board)));
+	}
+
+	@Test
+	void testBookBuilderMultiPassMerge() throws IOException {
+		Path pgnPath = Files.createTempFile("book", ".pgn");
+		Path bookPath = Files.createTempFile("book", ".bin");
+		Path spilledBookPath = Files.createTempFile("book", ".bin");
+		pgnPath.toFile().deleteOnExit();
+		bookPath.toFile().deleteOnExit();
+		spilledBookPath.toFile().deleteOnExit();
+
+		// Random games, with thousands of different positions
+		Random random = new Random(7);
+		Board board = new Board();
+		int[] moves = new int[256];
+		StringBuilder pgn = new StringBuilder();
+		for (int game = 0; game < 200; game++) {
+			board.startPosition();
+			pgn.append("[Event \"").append(game).append("\"]\n[Result \"1-0\"]\n\n");
+			for (int ply = 0; ply < 30; ply++) {
+				int moveCount = board.getLegalMoves(moves);
+				if (moveCount == 0) {
+					break;
+				}
+				int move = moves[random.nextInt(moveCount)];
+				if ((ply & 1) == 0) {
+					pgn.append(ply / 2 + 1).append(". ");
+				}
+				pgn.append(Move.toSan(board, move)).append(' ');
+				board.doMove(move);
+			}
+			pgn.append("1-0\n\n");
+		}
+		Files.writeString(pgnPath, pgn.toString());
+
+		PolyglotBookBuilder builder = new PolyglotBookBuilder(2, 40, 1, 1 << 20);
+		long entries = builder.build(List.of(pgnPath), bookPath);
+		assertTrue(entries > 2000);
+
+		// With 16 entries in memory there are more than 64 runs, so they are merged in several passes
+		PolyglotBookBuilder spilledBuilder = new PolyglotBookBuilder(2, 40, 1, 16);
+		spilledBuilder.build(List.of(pgnPath), spilledBookPath);
+		assertArrayEquals(Files.readAllBytes(bookPath), Files.readAllBytes(spilledBookPath));
+	}
+}
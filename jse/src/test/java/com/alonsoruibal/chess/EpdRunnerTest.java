@@ -0,0 +1,61 @@
+package com.alonsoruibal.chess;
+
+import com.alonsoruibal.chess.epd.EpdPosition;
+import com.alonsoruibal.chess.epd.EpdResult;
+import com.alonsoruibal.chess.epd.EpdRunner;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EpdRunnerTest {
+
+	@Test
+	void testParse() {
+		EpdPosition position = EpdPosition.parse("rn2k3/p4ppr/1p2p1n1/2ppP1Bp/q2P3P/P1P2QN1/2P2PP1/R4K1R w q c6 bm Nf5 Qf4; hmvc 0; fmvc 1; id \"MGV1-K: SHIROV - Atalik\";");
+		assertEquals("rn2k3/p4ppr/1p2p1n1/2ppP1Bp/q2P3P/P1P2QN1/2P2PP1/R4K1R w q c6", position.getFen());
+		assertEquals(List.of("Nf5", "Qf4"), position.getBestMoves());
+		assertEquals(0, position.getAvoidMoves().size());
+		assertEquals("MGV1-K: SHIROV - Atalik", position.getId());
+
+		position = EpdPosition.parse("r1b2rk1/2p1nppp/pp1q1n2/3p4/3P4/P1NBP3/1PQ1NPPP/R3K2R w KQ - am e4;id MATS002");
+		assertEquals(List.of("e4"), position.getAvoidMoves());
+		assertEquals("MATS002", position.getId());
+
+		assertNull(EpdPosition.parse(""));
+	}
+
+	@Test
+	void testRunner() throws IOException {
+		List<EpdPosition> positions = EpdRunner.readPositions(getClass().getResourceAsStream("/wacnew.epd")).subList(0, 8);
+		EpdRunner runner = new EpdRunner(new Config(), 3);
+		runner.setDepthLimit(6);
+		runner.setTimeLimit(5000);
+		List<EpdResult> results = runner.run(positions);
+
+		assertEquals(positions.size(), results.size());
+		for (int i = 0; i < positions.size(); i++) {
+			EpdResult result = results.get(i);
+			// In the same order
+			assertEquals(positions.get(i), result.position);
+			assertTrue(result.depth <= 6 || result.score > 20000, "Must stop at the depth limit");
+			assertTrue(result.nodes > 0);
+		}
+		// WAC.001 is a mate in 2
+		assertTrue(results.get(0).solved);
+
+		StringWriter json = new StringWriter();
+		EpdRunner.writeJson(results, json);
+		assertTrue(json.toString().contains("\"id\": \"WAC.001\""));
+		assertTrue(json.toString().contains("\"positions\": 8"));
+
+		StringWriter csv = new StringWriter();
+		EpdRunner.writeCsv(results, csv);
+		assertEquals(positions.size() + 1, csv.toString().split("\n").length);
+	}
+}
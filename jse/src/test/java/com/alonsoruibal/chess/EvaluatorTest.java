@@ -6,6 +6,7 @@ import com.alonsoruibal.chess.evaluation.Evaluator;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -161,4 +162,59 @@ class EvaluatorTest extends BaseTest {
 	void testConnectedPassersVsCandidate() {
 		assertTrue(getEval("8/p1p5/6pp/PPP2k2/8/4PK2/8/8 w - - 0 43") > 0);
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testLazyEval() {
+		Board board = new Board();
+		AttacksInfo attacksInfo = new AttacksInfo();
+		CompleteEvaluator evaluator = new CompleteEvaluator();
+		board.setFen("r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4");
+		int eval = evaluator.evaluate(board, attacksInfo);
+
+		assertEquals(eval, evaluator.evaluate(board, attacksInfo, eval - 10, eval + 10));
+		assertFalse(evaluator.isLastEvalLazy(), "Inside the window it must do the full evaluation");
+
+		int lazyEval = evaluator.evaluate(board, attacksInfo, eval + 1000, eval + 1001);
+		assertTrue(evaluator.isLastEvalLazy(), "Far below alpha it must return the lazy evaluation");
+		assertTrue(Math.abs(lazyEval - eval) < CompleteEvaluator.LAZY_EVAL_MARGIN);
+
+		evaluator.evaluate(board, attacksInfo, eval - 1001, eval - 1000);
+		assertTrue(evaluator.isLastEvalLazy(), "Far above beta it must return the lazy evaluation");
+	}
+
+	@Test
+	void testPcsqTableInstalledBelowTheRoot() {
+		// With the root in check the first evaluation is below the root
+		Board board = new Board();
+		board.setFen("n3k3/p7/8/3PP3/2PNNP2/8/8/4K2r w - - 0 1");
+		CompleteEvaluator evaluator = new CompleteEvaluator();
+		board.doMove(Move.getFromString(board, "Ke2", true));
+		evaluator.installPcsqTable(board);
+		evaluator.evaluate(board, new AttacksInfo());
+		board.undoMove();
+		board.doMove(Move.getFromString(board, "Kd2", true));
+		int eval = evaluator.evaluate(board, new AttacksInfo());
+
+		Board expected = new Board();
+		evaluator.installPcsqTable(expected);
+		expected.setFen(board.getFen());
+		assertEquals(expected.pcsq[Color.W], board.pcsq[Color.W]);
+		assertEquals(expected.pcsq[Color.B], board.pcsq[Color.B]);
+		assertEquals(evaluator.evaluate(expected, new AttacksInfo()), eval);
+	}
+
+	@Test
+	void testPcsqTableInstalledInOtherBoards() {
+		String fen = "r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4";
+		CompleteEvaluator evaluator = new CompleteEvaluator();
+		Board board = new Board();
+		evaluator.installPcsqTable(board);
+		board.setFen(fen);
+		int eval = evaluator.evaluate(board, new AttacksInfo());
+
+		// A second board without the table installed
+		Board other = new Board();
+		other.setFen(fen);
+		assertEquals(eval, evaluator.evaluate(other, new AttacksInfo()));
+	}
+}
@@ -0,0 +1,52 @@
+package com.alonsoruibal.chess;
+
+import com.alonsoruibal.chess.tournament.Gauntlet;
+import com.alonsoruibal.chess.tournament.PentanomialStats;
+import com.alonsoruibal.chess.tournament.Tournament;
+import com.alonsoruibal.chess.uci.UciEngine;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plays Carballo against itself as external UCI processes
+ */
+class GauntletTest {
+	private static final String UCI_COMMAND = Paths.get(System.getProperty("java.home"), "bin", "java")
+			+ " -cp " + System.getProperty("java.class.path") + " com.alonsoruibal.chess.uci.Uci";
+
+	@Test
+	void testUciEngine() {
+		UciEngine engine = new UciEngine(UCI_COMMAND);
+		assertTrue(engine.open(false, 16, 10000));
+		assertTrue(engine.getName().startsWith("Carballo"));
+		String move = engine.go(Board.FEN_START_POSITION, "e2e4 e7e5", 1000, 1000, 0, 0, 5000);
+		assertNotNull(move);
+		assertEquals(4, move.length());
+		engine.close();
+		assertFalse(engine.isAlive());
+	}
+
+	@Test
+	void testGauntlet() throws Exception {
+		Gauntlet gauntlet = new Gauntlet(UCI_COMMAND, Arrays.asList(UCI_COMMAND, UCI_COMMAND),
+				Tournament.readOpenings(Paths.get(getClass().getResource("/NoomenTestsuite2012.pgn").toURI())));
+		gauntlet.setConcurrency(2);
+		gauntlet.setTimeControl(2000, 20);
+		gauntlet.setMaxGames(2);
+		gauntlet.setOut(null);
+		gauntlet.run();
+
+		for (int i = 0; i < 2; i++) {
+			PentanomialStats stats = gauntlet.getStats(i);
+			assertEquals(1, stats.getPairs());
+			assertEquals(2, stats.getGames());
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.alonsoruibal.chess;
+
+import com.alonsoruibal.chess.pgn.IndexedPgnFile;
+import com.alonsoruibal.chess.pgn.PgnFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexedPgnFileTest {
+
+	private Path copyResource(Path dir, String resource) throws IOException {
+		Path path = dir.resolve(resource.substring(1));
+		try (InputStream is = getClass().getResourceAsStream(resource)) {
+			Files.copy(is, path);
+		}
+		return path;
+	}
+
+	@Test
+	void testSameGamesThanPgnFile() throws IOException {
+		Path dir = Files.createTempDirectory("pgn");
+		// With Windows line endings
+		Path pgnPath = copyResource(dir, "/draw.pgn");
+
+		IndexedPgnFile pgnFile = new IndexedPgnFile(pgnPath);
+		assertTrue(Files.exists(IndexedPgnFile.getIndexPath(pgnPath)), "The index must be saved next to the PGN");
+		assertTrue(pgnFile.getGameCount() > 0);
+		for (int i = 0; i < pgnFile.getGameCount(); i++) {
+			assertEquals(PgnFile.getGameNumber(Files.newInputStream(pgnPath), i), pgnFile.getGame(i));
+		}
+		assertNull(pgnFile.getGame(pgnFile.getGameCount()));
+	}
+
+	@Test
+	void testIndexReused() throws IOException {
+		Path dir = Files.createTempDirectory("pgn");
+		Path pgnPath = copyResource(dir, "/problems_easy.pgn");
+		Path indexPath = IndexedPgnFile.getIndexPath(pgnPath);
+
+		IndexedPgnFile pgnFile = new IndexedPgnFile(pgnPath);
+		assertEquals(311, pgnFile.getGameCount());
+		String game = pgnFile.getGame(310);
+		assertEquals(PgnFile.getGameNumber(Files.newInputStream(pgnPath), 310), game);
+
+		// The saved index is used while the PGN does not change
+		FileTime indexTime = FileTime.fromMillis(Files.getLastModifiedTime(indexPath).toMillis() - 10000);
+		Files.setLastModifiedTime(indexPath, indexTime);
+		assertEquals(game, new IndexedPgnFile(pgnPath).getGame(310));
+		assertEquals(indexTime, Files.getLastModifiedTime(indexPath));
+
+		// And it is built again when the PGN changes
+		Files.writeString(pgnPath, "[Event \"Added\"]\n\n1. e4 *\n", StandardOpenOption.APPEND);
+		pgnFile = new IndexedPgnFile(pgnPath);
+		assertEquals(312, pgnFile.getGameCount());
+		assertEquals(game, pgnFile.getGame(310));
+		assertEquals("[Event \"Added\"]\n\n1. e4 *\n", pgnFile.getGame(311));
+	}
+
+	@Test
+	void testIndexDirectory() throws IOException {
+		Path dir = Files.createTempDirectory("pgn");
+		Path indexDirectory = Files.createTempDirectory("index");
+		Path pgnPath = copyResource(dir, "/problems_easy.pgn");
+
+		IndexedPgnFile pgnFile = new IndexedPgnFile(pgnPath, indexDirectory);
+		assertEquals(311, pgnFile.getGameCount());
+		Path indexPath = IndexedPgnFile.getIndexPath(pgnPath, indexDirectory);
+		assertTrue(Files.exists(indexPath));
+		assertFalse(Files.exists(IndexedPgnFile.getIndexPath(pgnPath)), "The index must not be saved next to the PGN");
+		assertEquals(PgnFile.getGameNumber(Files.newInputStream(pgnPath), 310), pgnFile.getGame(310));
+
+		// A PGN with the same name in other folder has its own index
+		Path otherPgnPath = copyResource(Files.createTempDirectory("pgn"), "/problems_easy.pgn");
+		assertNotEquals(indexPath, IndexedPgnFile.getIndexPath(otherPgnPath, indexDirectory));
+		assertEquals(indexPath, IndexedPgnFile.getIndexPath(dir.resolve("..").resolve(dir.getFileName()).resolve("problems_easy.pgn"), indexDirectory));
+	}
+}
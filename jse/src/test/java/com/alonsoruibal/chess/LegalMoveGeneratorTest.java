@@ -0,0 +1,107 @@
+package com.alonsoruibal.chess;
+
+import com.alonsoruibal.chess.movegen.LegalMoveGenerator;
+import com.alonsoruibal.chess.movegen.MagicMoveGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LegalMoveGeneratorTest {
+
+	private final LegalMoveGenerator legalMovegen = new LegalMoveGenerator();
+	private final MagicMoveGenerator magicMovegen = new MagicMoveGenerator();
+
+	/**
+	 * The legal moves filtering the pseudo-legal moves with doMove, with the check flag set after doing them
+	 */
+	private int generateMovesWithDoMove(Board board, int[] moves) {
+		int moveCount = magicMovegen.generateMoves(board, moves, 0);
+		int j = 0;
+		for (int i = 0; i < moveCount; i++) {
+			if (board.doMove(moves[i], true, false)) {
+				moves[j++] = board.getCheck() ? moves[i] | Move.CHECK_MASK : moves[i];
+				board.undoMove();
+			}
+		}
+		return j;
+	}
+
+	private int[] generateMoves(Board board) {
+		int[] moves = new int[256];
+		int moveCount = legalMovegen.generateMoves(board, moves, 0);
+		int[] result = new int[moveCount];
+		System.arraycopy(moves, 0, result, 0, moveCount);
+		return result;
+	}
+
+	/**
+	 * Compares the moves, their order and the check flags with the doMove filtering in random chess960 games
+	 */
+	@Test
+	void testSameMovesAsDoMoveFiltering() {
+		Random random = new Random(11);
+		Board board = new Board();
+		int[] expected = new int[256];
+
+		for (int i = 0; i < 50000; i++) {
+			int[] moves = generateMoves(board);
+			int expectedCount = generateMovesWithDoMove(board, expected);
+			int[] expectedMoves = new int[expectedCount];
+			System.arraycopy(expected, 0, expectedMoves, 0, expectedCount);
+			assertArrayEquals(expectedMoves, moves, board.getFen());
+
+			if (moves.length > 0 && (i % 200) != 0) {
+				board.doMove(moves[random.nextInt(moves.length)], false, false);
+			} else {
+				board.startPosition(random.nextInt(960));
+			}
+		}
+	}
+
+	@Test
+	void testPinnedPieces() {
+		Board board = new Board();
+		// The knight cannot move and the bishop only along the pin
+		board.setFen("4k3/8/8/8/4b3/8/2B5/1K1N3r w - - 0 1");
+		for (int move : generateMoves(board)) {
+			assertTrue(Move.getPieceMoved(move) != Piece.KNIGHT, Move.toString(move));
+			if (Move.getPieceMoved(move) == Piece.BISHOP) {
+				assertTrue((Move.getToSquare(move) & (Square.D3 | Square.E4)) != 0, Move.toString(move));
+			}
+		}
+	}
+
+	@Test
+	void testPassantDiscoversCheck() {
+		Board board = new Board();
+		board.setFen("8/8/8/K2pP2q/8/8/8/7k w - d6 0 1");
+		for (int move : generateMoves(board)) {
+			assertTrue(Move.getMoveType(move) != Move.TYPE_PASSANT, Move.toString(move));
+		}
+	}
+
+	@Test
+	void testCastlingDirectCheck() {
+		Board board = new Board();
+		// The rook on d1 gives check through the square left by the king
+		board.setFen("8/8/8/8/8/8/8/R3K2k w Q - 0 1");
+		int move = Move.getFromString(board, "O-O-O", true);
+		assertTrue(Move.isCheck(move));
+	}
+
+	@Test
+	void testChess960CastlingDiscoversAttack() {
+		Board board = new Board();
+		// The castling rook on b1 was hiding the attack of the rook on a1 to the king
+		board.setFen("4k3/8/8/8/8/8/8/rRK5 w B - 0 1");
+		assertTrue(board.chess960);
+		for (int move : generateMoves(board)) {
+			assertTrue(Move.getMoveType(move) != Move.TYPE_QUEENSIDE_CASTLING, Move.toString(move));
+		}
+		assertEquals(Move.NONE, Move.getFromString(board, "O-O-O", true));
+	}
+}
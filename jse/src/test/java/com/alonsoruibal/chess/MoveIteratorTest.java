@@ -336,4 +336,34 @@ class MoveIteratorTest {
 		assertEquals("Qc3", Move.toSan(searchEngine.getBoard(), move));
 		assertEquals(-900, moveIterator.getLastMoveSee());
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testTtMoveFromOtherPositionIsDiscarded() {
+		Board otherBoard = new Board();
+		otherBoard.setFen("rq2r1k1/5p2/p6p/4b1P1/1p2P2P/5Q2/PP4K1/5R1R w - - 0 2");
+		int ttMove = Move.getFromString(otherBoard, "Qf3xf7+", true);
+
+		// The start position has 20 moves and no one is the TT move
+		SearchEngine searchEngine = new SearchEngine(new Config());
+		searchEngine.getBoard().startPosition();
+		MoveIterator moveIterator = searchEngine.nodes[0].moveIterator;
+		moveIterator.genMoves(ttMove, MoveIterator.GENERATE_ALL);
+		int move;
+		int moves = 0;
+		while ((move = moveIterator.next()) != Move.NONE) {
+			assertNotEquals(ttMove, move);
+			moves++;
+		}
+		assertEquals(20, moves);
+	}
+
+	@Test
+	void testTtMoveCheckFlagIsFixed() {
+		SearchEngine searchEngine = new SearchEngine(new Config());
+		searchEngine.getBoard().setFen("rq2r1k1/5p2/p6p/4b1P1/1p2P2P/5Q2/PP4K1/5R1R w - - 0 2");
+		MoveIterator moveIterator = searchEngine.nodes[0].moveIterator;
+		int ttMove = Move.getFromString(searchEngine.getBoard(), "Qf3xf7+", true);
+		moveIterator.genMoves(ttMove & ~Move.CHECK_MASK, MoveIterator.GENERATE_ALL);
+		assertEquals(ttMove, moveIterator.next());
+	}
+}
@@ -0,0 +1,51 @@
+package com.alonsoruibal.chess;
+
+import com.alonsoruibal.chess.packed.PackedPositionReader;
+import com.alonsoruibal.chess.packed.PackedPositionWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PackedPositionTest {
+
+	private static final String[] FENS = {
+			Board.FEN_START_POSITION,
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 12 40",
+			"bqnb1rkr/pp3ppp/3ppn2/2p5/5P2/P2P4/NPP1P1PP/BQ1BNRKR w HFhf - 2 9",
+	};
+
+	@Test
+	void testWriteRead() throws IOException {
+		Path path = Files.createTempFile("positions", ".bin");
+		path.toFile().deleteOnExit();
+
+		Board board = new Board();
+		try (PackedPositionWriter writer = new PackedPositionWriter(path, false)) {
+			for (int i = 0; i < FENS.length; i++) {
+				board.setFen(FENS[i]);
+				writer.write(board, i - 2);
+			}
+			assertEquals(FENS.length, writer.getCount());
+		}
+		assertEquals(FENS.length * PackedPositionReader.RECORD_BYTES, Files.size(path));
+
+		PackedPositionReader reader = new PackedPositionReader(path);
+		assertEquals(FENS.length, reader.size());
+		Board expected = new Board();
+		for (int i = 0; i < FENS.length; i++) {
+			reader.setBoard(i, board);
+			expected.setFen(FENS[i]);
+			assertEquals(expected.getKey(), board.getKey());
+			assertEquals(expected.chess960, board.chess960);
+			assertEquals(expected.fiftyMovesRule, board.fiftyMovesRule);
+			assertEquals(expected.getPassantSquare(), board.getPassantSquare());
+			assertEquals(i - 2, reader.getUserData(i));
+		}
+	}
+}
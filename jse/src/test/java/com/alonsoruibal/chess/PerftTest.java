@@ -0,0 +1,67 @@
+package com.alonsoruibal.chess;
+
+import com.alonsoruibal.chess.perft.Perft;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Perft results from http://chessprogramming.wikispaces.com/Perft+Results with the Perft driver
+ */
+class PerftTest {
+
+	private long perft(Perft perft, String fen, int depth) {
+		Board board = new Board();
+		board.setFen(fen);
+		return perft.perft(board, depth);
+	}
+
+	@Test
+	void testPerft() {
+		Perft perft = new Perft(2, 16);
+		assertEquals(1, perft(perft, Board.FEN_START_POSITION, 0));
+		assertEquals(20, perft(perft, Board.FEN_START_POSITION, 1));
+		assertEquals(197281, perft(perft, Board.FEN_START_POSITION, 4));
+		assertEquals(97862, perft(perft, "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 3));
+		assertEquals(674624, perft(perft, "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 5));
+		assertEquals(422333, perft(perft, "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 4));
+		assertEquals(62379, perft(perft, "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 3));
+		assertEquals(89890, perft(perft, "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 3));
+		perft.shutdown();
+	}
+
+	@Test
+	void testPerftWithoutHash() {
+		Perft perft = new Perft(1, 0);
+		assertEquals(2039, perft(perft, "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 2));
+		assertEquals(43238, perft(perft, "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 4));
+		perft.shutdown();
+	}
+
+	@Test
+	void testDivide() {
+		Perft perft = new Perft(2, 16);
+		Board board = new Board();
+		board.startPosition();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		assertEquals(8902, perft.divide(board, 3, new PrintStream(output)));
+		String divide = output.toString();
+		assertTrue(divide.contains("e2e4: 600"));
+		assertTrue(divide.contains("g1f3: 440"));
+		assertTrue(divide.contains("Moves: 20"));
+		perft.shutdown();
+	}
+
+	@Test
+	@Tag("slow")
+	void testPerft7() {
+		Perft perft = new Perft(Runtime.getRuntime().availableProcessors(), 256);
+		assertEquals(3195901860L, perft(perft, Board.FEN_START_POSITION, 7));
+		perft.shutdown();
+	}
+}
@@ -0,0 +1,115 @@
+package com.alonsoruibal.chess;
+
+import com.alonsoruibal.chess.pgn.Game;
+import com.alonsoruibal.chess.pgn.GameNodeMove;
+import com.alonsoruibal.chess.pgn.GameNodeVariation;
+import com.alonsoruibal.chess.pgn.PgnFile;
+import com.alonsoruibal.chess.pgn.PgnParser;
+import com.alonsoruibal.chess.pgn.PgnTokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PgnTokenizerTest {
+
+	private static final String PGN = "[Event \"Test 1\"]\r\n" +
+			"[WhiteElo \"2100\"]\r\n" +
+			"\r\n" +
+			"1. e4 e5 2.Nf3!? {A multiline\r\ncomment} (2. f4 $1 exf4) 2... Nc6 1-0\r\n" +
+			"\r\n" +
+			"[Event \"Test 2\"]\n" +
+			"\n" +
+			"1. d4 ; Rest of line comment\n" +
+			"d5 *\n";
+
+	@Test
+	void testTokens() throws IOException {
+		PgnTokenizer tokenizer = new PgnTokenizer(new StringReader(PGN));
+
+		assertToken(tokenizer, PgnTokenizer.HEADER, "Test 1");
+		assertEquals("Event", tokenizer.getHeaderName().toString());
+		assertToken(tokenizer, PgnTokenizer.HEADER, "2100");
+		assertEquals("WhiteElo", tokenizer.getHeaderName().toString());
+		assertToken(tokenizer, PgnTokenizer.MOVE, "e4");
+		assertEquals("1.", tokenizer.getMoveNumber().toString());
+		assertToken(tokenizer, PgnTokenizer.MOVE, "e5");
+		assertNull(tokenizer.getMoveNumber());
+		assertToken(tokenizer, PgnTokenizer.MOVE, "Nf3");
+		assertEquals("2.", tokenizer.getMoveNumber().toString());
+		assertEquals("!?", tokenizer.getAnnotation().toString());
+		assertToken(tokenizer, PgnTokenizer.COMMENT, "A multiline comment");
+		assertEquals(PgnTokenizer.VARIATION_START, tokenizer.next());
+		assertToken(tokenizer, PgnTokenizer.MOVE, "f4");
+		assertToken(tokenizer, PgnTokenizer.GLYPH, "$1");
+		assertToken(tokenizer, PgnTokenizer.MOVE, "exf4");
+		assertEquals(PgnTokenizer.VARIATION_END, tokenizer.next());
+		assertToken(tokenizer, PgnTokenizer.MOVE, "Nc6");
+		assertEquals("2...", tokenizer.getMoveNumber().toString());
+		assertToken(tokenizer, PgnTokenizer.RESULT, "1-0");
+		assertEquals(PgnTokenizer.GAME_END, tokenizer.next());
+
+		assertToken(tokenizer, PgnTokenizer.HEADER, "Test 2");
+		assertToken(tokenizer, PgnTokenizer.MOVE, "d4");
+		assertToken(tokenizer, PgnTokenizer.COMMENT, " Rest of line comment");
+		assertToken(tokenizer, PgnTokenizer.MOVE, "d5");
+		assertToken(tokenizer, PgnTokenizer.RESULT, "*");
+		assertEquals(PgnTokenizer.GAME_END, tokenizer.next());
+		assertEquals(PgnTokenizer.END, tokenizer.next());
+	}
+
+	private void assertToken(PgnTokenizer tokenizer, int type, String text) throws IOException {
+		assertEquals(type, tokenizer.next());
+		assertEquals(text, tokenizer.getText().toString());
+	}
+
+	@Test
+	void testGameTree() {
+		Game game = PgnParser.parsePgn(PGN);
+		assertEquals("Test 1", game.getEvent());
+		assertEquals(Integer.valueOf(2100), game.getWhiteElo());
+		// e4 e5 Nf3 comment variation Nc6 result
+		assertEquals(7, game.getPv().size());
+		GameNodeVariation variation = (GameNodeVariation) game.getPv().get(4);
+		assertEquals(2, variation.size());
+		// The glyph is added to the move annotation
+		assertEquals("!", ((GameNodeMove) variation.get(0)).annotation);
+	}
+
+	/**
+	 * Parsing all the games from one stream must be equal to parsing them one by one
+	 */
+	@Test
+	void testStreamGames() throws IOException {
+		PgnTokenizer tokenizer = new PgnTokenizer(new InputStreamReader(getClass().getResourceAsStream("/problems_easy.pgn"), StandardCharsets.UTF_8));
+		int gameNumber = 0;
+		Game game;
+		while ((game = PgnParser.parseGame(tokenizer, true)) != null) {
+			Game expected = PgnParser.parsePgn(PgnFile.getGameNumber(getClass().getResourceAsStream("/problems_easy.pgn"), gameNumber));
+			assertEquals(expected.getEvent(), game.getEvent());
+			assertEquals(expected.getFenStartPosition(), game.getFenStartPosition());
+			assertEquals(expected.getPv().toString(), game.getPv().toString());
+			gameNumber++;
+		}
+		assertEquals(311, gameNumber);
+	}
+
+	@Test
+	void testSkipToGameEnd() throws IOException {
+		String pgn = "[Event \"1\"]\n\n1. e4 {A comment\n[with a bracket]} e5 ; [Line comment\n% [Escaped line\n2. Nf3 1-0\n\n"
+				+ "[Event \"2\"]\n\n1. d4 (1. c4) d5 *\n\n"
+				+ "[Event \"3\"]\n\n1. e4 *";
+		PgnTokenizer tokenizer = new PgnTokenizer(new StringReader(pgn));
+		assertEquals("1", PgnParser.parseGame(tokenizer, false).getEvent());
+		assertEquals("2", PgnParser.parseGame(tokenizer, false).getEvent());
+		Game game = PgnParser.parseGame(tokenizer, true);
+		assertEquals("3", game.getEvent());
+		assertEquals(2, game.getPv().size());
+		assertNull(PgnParser.parseGame(tokenizer, false));
+	}
+}
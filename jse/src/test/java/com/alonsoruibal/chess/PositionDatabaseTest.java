@@ -0,0 +1,63 @@
+package com.alonsoruibal.chess;
+
+import com.alonsoruibal.chess.book.PositionDatabase;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PositionDatabaseTest {
+
+	@Test
+	void testPositionDatabase() throws IOException {
+		Path pgnPath = Files.createTempFile("database", ".pgn");
+		Path databasePath = Files.createTempFile("database", ".db");
+		pgnPath.toFile().deleteOnExit();
+		databasePath.toFile().deleteOnExit();
+		Files.writeString(pgnPath, "[Event \"1\"]\n[WhiteElo \"2500\"]\n[BlackElo \"2400\"]\n[Result \"1-0\"]\n\n1. e4 e5 2. Nf3 Nc6 1-0\n\n"
+				+ "[Event \"2\"]\n[WhiteElo \"2300\"]\n[Result \"1/2-1/2\"]\n\n1. e4 e5 2. Nf3 Nf6 1/2-1/2\n\n"
+				+ "[Event \"3\"]\n[Result \"0-1\"]\n\n1. e4 c5 0-1\n\n"
+				+ "[Event \"4\"]\n[Result \"0-1\"]\n\n1. d4 d5 0-1\n");
+
+		// With a tiny memory to spill and merge many runs
+		PositionDatabase.build(List.of(pgnPath), databasePath, 2, 80, 16);
+		PositionDatabase database = new PositionDatabase(databasePath);
+		// The start position, after 1. e4, 1. d4, 1. e4 e5 and 1. e4 e5 2. Nf3
+		assertEquals(5, database.getPositionCount());
+		assertEquals(8, database.getMoveCount());
+
+		Board board = new Board();
+		board.startPosition();
+		List<PositionDatabase.MoveStats> moves = database.getMoves(board);
+		assertEquals(2, moves.size());
+		PositionDatabase.MoveStats e4 = moves.get(0);
+		assertEquals("e2e4", Move.toString(e4.move));
+		assertEquals(3, e4.getGames());
+		assertEquals(1, e4.whiteWins);
+		assertEquals(1, e4.draws);
+		assertEquals(1, e4.blackWins);
+		assertEquals(2400, e4.averageElo);
+		assertEquals("d2d4", Move.toString(moves.get(1).move));
+		assertEquals(0, moves.get(1).averageElo);
+
+		board.doMove(Move.getFromString(board, "e4", true));
+		board.doMove(Move.getFromString(board, "e5", true));
+		board.doMove(Move.getFromString(board, "Nf3", true));
+		moves = database.getMoves(board);
+		assertEquals(2, moves.size());
+		for (PositionDatabase.MoveStats stats : moves) {
+			assertEquals(1, stats.getGames());
+			assertTrue("b8c6".equals(Move.toString(stats.move)) || "g8f6".equals(Move.toString(stats.move)));
+		}
+		assertEquals(2400, moves.stream().filter(m -> m.whiteWins == 1).findFirst().get().averageElo);
+
+		// Not in the database
+		board.doMove(Move.getFromString(board, "Nc6", true));
+		assertEquals(0, database.getMoves(board).size());
+	}
+}
@@ -1,20 +1,24 @@
 package com.alonsoruibal.chess;
 
 import com.alonsoruibal.chess.log.Logger;
-import com.alonsoruibal.chess.pgn.PgnFile;
+import com.alonsoruibal.chess.pgn.IndexedPgnFile;
 import com.alonsoruibal.chess.pgn.PgnImportExport;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Paths;
+
 class ProblemsPgnTest {
 	private static final Logger logger = Logger.getLogger("ProblemsPgnTest");
 
-	void processPgnFile(String file, int count) {
+	void processPgnFile(String file, int count) throws Exception {
 
 		Board board = new Board();
+		// The index of the resource is saved in the temporary directory
+		IndexedPgnFile pgnFile = new IndexedPgnFile(Paths.get(getClass().getResource(file).toURI()), Paths.get(System.getProperty("java.io.tmpdir")));
 
 		for (int gameNo = 0; gameNo < count; gameNo++) {
-			String problemPgn = PgnFile.getGameNumber(this.getClass().getResourceAsStream(file), gameNo);
+			String problemPgn = pgnFile.getGame(gameNo);
 			logger.debug("Problem\n" + problemPgn);
 			PgnImportExport.setBoard(board, problemPgn);
 		}
@@ -20,46 +20,46 @@ class SearchEngineTest extends BaseTest {
 		search.getTT().set(search.getBoard(), TranspositionTable.TYPE_FAIL_LOW,
 				0, 0,
 				Move.NONE, 23, search.nodes[0].staticEval, false);
-		foundTT = search.getTT().search(search.getBoard(), 0, false);
+		foundTT = search.getTT().search(search.getBoard(), 0, false, search.nodes[0].ttEntry);
 		refine = search.refineEval(search.nodes[0], foundTT);
 		assertTrue(foundTT, "Must find it in the TT");
-		assertEquals(TranspositionTable.TYPE_FAIL_LOW, search.getTT().getNodeType(), "Must be fail low in the TT");
+		assertEquals(TranspositionTable.TYPE_FAIL_LOW, search.nodes[0].ttEntry.getNodeType(), "Must be fail low in the TT");
 		assertEquals(search.nodes[0].staticEval, refine, "Must not refine");
 
 		search.getTT().set(search.getBoard(), TranspositionTable.TYPE_FAIL_HIGH,
 				0, 0,
 				Move.NONE, 45, search.nodes[0].staticEval, false);
-		foundTT = search.getTT().search(search.getBoard(), 0, false);
+		foundTT = search.getTT().search(search.getBoard(), 0, false, search.nodes[0].ttEntry);
 		refine = search.refineEval(search.nodes[0], foundTT);
 		assertTrue(foundTT, "Must find it in the TT");
-		assertEquals(TranspositionTable.TYPE_FAIL_HIGH, search.getTT().getNodeType(), "Must be fail high in the TT");
+		assertEquals(TranspositionTable.TYPE_FAIL_HIGH, search.nodes[0].ttEntry.getNodeType(), "Must be fail high in the TT");
 		assertEquals(45, refine, "Must refine");
 
 		search.nodes[0].staticEval = 40;
 		search.getTT().set(search.getBoard(), TranspositionTable.TYPE_FAIL_LOW,
 				0, 0,
 				Move.NONE, 23, search.nodes[0].staticEval, false);
-		foundTT = search.getTT().search(search.getBoard(), 0, false);
+		foundTT = search.getTT().search(search.getBoard(), 0, false, search.nodes[0].ttEntry);
 		refine = search.refineEval(search.nodes[0], foundTT);
-		assertEquals(TranspositionTable.TYPE_FAIL_LOW, search.getTT().getNodeType(), "Must be fail low in the TT");
+		assertEquals(TranspositionTable.TYPE_FAIL_LOW, search.nodes[0].ttEntry.getNodeType(), "Must be fail low in the TT");
 		assertEquals(23, refine, "Must refine");
 
 		search.nodes[0].staticEval = 40;
 		search.getTT().set(search.getBoard(), TranspositionTable.TYPE_FAIL_HIGH,
 				0, 0,
 				Move.NONE, 45, search.nodes[0].staticEval, false);
-		foundTT = search.getTT().search(search.getBoard(), 0, false);
+		foundTT = search.getTT().search(search.getBoard(), 0, false, search.nodes[0].ttEntry);
 		refine = search.refineEval(search.nodes[0], foundTT);
-		assertEquals(TranspositionTable.TYPE_FAIL_HIGH, search.getTT().getNodeType(), "Must be fail high in the TT");
+		assertEquals(TranspositionTable.TYPE_FAIL_HIGH, search.nodes[0].ttEntry.getNodeType(), "Must be fail high in the TT");
 		assertEquals(45, refine, "Must refine");
 
 		search.nodes[0].staticEval = 40;
 		search.getTT().set(search.getBoard(), TranspositionTable.TYPE_EXACT_SCORE,
 				0, 0,
 				Move.NONE, 43, search.nodes[0].staticEval, false);
-		foundTT = search.getTT().search(search.getBoard(), 0, false);
+		foundTT = search.getTT().search(search.getBoard(), 0, false, search.nodes[0].ttEntry);
 		refine = search.refineEval(search.nodes[0], foundTT);
-		assertEquals(TranspositionTable.TYPE_EXACT_SCORE, search.getTT().getNodeType(), "Must be exact score");
+		assertEquals(TranspositionTable.TYPE_EXACT_SCORE, search.nodes[0].ttEntry.getNodeType(), "Must be exact score");
 		assertEquals(43, refine, "Must refine");
 	}
 
@@ -0,0 +1,52 @@
+package com.alonsoruibal.chess;
+
+import com.alonsoruibal.chess.search.SearchEngineThreaded;
+import com.alonsoruibal.chess.search.SearchParameters;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class SearchEngineThreadedTest {
+
+	private String searchBestMoveSan(Config config, String fen, int depth) {
+		SearchEngineThreaded search = new SearchEngineThreaded(config);
+		search.getBoard().setFen(fen);
+		SearchParameters searchParams = new SearchParameters();
+		searchParams.setDepth(depth);
+		search.go(searchParams);
+		while (search.isSearching()) {
+			search.sleep(10);
+		}
+		return Move.toSan(search.getBoard(), search.getBestMove());
+	}
+
+	@Test
+	void testLazySmpFindsMate() {
+		Config config = new Config();
+		config.setThreads(4);
+		assertEquals("Qxf7+", searchBestMoveSan(config, "r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4", 8));
+	}
+
+	@Test
+	void testLazySmpStopsHelpers() {
+		Config config = new Config();
+		config.setThreads(3);
+		SearchEngineThreaded search = new SearchEngineThreaded(config);
+		search.getBoard().setFen(Board.FEN_START_POSITION);
+		SearchParameters searchParams = new SearchParameters();
+		searchParams.setInfinite(true);
+		search.go(searchParams);
+		search.sleep(200);
+		search.stop();
+		assertFalse(search.isSearching());
+
+		// And it can search again
+		search.go(SearchParameters.get(100));
+		while (search.isSearching()) {
+			search.sleep(10);
+		}
+		assertNotEquals(Move.NONE, search.getBestMove());
+	}
+}
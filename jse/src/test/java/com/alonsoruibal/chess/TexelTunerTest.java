@@ -0,0 +1,117 @@
+package com.alonsoruibal.chess;
+
+import com.alonsoruibal.chess.bitboard.AttacksInfo;
+import com.alonsoruibal.chess.evaluation.CompleteEvaluator;
+import com.alonsoruibal.chess.evaluation.Evaluator;
+import com.alonsoruibal.chess.evaluation.EvaluatorParameters;
+import com.alonsoruibal.chess.tuning.TexelTuner;
+import com.alonsoruibal.chess.tuning.TuningPositions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TexelTunerTest {
+	private static final String[] FENS = {
+			"rnbqkb1r/pp2pppp/3p1n2/8/3NP3/8/PPP2PPP/RNBQKB1R w KQkq - 0 5",
+			"r3k2r/ppp2ppp/2n5/3pP3/8/8/PPP2PPP/R3K2R w Kq d6 0 12",
+			"8/5pk1/6p1/8/3P4/6P1/5PK1/8 b - - 7 45",
+			"2r3k1/5ppp/8/8/8/8/1q3PPP/3R2K1 w - - 0 30"
+	};
+
+	@Test
+	void testTuningPositions() throws IOException {
+		Path epdPath = Files.createTempFile("tuning", ".epd");
+		Path positionsPath = Files.createTempFile("tuning", ".bin");
+		epdPath.toFile().deleteOnExit();
+		positionsPath.toFile().deleteOnExit();
+		Files.writeString(epdPath, FENS[0] + " c9 \"1-0\";\n"
+				+ FENS[1] + " c9 \"1/2-1/2\";\n"
+				+ "this line has no result\n"
+				+ FENS[2] + " [0.0]\n"
+				+ FENS[3] + " c9 \"0-1\";\n");
+
+		assertEquals(4, TuningPositions.convert(List.of(epdPath), positionsPath, 0));
+		TuningPositions positions = new TuningPositions(positionsPath);
+		assertEquals(4, positions.size());
+
+		double[] results = {1, 0.5, 0, 0};
+		Board board = new Board();
+		Board expected = new Board();
+		for (int i = 0; i < FENS.length; i++) {
+			positions.setBoard(i, board);
+			expected.setFen(FENS[i]);
+			assertEquals(expected.getKey(), board.getKey());
+			assertEquals(FENS[i].substring(0, FENS[i].lastIndexOf(' ')), board.getFen().substring(0, board.getFen().lastIndexOf(' ')));
+			assertEquals(results[i], positions.getResult(i), 0);
+		}
+
+		// The error with the default parameters does not grow after a tuning iteration
+		TexelTuner tuner = new TexelTuner(positions, 2, List.of("PAWN_PASSER"));
+		assertEquals(12, tuner.getTunedValuesCount());
+		// The zeros of the piece square tables are also tuned, except the pawn ranks 1 and 8
+		TexelTuner pcsqTuner = new TexelTuner(positions, 1, List.of("pawnPcsq", "bishopPcsq"));
+		assertEquals(2 * (48 + 64), pcsqTuner.getTunedValuesCount());
+		pcsqTuner.shutdown();
+		double error = tuner.getError();
+		assertTrue(error > 0 && error < 1);
+		assertTrue(tuner.tune(1, null) <= error);
+		tuner.shutdown();
+		CompleteEvaluator.PARAMETERS.reset();
+	}
+
+	@Test
+	void testParametersText() {
+		EvaluatorParameters parameters = new EvaluatorParameters();
+		int[] values = {0, Evaluator.oe(10, -5), Evaluator.oe(-3, 7)};
+		parameters.add("TEST", values);
+		String text = parameters.toString();
+		assertEquals("TEST = {0, oe(10, -5), oe(-3, 7)}\n", text);
+
+		int version = parameters.getVersion();
+		parameters.load("// Comment\nTEST = {oe(1, 2), 0, oe(-4, -8)}\n");
+		assertEquals(Evaluator.oe(1, 2), values[0]);
+		assertEquals(0, values[1]);
+		assertEquals(Evaluator.oe(-4, -8), values[2]);
+		assertNotEquals(version, parameters.getVersion());
+
+		parameters.reset();
+		assertEquals(text, parameters.toString());
+
+		assertThrows(IllegalArgumentException.class, () -> parameters.load("OTHER = {0}"));
+		assertThrows(IllegalArgumentException.class, () -> parameters.load("TEST = {0, 1}"));
+		assertThrows(IllegalArgumentException.class, () -> parameters.load("TEST = {0, oe(1), 2}"));
+
+		// A wrong line does not apply the previous ones
+		version = parameters.getVersion();
+		assertThrows(IllegalArgumentException.class, () -> parameters.load("TEST = {1, 2, 3}\nOTHER = {0}"));
+		assertEquals(text, parameters.toString());
+		assertEquals(version, parameters.getVersion());
+	}
+
+	@Test
+	void testEvaluatorParametersChange() {
+		Board board = new Board();
+		board.setFen(FENS[2]);
+		CompleteEvaluator evaluator = new CompleteEvaluator();
+		int eval = evaluator.evaluate(board, new AttacksInfo());
+
+		// The passed pawn in d4 is cached in the pawn hash, the change must be seen
+		int[] passer = CompleteEvaluator.PARAMETERS.get("PAWN_PASSER");
+		passer[3] += Evaluator.oe(0, 100);
+		CompleteEvaluator.PARAMETERS.changed();
+		try {
+			assertTrue(evaluator.evaluate(board, new AttacksInfo()) > eval);
+		} finally {
+			CompleteEvaluator.PARAMETERS.reset();
+		}
+		assertEquals(eval, evaluator.evaluate(board, new AttacksInfo()));
+	}
+}
@@ -0,0 +1,53 @@
+package com.alonsoruibal.chess;
+
+import com.alonsoruibal.chess.search.TimeCheckScheduler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeCheckSchedulerTest {
+
+	/**
+	 * Scheduler with a clock advanced by the test
+	 */
+	private static class FakeClockScheduler extends TimeCheckScheduler {
+		long nanos;
+
+		@Override
+		protected long nanoTime() {
+			return nanos;
+		}
+
+		@Override
+		protected long currentTimeMillis() {
+			return nanos / 1000000;
+		}
+	}
+
+	@Test
+	void testDeadline() {
+		FakeClockScheduler timeCheck = new FakeClockScheduler();
+		timeCheck.start(timeCheck.currentTimeMillis() + 50);
+		// One million nodes per second
+		while (!timeCheck.isTimeUp()) {
+			timeCheck.nanos += 1000;
+		}
+		assertTrue(timeCheck.nanos >= 50000000, "Must not stop before the deadline");
+		assertTrue(timeCheck.nanos < 51000000, "Must stop less than one millisecond after the deadline");
+		assertTrue(timeCheck.getInterval() > 16, "Must poll less often at high speed");
+	}
+
+	@Test
+	void testStop() {
+		TimeCheckScheduler timeCheck = new TimeCheckScheduler();
+		timeCheck.start(Long.MAX_VALUE);
+		assertFalse(timeCheck.isTimeUp());
+		timeCheck.stop();
+		assertTrue(timeCheck.isTimeUp());
+
+		// A new search restarts it
+		timeCheck.start(Long.MAX_VALUE);
+		assertFalse(timeCheck.isTimeUp());
+	}
+}
@@ -1,10 +1,17 @@
 package com.alonsoruibal.chess;
 
 import com.alonsoruibal.chess.evaluation.Evaluator;
+import com.alonsoruibal.chess.tt.OffHeapTranspositionTable;
+import com.alonsoruibal.chess.tt.TTEntry;
 import com.alonsoruibal.chess.tt.TranspositionTable;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TranspositionTableTest {
 
@@ -13,6 +20,7 @@ class TranspositionTableTest {
 		Board b = new Board();
 		b.startPosition();
 		TranspositionTable tt = new TranspositionTable(20);
+		TTEntry ttEntry = new TTEntry();
 
 		int nodeType = TranspositionTable.TYPE_EXACT_SCORE;
 		int bestMove = Move.getFromString(b, "e2e4", true);
@@ -22,17 +30,18 @@ class TranspositionTableTest {
 		tt.set(b, nodeType,
 				0, depthAnalyzed,
 				bestMove, score, eval, false);
-		tt.search(b, 0, false);
-		assertEquals(nodeType, tt.getNodeType());
-		assertEquals(bestMove, tt.getBestMove());
-		assertEquals(score, tt.getScore());
-		assertEquals(depthAnalyzed, tt.getDepthAnalyzed());
-		assertEquals(eval, tt.getEval());
+		tt.search(b, 0, false, ttEntry);
+		assertEquals(nodeType, ttEntry.getNodeType());
+		assertEquals(bestMove, ttEntry.getBestMove());
+		assertEquals(score, ttEntry.getScore());
+		assertEquals(depthAnalyzed, ttEntry.getDepthAnalyzed());
+		assertEquals(eval, ttEntry.getEval());
 	}
 
 	@Test
 	void testDistanceToInitialPly() {
 		TranspositionTable tt = new TranspositionTable(20);
+		TTEntry ttEntry = new TTEntry();
 		Board b = new Board();
 		b.setFen("8/7K/8/8/8/8/R7/7k w - - 0 1");
 
@@ -43,7 +52,85 @@ class TranspositionTableTest {
 		tt.set(b, TranspositionTable.TYPE_EXACT_SCORE,
 				4, depthAnalyzed,
 				bestMove, score, 0, false);
-		tt.search(b, 1, false);
-		assertEquals(tt.getScore(), Evaluator.MATE - 5, "It does not fix the mate score in the transposition table");
+		tt.search(b, 1, false, ttEntry);
+		assertEquals(ttEntry.getScore(), Evaluator.MATE - 5, "It does not fix the mate score in the transposition table");
+	}
+
+	@Test
+	void testNotFoundAfterClear() {
+		TranspositionTable tt = new TranspositionTable(1);
+		TTEntry ttEntry = new TTEntry();
+		Board b = new Board();
+		b.startPosition();
+
+		tt.set(b, TranspositionTable.TYPE_EXACT_SCORE, 0, 5, Move.NONE, 10, 20, false);
+		tt.clear();
+		assertFalse(tt.search(b, 0, false, ttEntry));
+		assertEquals(Move.NONE, ttEntry.getBestMove());
+	}
+
+	@Test
+	void testOffHeapNotPowerOfTwo() {
+		TranspositionTable tt = new OffHeapTranspositionTable(100);
+		TTEntry ttEntry = new TTEntry();
+		Board b = new Board();
+		b.startPosition();
+		assertEquals(100L * 1024 * 1024 / TranspositionTable.BUCKET_BYTES * TranspositionTable.BUCKET_ENTRIES, tt.getSize());
+
+		int bestMove = Move.getFromString(b, "d2d4", true);
+		tt.set(b, TranspositionTable.TYPE_FAIL_HIGH, 0, 7, bestMove, 33, -12, false);
+		assertTrue(tt.search(b, 0, false, ttEntry));
+		assertEquals(TranspositionTable.TYPE_FAIL_HIGH, ttEntry.getNodeType());
+		assertEquals(bestMove, ttEntry.getBestMove());
+		assertEquals(33, ttEntry.getScore());
+		assertEquals(-12, ttEntry.getEval());
+		assertEquals(7, ttEntry.getDepthAnalyzed());
+
+		tt.clear();
+		assertFalse(tt.search(b, 0, false, ttEntry));
+	}
+
+	/**
+	 * Several threads write and read the same small table, each entry found must be consistent.
+	 * With 16 key bits an entry from other position may be found, but never an entry mixing two writes
+	 */
+	@Test
+	void testConcurrentEntriesAreConsistent() throws InterruptedException {
+		TranspositionTable tt = new TranspositionTable(1);
+		AtomicInteger inconsistencies = new AtomicInteger();
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final long seed = t;
+			threads[t] = new Thread(() -> {
+				Random random = new Random(seed);
+				TTEntry ttEntry = new TTEntry();
+				Board b = new Board();
+				int[] moves = new int[256];
+				for (int game = 0; game < 200; game++) {
+					b.startPosition();
+					for (int ply = 0; ply < 80; ply++) {
+						int moveCount = b.getLegalMoves(moves);
+						if (moveCount == 0) {
+							break;
+						}
+						b.doMove(moves[random.nextInt(moveCount)], false, false);
+
+						// The score, the eval and the depth are derived from the key
+						int value = (int) (b.getKey() & 0x3ff);
+						tt.set(b, TranspositionTable.TYPE_EXACT_SCORE, 0, value & 0x3f, Move.NONE, value, -value, false);
+						if (tt.search(b, 0, false, ttEntry)
+								&& (ttEntry.getEval() != -ttEntry.getScore() || ttEntry.getDepthAnalyzed() != (ttEntry.getScore() & 0x3f))) {
+							inconsistencies.incrementAndGet();
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, inconsistencies.get());
 	}
-}
\ No newline at end of file
+}
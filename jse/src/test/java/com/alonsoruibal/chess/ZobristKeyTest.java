@@ -1,5 +1,6 @@
 package com.alonsoruibal.chess;
 
+import com.alonsoruibal.chess.hash.MaterialKey;
 import com.alonsoruibal.chess.hash.ZobristKey;
 import com.alonsoruibal.chess.hash.ZobristKeyFen;
 import com.alonsoruibal.chess.movegen.LegalMoveGenerator;
@@ -44,6 +45,35 @@ class ZobristKeyTest {
 		}
 	}
 
+	/**
+	 * The pawn and material keys updated in doMove and undoMove must be equal to the computed from the board
+	 */
+	@Test
+	void testBoardPawnAndMaterialKeys() {
+		Board board = new Board();
+		MoveGenerator movegen = new LegalMoveGenerator();
+		board.startPosition();
+		Random random = new Random();
+
+		for (int i = 1; i < 100000; i++) {
+			int[] moves = new int[256];
+			int moveCount = movegen.generateMoves(board, moves, 0);
+			if ((moveCount > 0) && ((i % 100) != 0)) {
+				int move = moves[Float.valueOf(random.nextFloat() * moveCount).intValue()];
+				board.doMove(move);
+				assertEquals(ZobristKey.getPawnKey(board), board.getPawnKey());
+				assertEquals(MaterialKey.getKey(board), board.getMaterialKey());
+				if ((i % 10) == 0) {
+					board.undoMove();
+					assertEquals(ZobristKey.getPawnKey(board), board.getPawnKey());
+					assertEquals(MaterialKey.getKey(board), board.getMaterialKey());
+				}
+			} else {
+				board.startPosition();
+			}
+		}
+	}
+
 	@Test
 	void testZobristKey1() {
 		Board board = new Board();
@@ -1,20 +1,17 @@
 #!/bin/bash
 #
-# Test tournaments against previous versions of the engine using cutechess-cli
+# Test tournaments against previous versions of the engine with the Gauntlet runner of carballo-jse
 # Starting positions from the Noomen Test Suite 2012
 #
 # Requirements:
-#  - cutechess-cli from https://github.com/cutechess/cutechess
-#  - binfmt-support and jarwrapper (debian) to allow executing jars directly
+#  - The current version jar in ../jse is built with "gradle proguard"
 #  - The previous versions jars in ../jse are built with the script build_previous_versions.sh
 #
 SCRIPT=$(realpath $0)
 SCRIPTPATH=$(dirname "$SCRIPT")
 cd "$SCRIPTPATH/../jse/"
 
-CUTECHESS=/usr/local/cutechess/cutechess-cli.sh
-COMMON="-each proto=uci option.Hash=256 tc=5+0.1 -concurrency 2 -ratinginterval 100 -draw movenumber=100 movecount=50 score=20 -resign movecount=5 score=900 -openings file=src/test/resources/NoomenTestsuite2012.pgn -repeat -games 60 -rounds 20"
+GAUNTLET="java -cp ./carballo-1.9.jar com.alonsoruibal.chess.tournament.Gauntlet"
+COMMON="-hash 256 -tc 5+0.1 -concurrency 2 -games 1200 -openings src/test/resources/NoomenTestsuite2012.pgn"
 
-chmod +x *.jar
-
-$CUTECHESS -engine name=carballo-1.8 cmd=./carballo-1.8.jar -engine name=carballo-1.7 cmd=./carballo-1.7.jar $COMMON
+$GAUNTLET $COMMON "java -jar ./carballo-1.9.jar" "java -jar ./carballo-1.8.jar" "java -jar ./carballo-1.7.jar"